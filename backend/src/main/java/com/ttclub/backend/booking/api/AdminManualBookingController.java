@@ -2,12 +2,14 @@ package com.ttclub.backend.booking.api;
 
 import com.ttclub.backend.booking.model.*;
 import com.ttclub.backend.booking.repository.*;
+import com.ttclub.backend.booking.service.AttendanceRosterHub;
 import com.ttclub.backend.booking.service.MembershipGuard;
 import com.ttclub.backend.booking.service.MembershipPaymentOrchestrator;
 import com.ttclub.backend.booking.service.DuplicateEnrollmentException;
 import com.ttclub.backend.model.RoleName;
 import com.ttclub.backend.model.User;
 import com.ttclub.backend.repository.UserRepository;
+import com.ttclub.backend.service.FinanceLedgerWriter;
 import com.ttclub.backend.service.TaxService;
 import jakarta.transaction.Transactional;
 import org.springframework.http.HttpStatus;
@@ -38,6 +40,8 @@ public class AdminManualBookingController {
 
     private final TaxService tax;
     private final MembershipGuard guard;
+    private final FinanceLedgerWriter finance;
+    private final AttendanceRosterHub rosters;
 
     public AdminManualBookingController(UserRepository users,
                                         MembershipPlanRepository plans,
@@ -49,7 +53,9 @@ public class AdminManualBookingController {
                                         UserProgramEnrollmentRepository enrollments,
                                         ProgramEnrollmentPaymentRepository programEnrollmentPayments,
                                         TaxService tax,
-                                        MembershipGuard guard) {
+                                        MembershipGuard guard,
+                                        FinanceLedgerWriter finance,
+                                        AttendanceRosterHub rosters) {
         this.users = users;
         this.plans = plans;
         this.membershipPayments = membershipPayments;
@@ -61,6 +67,8 @@ public class AdminManualBookingController {
         this.programEnrollmentPayments = programEnrollmentPayments;
         this.tax = tax;
         this.guard = guard;
+        this.finance = finance;
+        this.rosters = rosters;
     }
 
     /* Manual Membership */
@@ -165,6 +173,7 @@ public class AdminManualBookingController {
         e.setStartTs(start);
         e.setCreatedAt(start);
         enrollments.save(e);
+        rosters.programChanged(program.getId());
 
         // Finance write: mirror online ProgramEnrollmentPayment rows
         Long paymentId = null;
@@ -185,6 +194,7 @@ public class AdminManualBookingController {
         pep.setStatus(ProgramEnrollmentPayment.Status.SUCCEEDED);
         pep.setStripePaymentIntentId(ref);
         pep = programEnrollmentPayments.save(pep);
+        finance.enrollmentPaid(pep);
         paymentId = pep.getId();
 
         return new ManualEnrollmentResp(true, e.getId(), paymentId);
@@ -5,6 +5,7 @@ import com.ttclub.backend.booking.model.TableRentalCredit;
 import com.ttclub.backend.booking.repository.TableRentalCreditRepository;
 import com.ttclub.backend.booking.service.TableCreditCalculatorService;
 import com.ttclub.backend.booking.service.TableCreditConsumptionService;
+import com.ttclub.backend.booking.service.TableCreditLedger;
 import com.ttclub.backend.model.RoleName;
 import com.ttclub.backend.model.User;
 import com.ttclub.backend.repository.UserRepository;
@@ -20,6 +21,7 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/admin/table-credits")
@@ -30,6 +32,7 @@ public class AdminTableCreditsController {
     private final TableCreditCalculatorService calc;
     private final TableCreditConsumptionService consumeSvc;
     private final TableRentalCreditRepository trcRepo;
+    private final TableCreditLedger ledger;
 
     @PersistenceContext
     private EntityManager em;
@@ -37,11 +40,13 @@ public class AdminTableCreditsController {
     public AdminTableCreditsController(UserRepository users,
                                        TableCreditCalculatorService calc,
                                        TableCreditConsumptionService consumeSvc,
-                                       TableRentalCreditRepository trcRepo) {
+                                       TableRentalCreditRepository trcRepo,
+                                       TableCreditLedger ledger) {
         this.users = users;
         this.calc = calc;
         this.consumeSvc = consumeSvc;
         this.trcRepo = trcRepo;
+        this.ledger = ledger;
     }
 
     public record PageDto<T>(List<T> content, int page, int size, long totalElements, int totalPages) {}
@@ -92,6 +97,9 @@ public class AdminTableCreditsController {
         countQ.select(cb.count(r2)).where(cps.toArray(Predicate[]::new));
         long total = em.createQuery(countQ).getSingleResult();
 
+        // One balance query for the whole page
+        Map<Long, BigDecimal> hours = calc.hoursAvailableForUsers(rows.stream().map(User::getId).toList());
+
         List<TableRentalDtos.AdminUserCreditRow> content = rows.stream().map(u -> {
             var d = new TableRentalDtos.AdminUserCreditRow();
             d.id = u.getId();
@@ -100,8 +108,7 @@ public class AdminTableCreditsController {
             String name = (fn + " " + ln).trim();
             d.name = name.isEmpty() ? u.getEmail() : name;
             d.email = u.getEmail();
-            // Calls the robust, lazy-safe calculator (no proxy traversal inside)
-            d.tableHoursRemaining = calc.hoursAvailableForUser(u.getId()).doubleValue();
+            d.tableHoursRemaining = hours.getOrDefault(u.getId(), BigDecimal.ZERO).doubleValue();
             return d;
         }).toList();
 
@@ -144,6 +151,7 @@ public class AdminTableCreditsController {
         trc.setSourcePlan(null);
         trc.setHoursRemaining(hours);
         trcRepo.save(trc);
+        ledger.credit(u.getId(), null, hours);
 
         return new ManualGrantResp(true, trc.getId());
     }
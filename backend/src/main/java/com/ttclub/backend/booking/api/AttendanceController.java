@@ -24,6 +24,8 @@ public class AttendanceController {
                                Long enrollmentId, Integer sessionsRemaining, boolean present) {}
     public record OccurrenceDto(Long id, Long programId, String title, String start, String end) {}
     public record ListResp(OccurrenceDto occurrence, java.util.List<EligibleUser> users) {}
+    public record RosterReq(Long occurrenceId, java.util.List<Long> presentUserIds) { }
+    public record RosterResp(Long occurrenceId, int marked, int unmarked, int unchanged) { }
 
     /* GET: eligible users for an occurrence OR by program/date */
     @GetMapping
@@ -41,4 +43,10 @@ public class AttendanceController {
         svc.markAttendance(req.occurrenceId(), req.userId(), present, auth);
         return ResponseEntity.noContent().build();
     }
+
+    /* PUT: full present set for an occurrence (everyone not listed is absent) */
+    @PutMapping("/roster")
+    public RosterResp roster(@RequestBody RosterReq req, Authentication auth) {
+        return svc.applyRoster(req.occurrenceId(), req.presentUserIds(), auth);
+    }
 }
@@ -0,0 +1,31 @@
+package com.ttclub.backend.booking.api;
+
+import com.ttclub.backend.booking.service.AttendanceRosterHub;
+import com.ttclub.backend.booking.service.AttendanceRosterHub.RosterSnapshot;
+import com.ttclub.backend.booking.service.AttendanceService;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.stereotype.Controller;
+
+/**
+ * STOMP side of the attendance screen.<br>
+ * SUBSCRIBE /app/attendance/{occurrenceId} returns the current roster snapshot (with its seq)
+ * to that subscriber only; live deltas arrive on /topic/attendance/{occurrenceId}.
+ * Access is limited to OWNER/ADMIN by WebSocketConfig.
+ */
+@Controller
+public class AttendanceLiveController {
+
+    private final AttendanceService svc;
+    private final AttendanceRosterHub hub;
+
+    public AttendanceLiveController(AttendanceService svc, AttendanceRosterHub hub) {
+        this.svc = svc;
+        this.hub = hub;
+    }
+
+    @SubscribeMapping("/attendance/{occurrenceId}")
+    public RosterSnapshot snapshot(@DestinationVariable Long occurrenceId) {
+        return hub.snapshot(occurrenceId, () -> svc.listEligible(occurrenceId, null, null));
+    }
+}
@@ -1,7 +1,9 @@
 package com.ttclub.backend.booking.api;
 
 import com.ttclub.backend.booking.dto.ProgramOccurrenceDto;
-import com.ttclub.backend.booking.service.ProgramOccurrenceService;
+import com.ttclub.backend.booking.service.ProgramOccurrenceFeedCache;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -12,24 +14,33 @@ import java.util.List;
 
 /**
  * Public calendar feed of program occurrences.
+ * Served from the week-bucketed feed cache; the ETag is derived from the per-week
+ * versions so unchanged ranges revalidate with 304.
  */
 @RestController
 @RequestMapping("/api/programs/occurrences")
 public class PublicProgramOccurrencesController {
 
-    private final ProgramOccurrenceService svc;
+    private final ProgramOccurrenceFeedCache feed;
 
-    public PublicProgramOccurrencesController(ProgramOccurrenceService svc) {
-        this.svc = svc;
+    public PublicProgramOccurrencesController(ProgramOccurrenceFeedCache feed) {
+        this.feed = feed;
     }
 
     @GetMapping
-    public List<ProgramOccurrenceDto> list(
+    public ResponseEntity<List<ProgramOccurrenceDto>> list(
             @RequestParam(name = "from", required = false) String fromParam,
             @RequestParam(name = "to",   required = false) String toParam) {
 
         Range r = parseRangeOrDefault(fromParam, toParam, 0, 28); // default 4 weeks
-        return svc.publicFeed(r.from, r.to);
+        ProgramOccurrenceFeedCache.Feed f = feed.feed(r.from, r.to);
+        if (f.etag() == null) {
+            return ResponseEntity.ok(f.items());
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(f.etag())
+                .body(f.items());
     }
 
     /* helpers  */
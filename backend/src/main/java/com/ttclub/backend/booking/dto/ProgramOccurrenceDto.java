@@ -2,11 +2,12 @@ package com.ttclub.backend.booking.dto;
 
 import java.time.Instant;
 
-public class ProgramOccurrenceDto {
-    public Long   id;         // primary key
-    public Long   programId;
-    public String title;
-    public Instant start;
-    public Instant end;
-    public String coachName;
-}
+/** Immutable: the public feed hands out the same instances from ProgramOccurrenceFeedCache. */
+public record ProgramOccurrenceDto(
+        Long    id,         // primary key
+        Long    programId,
+        String  title,
+        Instant start,
+        Instant end,
+        String  coachName
+) { }
@@ -16,6 +16,9 @@ import org.springframework.stereotype.Component;
  *     jobs.program-materialiser.enabled=false
  * - Cron can be changed via:
  *     jobs.program-materialiser.cron=...
+ * - Incremental by default (journal + per-program high-water marks); set
+ *     jobs.program-materialiser.incremental=false
+ *   to rescan the full window every night.
  */
 @Component
 @ConditionalOnProperty(
@@ -36,6 +39,9 @@ public class ProgramMaterialiserJob {
     @Value("${jobs.program-materialiser.zone:}")
     private String zone;
 
+    @Value("${jobs.program-materialiser.incremental:true}")
+    private boolean incremental;
+
     public ProgramMaterialiserJob(ProgramOccurrenceService svc) {
         this.svc = svc;
     }
@@ -53,7 +59,8 @@ public class ProgramMaterialiserJob {
     @Scheduled(cron = "${jobs.program-materialiser.cron:0 10 2 * * *}",
             zone = "${jobs.program-materialiser.zone:}")
     public void runNightly() {
-        int created = svc.materializeDefaultWindow();
-        log.info("ProgramMaterialiserJob executed: created {} new occurrences.", created);
+        int created = incremental ? svc.materializeIncremental() : svc.materializeDefaultWindow();
+        log.info("ProgramMaterialiserJob executed ({}): created {} new occurrences.",
+                incremental ? "incremental" : "full window", created);
     }
 }
@@ -0,0 +1,77 @@
+package com.ttclub.backend.booking.job;
+
+import com.ttclub.backend.booking.service.TableCreditLedger;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Verifies the maintained table-credit balances against the raw credit rows.
+ * - One set-based query compares every balance row with the per-owner sum of
+ *   table_rental_credits.hours_remaining.
+ * - Mismatches are logged and exported as ttclub.table-credits.ledger.mismatches.
+ * - With jobs.table-credit-reconcile.repair=true each mismatching owner is recomputed
+ *   under its balance row lock (a concurrent consumer simply finishes first); a missing balance
+ *   row is created before it is locked, so the repair never races a concurrent credit.
+ * - Enabled by default; disable via jobs.table-credit-reconcile.enabled=false.
+ */
+@Component
+@ConditionalOnProperty(
+        name = "jobs.table-credit-reconcile.enabled",
+        havingValue = "true",
+        matchIfMissing = true
+)
+public class TableCreditReconcileJob {
+
+    private static final Logger log = LoggerFactory.getLogger(TableCreditReconcileJob.class);
+
+    private final TableCreditLedger ledger;
+    private final AtomicInteger lastMismatches = new AtomicInteger();
+    private final Counter repairs;
+
+    @Value("${jobs.table-credit-reconcile.repair:true}")
+    private boolean repair;
+
+    public TableCreditReconcileJob(TableCreditLedger ledger, MeterRegistry meters) {
+        this.ledger = ledger;
+        meters.gauge("ttclub.table-credits.ledger.mismatches", lastMismatches);
+        this.repairs = Counter.builder("ttclub.table-credits.ledger.repairs").register(meters);
+    }
+
+    // second, minute, hour, day, month, day-of-week
+    @Scheduled(cron = "${jobs.table-credit-reconcile.cron:0 40 3 * * *}",
+            zone = "${jobs.table-credit-reconcile.zone:}")
+    public void reconcile() {
+        List<TableCreditLedger.Mismatch> found = ledger.findMismatches();
+        lastMismatches.set(found.size());
+        if (found.isEmpty()) {
+            log.info("TableCreditReconcileJob: ledger matches raw credits.");
+            return;
+        }
+
+        int fixed = 0;
+        for (TableCreditLedger.Mismatch m : found) {
+            log.warn("Table-credit ledger mismatch {}#{}: ledger {} h, credits {} h.",
+                    m.ownerKind(), m.ownerId(), m.ledgerHours(), m.rawHours());
+            if (!repair) continue;
+            try {
+                if (ledger.repair(m.ownerKind(), m.ownerId())) {
+                    fixed++;
+                    repairs.increment();
+                }
+            } catch (RuntimeException ex) {
+                log.error("Could not repair table-credit balance {}#{}: {}",
+                        m.ownerKind(), m.ownerId(), ex.getMessage());
+            }
+        }
+        log.warn("TableCreditReconcileJob: {} mismatching balance(s), {} repaired.", found.size(), fixed);
+    }
+}
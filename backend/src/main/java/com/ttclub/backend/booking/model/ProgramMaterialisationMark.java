@@ -0,0 +1,48 @@
+package com.ttclub.backend.booking.model;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/** Per-program high-water mark: occurrences exist for every slot up to and including this date. */
+@Entity
+@Table(name = "program_materialisation_marks")
+public class ProgramMaterialisationMark {
+
+    @Id
+    @Column(name = "program_id")
+    private Long programId;
+
+    @Column(name = "materialised_through", nullable = false)
+    private LocalDate materialisedThrough;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt = Instant.now();
+
+    @PrePersist
+    @PreUpdate
+    protected void touch() { updatedAt = Instant.now(); }
+
+    public ProgramMaterialisationMark() { }
+
+    public ProgramMaterialisationMark(Long programId, LocalDate materialisedThrough) {
+        this.programId = programId;
+        this.materialisedThrough = materialisedThrough;
+    }
+
+    public Long getProgramId() { return programId; }
+    public void setProgramId(Long programId) { this.programId = programId; }
+    public LocalDate getMaterialisedThrough() { return materialisedThrough; }
+    public void setMaterialisedThrough(LocalDate materialisedThrough) { this.materialisedThrough = materialisedThrough; }
+    public Instant getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(Instant updatedAt) { this.updatedAt = updatedAt; }
+
+    @Override public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ProgramMaterialisationMark that)) return false;
+        return programId != null && programId.equals(that.programId);
+    }
+    @Override public int hashCode() { return Objects.hashCode(programId); }
+}
@@ -0,0 +1,58 @@
+package com.ttclub.backend.booking.model;
+
+import jakarta.persistence.*;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Journal entry for a ProgramSlot mutation. Drives slot-scoped (incremental) materialisation;
+ * entries that could not be applied right away (e.g. inactive program) stay pending.
+ */
+@Entity
+@Table(name = "program_slot_changes")
+public class ProgramSlotChange {
+
+    public enum Type { ADD, UPDATE, DELETE }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "program_id", nullable = false)
+    private Long programId;
+
+    /** Plain id (no FK) so DELETE entries survive the slot itself */
+    @Column(name = "slot_id", nullable = false)
+    private Long slotId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "change_type", nullable = false, length = 10)
+    private Type changeType;
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Instant createdAt = Instant.now();
+
+    @Column(name = "processed_at")
+    private Instant processedAt;
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public Long getProgramId() { return programId; }
+    public void setProgramId(Long programId) { this.programId = programId; }
+    public Long getSlotId() { return slotId; }
+    public void setSlotId(Long slotId) { this.slotId = slotId; }
+    public Type getChangeType() { return changeType; }
+    public void setChangeType(Type changeType) { this.changeType = changeType; }
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+    public Instant getProcessedAt() { return processedAt; }
+    public void setProcessedAt(Instant processedAt) { this.processedAt = processedAt; }
+
+    @Override public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof ProgramSlotChange that)) return false;
+        return id != null && id.equals(that.id);
+    }
+    @Override public int hashCode() { return Objects.hashCode(id); }
+}
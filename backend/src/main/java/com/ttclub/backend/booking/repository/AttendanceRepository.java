@@ -2,6 +2,7 @@ package com.ttclub.backend.booking.repository;
 
 import com.ttclub.backend.booking.model.Attendance;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
@@ -11,6 +12,11 @@ import java.util.List;
 public interface AttendanceRepository extends JpaRepository<Attendance, Long> {
     boolean existsByOccurrenceIdAndUserId(Long occurrenceId, Long userId);
 
+    /* single-row undo; served by uq_attendance_once (occurrence_id, user_id) */
+    @Modifying
+    @Query("delete from Attendance a where a.occurrence.id = :occurrenceId and a.user.id = :userId")
+    int deleteByOccurrenceAndUser(@Param("occurrenceId") Long occurrenceId, @Param("userId") Long userId);
+
     @Query("""
            select distinct a.occurrence.id
              from Attendance a
@@ -0,0 +1,7 @@
+package com.ttclub.backend.booking.repository;
+
+import com.ttclub.backend.booking.model.ProgramMaterialisationMark;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface ProgramMaterialisationMarkRepository extends JpaRepository<ProgramMaterialisationMark, Long> {
+}
@@ -0,0 +1,12 @@
+package com.ttclub.backend.booking.repository;
+
+import com.ttclub.backend.booking.model.ProgramSlotChange;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface ProgramSlotChangeRepository extends JpaRepository<ProgramSlotChange, Long> {
+
+    // drained by the nightly materialiser (served by partial index ix_psc_pending)
+    List<ProgramSlotChange> findByProcessedAtIsNullOrderByIdAsc();
+}
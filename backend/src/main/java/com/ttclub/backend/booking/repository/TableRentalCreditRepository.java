@@ -2,6 +2,7 @@ package com.ttclub.backend.booking.repository;
 
 import com.ttclub.backend.booking.model.TableRentalCredit;
 import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
@@ -14,13 +15,6 @@ import java.util.List;
 
 public interface TableRentalCreditRepository extends JpaRepository<TableRentalCredit, Long> {
 
-    @Query("""
-           select coalesce(sum(t.hoursRemaining), 0)
-             from TableRentalCredit t
-            where t.group.id = :groupId
-           """)
-    BigDecimal sumHoursByGroupId(@Param("groupId") Long groupId);
-
     @Query("""
            select coalesce(sum(t.hoursRemaining), 0)
              from TableRentalCredit t
@@ -35,15 +29,10 @@ public interface TableRentalCreditRepository extends JpaRepository<TableRentalCr
                                      @Param("start") Instant start,
                                      @Param("end")   Instant end);
 
-    @Query("""
-           select coalesce(sum(t.hoursRemaining), 0)
-             from TableRentalCredit t
-            where t.group is null
-              and t.user.id = :userId
-           """)
-    BigDecimal sumHoursByUserId(@Param("userId") Long userId);
-
-    /* Lock eligible credit rows (FIFO by created_at) across individual and given groups */
+    /*
+     * Lock the next eligible credit rows (FIFO by created_at) across individual and given groups.
+     * Callers page through with a small limit so only the rows actually drained get locked.
+     */
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("""
            select t
@@ -55,6 +44,7 @@ public interface TableRentalCreditRepository extends JpaRepository<TableRentalCr
               )
             order by t.createdAt asc, t.id asc
            """)
-    List<TableRentalCredit> lockEligibleForUser(@Param("userId") Long userId,
-                                                @Param("groupIds") Collection<Long> groupIds);
+    List<TableRentalCredit> lockNextEligibleForUser(@Param("userId") Long userId,
+                                                    @Param("groupIds") Collection<Long> groupIds,
+                                                    Pageable page);
 }
@@ -1,15 +1,43 @@
 package com.ttclub.backend.booking.repository;
 
+import com.ttclub.backend.booking.model.MembershipPlanType;
 import com.ttclub.backend.booking.model.UserMembership;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 public interface UserMembershipRepository extends JpaRepository<UserMembership, Long> {
 
+    /** Flat row of a user's membership for batched read models. */
+    interface ActiveMembershipView {
+        Long getUserId();
+        Long getId();
+        Long getPlanId();
+        String getPlanName();
+        MembershipPlanType getPlanType();
+        Instant getEndTs();
+    }
+
+    /** Active, currently-valid memberships of many users in one query (ordered by user, id). */
+    @Query("""
+           select um.user.id as userId, um.id as id,
+                  p.id as planId, p.name as planName, p.type as planType,
+                  um.endTs as endTs
+             from UserMembership um
+             left join um.plan p
+            where um.user.id in :userIds
+              and um.active = true
+              and um.startTs <= :now
+              and um.endTs   >= :now
+            order by um.user.id, um.id
+           """)
+    List<ActiveMembershipView> findActiveViewsForUsers(@Param("userIds") Collection<Long> userIds,
+                                                       @Param("now") Instant now);
+
     @Query("""
            select um
              from UserMembership um
@@ -22,6 +50,19 @@ public interface UserMembershipRepository extends JpaRepository<UserMembership,
            """)
     List<UserMembership> findActiveInitialMembershipsForUser(@Param("userId") Long userId);
 
+    /** Subset of userIds holding an active INITIAL membership right now (bulk MembershipGuard check). */
+    @Query("""
+           select distinct um.user.id
+             from UserMembership um
+             join um.plan p
+            where um.user.id in :userIds
+              and um.active = true
+              and p.type = com.ttclub.backend.booking.model.MembershipPlanType.INITIAL
+              and um.startTs <= CURRENT_TIMESTAMP
+              and um.endTs   >= CURRENT_TIMESTAMP
+           """)
+    List<Long> findUserIdsWithActiveInitialMembership(@Param("userIds") Collection<Long> userIds);
+
     @Query("""
            select count(um) > 0
              from UserMembership um
@@ -9,11 +9,36 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface UserProgramEnrollmentRepository extends JpaRepository<UserProgramEnrollment, Long> {
 
+    /** Flat row of an enrollment for batched read models. */
+    interface EnrollmentView {
+        Long getUserId();
+        Long getId();
+        String getProgramTitle();
+        String getPackageName();
+        Integer getSessionsRemaining();
+    }
+
+    /** Enrollments of many users with the given status in one query (newest first). */
+    @Query("""
+           select e.user.id as userId, e.id as id,
+                  pr.title as programTitle, pk.name as packageName,
+                  e.sessionsRemaining as sessionsRemaining
+             from UserProgramEnrollment e
+             left join e.program pr
+             left join e.programPackage pk
+            where e.user.id in :userIds
+              and e.status = :status
+            order by e.createdAt desc, e.id desc
+           """)
+    List<EnrollmentView> findViewsForUsers(@Param("userIds") Collection<Long> userIds,
+                                           @Param("status") Status status);
+
     boolean existsByUser_IdAndProgram_IdAndStatus(Long userId, Long programId, Status status);
 
     long countByUser_IdAndStatus(Long userId, Status status);
@@ -19,20 +19,20 @@ public class AdminGroupQueryService {
     private final MembershipGroupRepository groups;
     private final MembershipEntitlementRepository entitlements;
     private final UserMembershipRepository userMemberships;
-    private final TableRentalCreditRepository trcRepo;
+    private final TableCreditLedger ledger;
     private final MembershipGroupCounterRepository groupCounters;
     private final UserRepository users;
 
     public AdminGroupQueryService(MembershipGroupRepository groups,
                                   MembershipEntitlementRepository entitlements,
                                   UserMembershipRepository userMemberships,
-                                  TableRentalCreditRepository trcRepo,
+                                  TableCreditLedger ledger,
                                   MembershipGroupCounterRepository groupCounters,
                                   UserRepository users) {
         this.groups = groups;
         this.entitlements = entitlements;
         this.userMemberships = userMemberships;
-        this.trcRepo = trcRepo;
+        this.ledger = ledger;
         this.groupCounters = groupCounters;
         this.users = users;
     }
@@ -115,7 +115,7 @@ public class AdminGroupQueryService {
         Optional<MembershipEntitlement> tableEnt = ents.stream()
                 .filter(e -> e.getKind() == EntitlementKind.TABLE_HOURS).findFirst();
         if (tableEnt.isPresent()) {
-            hoursRem = trcRepo.sumHoursByGroupId(g.getId());
+            hoursRem = ledger.balanceForGroup(g.getId());
         }
         // program credits
         Optional<MembershipEntitlement> pcEnt = ents.stream()
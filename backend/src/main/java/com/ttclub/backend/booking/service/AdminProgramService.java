@@ -13,6 +13,7 @@ import com.ttclub.backend.booking.model.Program;
 import com.ttclub.backend.booking.model.ProgramEnrollmentMode;
 import com.ttclub.backend.booking.model.ProgramPackage;
 import com.ttclub.backend.booking.model.ProgramSlot;
+import com.ttclub.backend.booking.model.ProgramSlotChange;
 import com.ttclub.backend.booking.repository.ProgramPackageRepository;
 import com.ttclub.backend.booking.repository.ProgramRepository;
 import com.ttclub.backend.booking.repository.ProgramSlotRepository;
@@ -33,6 +34,7 @@ import java.util.stream.Collectors;
  *  - listPrograms() was refactored to bulk-load packages and slots to avoid N+1 queries
  *    while keeping DTOs and endpoints unchanged.
  *  - All write paths and single-item getters are preserved byte-for-byte to minimize risk.
+ *  - Every write path invalidates the public catalogue snapshot (applied after commit).
  */
 @Service
 public class AdminProgramService {
@@ -44,6 +46,8 @@ public class AdminProgramService {
     private final ProgramSlotRepository slots;
     private final UserRepository users;
     private final ProgramOccurrenceService occurrenceService;
+    private final PublicProgramCatalogue catalogue;
+    private final ProgramOccurrenceFeedCache feedCache;
     private final BookingMapper mapper = new BookingMapper();
 
     public AdminProgramService(
@@ -51,13 +55,17 @@ public class AdminProgramService {
             ProgramPackageRepository packages,
             ProgramSlotRepository slots,
             UserRepository users,
-            ProgramOccurrenceService occurrenceService
+            ProgramOccurrenceService occurrenceService,
+            PublicProgramCatalogue catalogue,
+            ProgramOccurrenceFeedCache feedCache
     ) {
         this.programs = programs;
         this.packages = packages;
         this.slots = slots;
         this.users = users;
         this.occurrenceService = occurrenceService;
+        this.catalogue = catalogue;
+        this.feedCache = feedCache;
     }
 
     /* Program CRUD */
@@ -72,6 +80,7 @@ public class AdminProgramService {
             p.setEnrollmentMode(parseMode(req.enrollmentMode));
         }
         p = programs.save(p);
+        catalogue.invalidate();
         return mapper.toProgramDto(
                 p,
                 List.of(),
@@ -90,12 +99,16 @@ public class AdminProgramService {
             p.setEnrollmentMode(parseMode(req.enrollmentMode));
         }
         programs.save(p);
+        catalogue.invalidate();
+        feedCache.invalidateAll(); // titles are denormalised into the occurrence feed
         return getProgram(id);
     }
 
     @Transactional
     public void deleteProgram(Long id) {
         programs.deleteById(id);
+        catalogue.invalidate();
+        feedCache.invalidateAll();
     }
 
     @Transactional
@@ -163,6 +176,7 @@ public class AdminProgramService {
         e.setSortOrder(req.sortOrder);
         validatePackageEntity(e);
         e = packages.save(e);
+        catalogue.invalidate();
         return mapper.toPackageDto(e);
     }
 
@@ -184,12 +198,14 @@ public class AdminProgramService {
         }
         validatePackageEntity(e);
         e = packages.save(e);
+        catalogue.invalidate();
         return mapper.toPackageDto(e);
     }
 
     @Transactional
     public void deletePackage(Long id) {
         packages.deleteById(id);
+        catalogue.invalidate();
     }
 
     /* Slots */
@@ -209,9 +225,10 @@ public class AdminProgramService {
         s.setCoach(coach);
 
         s = slots.save(s);
+        catalogue.invalidate();
 
-        // Immediately materialize for 12 weeks for this program
-        int created = occurrenceService.materializeForProgram(programId, 12);
+        // Journal the change and materialize only this slot (up to the program's high-water mark)
+        int created = occurrenceService.recordSlotChange(programId, s.getId(), ProgramSlotChange.Type.ADD);
         log.debug("After addSlot for program {} -> materialized {} new occurrences.", programId, created);
 
         Map<Long, String> coachMap = new HashMap<>();
@@ -232,9 +249,10 @@ public class AdminProgramService {
         }
         validateSlotEntity(s);
         s = slots.save(s);
+        catalogue.invalidate();
 
-        // Re-materialize future window for the owning program (safe/idempotent)
-        int created = occurrenceService.materializeForProgram(s.getProgram().getId(), 12);
+        // Re-materialize this slot's future occurrences only (safe/idempotent)
+        int created = occurrenceService.recordSlotChange(s.getProgram().getId(), s.getId(), ProgramSlotChange.Type.UPDATE);
         log.debug("After updateSlot for program {} -> materialized {} new occurrences.",
                 s.getProgram().getId(), created);
 
@@ -247,7 +265,12 @@ public class AdminProgramService {
 
     @Transactional
     public void deleteSlot(Long id) {
-        slots.deleteById(id);
+        slots.findById(id).ifPresent(s -> {
+            Long programId = s.getProgram().getId();
+            slots.delete(s);
+            occurrenceService.recordSlotChange(programId, id, ProgramSlotChange.Type.DELETE);
+        });
+        catalogue.invalidate();
     }
 
     /* Helpers */
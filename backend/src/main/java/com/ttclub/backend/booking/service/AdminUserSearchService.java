@@ -0,0 +1,132 @@
+package com.ttclub.backend.booking.service;
+
+import com.ttclub.backend.booking.model.MembershipPlanType;
+import com.ttclub.backend.booking.model.UserProgramEnrollment;
+import com.ttclub.backend.booking.repository.UserMembershipRepository;
+import com.ttclub.backend.booking.repository.UserMembershipRepository.ActiveMembershipView;
+import com.ttclub.backend.booking.repository.UserProgramEnrollmentRepository;
+import com.ttclub.backend.booking.repository.UserProgramEnrollmentRepository.EnrollmentView;
+import com.ttclub.backend.model.RoleName;
+import com.ttclub.backend.model.User;
+import com.ttclub.backend.repository.UserRepository;
+import com.ttclub.backend.util.LongObjectMap;
+import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read model behind the admin enroll UI user search (AdminUserSearchController).<br>
+ * Notes:
+ *  - Constant query count per page regardless of size: the user page (+ count), then one
+ *    projection query for active memberships and one for active enrollments of all ids on the
+ *    page. The active-initial flag is derived from the membership rows (plan type INITIAL).
+ *  - Rows are assembled from user-id keyed LongObjectMaps; no entities besides the users are
+ *    hydrated.
+ */
+@Service
+public class AdminUserSearchService {
+
+    public record MembershipInfo(Long userMembershipId, Long planId, String planName, Instant endTs) {}
+    public record EnrollmentInfo(Long enrollmentId, String programTitle, String packageName, Integer sessionsRemaining) {}
+
+    public record Row(Long id, String name, String email,
+                      boolean hasActiveInitial, int activeMemberships, int activeEnrollments,
+                      Integer lessonsRemaining,
+                      List<MembershipInfo> memberships,
+                      List<EnrollmentInfo> enrollmentsList) {}
+
+    public record PageDto<T>(List<T> content, int page, int size, long totalElements, int totalPages) {}
+
+    private final UserRepository users;
+    private final UserMembershipRepository userMemberships;
+    private final UserProgramEnrollmentRepository enrollments;
+
+    public AdminUserSearchService(UserRepository users,
+                                  UserMembershipRepository userMemberships,
+                                  UserProgramEnrollmentRepository enrollments) {
+        this.users = users;
+        this.userMemberships = userMemberships;
+        this.enrollments = enrollments;
+    }
+
+    /** CLIENT users matching q (name or email), with active memberships and enrollments. */
+    @Transactional
+    public PageDto<Row> search(String q, int page, int size) {
+        int pageSafe = Math.max(0, page);
+        int sizeSafe = Math.min(Math.max(1, size), 100);
+        Pageable pageable = PageRequest.of(pageSafe, sizeSafe, Sort.by(Sort.Direction.ASC, "id"));
+
+        String qNorm = q == null ? "" : q.trim().toLowerCase();
+        Page<User> p = qNorm.isBlank()
+                ? users.findByRole_Name(RoleName.CLIENT, pageable)
+                : users.searchByRoleAndNameOrEmail(RoleName.CLIENT, qNorm, pageable);
+
+        List<User> pageUsers = p.getContent();
+        if (pageUsers.isEmpty()) {
+            return new PageDto<>(List.of(), p.getNumber(), p.getSize(), p.getTotalElements(), p.getTotalPages());
+        }
+        List<Long> ids = pageUsers.stream().map(User::getId).toList();
+
+        LongObjectMap<List<ActiveMembershipView>> msByUser = new LongObjectMap<>(ids.size());
+        for (ActiveMembershipView v : userMemberships.findActiveViewsForUsers(ids, Instant.now())) {
+            msByUser.computeIfAbsent(v.getUserId(), k -> new ArrayList<>()).add(v);
+        }
+        LongObjectMap<List<EnrollmentView>> ensByUser = new LongObjectMap<>(ids.size());
+        for (EnrollmentView v : enrollments.findViewsForUsers(ids, UserProgramEnrollment.Status.ACTIVE)) {
+            ensByUser.computeIfAbsent(v.getUserId(), k -> new ArrayList<>()).add(v);
+        }
+
+        List<Row> rows = new ArrayList<>(pageUsers.size());
+        for (User u : pageUsers) {
+            List<ActiveMembershipView> ms = orEmpty(msByUser.get(u.getId()));
+            List<EnrollmentView> ens = orEmpty(ensByUser.get(u.getId()));
+
+            boolean hasInitial = false;
+            List<MembershipInfo> memList = new ArrayList<>(ms.size());
+            for (ActiveMembershipView m : ms) {
+                if (m.getPlanType() == MembershipPlanType.INITIAL) hasInitial = true;
+                memList.add(new MembershipInfo(m.getId(), m.getPlanId(), m.getPlanName(), m.getEndTs()));
+            }
+
+            int lessonsRemaining = 0;
+            List<EnrollmentInfo> enrList = new ArrayList<>(ens.size());
+            for (EnrollmentView e : ens) {
+                Integer left = e.getSessionsRemaining();
+                if (left != null && left >= 0) lessonsRemaining += left;
+                enrList.add(new EnrollmentInfo(e.getId(), e.getProgramTitle(), e.getPackageName(), left));
+            }
+
+            String name = buildDisplayName(u.getFirstName(), u.getLastName());
+            rows.add(new Row(
+                    u.getId(),
+                    name.isBlank() ? null : name,
+                    u.getEmail(),
+                    hasInitial,
+                    memList.size(),
+                    enrList.size(),
+                    lessonsRemaining,
+                    memList,
+                    enrList
+            ));
+        }
+
+        return new PageDto<>(rows, p.getNumber(), p.getSize(), p.getTotalElements(), p.getTotalPages());
+    }
+
+    private static <T> List<T> orEmpty(List<T> list) {
+        return list == null ? List.of() : list;
+    }
+
+    private static String buildDisplayName(String first, String last) {
+        String f = first == null ? "" : first.trim();
+        String l = last  == null ? "" : last.trim();
+        return (f + " " + l).trim();
+    }
+}
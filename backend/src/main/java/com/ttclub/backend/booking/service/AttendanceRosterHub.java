@@ -0,0 +1,416 @@
+package com.ttclub.backend.booking.service;
+
+import com.ttclub.backend.booking.api.AttendanceController.EligibleUser;
+import com.ttclub.backend.booking.api.AttendanceController.ListResp;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.socket.messaging.SessionConnectedEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Live attendance rosters pushed over STOMP (/topic/attendance/{occurrenceId}).<br>
+ * Notes:
+ *  - Each watched occurrence keeps one in-memory roster snapshot, built with a single
+ *    AttendanceService.listEligible read and then kept current from the committed changes,
+ *    so N connected devices cost one database read instead of N polls. Concurrent misses for
+ *    the same occurrence share one in-flight load.
+ *  - Every committed mark/undo is published after commit as a delta carrying a per-occurrence
+ *    sequence number and absolute values (present, sessionsRemaining, exhausted).
+ *  - Resync protocol: a client subscribes to the topic first, then to /app/attendance/{id} for the
+ *    snapshot (which carries its seq). Buffered deltas with seq <= snapshot.seq are dropped; a gap
+ *    in seq (or a reconnect) means "fetch the snapshot again". Deltas are idempotent.
+ *  - Rebuilds: when the cached roster can no longer be kept current by deltas (an enrollment
+ *    created for the program, or a roster older than max-age-sec, which bounds how long marks made
+ *    on another node stay unseen), the hub re-reads it once on its own thread and pushes the whole
+ *    roster as a delta carrying {@code roster}; clients replace their copy, no one refetches.
+ *    Only if that read fails is the roster dropped and an empty delta pushed whose seq skips one
+ *    value, so watching clients see a gap and fetch the snapshot themselves.
+ *  - Snapshots of occurrences nobody is watching are dropped by a periodic sweep.
+ *  - ttclub.attendance.live.connections / .subscriptions gauges expose the connected devices.
+ */
+@Service
+public class AttendanceRosterHub {
+
+    private static final Logger log = LoggerFactory.getLogger(AttendanceRosterHub.class);
+
+    static final String TOPIC_PREFIX = "/topic/attendance/";
+
+    public enum ChangeType { MARKED, UNDONE }
+
+    /** One user's new state after a committed change. */
+    public record RosterChange(Long userId, ChangeType type, Integer sessionsRemaining, boolean exhausted) { }
+
+    /**
+     * Pushed to /topic/attendance/{occurrenceId}. {@code roster} is null for ordinary deltas; when
+     * set (a server-side rebuild) it replaces the client's roster as of this seq.
+     */
+    public record RosterDelta(Long occurrenceId, long seq, List<RosterChange> changes, ListResp roster) { }
+
+    /** Answer to /app/attendance/{occurrenceId}; deltas with seq > this seq apply on top. */
+    public record RosterSnapshot(long seq, ListResp roster) { }
+
+    /** Cached roster of one occurrence; guarded by its own monitor. */
+    private static final class LiveRoster {
+        final ListResp base;
+        final Supplier<ListResp> loader;
+        final LinkedHashMap<Long, EligibleUser> users = new LinkedHashMap<>();
+        long seq;
+        final long builtAtMillis = System.currentTimeMillis();
+        volatile long touchedAtMillis = builtAtMillis;
+
+        LiveRoster(ListResp base, long seq, Supplier<ListResp> loader) {
+            this.base = base;
+            this.seq = seq;
+            this.loader = loader;
+            for (EligibleUser u : base.users()) users.put(u.userId(), u);
+        }
+
+        ListResp view() {
+            return new ListResp(base.occurrence(), List.copyOf(users.values()));
+        }
+    }
+
+    private final SimpMessagingTemplate broker;
+
+    private final Map<Long, LiveRoster> rosters = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicLong> seqs = new ConcurrentHashMap<>();
+    private final Map<Long, CompletableFuture<RosterSnapshot>> loads = new ConcurrentHashMap<>();
+
+    /* server-side rebuilds: one thread, each occurrence queued at most once */
+    private final Set<Long> pendingRebuilds = ConcurrentHashMap.newKeySet();
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "attendance-rebuild");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /* sessionId -> (subscriptionId -> occurrenceId) and occurrenceId -> watcher count */
+    private final Map<String, Map<String, Long>> sessions = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicInteger> watchers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriptions = new AtomicInteger();
+
+    private final Counter snapshotHits;
+    private final Counter snapshotMisses;
+    private final Counter deltas;
+    private final Counter rebuilds;
+
+    @Value("${ttclub.attendance.live.idle-evict-sec:600}")
+    private long idleEvictSec;
+
+    @Value("${ttclub.attendance.live.max-age-sec:120}")
+    private long maxAgeSec;
+
+    public AttendanceRosterHub(SimpMessagingTemplate broker, MeterRegistry meters) {
+        this.broker = broker;
+        meters.gauge("ttclub.attendance.live.connections", sessions, Map::size);
+        meters.gauge("ttclub.attendance.live.subscriptions", subscriptions);
+        meters.gauge("ttclub.attendance.live.rosters", rosters, Map::size);
+        this.snapshotHits = Counter.builder("ttclub.attendance.live.snapshots")
+                .tag("result", "hit").register(meters);
+        this.snapshotMisses = Counter.builder("ttclub.attendance.live.snapshots")
+                .tag("result", "miss").register(meters);
+        this.deltas = Counter.builder("ttclub.attendance.live.deltas").register(meters);
+        this.rebuilds = Counter.builder("ttclub.attendance.live.rebuilds").register(meters);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    /* Snapshot */
+
+    /**
+     * Cached roster, loading it through the given reader when missing. Callers that miss while a
+     * load for the same occurrence is running wait for it instead of reading again.
+     */
+    public RosterSnapshot snapshot(Long occurrenceId, Supplier<ListResp> loader) {
+        LiveRoster r = rosters.get(occurrenceId);
+        if (r != null) {
+            snapshotHits.increment();
+            synchronized (r) {
+                r.touchedAtMillis = System.currentTimeMillis();
+                return new RosterSnapshot(r.seq, r.view());
+            }
+        }
+        snapshotMisses.increment();
+
+        CompletableFuture<RosterSnapshot> mine = new CompletableFuture<>();
+        CompletableFuture<RosterSnapshot> running = loads.putIfAbsent(occurrenceId, mine);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException ex) {
+                throw ex.getCause() instanceof RuntimeException re ? re : ex;
+            }
+        }
+        try {
+            RosterSnapshot loaded = load(occurrenceId, loader);
+            mine.complete(loaded);
+            return loaded;
+        } catch (RuntimeException ex) {
+            mine.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            loads.remove(occurrenceId, mine);
+        }
+    }
+
+    /**
+     * Reads the roster and caches it. The seq is taken before the read, so a change committed
+     * meanwhile reaches clients again with a higher seq (harmless, deltas are absolute); the cached
+     * copy is only kept if no change raced the read, since such a change found nothing to update.
+     */
+    private RosterSnapshot load(Long occurrenceId, Supplier<ListResp> loader) {
+        long seq = seqOf(occurrenceId).get();
+        ListResp loaded = loader.get();
+        LiveRoster built = new LiveRoster(loaded, seq, loader);
+        if (rosters.putIfAbsent(occurrenceId, built) == null) {
+            synchronized (built) {
+                if (seqOf(occurrenceId).get() != built.seq) rosters.remove(occurrenceId, built);
+            }
+        }
+        return new RosterSnapshot(seq, loaded);
+    }
+
+    /* Publishing */
+
+    /** Publish changes for an occurrence; inside a transaction this happens after commit. */
+    public void publish(Long occurrenceId, List<RosterChange> changes) {
+        if (occurrenceId == null || changes.isEmpty()) return;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    send(occurrenceId, changes);
+                }
+            });
+        } else {
+            send(occurrenceId, changes);
+        }
+    }
+
+    /**
+     * The program's enrollments changed (new enrollment): its cached rosters are out of date and
+     * are rebuilt and pushed. Inside a transaction this happens after commit.
+     */
+    public void programChanged(Long programId) {
+        if (programId == null) return;
+        Runnable r = () -> rosters.forEach((occurrenceId, roster) -> {
+            if (programId.equals(roster.base.occurrence().programId())) requestRebuild(occurrenceId);
+        });
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    r.run();
+                }
+            });
+        } else {
+            r.run();
+        }
+    }
+
+    /* Rebuilds */
+
+    /** Queues a server-side rebuild of a cached roster (coalesced per occurrence). */
+    private void requestRebuild(Long occurrenceId) {
+        if (!pendingRebuilds.add(occurrenceId)) return;
+        try {
+            rebuilder.execute(() -> {
+                pendingRebuilds.remove(occurrenceId);
+                rebuild(occurrenceId);
+            });
+        } catch (RuntimeException ex) {   // shutting down
+            pendingRebuilds.remove(occurrenceId);
+        }
+    }
+
+    /**
+     * Re-reads a cached roster and pushes it whole. Unwatched rosters are just dropped (the next
+     * subscriber loads them); a change that raced the read queues another read, since the result
+     * may predate it.
+     */
+    void rebuild(Long occurrenceId) {
+        LiveRoster old = rosters.get(occurrenceId);
+        if (old == null) return;
+        if (!watchers.containsKey(occurrenceId)) {
+            rosters.remove(occurrenceId, old);
+            return;
+        }
+
+        long seq = seqOf(occurrenceId).get();
+        ListResp loaded;
+        try {
+            loaded = old.loader.get();
+        } catch (RuntimeException ex) {
+            log.warn("Could not rebuild attendance roster {}: {}; clients will refetch.", occurrenceId, ex.getMessage());
+            resync(occurrenceId, old);
+            return;
+        }
+
+        RosterDelta refreshed;
+        synchronized (old) {
+            if (rosters.get(occurrenceId) != old) return;   // dropped or replaced meanwhile
+            if (seqOf(occurrenceId).get() != seq) {
+                requestRebuild(occurrenceId);
+                return;
+            }
+            long next = seqOf(occurrenceId).incrementAndGet();
+            rosters.put(occurrenceId, new LiveRoster(loaded, next, old.loader));
+            refreshed = new RosterDelta(occurrenceId, next, List.of(), loaded);
+        }
+        rebuilds.increment();
+        push(occurrenceId, refreshed);
+    }
+
+    /** Drops the cached roster and pushes an empty delta one seq past the next, forcing a refetch. */
+    private void resync(Long occurrenceId, LiveRoster r) {
+        long seq;
+        synchronized (r) {
+            rosters.remove(occurrenceId, r);
+            seq = seqOf(occurrenceId).addAndGet(2);
+        }
+        push(occurrenceId, new RosterDelta(occurrenceId, seq, List.of(), null));
+    }
+
+    private void send(Long occurrenceId, List<RosterChange> changes) {
+        RosterDelta delta = null;
+        while (delta == null) {
+            LiveRoster r = rosters.get(occurrenceId);
+            if (r == null) {
+                delta = new RosterDelta(occurrenceId, seqOf(occurrenceId).incrementAndGet(), changes, null);
+                break;
+            }
+            synchronized (r) {
+                if (rosters.get(occurrenceId) != r) continue;   // replaced by a rebuild meanwhile
+                delta = new RosterDelta(occurrenceId, seqOf(occurrenceId).incrementAndGet(), changes, null);
+                if (!apply(r, changes)) {
+                    rosters.remove(occurrenceId, r); // unknown user: next subscriber reloads
+                } else {
+                    r.seq = delta.seq();
+                }
+            }
+        }
+        if (push(occurrenceId, delta)) deltas.increment();
+    }
+
+    /** @return true when the message went to the broker (false: nobody watching, or it failed) */
+    private boolean push(Long occurrenceId, RosterDelta delta) {
+        if (!watchers.containsKey(occurrenceId)) return false;
+        try {
+            broker.convertAndSend(TOPIC_PREFIX + occurrenceId, delta);
+            return true;
+        } catch (RuntimeException ex) {
+            // clients detect the seq gap and resync
+            log.warn("Could not push attendance update for occurrence {}: {}", occurrenceId, ex.getMessage());
+            return false;
+        }
+    }
+
+    /** Applies absolute changes to the snapshot; false when a user is not on the cached roster. */
+    private static boolean apply(LiveRoster r, List<RosterChange> changes) {
+        for (RosterChange c : changes) {
+            EligibleUser u = r.users.get(c.userId());
+            if (u == null) return false;
+            r.users.put(c.userId(), new EligibleUser(
+                    u.userId(), u.name(), u.email(), u.enrollmentId(),
+                    c.sessionsRemaining() != null ? c.sessionsRemaining() : u.sessionsRemaining(),
+                    c.type() == ChangeType.MARKED));
+        }
+        return true;
+    }
+
+    private AtomicLong seqOf(Long occurrenceId) {
+        return seqs.computeIfAbsent(occurrenceId, k -> new AtomicLong());
+    }
+
+    /* Session tracking */
+
+    @EventListener
+    public void onConnected(SessionConnectedEvent e) {
+        String sid = StompHeaderAccessor.wrap(e.getMessage()).getSessionId();
+        if (sid != null) sessions.putIfAbsent(sid, new ConcurrentHashMap<>());
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent e) {
+        StompHeaderAccessor acc = StompHeaderAccessor.wrap(e.getMessage());
+        Long occurrenceId = occurrenceOf(acc.getDestination());
+        if (occurrenceId == null || acc.getSessionId() == null || acc.getSubscriptionId() == null) return;
+        Map<String, Long> subs = sessions.computeIfAbsent(acc.getSessionId(), k -> new ConcurrentHashMap<>());
+        if (subs.putIfAbsent(acc.getSubscriptionId(), occurrenceId) == null) {
+            watchers.computeIfAbsent(occurrenceId, k -> new AtomicInteger()).incrementAndGet();
+            subscriptions.incrementAndGet();
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent e) {
+        StompHeaderAccessor acc = StompHeaderAccessor.wrap(e.getMessage());
+        Map<String, Long> subs = acc.getSessionId() == null ? null : sessions.get(acc.getSessionId());
+        if (subs == null || acc.getSubscriptionId() == null) return;
+        Long occurrenceId = subs.remove(acc.getSubscriptionId());
+        if (occurrenceId != null) release(occurrenceId);
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent e) {
+        Map<String, Long> subs = sessions.remove(e.getSessionId());
+        if (subs != null) subs.values().forEach(this::release);
+    }
+
+    private void release(Long occurrenceId) {
+        subscriptions.decrementAndGet();
+        watchers.computeIfPresent(occurrenceId, (k, n) -> n.decrementAndGet() <= 0 ? null : n);
+    }
+
+    private static Long occurrenceOf(String destination) {
+        if (destination == null || !destination.startsWith(TOPIC_PREFIX)) return null;
+        try {
+            return Long.valueOf(destination.substring(TOPIC_PREFIX.length()));
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    /* Housekeeping */
+
+    @Scheduled(fixedDelayString = "${ttclub.attendance.live.sweep-ms:60000}", initialDelay = 60000)
+    public void sweep() {
+        long now = System.currentTimeMillis();
+        long cutoff = now - idleEvictSec * 1000L;
+        rosters.entrySet().removeIf(en -> !watchers.containsKey(en.getKey())
+                && en.getValue().touchedAtMillis < cutoff);
+        // watched rosters miss marks made on other nodes: rebuild them every max-age-sec
+        long maxAgeCutoff = now - maxAgeSec * 1000L;
+        rosters.forEach((occurrenceId, r) -> {
+            if (r.builtAtMillis < maxAgeCutoff) requestRebuild(occurrenceId);
+        });
+        // seq counters are only needed while someone may resync against them
+        seqs.keySet().removeIf(k -> !watchers.containsKey(k) && !rosters.containsKey(k));
+    }
+}
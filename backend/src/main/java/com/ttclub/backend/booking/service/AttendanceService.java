@@ -3,6 +3,7 @@ package com.ttclub.backend.booking.service;
 import com.ttclub.backend.booking.api.AttendanceController.EligibleUser;
 import com.ttclub.backend.booking.api.AttendanceController.ListResp;
 import com.ttclub.backend.booking.api.AttendanceController.OccurrenceDto;
+import com.ttclub.backend.booking.api.AttendanceController.RosterResp;
 import com.ttclub.backend.booking.model.Attendance;
 import com.ttclub.backend.booking.model.Program;
 import com.ttclub.backend.booking.model.ProgramOccurrence;
@@ -13,11 +14,14 @@ import com.ttclub.backend.booking.repository.ProgramOccurrenceRepository;
 import com.ttclub.backend.booking.repository.UserProgramEnrollmentRepository;
 import com.ttclub.backend.model.User;
 import com.ttclub.backend.repository.UserRepository;
+import com.ttclub.backend.util.LongObjectMap;
 import jakarta.transaction.Transactional;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 
+import java.sql.PreparedStatement;
 import java.time.*;
 import java.util.*;
 
@@ -28,20 +32,67 @@ public class AttendanceService {
     private final UserProgramEnrollmentRepository enrollments;
     private final ProgramOccurrenceRepository occurrences;
     private final MembershipGuard guard;
+    private final AttendanceRosterHub live;
     private final UserRepository users;
+    private final JdbcTemplate jdbc;
 
     public AttendanceService(AttendanceRepository attendanceRepo,
                              UserProgramEnrollmentRepository enrollments,
                              ProgramOccurrenceRepository occurrences,
                              MembershipGuard guard,
-                             UserRepository users) {
+                             AttendanceRosterHub live,
+                             UserRepository users,
+                             JdbcTemplate jdbc) {
         this.attendanceRepo = attendanceRepo;
         this.enrollments = enrollments;
         this.occurrences = occurrences;
         this.guard = guard;
+        this.live = live;
         this.users = users;
+        this.jdbc = jdbc;
     }
 
+    /* Roster SQL (set-based; shares the JPA transaction via JdbcTemplate) */
+
+    /** The enrollment a mark/undo applies to: ACTIVE first, EXHAUSTED only matters for undo. */
+    private static final String ROSTER_ENROLLMENTS_SQL = """
+            SELECT DISTINCT ON (user_id) id, user_id, status, sessions_remaining, version
+              FROM user_program_enrollments
+             WHERE program_id = ?
+               AND user_id = ANY(?)
+               AND status IN ('ACTIVE', 'EXHAUSTED')
+             ORDER BY user_id, (status = 'ACTIVE') DESC, id
+            """;
+
+    /** Optimistic (id, version) update of many enrollments; delta -1 = attended, +1 = undone. */
+    private static final String ROSTER_SESSIONS_SQL = """
+            UPDATE user_program_enrollments e
+               SET sessions_remaining = e.sessions_remaining + d.delta,
+                   status = CASE
+                              WHEN e.sessions_remaining + d.delta = 0 THEN 'EXHAUSTED'
+                              WHEN e.status = 'EXHAUSTED' THEN 'ACTIVE'
+                              ELSE e.status
+                            END,
+                   last_attended_at = CASE WHEN d.delta < 0 THEN now() ELSE e.last_attended_at END,
+                   version = e.version + 1
+              FROM unnest(?::bigint[], ?::bigint[], ?::int[]) AS d(id, version, delta)
+             WHERE e.id = d.id
+               AND e.version = d.version
+               AND e.sessions_remaining + d.delta >= 0
+            """;
+
+    private static final String ROSTER_INSERT_SQL = """
+            INSERT INTO attendance (occurrence_id, user_id, marked_by, marked_at)
+            SELECT ?, u.id, ?, now()
+              FROM unnest(?::bigint[]) AS u(id)
+            ON CONFLICT (occurrence_id, user_id) DO NOTHING
+            """;
+
+    private static final String ROSTER_DELETE_SQL =
+            "DELETE FROM attendance WHERE occurrence_id = ? AND user_id = ANY(?)";
+
+    private record RosterEnrollment(long id, String status, int sessionsRemaining, long version) { }
+
     /* READ: eligible list */
 
     @Transactional
@@ -160,19 +211,13 @@ public class AttendanceService {
                 enr.setStatus(Status.EXHAUSTED);
                 enrollments.save(enr);
             }
+            live.publish(occurrenceId, List.of(new AttendanceRosterHub.RosterChange(
+                    userId, AttendanceRosterHub.ChangeType.MARKED, enr.getSessionsRemaining(),
+                    enr.getStatus() == Status.EXHAUSTED)));
         } else {
-            // undo if present
-            if (!attendanceRepo.existsByOccurrenceIdAndUserId(occurrenceId, userId)) return;
-
-            // Remove the attendance row (safe if multiple admins)
-            List<Long> uids = attendanceRepo.findUserIdsByOccurrence(occurrenceId);
-            if (uids.contains(userId)) {
-                // delete by simple findAll + filter (keeps repository minimal)
-                attendanceRepo.findAll().stream()
-                        .filter(a -> Objects.equals(a.getOccurrence().getId(), occurrenceId)
-                                && Objects.equals(a.getUser().getId(), userId))
-                        .forEach(attendanceRepo::delete);
-            }
+            // undo if present: indexed delete by (occurrence_id, user_id); a concurrent undo that
+            // already removed the row leaves nothing to give back (safe if multiple admins)
+            if (attendanceRepo.deleteByOccurrenceAndUser(occurrenceId, userId) == 0) return;
 
             // increment back
             Integer rem = Optional.ofNullable(enr.getSessionsRemaining()).orElse(0);
@@ -182,9 +227,143 @@ public class AttendanceService {
                 enr.setStatus(Status.ACTIVE);
             }
             enrollments.save(enr);
+            live.publish(occurrenceId, List.of(new AttendanceRosterHub.RosterChange(
+                    userId, AttendanceRosterHub.ChangeType.UNDONE, enr.getSessionsRemaining(), false)));
         }
     }
 
+    /**
+     * Apply the full present set for one occurrence (everyone else on the roster is absent).<br>
+     * - Diffs against the stored attendance rows; unchanged users cost nothing.<br>
+     * - INITIAL membership is checked for all newly-present users with one query.<br>
+     * - sessions_remaining is decremented/incremented with one optimistic (id, version) UPDATE;
+     *   any row that moved underneath us aborts the whole roster.<br>
+     * - Attendance rows are inserted and deleted with one statement each.
+     */
+    @Transactional
+    public RosterResp applyRoster(Long occurrenceId, Collection<Long> presentUserIds, Authentication auth) {
+        Objects.requireNonNull(occurrenceId, "occurrenceId is required");
+
+        Long markerId = resolveMarkerId(auth);
+        ProgramOccurrence occ = occurrences.findById(occurrenceId).orElseThrow();
+        Long programId = occ.getProgram().getId();
+
+        Set<Long> wanted = new TreeSet<>();
+        if (presentUserIds != null) {
+            for (Long id : presentUserIds) if (id != null) wanted.add(id);
+        }
+        Set<Long> current = new HashSet<>(attendanceRepo.findUserIdsByOccurrence(occurrenceId));
+
+        List<Long> toMark = wanted.stream().filter(id -> !current.contains(id)).toList();
+        List<Long> toUndo = current.stream().filter(id -> !wanted.contains(id)).sorted().toList();
+        int unchanged = wanted.size() - toMark.size();
+        if (toMark.isEmpty() && toUndo.isEmpty()) {
+            return new RosterResp(occurrenceId, 0, 0, unchanged);
+        }
+
+        guard.ensureInitialMembershipActive(toMark);
+
+        List<Long> affected = new ArrayList<>(toMark.size() + toUndo.size());
+        affected.addAll(toMark);
+        affected.addAll(toUndo);
+        LongObjectMap<RosterEnrollment> byUser = loadRosterEnrollments(programId, affected);
+
+        // (enrollment id -> delta), ordered by id so concurrent rosters lock rows in the same order
+        TreeMap<Long, long[]> updates = new TreeMap<>();
+        for (Long uid : toMark) {
+            RosterEnrollment e = byUser.get(uid);
+            if (e == null || !Status.ACTIVE.name().equals(e.status())) {
+                throw new IllegalStateException("No ACTIVE enrollment found for user " + uid + " in this program.");
+            }
+            if (e.sessionsRemaining() < 1) {
+                throw new IllegalStateException("No sessions remaining in enrollment for user " + uid + ".");
+            }
+            updates.put(e.id(), new long[]{ e.version(), -1 });
+        }
+        for (Long uid : toUndo) {
+            RosterEnrollment e = byUser.get(uid);
+            if (e == null) {
+                throw new IllegalStateException("No ACTIVE enrollment found for user " + uid + " in this program.");
+            }
+            updates.put(e.id(), new long[]{ e.version(), +1 });
+        }
+
+        int n = updates.size();
+        Long[] ids = new Long[n];
+        Long[] versions = new Long[n];
+        Integer[] deltas = new Integer[n];
+        int i = 0;
+        for (Map.Entry<Long, long[]> u : updates.entrySet()) {
+            ids[i] = u.getKey();
+            versions[i] = u.getValue()[0];
+            deltas[i] = (int) u.getValue()[1];
+            i++;
+        }
+        int updated = jdbc.update(con -> {
+            PreparedStatement ps = con.prepareStatement(ROSTER_SESSIONS_SQL);
+            ps.setArray(1, con.createArrayOf("bigint", ids));
+            ps.setArray(2, con.createArrayOf("bigint", versions));
+            ps.setArray(3, con.createArrayOf("integer", deltas));
+            return ps;
+        });
+        if (updated != n) {
+            throw new IllegalStateException("Concurrent update detected. Please retry.");
+        }
+
+        if (!toUndo.isEmpty()) {
+            int deleted = jdbc.update(con -> {
+                PreparedStatement ps = con.prepareStatement(ROSTER_DELETE_SQL);
+                ps.setLong(1, occurrenceId);
+                ps.setArray(2, con.createArrayOf("bigint", toUndo.toArray()));
+                return ps;
+            });
+            if (deleted != toUndo.size()) {
+                throw new IllegalStateException("Concurrent update detected. Please retry.");
+            }
+        }
+        if (!toMark.isEmpty()) {
+            int inserted = jdbc.update(con -> {
+                PreparedStatement ps = con.prepareStatement(ROSTER_INSERT_SQL);
+                ps.setLong(1, occurrenceId);
+                ps.setLong(2, markerId);
+                ps.setArray(3, con.createArrayOf("bigint", toMark.toArray()));
+                return ps;
+            });
+            if (inserted != toMark.size()) {
+                throw new IllegalStateException("Concurrent update detected. Please retry.");
+            }
+        }
+
+        List<AttendanceRosterHub.RosterChange> changes = new ArrayList<>(affected.size());
+        for (Long uid : toMark) {
+            int left = byUser.get(uid).sessionsRemaining() - 1;
+            changes.add(new AttendanceRosterHub.RosterChange(
+                    uid, AttendanceRosterHub.ChangeType.MARKED, left, left == 0));
+        }
+        for (Long uid : toUndo) {
+            changes.add(new AttendanceRosterHub.RosterChange(
+                    uid, AttendanceRosterHub.ChangeType.UNDONE, byUser.get(uid).sessionsRemaining() + 1, false));
+        }
+        live.publish(occurrenceId, changes);
+
+        return new RosterResp(occurrenceId, toMark.size(), toUndo.size(), unchanged);
+    }
+
+    private LongObjectMap<RosterEnrollment> loadRosterEnrollments(Long programId, List<Long> userIds) {
+        LongObjectMap<RosterEnrollment> out = new LongObjectMap<>(userIds.size());
+        jdbc.query(con -> {
+            PreparedStatement ps = con.prepareStatement(ROSTER_ENROLLMENTS_SQL);
+            ps.setLong(1, programId);
+            ps.setArray(2, con.createArrayOf("bigint", userIds.toArray()));
+            return ps;
+        }, rs -> {
+            out.put(rs.getLong("user_id"), new RosterEnrollment(
+                    rs.getLong("id"), rs.getString("status"),
+                    rs.getInt("sessions_remaining"), rs.getLong("version")));
+        });
+        return out;
+    }
+
     private Long resolveMarkerId(Authentication auth) {
         if (auth == null || auth.getPrincipal() == null) {
             throw new SecurityException("Authentication required.");
@@ -3,6 +3,11 @@ package com.ttclub.backend.booking.service;
 import com.ttclub.backend.booking.repository.UserMembershipRepository;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 @Component
 public class MembershipGuard {
 
@@ -30,6 +35,22 @@ public class MembershipGuard {
         }
     }
 
+    /**
+     * Bulk variant of {@link #ensureInitialMembershipActive(Long)}: one query for all users;
+     * the message lists the user ids that fail the rule.
+     */
+    public void ensureInitialMembershipActive(Collection<Long> userIds) {
+        if (userIds == null || userIds.isEmpty()) return;
+        Set<Long> ok = new HashSet<>(userMemberships.findUserIdsWithActiveInitialMembership(userIds));
+        List<Long> missing = userIds.stream().filter(id -> !ok.contains(id)).sorted().toList();
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException(
+                    "Initial annual club membership is not active for user(s) " + missing + ". " +
+                            "Please renew to enroll or attend sessions."
+            );
+        }
+    }
+
     public boolean hasActiveInitialMembership(Long userId) {
         return !userMemberships.findActiveInitialMembershipsForUser(userId).isEmpty();
     }
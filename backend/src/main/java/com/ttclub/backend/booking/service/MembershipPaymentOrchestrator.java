@@ -3,6 +3,8 @@ package com.ttclub.backend.booking.service;
 import com.ttclub.backend.booking.model.*;
 import com.ttclub.backend.booking.repository.*;
 import com.ttclub.backend.model.User;
+import com.ttclub.backend.service.FinanceLedgerWriter;
+import com.ttclub.backend.service.PaymentIntentSingleFlight;
 import jakarta.persistence.EntityManager;
 import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
@@ -24,6 +26,9 @@ public class MembershipPaymentOrchestrator {
     private final MembershipGroupRepository groups;
     private final MembershipGroupCounterRepository groupCounters;
     private final MembershipEntitlementRepository entitlements;
+    private final TableCreditLedger ledger;
+    private final FinanceLedgerWriter finance;
+    private final PaymentIntentSingleFlight singleFlight;
     private final EntityManager em;
 
     public MembershipPaymentOrchestrator(MembershipPaymentRepository payments,
@@ -32,6 +37,9 @@ public class MembershipPaymentOrchestrator {
                                          MembershipGroupRepository groups,
                                          MembershipGroupCounterRepository groupCounters,
                                          MembershipEntitlementRepository entitlements,
+                                         TableCreditLedger ledger,
+                                         FinanceLedgerWriter finance,
+                                         PaymentIntentSingleFlight singleFlight,
                                          EntityManager em) {
         this.payments = payments;
         this.plans = plans;
@@ -39,11 +47,24 @@ public class MembershipPaymentOrchestrator {
         this.groups = groups;
         this.groupCounters = groupCounters;
         this.entitlements = entitlements;
+        this.ledger = ledger;
+        this.finance = finance;
+        this.singleFlight = singleFlight;
         this.em = em;
     }
 
+    /** Marks the payment SUCCEEDED and provisions it; single-flight per PaymentIntent. */
     @Transactional
     public void onSucceeded(String paymentIntentId, Long bookingIdFromMeta) {
+        singleFlight.run("membership.succeeded", paymentIntentId, () -> succeeded(paymentIntentId, bookingIdFromMeta));
+    }
+
+    @Transactional
+    public void onFailedOrCanceled(String paymentIntentId) {
+        singleFlight.run("membership.canceled", paymentIntentId, () -> failedOrCanceled(paymentIntentId));
+    }
+
+    private void succeeded(String paymentIntentId, Long bookingIdFromMeta) {
         MembershipPayment mp = null;
 
         if (bookingIdFromMeta != null) {
@@ -61,6 +82,7 @@ public class MembershipPaymentOrchestrator {
         }
         mp.setStatus(MembershipPayment.Status.SUCCEEDED);
         payments.save(mp);
+        finance.membershipPaid(mp);
 
         // finalize: create membership(s) and entitlements
         MembershipPlan plan = em.find(MembershipPlan.class, mp.getPlan().getId());
@@ -73,8 +95,7 @@ public class MembershipPaymentOrchestrator {
         }
     }
 
-    @Transactional
-    public void onFailedOrCanceled(String paymentIntentId) {
+    private void failedOrCanceled(String paymentIntentId) {
         payments.findByStripePaymentIntentId(paymentIntentId).ifPresent(mp -> {
             if (mp.getStatus() == MembershipPayment.Status.PENDING) {
                 mp.setStatus(MembershipPayment.Status.CANCELED);
@@ -130,6 +151,7 @@ public class MembershipPaymentOrchestrator {
                     trc.setSourcePlan(plan);
                     trc.setHoursRemaining(e.getAmount());
                     em.persist(trc);
+                    ledger.credit(user.getId(), null, e.getAmount());
                 }
                 case PROGRAM_CREDITS, TOURNAMENT_ENTRIES -> {
                     UserMembershipCounter c = new UserMembershipCounter();
@@ -153,6 +175,7 @@ public class MembershipPaymentOrchestrator {
                     trc.setSourcePlan(plan);
                     trc.setHoursRemaining(e.getAmount());
                     em.persist(trc);
+                    ledger.credit(owner.getId(), group.getId(), e.getAmount());
                 }
                 case PROGRAM_CREDITS, TOURNAMENT_ENTRIES -> {
                     MembershipGroupCounter c = new MembershipGroupCounter();
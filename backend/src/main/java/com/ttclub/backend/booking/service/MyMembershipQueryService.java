@@ -20,17 +20,20 @@ public class MyMembershipQueryService {
     private final UserMembershipRepository userMemberships;
     private final MembershipEntitlementRepository entitlements;
     private final TableRentalCreditRepository trcRepo;
+    private final TableCreditLedger ledger;
     private final UserMembershipCounterRepository counters;
     private final MembershipGroupCounterRepository groupCounters;
 
     public MyMembershipQueryService(UserMembershipRepository userMemberships,
                                     MembershipEntitlementRepository entitlements,
                                     TableRentalCreditRepository trcRepo,
+                                    TableCreditLedger ledger,
                                     UserMembershipCounterRepository counters,
                                     MembershipGroupCounterRepository groupCounters) {
         this.userMemberships = userMemberships;
         this.entitlements = entitlements;
         this.trcRepo = trcRepo;
+        this.ledger = ledger;
         this.counters = counters;
         this.groupCounters = groupCounters;
     }
@@ -104,7 +107,7 @@ public class MyMembershipQueryService {
                 for (MembershipEntitlement me : ents) {
                     switch (me.getKind()) {
                         case TABLE_HOURS -> {
-                            BigDecimal hours = trcRepo.sumHoursByGroupId(gid);
+                            BigDecimal hours = ledger.balanceForGroup(gid);
                             e.tableHoursRemaining = hours.doubleValue();
                         }
                         case PROGRAM_CREDITS -> {
@@ -3,6 +3,8 @@ package com.ttclub.backend.booking.service;
 import com.ttclub.backend.booking.model.*;
 import com.ttclub.backend.booking.repository.ProgramEnrollmentPaymentRepository;
 import com.ttclub.backend.booking.repository.UserProgramEnrollmentRepository;
+import com.ttclub.backend.service.FinanceLedgerWriter;
+import com.ttclub.backend.service.PaymentIntentSingleFlight;
 import jakarta.persistence.EntityManager;
 import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
@@ -16,18 +18,37 @@ public class ProgramEnrollmentPaymentOrchestrator {
 
     private final ProgramEnrollmentPaymentRepository payments;
     private final UserProgramEnrollmentRepository enrollments;
+    private final FinanceLedgerWriter finance;
+    private final PaymentIntentSingleFlight singleFlight;
     private final EntityManager em;
+    private final AttendanceRosterHub rosters;
 
     public ProgramEnrollmentPaymentOrchestrator(ProgramEnrollmentPaymentRepository payments,
                                                 UserProgramEnrollmentRepository enrollments,
-                                                EntityManager em) {
+                                                FinanceLedgerWriter finance,
+                                                PaymentIntentSingleFlight singleFlight,
+                                                EntityManager em,
+                                                AttendanceRosterHub rosters) {
         this.payments = payments;
         this.enrollments = enrollments;
+        this.finance = finance;
+        this.singleFlight = singleFlight;
         this.em = em;
+        this.rosters = rosters;
     }
 
+    /** Marks the payment SUCCEEDED and provisions it; single-flight per PaymentIntent. */
     @Transactional
     public void onSucceeded(String paymentIntentId, Long bookingIdFromMeta) {
+        singleFlight.run("enrollment.succeeded", paymentIntentId, () -> succeeded(paymentIntentId, bookingIdFromMeta));
+    }
+
+    @Transactional
+    public void onFailedOrCanceled(String paymentIntentId) {
+        singleFlight.run("enrollment.canceled", paymentIntentId, () -> failedOrCanceled(paymentIntentId));
+    }
+
+    private void succeeded(String paymentIntentId, Long bookingIdFromMeta) {
         ProgramEnrollmentPayment pep = null;
 
         if (bookingIdFromMeta != null) {
@@ -46,6 +67,7 @@ public class ProgramEnrollmentPaymentOrchestrator {
 
         pep.setStatus(ProgramEnrollmentPayment.Status.SUCCEEDED);
         payments.save(pep);
+        finance.enrollmentPaid(pep);
 
         // Idempotent guard: if an ACTIVE enrollment already exists, don't create another.
         boolean existsActive = enrollments.existsByUser_IdAndProgram_IdAndStatus(
@@ -62,10 +84,10 @@ public class ProgramEnrollmentPaymentOrchestrator {
         e.setSessionsPurchased(pkg.getSessionsCount());
         e.setSessionsRemaining(pkg.getSessionsCount());
         enrollments.save(e);
+        rosters.programChanged(e.getProgram().getId());
     }
 
-    @Transactional
-    public void onFailedOrCanceled(String paymentIntentId) {
+    private void failedOrCanceled(String paymentIntentId) {
         payments.findByStripePaymentIntentId(paymentIntentId).ifPresent(pep -> {
             if (pep.getStatus() == ProgramEnrollmentPayment.Status.PENDING) {
                 pep.setStatus(ProgramEnrollmentPayment.Status.CANCELED);
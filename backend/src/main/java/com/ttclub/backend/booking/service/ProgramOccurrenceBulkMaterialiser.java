@@ -0,0 +1,225 @@
+package com.ttclub.backend.booking.service;
+
+import com.ttclub.backend.booking.model.Program;
+import com.ttclub.backend.booking.model.ProgramSlot;
+import com.ttclub.backend.booking.repository.ProgramRepository;
+import com.ttclub.backend.booking.repository.ProgramSlotRepository;
+import com.ttclub.backend.util.LongObjectMap;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.time.*;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Set-based occurrence materialiser ("bulk" mode of ProgramOccurrenceService).<br>
+ * Notes:
+ *  - Generates the candidate (program_id, start_ts) set in memory, de-duplicated per program
+ *    with a primitive long-keyed map (start epoch millis) instead of concatenated String keys.
+ *  - Applies candidates in chunks: one INSERT ... SELECT FROM unnest(arrays) ... ON CONFLICT
+ *    (program_id, start_ts) DO UPDATE statement per chunk, so a year-long horizon costs a handful
+ *    of round-trips instead of one INSERT per row.
+ *  - Reconciliation matches the entity path: coach and end_ts are refreshed and cancelled rows are
+ *    revived; rows that are already identical are left untouched (no-op conflict).
+ *  - Per-phase timings (load, generate, write) are logged and published as Micrometer timers.
+ *  - Must run inside the caller's transaction (shares the JPA connection via JdbcTemplate).
+ */
+@Service
+public class ProgramOccurrenceBulkMaterialiser {
+
+    private static final Logger log = LoggerFactory.getLogger(ProgramOccurrenceBulkMaterialiser.class);
+
+    /** Outcome of one run; timings are wall-clock milliseconds per phase. */
+    public record Report(int inserted, int updated, int skippedNoCoach,
+                         long loadMs, long generateMs, long writeMs) { }
+
+    private static final String UPSERT_SQL = """
+            INSERT INTO program_occurrences
+                   (program_id, slot_id, start_ts, end_ts, coach_id, cancelled, created_at, updated_at)
+            SELECT t.program_id,
+                   t.slot_id,
+                   timestamptz 'epoch' + t.start_ms * interval '1 millisecond',
+                   timestamptz 'epoch' + t.end_ms   * interval '1 millisecond',
+                   t.coach_id,
+                   false, now(), now()
+              FROM unnest(?::bigint[], ?::bigint[], ?::bigint[], ?::bigint[], ?::bigint[])
+                   AS t(program_id, slot_id, start_ms, end_ms, coach_id)
+            ON CONFLICT (program_id, start_ts) DO UPDATE
+               SET coach_id   = EXCLUDED.coach_id,
+                   end_ts     = EXCLUDED.end_ts,
+                   cancelled  = false,
+                   updated_at = now()
+             WHERE program_occurrences.coach_id IS DISTINCT FROM EXCLUDED.coach_id
+                OR program_occurrences.end_ts   IS DISTINCT FROM EXCLUDED.end_ts
+                OR program_occurrences.cancelled
+            RETURNING (xmax = 0) AS inserted
+            """;
+
+    private final ProgramRepository programs;
+    private final ProgramSlotRepository slots;
+    private final JdbcTemplate jdbc;
+
+    private final Timer loadTimer;
+    private final Timer generateTimer;
+    private final Timer writeTimer;
+
+    @Value("${jobs.program-materialiser.chunk-size:1000}")
+    private int chunkSize;
+
+    public ProgramOccurrenceBulkMaterialiser(ProgramRepository programs,
+                                             ProgramSlotRepository slots,
+                                             JdbcTemplate jdbc,
+                                             MeterRegistry meters) {
+        this.programs = programs;
+        this.slots = slots;
+        this.jdbc = jdbc;
+        this.loadTimer = phaseTimer(meters, "load");
+        this.generateTimer = phaseTimer(meters, "generate");
+        this.writeTimer = phaseTimer(meters, "write");
+    }
+
+    /** All active programs over [startDate, endDate] (inclusive dates, JVM zone). */
+    public Report materialise(LocalDate startDate, LocalDate endDate) {
+        long t0 = System.nanoTime();
+        List<Program> active = programs.findAllByActiveTrueOrderByTitleAsc();
+        if (active.isEmpty()) return new Report(0, 0, 0, 0, 0, 0);
+        List<ProgramSlot> all = slots.findByProgram_IdInOrderByWeekdayAscStartTimeAsc(
+                active.stream().map(Program::getId).toList());
+        long loadNs = System.nanoTime() - t0;
+
+        return run(all, startDate, endDate, loadNs);
+    }
+
+    /** A single program (or a subset of its slots) over [startDate, endDate]. */
+    public Report materialise(List<ProgramSlot> programSlots, LocalDate startDate, LocalDate endDate) {
+        return run(programSlots, startDate, endDate, 0);
+    }
+
+    private Report run(List<ProgramSlot> all, LocalDate startDate, LocalDate endDate, long loadNs) {
+        if (endDate.isBefore(startDate) || all.isEmpty()) {
+            return new Report(0, 0, 0, TimeUnit.NANOSECONDS.toMillis(loadNs), 0, 0);
+        }
+
+        // Keep program order stable so chunks are written in a deterministic order
+        Map<Long, List<ProgramSlot>> byProgram = all.stream()
+                .collect(Collectors.groupingBy(s -> s.getProgram().getId(), TreeMap::new, Collectors.toList()));
+
+        ZoneId zone = ZoneId.systemDefault();
+        Chunk chunk = new Chunk(Math.max(1, chunkSize));
+        LongObjectMap<ProgramSlot> seen = new LongObjectMap<>(64);
+        int skippedNoCoach = 0;
+        long genNs = 0, writeNs = 0;
+        int[] counts = new int[2]; // inserted, updated
+
+        for (Map.Entry<Long, List<ProgramSlot>> e : byProgram.entrySet()) {
+            long programId = e.getKey();
+            seen.clear();
+
+            long g0 = System.nanoTime();
+            for (ProgramSlot s : e.getValue()) {
+                Long coachId = s.getCoachId();
+                if (coachId == null) {
+                    skippedNoCoach++;
+                    continue; // coach_id NOT NULL in occurrences
+                }
+                LocalDate d = startDate.with(TemporalAdjusters.nextOrSame(s.getWeekday()));
+                while (!d.isAfter(endDate)) {
+                    long startMs = ZonedDateTime.of(d, s.getStartTime(), zone).toInstant().toEpochMilli();
+                    long endMs   = ZonedDateTime.of(d, s.getEndTime(),   zone).toInstant().toEpochMilli();
+                    if (endMs > startMs && seen.putIfAbsent(startMs, s) == null) {
+                        chunk.add(programId, s.getId(), startMs, endMs, coachId);
+                        if (chunk.isFull()) {
+                            genNs += System.nanoTime() - g0;
+                            writeNs += flush(chunk, counts);
+                            g0 = System.nanoTime();
+                        }
+                    }
+                    d = d.plusWeeks(1);
+                }
+            }
+            genNs += System.nanoTime() - g0;
+        }
+        writeNs += flush(chunk, counts);
+
+        loadTimer.record(loadNs, TimeUnit.NANOSECONDS);
+        generateTimer.record(genNs, TimeUnit.NANOSECONDS);
+        writeTimer.record(writeNs, TimeUnit.NANOSECONDS);
+
+        Report r = new Report(counts[0], counts[1], skippedNoCoach,
+                TimeUnit.NANOSECONDS.toMillis(loadNs),
+                TimeUnit.NANOSECONDS.toMillis(genNs),
+                TimeUnit.NANOSECONDS.toMillis(writeNs));
+        if (skippedNoCoach > 0) {
+            log.warn("Bulk materializer: skipped {} slots due to missing coach (coach_id is required).", skippedNoCoach);
+        }
+        log.info("Bulk materializer: {} inserted, {} updated ({} .. {}); load {} ms, generate {} ms, write {} ms.",
+                r.inserted(), r.updated(), startDate, endDate, r.loadMs(), r.generateMs(), r.writeMs());
+        return r;
+    }
+
+    /** Writes and resets the chunk; returns elapsed nanos. */
+    private long flush(Chunk c, int[] counts) {
+        if (c.size == 0) return 0;
+        long w0 = System.nanoTime();
+        jdbc.query(con -> {
+            PreparedStatement ps = con.prepareStatement(UPSERT_SQL);
+            ps.setArray(1, con.createArrayOf("bigint", c.boxed(c.programIds)));
+            ps.setArray(2, con.createArrayOf("bigint", c.boxed(c.slotIds)));
+            ps.setArray(3, con.createArrayOf("bigint", c.boxed(c.startMs)));
+            ps.setArray(4, con.createArrayOf("bigint", c.boxed(c.endMs)));
+            ps.setArray(5, con.createArrayOf("bigint", c.boxed(c.coachIds)));
+            return ps;
+        }, rs -> {
+            if (rs.getBoolean(1)) counts[0]++;
+            else counts[1]++;
+        });
+        c.size = 0;
+        return System.nanoTime() - w0;
+    }
+
+    private static Timer phaseTimer(MeterRegistry meters, String phase) {
+        return Timer.builder("ttclub.programs.materialiser.phase")
+                .tag("phase", phase)
+                .register(meters);
+    }
+
+    /** Column-oriented buffer for one upsert statement. */
+    private static final class Chunk {
+        final long[] programIds, slotIds, startMs, endMs, coachIds;
+        int size;
+
+        Chunk(int capacity) {
+            programIds = new long[capacity];
+            slotIds = new long[capacity];
+            startMs = new long[capacity];
+            endMs = new long[capacity];
+            coachIds = new long[capacity];
+        }
+
+        void add(long programId, long slotId, long start, long end, long coachId) {
+            programIds[size] = programId;
+            slotIds[size] = slotId;
+            startMs[size] = start;
+            endMs[size] = end;
+            coachIds[size] = coachId;
+            size++;
+        }
+
+        boolean isFull() { return size == programIds.length; }
+
+        Long[] boxed(long[] col) {
+            Long[] out = new Long[size];
+            for (int i = 0; i < size; i++) out[i] = col[i];
+            return out;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.ttclub.backend.booking.service;
+
+import com.ttclub.backend.booking.dto.ProgramOccurrenceDto;
+import com.ttclub.backend.booking.repository.ProgramOccurrenceRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAdjusters;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Week-bucketed, in-memory index of the public occurrence feed (GET /api/programs/occurrences).<br>
+ * Notes:
+ *  - A bucket holds the non-cancelled occurrences starting in one Monday-based week (JVM zone),
+ *    sorted by start. Any from/to range is answered by slicing the covered buckets.
+ *  - Missing buckets are loaded with one range query over the missing span; warm ranges are
+ *    served without touching the database.
+ *  - ProgramOccurrenceService reports the instants it touched; only the overlapping buckets are
+ *    dropped (after commit) and they are reloaded on the next read. Program edits and coach
+ *    renames (UserService) drop everything, since titles and coach names are denormalised.
+ *  - Buckets older than max-age-sec are reloaded anyway, bounding staleness from writers that
+ *    do not report (other nodes, direct SQL).
+ *  - Only weeks inside [now - weeks-behind, now + weeks-ahead] are cached; other ranges go
+ *    straight to the database so arbitrary queries cannot grow the index.
+ */
+@Service
+public class ProgramOccurrenceFeedCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ProgramOccurrenceFeedCache.class);
+
+    /** One immutable week of occurrences plus a content version hash. */
+    record WeekBucket(long weekKey, List<ProgramOccurrenceDto> items, long version, long loadedAtMillis) { }
+
+    /** Feed slice handed to the controller; etag is null when the range was not cacheable. */
+    public record Feed(List<ProgramOccurrenceDto> items, String etag) { }
+
+    private final ProgramOccurrenceRepository occurrences;
+
+    private final Map<Long, WeekBucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter uncached;
+
+    @Value("${ttclub.programs.occurrence-feed.weeks-behind:4}")
+    private int weeksBehind;
+
+    @Value("${ttclub.programs.occurrence-feed.weeks-ahead:26}")
+    private int weeksAhead;
+
+    @Value("${ttclub.programs.occurrence-feed.max-age-sec:600}")
+    private long maxAgeSec;
+
+    public ProgramOccurrenceFeedCache(ProgramOccurrenceRepository occurrences, MeterRegistry meters) {
+        this.occurrences = occurrences;
+        this.hits = Counter.builder("ttclub.programs.occurrence-feed.buckets")
+                .tag("result", "hit").register(meters);
+        this.misses = Counter.builder("ttclub.programs.occurrence-feed.buckets")
+                .tag("result", "miss").register(meters);
+        this.uncached = Counter.builder("ttclub.programs.occurrence-feed.uncached-requests")
+                .register(meters);
+        meters.gauge("ttclub.programs.occurrence-feed.cached-weeks", buckets, Map::size);
+    }
+
+    /* Reads */
+
+    public Feed feed(Instant from, Instant to) {
+        ZoneId zone = ZoneId.systemDefault();
+        long firstKey = weekKey(from, zone);
+        long lastKey  = weekKey(to.minusNanos(1), zone);
+
+        long today = weekKey(Instant.now(), zone);
+        long minKey = today - 7L * weeksBehind;
+        long maxKey = today + 7L * weeksAhead;
+
+        if (firstKey < minKey || lastKey > maxKey) {
+            uncached.increment();
+            return new Feed(ProgramOccurrenceService.toDtos(occurrences.findAllInRangeFetch(from, to)), null);
+        }
+        evictOutside(minKey);
+
+        List<WeekBucket> parts = new ArrayList<>();
+        long loadedAfter = System.currentTimeMillis() - maxAgeSec * 1000L;
+        long firstMissing = -1, lastMissing = -1;
+        for (long k = firstKey; k <= lastKey; k += 7) {
+            WeekBucket cached = buckets.get(k);
+            if (cached == null || cached.loadedAtMillis() < loadedAfter) {
+                if (firstMissing < 0) firstMissing = k;
+                lastMissing = k;
+            }
+        }
+        Map<Long, WeekBucket> loaded = firstMissing < 0 ? Map.of() : load(firstMissing, lastMissing, zone);
+
+        for (long k = firstKey; k <= lastKey; k += 7) {
+            WeekBucket b = loaded.get(k);
+            if (b == null) {
+                b = buckets.get(k);
+                if (b == null) {
+                    // evicted between the scan and now - take a fresh copy for this request
+                    b = load(k, k, zone).get(k);
+                    misses.increment();
+                } else {
+                    hits.increment();
+                }
+            } else {
+                misses.increment();
+            }
+            parts.add(b);
+        }
+        return slice(parts, from, to);
+    }
+
+    /** Binary-search each bucket for the [from, to) window; the ETag covers versions and slice bounds. */
+    private static Feed slice(List<WeekBucket> parts, Instant from, Instant to) {
+        List<ProgramOccurrenceDto> out = new ArrayList<>();
+        long tag = 17;
+        for (WeekBucket b : parts) {
+            List<ProgramOccurrenceDto> items = b.items();
+            int lo = lowerBound(items, from);
+            int hi = lowerBound(items, to);
+            if (lo < hi) out.addAll(items.subList(lo, hi));
+            tag = 31 * tag + b.version();
+            tag = 31 * tag + lo;
+            tag = 31 * tag + hi;
+        }
+        return new Feed(Collections.unmodifiableList(out), "\"occ-" + Long.toHexString(tag) + "\"");
+    }
+
+    private static int lowerBound(List<ProgramOccurrenceDto> items, Instant ts) {
+        int lo = 0, hi = items.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (items.get(mid).start().isBefore(ts)) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    /** One query for the whole span, split into week buckets; installed only if no invalidation raced us. */
+    private Map<Long, WeekBucket> load(long firstKey, long lastKey, ZoneId zone) {
+        long gen = generation.get();
+        Instant spanFrom = weekStart(firstKey, zone);
+        Instant spanTo   = weekStart(lastKey + 7, zone);
+
+        List<ProgramOccurrenceDto> rows = ProgramOccurrenceService.toDtos(
+                occurrences.findAllInRangeFetch(spanFrom, spanTo));
+
+        Map<Long, List<ProgramOccurrenceDto>> grouped = new HashMap<>();
+        for (long k = firstKey; k <= lastKey; k += 7) grouped.put(k, new ArrayList<>());
+        for (ProgramOccurrenceDto d : rows) {
+            List<ProgramOccurrenceDto> list = grouped.get(weekKey(d.start(), zone));
+            if (list != null) list.add(d);
+        }
+
+        long now = System.currentTimeMillis();
+        Map<Long, WeekBucket> out = new HashMap<>();
+        grouped.forEach((k, list) -> out.put(k, new WeekBucket(k, List.copyOf(list), versionOf(list), now)));
+
+        if (generation.get() == gen) {
+            buckets.putAll(out);
+        }
+        log.debug("Occurrence feed: loaded {} week(s) ({} rows) for {} .. {}.", out.size(), rows.size(), spanFrom, spanTo);
+        return out;
+    }
+
+    private void evictOutside(long minKey) {
+        buckets.keySet().removeIf(k -> k < minKey);
+    }
+
+    /* Invalidation */
+
+    /**
+     * Drop every bucket overlapping [from, to). A null 'to' means open-ended (cancel-future).
+     * Inside a transaction the eviction runs after commit.
+     */
+    public void invalidate(Instant from, Instant to) {
+        runAfterCommit(() -> {
+            ZoneId zone = ZoneId.systemDefault();
+            long firstKey = weekKey(from, zone);
+            long lastKey  = to == null ? Long.MAX_VALUE : weekKey(to.minusNanos(1), zone);
+            generation.incrementAndGet();
+            buckets.keySet().removeIf(k -> k >= firstKey && k <= lastKey);
+        });
+    }
+
+    /** Drop everything (program title/visibility changes and coach renames affect every week). */
+    public void invalidateAll() {
+        runAfterCommit(() -> {
+            generation.incrementAndGet();
+            buckets.clear();
+        });
+    }
+
+    private static void runAfterCommit(Runnable r) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    r.run();
+                }
+            });
+        } else {
+            r.run();
+        }
+    }
+
+    /* Helpers */
+
+    /** Epoch day of the Monday starting the week that contains ts. */
+    private static long weekKey(Instant ts, ZoneId zone) {
+        return ts.atZone(zone).toLocalDate()
+                .with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY))
+                .toEpochDay();
+    }
+
+    private static Instant weekStart(long weekKey, ZoneId zone) {
+        return LocalDate.ofEpochDay(weekKey).atStartOfDay(zone).toInstant();
+    }
+
+    private static long versionOf(List<ProgramOccurrenceDto> list) {
+        long h = 1;
+        for (ProgramOccurrenceDto d : list) {
+            h = 31 * h + Objects.hashCode(d.id());
+            h = 31 * h + Objects.hashCode(d.programId());
+            h = 31 * h + Objects.hashCode(d.title());
+            h = 31 * h + Objects.hashCode(d.start());
+            h = 31 * h + Objects.hashCode(d.end());
+            h = 31 * h + Objects.hashCode(d.coachName());
+        }
+        return h;
+    }
+}
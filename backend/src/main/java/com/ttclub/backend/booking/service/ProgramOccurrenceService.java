@@ -2,15 +2,20 @@ package com.ttclub.backend.booking.service;
 
 import com.ttclub.backend.booking.dto.ProgramOccurrenceDto;
 import com.ttclub.backend.booking.model.Program;
+import com.ttclub.backend.booking.model.ProgramMaterialisationMark;
 import com.ttclub.backend.booking.model.ProgramSlot;
+import com.ttclub.backend.booking.model.ProgramSlotChange;
 import com.ttclub.backend.booking.repository.AttendanceRepository;
+import com.ttclub.backend.booking.repository.ProgramMaterialisationMarkRepository;
 import com.ttclub.backend.booking.repository.ProgramOccurrenceRepository;
 import com.ttclub.backend.booking.repository.ProgramRepository;
+import com.ttclub.backend.booking.repository.ProgramSlotChangeRepository;
 import com.ttclub.backend.booking.repository.ProgramSlotRepository;
 import com.ttclub.backend.model.User;
 import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.*;
@@ -25,26 +30,48 @@ import java.util.stream.Collectors;
  * - Reconciliation: if an existing occurrence with same (program, start_ts) exists,
  *   update coach and endTs; if it was cancelled, un-cancel it.
  * - Rescheduling (weekday/start change) remains append-only by default; use cancel/rebuild admin endpoints.
+ * - Every write path reports its touched window to ProgramOccurrenceFeedCache (evicted after commit).
+ * - jobs.program-materialiser.mode=bulk (default) routes materializeRange/materializeForProgram through
+ *   ProgramOccurrenceBulkMaterialiser (chunked ON CONFLICT upserts); "entity" keeps the JPA path.
+ * - Incremental mode: slot edits are journaled and only the affected slot is materialised; the nightly
+ *   run extends each program from its high-water mark (program_materialisation_marks).
  */
 @Service
 public class ProgramOccurrenceService {
 
     private static final Logger log = LoggerFactory.getLogger(ProgramOccurrenceService.class);
-    private static final int DEFAULT_WEEKS = 12;
 
     private final ProgramRepository programs;
     private final ProgramSlotRepository slots;
     private final ProgramOccurrenceRepository occurrences;
     private final AttendanceRepository attendance;
+    private final ProgramOccurrenceFeedCache feedCache;
+    private final ProgramOccurrenceBulkMaterialiser bulk;
+    private final ProgramSlotChangeRepository slotChanges;
+    private final ProgramMaterialisationMarkRepository marks;
+
+    @Value("${jobs.program-materialiser.mode:bulk}")
+    private String mode;
+
+    @Value("${jobs.program-materialiser.weeks:12}")
+    private int defaultWeeks;
 
     public ProgramOccurrenceService(ProgramRepository programs,
                                     ProgramSlotRepository slots,
                                     ProgramOccurrenceRepository occurrences,
-                                    AttendanceRepository attendance) {
+                                    AttendanceRepository attendance,
+                                    ProgramOccurrenceFeedCache feedCache,
+                                    ProgramOccurrenceBulkMaterialiser bulk,
+                                    ProgramSlotChangeRepository slotChanges,
+                                    ProgramMaterialisationMarkRepository marks) {
         this.programs = programs;
         this.slots = slots;
         this.occurrences = occurrences;
         this.attendance = attendance;
+        this.feedCache = feedCache;
+        this.bulk = bulk;
+        this.slotChanges = slotChanges;
+        this.marks = marks;
     }
 
     /* Materialise */
@@ -64,6 +91,13 @@ public class ProgramOccurrenceService {
         Instant from = startDate.atStartOfDay(zone).toInstant();
         Instant to   = endDate.plusDays(1).atStartOfDay(zone).toInstant();
 
+        if (isBulkMode()) {
+            occurrences.flush(); // the upsert bypasses the persistence context
+            var r = bulk.materialise(startDate, endDate);
+            if (r.inserted() + r.updated() > 0) feedCache.invalidate(from, to);
+            return r.inserted();
+        }
+
         // Active programs only
         List<Program> activePrograms = programs.findAllByActiveTrueOrderByTitleAsc();
         if (activePrograms.isEmpty()) return 0;
@@ -102,6 +136,7 @@ public class ProgramOccurrenceService {
 
         int created = toInsert.size();
         int updated = toUpdate.size();
+        if (created + updated > 0) feedCache.invalidate(from, to);
         if (skippedNoCoach > 0) {
             log.warn("Materializer: skipped {} slot occurrences due to missing coach (coach_id is required).", skippedNoCoach);
         }
@@ -109,7 +144,7 @@ public class ProgramOccurrenceService {
         return created;
     }
 
-    /** Materialize a single program now (used after slot add/update). */
+    /** Materialize a single program now (full window from today). */
     @Transactional
     public int materializeForProgram(Long programId, int weeksAhead) {
         Program p = programs.findById(programId).orElseThrow();
@@ -118,12 +153,30 @@ public class ProgramOccurrenceService {
         LocalDate startDate = LocalDate.now();
         LocalDate endDate   = startDate.plusWeeks(Math.max(1, weeksAhead));
 
+        List<ProgramSlot> programSlots = slots.findByProgramIdOrderByWeekdayAscStartTimeAsc(programId);
+        if (programSlots.isEmpty()) return 0;
+
+        int created = materializeSlots(p, programSlots, startDate, endDate);
+        advanceMark(programId, endDate);
+        return created;
+    }
+
+    /**
+     * Materialize the given slots of one program over [startDate, endDate] (bulk or entity mode).
+     * Used for whole programs and for slot-scoped edits alike.
+     */
+    private int materializeSlots(Program p, List<ProgramSlot> programSlots, LocalDate startDate, LocalDate endDate) {
+        Long programId = p.getId();
         ZoneId zone = ZoneId.systemDefault();
         Instant from = startDate.atStartOfDay(zone).toInstant();
         Instant to   = endDate.plusDays(1).atStartOfDay(zone).toInstant();
 
-        List<ProgramSlot> programSlots = slots.findByProgramIdOrderByWeekdayAscStartTimeAsc(programId);
-        if (programSlots.isEmpty()) return 0;
+        if (isBulkMode()) {
+            occurrences.flush();
+            var r = bulk.materialise(programSlots, startDate, endDate);
+            if (r.inserted() + r.updated() > 0) feedCache.invalidate(from, to);
+            return r.inserted();
+        }
 
         var existingList = occurrences.findAllForProgramInRange(programId, from, to);
         Map<String, com.ttclub.backend.booking.model.ProgramOccurrence> existingMap = existingList.stream()
@@ -144,6 +197,7 @@ public class ProgramOccurrenceService {
 
         int created = toInsert.size();
         int updated = toUpdate.size();
+        if (created + updated > 0) feedCache.invalidate(from, to);
         if (skippedNoCoach > 0) {
             log.warn("Materializer (program {}): skipped {} due to missing coach.", programId, skippedNoCoach);
         }
@@ -151,6 +205,135 @@ public class ProgramOccurrenceService {
         return created;
     }
 
+    /* Incremental: slot-change journal + per-program high-water marks */
+
+    /**
+     * Journal a slot mutation (called by AdminProgramService) and apply it right away when possible.
+     * Only the affected slot is materialised, up to the program's current high-water mark.
+     * @return number of new occurrences inserted
+     */
+    @Transactional
+    public int recordSlotChange(Long programId, Long slotId, ProgramSlotChange.Type type) {
+        ProgramSlotChange c = new ProgramSlotChange();
+        c.setProgramId(programId);
+        c.setSlotId(slotId);
+        c.setChangeType(type);
+        c = slotChanges.save(c);
+        return applySlotChange(c, LocalDate.now());
+    }
+
+    /**
+     * Nightly entry point: drain pending journal entries, then extend every active program from its
+     * high-water mark to today + horizon. With up-to-date marks this only generates the one newly
+     * entered day instead of rescanning the whole window.
+     * @return number of new occurrences inserted
+     */
+    @Transactional
+    public int materializeIncremental() {
+        LocalDate today   = LocalDate.now();
+        LocalDate horizon = today.plusWeeks(Math.max(1, defaultWeeks));
+        int created = 0;
+
+        // 1) Pending slot changes (e.g. recorded while the program was inactive); last entry per slot wins
+        Map<Long, ProgramSlotChange> latestBySlot = new LinkedHashMap<>();
+        List<ProgramSlotChange> pending = slotChanges.findByProcessedAtIsNullOrderByIdAsc();
+        for (ProgramSlotChange c : pending) latestBySlot.put(c.getSlotId(), c);
+        for (ProgramSlotChange c : pending) {
+            if (latestBySlot.get(c.getSlotId()) != c) c.setProcessedAt(Instant.now()); // superseded
+        }
+        for (ProgramSlotChange c : latestBySlot.values()) created += applySlotChange(c, today);
+
+        // 2) Extend high-water marks; programs sharing a start date are generated together
+        List<Program> active = programs.findAllByActiveTrueOrderByTitleAsc();
+        if (active.isEmpty()) return created;
+
+        Map<Long, ProgramMaterialisationMark> markById = new HashMap<>();
+        marks.findAllById(active.stream().map(Program::getId).toList())
+                .forEach(m -> markById.put(m.getProgramId(), m));
+
+        Map<LocalDate, List<Program>> byStart = new TreeMap<>();
+        for (Program p : active) {
+            ProgramMaterialisationMark m = markById.get(p.getId());
+            LocalDate start = (m == null || m.getMaterialisedThrough().isBefore(today))
+                    ? today
+                    : m.getMaterialisedThrough().plusDays(1);
+            if (!start.isAfter(horizon)) byStart.computeIfAbsent(start, k -> new ArrayList<>()).add(p);
+        }
+
+        for (Map.Entry<LocalDate, List<Program>> e : byStart.entrySet()) {
+            LocalDate start = e.getKey();
+            List<Program> group = e.getValue();
+            List<ProgramSlot> groupSlots = slots.findByProgram_IdInOrderByWeekdayAscStartTimeAsc(
+                    group.stream().map(Program::getId).toList());
+
+            if (isBulkMode()) {
+                if (!groupSlots.isEmpty()) {
+                    occurrences.flush();
+                    var r = bulk.materialise(groupSlots, start, horizon);
+                    created += r.inserted();
+                    if (r.inserted() + r.updated() > 0) {
+                        ZoneId zone = ZoneId.systemDefault();
+                        feedCache.invalidate(start.atStartOfDay(zone).toInstant(),
+                                horizon.plusDays(1).atStartOfDay(zone).toInstant());
+                    }
+                }
+            } else {
+                Map<Long, List<ProgramSlot>> slotsByPid = groupSlots.stream()
+                        .collect(Collectors.groupingBy(ps -> ps.getProgram().getId()));
+                for (Program p : group) {
+                    List<ProgramSlot> list = slotsByPid.get(p.getId());
+                    if (list != null) created += materializeSlots(p, list, start, horizon);
+                }
+            }
+
+            for (Program p : group) {
+                ProgramMaterialisationMark m = markById.get(p.getId());
+                if (m == null) markById.put(p.getId(), m = new ProgramMaterialisationMark(p.getId(), horizon));
+                else m.setMaterialisedThrough(horizon);
+            }
+        }
+        marks.saveAll(markById.values());
+
+        log.info("Materializer (incremental): {} journal entries, {} program group(s) extended to {}, {} inserted.",
+                pending.size(), byStart.size(), horizon, created);
+        return created;
+    }
+
+    private int applySlotChange(ProgramSlotChange c, LocalDate today) {
+        if (c.getChangeType() == ProgramSlotChange.Type.DELETE) {
+            // existing occurrences are kept (slot_id set null); cancel/rebuild stays an explicit admin action
+            c.setProcessedAt(Instant.now());
+            return 0;
+        }
+        ProgramSlot s = slots.findById(c.getSlotId()).orElse(null);
+        if (s == null) {
+            c.setProcessedAt(Instant.now());
+            return 0;
+        }
+        Program p = programs.findById(c.getProgramId()).orElseThrow();
+        if (!p.isActive()) return 0; // stays pending until the program is active again
+
+        ProgramMaterialisationMark m = marks.findById(p.getId()).orElse(null);
+        int created;
+        if (m == null || m.getMaterialisedThrough().isBefore(today)) {
+            // never (or not recently) materialised: bring the whole program up to the horizon once
+            LocalDate horizon = today.plusWeeks(Math.max(1, defaultWeeks));
+            created = materializeSlots(p, slots.findByProgramIdOrderByWeekdayAscStartTimeAsc(p.getId()), today, horizon);
+            advanceMark(p.getId(), horizon);
+        } else {
+            created = materializeSlots(p, List.of(s), today, m.getMaterialisedThrough());
+        }
+        c.setProcessedAt(Instant.now());
+        return created;
+    }
+
+    private void advanceMark(Long programId, LocalDate through) {
+        ProgramMaterialisationMark m = marks.findById(programId)
+                .orElseGet(() -> new ProgramMaterialisationMark(programId, through));
+        if (m.getMaterialisedThrough().isBefore(through)) m.setMaterialisedThrough(through);
+        marks.save(m);
+    }
+
     private int processProgramWindow(Program p,
                                      List<ProgramSlot> programSlots,
                                      LocalDate startDate,
@@ -230,9 +413,9 @@ public class ProgramOccurrenceService {
 
     /* Feeds */
 
-    @Transactional
+    /** Served from the week-bucketed feed cache; see ProgramOccurrenceFeedCache. */
     public List<ProgramOccurrenceDto> publicFeed(Instant from, Instant to) {
-        return toDtos(occurrences.findAllInRangeFetch(from, to));
+        return feedCache.feed(from, to).items();
     }
 
     @Transactional
@@ -240,17 +423,14 @@ public class ProgramOccurrenceService {
         return toDtos(occurrences.findByProgramInRangeFetch(programId, from, to));
     }
 
-    private static List<ProgramOccurrenceDto> toDtos(List<com.ttclub.backend.booking.model.ProgramOccurrence> list) {
-        return list.stream().map(o -> {
-            ProgramOccurrenceDto d = new ProgramOccurrenceDto();
-            d.id        = o.getId();                                        
-            d.programId = o.getProgram() != null ? o.getProgram().getId() : null;
-            d.title     = (o.getProgram() != null ? o.getProgram().getTitle() : null);
-            d.start     = o.getStartTs();
-            d.end       = o.getEndTs();
-            d.coachName = displayName(o.getCoach());
-            return d;
-        }).toList();
+    static List<ProgramOccurrenceDto> toDtos(List<com.ttclub.backend.booking.model.ProgramOccurrence> list) {
+        return list.stream().map(o -> new ProgramOccurrenceDto(
+                o.getId(),
+                o.getProgram() != null ? o.getProgram().getId() : null,
+                o.getProgram() != null ? o.getProgram().getTitle() : null,
+                o.getStartTs(),
+                o.getEndTs(),
+                displayName(o.getCoach()))).toList();
     }
 
     private static String displayName(User u) {
@@ -287,7 +467,10 @@ public class ProgramOccurrenceService {
                 cancelled++;
             }
         }
-        if (cancelled > 0) occurrences.saveAll(list);
+        if (cancelled > 0) {
+            occurrences.saveAll(list);
+            feedCache.invalidate(fromTs, null);
+        }
         log.info("Cancelled {} future occurrences for program {} from {} ({} protected by attendance).",
                 cancelled, programId, fromTs, withAttendance.size());
         return cancelled;
@@ -324,6 +507,9 @@ public class ProgramOccurrenceService {
 
         if (!toInsert.isEmpty()) occurrences.saveAll(toInsert);
         if (!toUpdate.isEmpty()) occurrences.saveAll(toUpdate);
+        if (!toInsert.isEmpty() || !toUpdate.isEmpty()) {
+            feedCache.invalidate(from, toDate.plusDays(1).atStartOfDay(zone).toInstant());
+        }
         log.info("Rebuild program {}: {} inserted, {} updated, {} skipped ({} .. {}).",
                 programId, toInsert.size(), toUpdate.size(), skippedNoCoach, fromDate, toDate);
         return toInsert.size();
@@ -331,6 +517,10 @@ public class ProgramOccurrenceService {
 
     @Transactional
     public int materializeDefaultWindow() {
-        return materializeUpcoming(DEFAULT_WEEKS);
+        return materializeUpcoming(defaultWeeks);
+    }
+
+    private boolean isBulkMode() {
+        return !"entity".equalsIgnoreCase(mode);
     }
 }
@@ -0,0 +1,190 @@
+package com.ttclub.backend.booking.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ttclub.backend.booking.dto.ProgramCardDto;
+import com.ttclub.backend.booking.model.Program;
+import com.ttclub.backend.booking.model.ProgramPackage;
+import com.ttclub.backend.booking.model.ProgramSlot;
+import com.ttclub.backend.booking.repository.ProgramPackageRepository;
+import com.ttclub.backend.booking.repository.ProgramRepository;
+import com.ttclub.backend.booking.repository.ProgramSlotRepository;
+import com.ttclub.backend.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.DigestUtils;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Read-through snapshot of the public program catalogue (GET /api/programs).<br>
+ * Notes:
+ *  - The whole card list is assembled with a constant number of queries (programs, packages,
+ *    slots, coach names) and kept until AdminProgramService reports a mutation.
+ *  - Invalidation is applied after commit so readers never re-cache pre-commit data; a
+ *    generation counter drops snapshots whose build raced with an invalidation.
+ *  - max-age-sec is only a safety net for changes made outside AdminProgramService
+ *    (for example a coach renaming themselves).
+ */
+@Service
+public class PublicProgramCatalogue {
+
+    private static final Logger log = LoggerFactory.getLogger(PublicProgramCatalogue.class);
+
+    /** Immutable, pre-serialisable view of the catalogue plus its strong ETag. */
+    public record Snapshot(List<ProgramCardDto> cards, String etag, long builtAtMillis) { }
+
+    private final ProgramRepository programs;
+    private final ProgramPackageRepository packages;
+    private final ProgramSlotRepository slots;
+    private final UserRepository users;
+    private final ObjectMapper json;
+    private final BookingMapper mapper = new BookingMapper();
+
+    private final AtomicLong generation = new AtomicLong();
+    private final Object buildLock = new Object();
+    private volatile Snapshot current;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter invalidations;
+    private final Timer rebuilds;
+
+    @Value("${ttclub.programs.catalogue.max-age-sec:600}")
+    private long maxAgeSec;
+
+    public PublicProgramCatalogue(ProgramRepository programs,
+                                  ProgramPackageRepository packages,
+                                  ProgramSlotRepository slots,
+                                  UserRepository users,
+                                  ObjectMapper json,
+                                  MeterRegistry meters) {
+        this.programs = programs;
+        this.packages = packages;
+        this.slots = slots;
+        this.users = users;
+        this.json = json;
+
+        this.hits = Counter.builder("ttclub.programs.catalogue.requests")
+                .tag("result", "hit").register(meters);
+        this.misses = Counter.builder("ttclub.programs.catalogue.requests")
+                .tag("result", "miss").register(meters);
+        this.invalidations = Counter.builder("ttclub.programs.catalogue.invalidations")
+                .register(meters);
+        this.rebuilds = Timer.builder("ttclub.programs.catalogue.rebuild")
+                .description("Time to assemble the public program catalogue snapshot")
+                .register(meters);
+    }
+
+    /** Current snapshot, rebuilding it (once, under a lock) when missing or expired. */
+    public Snapshot snapshot() {
+        Snapshot s = current;
+        if (isFresh(s)) {
+            hits.increment();
+            return s;
+        }
+        synchronized (buildLock) {
+            s = current;
+            if (isFresh(s)) {
+                hits.increment();
+                return s;
+            }
+            misses.increment();
+
+            long gen = generation.get();
+            Snapshot built = rebuilds.record(this::build);
+            if (generation.get() == gen) {
+                current = built;
+            }
+            return built;
+        }
+    }
+
+    /**
+     * Drop the snapshot. Inside a transaction this is deferred until after commit,
+     * otherwise it happens immediately.
+     */
+    public void invalidate() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict();
+                }
+            });
+        } else {
+            evict();
+        }
+    }
+
+    private void evict() {
+        generation.incrementAndGet();
+        current = null;
+        invalidations.increment();
+    }
+
+    private boolean isFresh(Snapshot s) {
+        return s != null && System.currentTimeMillis() - s.builtAtMillis() < maxAgeSec * 1000L;
+    }
+
+    /* Bulk loader */
+
+    private Snapshot build() {
+        List<Program> active = programs.findAllByActiveTrueOrderByTitleAsc();
+        List<ProgramCardDto> cards;
+
+        if (active.isEmpty()) {
+            cards = List.of();
+        } else {
+            List<Long> ids = active.stream().map(Program::getId).toList();
+
+            List<ProgramPackage> allPacks = packages.findByProgram_IdInOrderBySortOrderAscIdAsc(ids);
+            List<ProgramSlot> allSlots = slots.findByProgram_IdInOrderByWeekdayAscStartTimeAsc(ids);
+
+            Set<Long> coachIds = allSlots.stream()
+                    .map(ProgramSlot::getCoachId)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toSet());
+            Map<Long, String> names = new HashMap<>();
+            if (!coachIds.isEmpty()) {
+                users.findNamesByIds(coachIds).forEach(v -> names.put(v.getId(), v.getName()));
+            }
+
+            Map<Long, List<ProgramPackage>> packsByPid = allPacks.stream()
+                    .collect(Collectors.groupingBy(pp -> pp.getProgram().getId()));
+            Map<Long, List<ProgramSlot>> slotsByPid = allSlots.stream()
+                    .collect(Collectors.groupingBy(ps -> ps.getProgram().getId()));
+
+            cards = active.stream()
+                    .map(p -> mapper.toCard(
+                            p,
+                            packsByPid.getOrDefault(p.getId(), List.of()),
+                            slotsByPid.getOrDefault(p.getId(), List.of()),
+                            names))
+                    .toList();
+        }
+
+        String etag = etagOf(cards);
+        log.debug("Program catalogue rebuilt: {} programs, etag {}.", cards.size(), etag);
+        return new Snapshot(cards, etag, System.currentTimeMillis());
+    }
+
+    private String etagOf(List<ProgramCardDto> cards) {
+        try {
+            return "\"" + DigestUtils.md5DigestAsHex(json.writeValueAsBytes(cards)) + "\"";
+        } catch (JsonProcessingException e) {
+            // Still serve the data; clients just will not get a 304 for this snapshot.
+            log.warn("Could not compute catalogue ETag: {}", e.getMessage());
+            return "\"gen-" + generation.get() + "-" + System.nanoTime() + "\"";
+        }
+    }
+}
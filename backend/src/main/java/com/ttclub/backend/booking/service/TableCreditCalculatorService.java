@@ -1,43 +1,31 @@
 package com.ttclub.backend.booking.service;
 
-import com.ttclub.backend.booking.repository.TableRentalCreditRepository;
-import com.ttclub.backend.booking.repository.UserMembershipRepository;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.util.List;
+import java.util.Collection;
+import java.util.Map;
 
 @Service
 public class TableCreditCalculatorService {
 
-    private final TableRentalCreditRepository trcRepo;
-    private final UserMembershipRepository userMemberships;
+    private final TableCreditLedger ledger;
 
-    public TableCreditCalculatorService(TableRentalCreditRepository trcRepo,
-                                        UserMembershipRepository userMemberships) {
-        this.trcRepo = trcRepo;
-        this.userMemberships = userMemberships;
+    public TableCreditCalculatorService(TableCreditLedger ledger) {
+        this.ledger = ledger;
     }
 
     /**
-     * Total = sum of individual TRC + pooled TRC across the user's currently-active groups.
-     * This implementation performs all gating in repository queries (no lazy proxy traversal).
+     * Total = individual balance + pooled balances of the user's currently-active groups.
+     * Answered from the maintained balance rows (one query, no per-group sums over credit rows).
      * Signature is unchanged for backward compatibility with all existing call sites.
      */
     public BigDecimal hoursAvailableForUser(Long userId) {
-        BigDecimal indiv = nz(trcRepo.sumHoursByUserId(userId));
-
-        BigDecimal pooled = BigDecimal.ZERO;
-        List<Long> groupIds = userMemberships.findActiveGroupIdsForUser(userId);
-        if (!groupIds.isEmpty()) {
-            for (Long gid : groupIds) {
-                pooled = pooled.add(nz(trcRepo.sumHoursByGroupId(gid)));
-            }
-        }
-        return indiv.add(pooled);
+        return ledger.balanceForUser(userId);
     }
 
-    private static BigDecimal nz(BigDecimal v) {
-        return v != null ? v : BigDecimal.ZERO;
+    /** Bulk variant for list screens: one query for the whole page of users. */
+    public Map<Long, BigDecimal> hoursAvailableForUsers(Collection<Long> userIds) {
+        return ledger.balancesForUsers(userIds);
     }
 }
@@ -8,32 +8,44 @@ import com.ttclub.backend.booking.repository.UserMembershipRepository;
 import com.ttclub.backend.model.User;
 import com.ttclub.backend.repository.UserRepository;
 import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.TreeMap;
 
 @Service
 public class TableCreditConsumptionService {
 
+    private static final Logger log = LoggerFactory.getLogger(TableCreditConsumptionService.class);
+
+    /** Rows locked per FIFO batch; at most 2.5h (five half-hour steps) is drained per call. */
+    private static final int DRAIN_BATCH = 5;
+
     private final TableRentalCreditRepository trcRepo;
     private final TableRentalConsumptionRepository auditRepo;
     private final UserMembershipRepository userMemberships;
     private final TableCreditCalculatorService calculator;
+    private final TableCreditLedger ledger;
     private final UserRepository users;
 
     public TableCreditConsumptionService(TableRentalCreditRepository trcRepo,
                                          TableRentalConsumptionRepository auditRepo,
                                          UserMembershipRepository userMemberships,
                                          TableCreditCalculatorService calculator,
+                                         TableCreditLedger ledger,
                                          UserRepository users) {
         this.trcRepo = trcRepo;
         this.auditRepo = auditRepo;
         this.userMemberships = userMemberships;
         this.calculator = calculator;
+        this.ledger = ledger;
         this.users = users;
     }
 
@@ -53,47 +65,91 @@ public class TableCreditConsumptionService {
             throw new IllegalArgumentException("hours cannot exceed 2.5 per operation");
         }
 
-        BigDecimal available = calculator.hoursAvailableForUser(targetUserId);
-        if (available.compareTo(scaled) < 0) {
-            throw new IllegalStateException("No sufficient table rental credits remaining.");
-        }
-
         // resolve active group IDs via repository JPQL (no proxy traversal)
         List<Long> activeGroupIds = userMemberships.findActiveGroupIdsForUser(targetUserId);
 
-        // lock candidate TRC rows FIFO
-        List<TableRentalCredit> buckets = trcRepo.lockEligibleForUser(targetUserId, activeGroupIds);
+        // lock the balance rows first: they serialise consumers of the same owners, so only the
+        // credit rows actually drained below need row locks
+        List<TableCreditLedger.Balance> balances = ledger.lockOwners(targetUserId, activeGroupIds);
+        BigDecimal available = BigDecimal.ZERO;
+        BigDecimal ledgerIndividual = BigDecimal.ZERO;
+        Map<Long, BigDecimal> ledgerByGroup = new TreeMap<>();
+        for (TableCreditLedger.Balance b : balances) {
+            available = available.add(b.hours());
+            if (b.ownerKind() == TableCreditLedger.USER) ledgerIndividual = b.hours();
+            else ledgerByGroup.put(b.ownerId(), b.hours());
+        }
+        if (available.compareTo(scaled) < 0) {
+            throw new IllegalStateException("No sufficient table rental credits remaining.");
+        }
 
         BigDecimal remaining = scaled;
         User client = users.findById(targetUserId).orElseThrow();
         User admin  = users.findById(adminUserId).orElseThrow();
-
-        for (TableRentalCredit trc : buckets) {
-            if (remaining.signum() <= 0) break;
-            BigDecimal avail = trc.getHoursRemaining() == null ? BigDecimal.ZERO : trc.getHoursRemaining();
-            if (avail.signum() <= 0) continue;
-
-            BigDecimal take = avail.min(remaining);
-            BigDecimal newBal = avail.subtract(take);
-            trc.setHoursRemaining(newBal);
-            trcRepo.save(trc);
-
-            TableRentalConsumption c = new TableRentalConsumption();
-            c.setUser(client);
-            c.setConsumedBy(admin);
-            c.setTrc(trc);
-            c.setGroup(trc.getGroup());
-            c.setAmountHours(take);
-            auditRepo.save(c);
-
-            remaining = remaining.subtract(take);
+        BigDecimal drainedIndividual = BigDecimal.ZERO;
+        Map<Long, BigDecimal> drainedByGroup = new TreeMap<>();
+
+        // lock candidate TRC rows FIFO, a few at a time (drained rows drop out of the next batch)
+        while (remaining.signum() > 0) {
+            List<TableRentalCredit> batch = trcRepo.lockNextEligibleForUser(
+                    targetUserId, activeGroupIds, PageRequest.of(0, DRAIN_BATCH));
+            if (batch.isEmpty()) break;
+
+            for (TableRentalCredit trc : batch) {
+                if (remaining.signum() <= 0) break;
+                BigDecimal avail = trc.getHoursRemaining() == null ? BigDecimal.ZERO : trc.getHoursRemaining();
+                if (avail.signum() <= 0) continue;
+
+                BigDecimal take = avail.min(remaining);
+                BigDecimal newBal = avail.subtract(take);
+                trc.setHoursRemaining(newBal);
+                trcRepo.save(trc);
+
+                TableRentalConsumption c = new TableRentalConsumption();
+                c.setUser(client);
+                c.setConsumedBy(admin);
+                c.setTrc(trc);
+                c.setGroup(trc.getGroup());
+                c.setAmountHours(take);
+                auditRepo.save(c);
+
+                if (trc.getGroup() == null) {
+                    drainedIndividual = drainedIndividual.add(take);
+                } else {
+                    drainedByGroup.merge(trc.getGroup().getId(), take, BigDecimal::add);
+                }
+                remaining = remaining.subtract(take);
+            }
         }
 
         if (remaining.signum() > 0) {
-            // Defensive guard against race conditions
+            // Ledger ahead of the raw credits; the reconciliation job repairs the balance row
             throw new IllegalStateException("Concurrent consumption detected. Please retry.");
         }
 
+        // FIFO may drain an owner beyond its ledger row when that row has drifted below the raw
+        // credits (the total still covered the request). A debit would then trip chk_tcb_hours, so
+        // such an owner is recomputed from its credits instead; all other owners take the delta.
+        boolean individualDrift = drainedIndividual.compareTo(ledgerIndividual) > 0;
+        List<Long> driftedGroups = drainedByGroup.entrySet().stream()
+                .filter(d -> d.getValue().compareTo(ledgerByGroup.getOrDefault(d.getKey(), BigDecimal.ZERO)) > 0)
+                .map(Map.Entry::getKey)
+                .toList();
+        if (individualDrift || !driftedGroups.isEmpty()) trcRepo.flush();   // resync reads via JDBC
+
+        if (individualDrift) resync(TableCreditLedger.USER, targetUserId);
+        else ledger.debit(TableCreditLedger.USER, targetUserId, drainedIndividual);
+        drainedByGroup.forEach((gid, h) -> {
+            if (driftedGroups.contains(gid)) resync(TableCreditLedger.GROUP, gid);
+            else ledger.debit(TableCreditLedger.GROUP, gid, h);
+        });
+
         return calculator.hoursAvailableForUser(targetUserId);
     }
+
+    private void resync(char ownerKind, long ownerId) {
+        log.warn("Table-credit ledger drift on {}#{} during consumption; recomputing from credits.",
+                ownerKind, ownerId);
+        ledger.resync(ownerKind, ownerId);
+    }
 }
@@ -0,0 +1,240 @@
+package com.ttclub.backend.booking.service;
+
+import jakarta.transaction.Transactional;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.util.*;
+
+/**
+ * Maintained table-credit balances (table_credit_balances).<br>
+ * Notes:
+ *  - One row per owner: 'U' = a user's individual credits, 'G' = a membership group's pooled
+ *    credits. Each row equals the sum of hours_remaining of the matching table_rental_credits.
+ *  - Every writer of hours_remaining calls {@link #credit} / {@link #debit} in the same
+ *    transaction (JdbcTemplate shares the JPA connection), so both sides commit together.
+ *  - Reads are primary-key lookups: a user's balance is their own row plus the rows of their
+ *    currently-active groups, and a page of users is answered with one query.
+ *  - {@link #lockOwners} row-locks the balance rows in (kind, id) order; consumption holds
+ *    these locks, so it only has to lock the credit rows it actually drains.
+ *  - {@link #findMismatches} / {@link #repair} back the reconciliation job. {@link #resync} first
+ *    makes sure the owner's row exists, so its FOR UPDATE always locks something and a concurrent
+ *    writer's upsert queues behind it instead of being overwritten.
+ *  - chk_tcb_hours (hours >= 0) only fails when the ledger has drifted below the raw credits;
+ *    {@link #debit} reports that as {@link IllegalStateException} rather than a bare constraint error.
+ */
+@Service
+public class TableCreditLedger {
+
+    public static final char USER = 'U';
+    public static final char GROUP = 'G';
+
+    /** A locked balance row. */
+    public record Balance(char ownerKind, long ownerId, BigDecimal hours) { }
+
+    /** Ledger row that disagrees with the raw credits (either side may be absent, i.e. zero). */
+    public record Mismatch(char ownerKind, long ownerId, BigDecimal ledgerHours, BigDecimal rawHours) { }
+
+    private static final String APPLY_SQL = """
+            INSERT INTO table_credit_balances (owner_kind, owner_id, hours, updated_at)
+            VALUES (?, ?, ?, now())
+            ON CONFLICT (owner_kind, owner_id) DO UPDATE
+               SET hours      = table_credit_balances.hours + EXCLUDED.hours,
+                   updated_at = now()
+            """;
+
+    /** Groups whose pooled hours a user may currently draw on (mirrors findActiveGroupIdsForUser). */
+    private static final String ACTIVE_GROUPS_OF = """
+            SELECT um.group_id
+              FROM user_memberships um
+              JOIN membership_groups g ON g.id = um.group_id
+             WHERE um.user_id = %s
+               AND um.active
+               AND um.start_ts <= now()
+               AND um.end_ts   >= now()
+               AND g.active
+            """;
+
+    private static final String USER_BALANCE_SQL = """
+            SELECT coalesce(sum(b.hours), 0)
+              FROM table_credit_balances b
+             WHERE (b.owner_kind = 'U' AND b.owner_id = ?)
+                OR (b.owner_kind = 'G' AND b.owner_id IN (%s))
+            """.formatted(ACTIVE_GROUPS_OF.formatted("?"));
+
+    private static final String USERS_BALANCE_SQL = """
+            SELECT u.id,
+                   coalesce(ub.hours, 0)
+                 + coalesce((SELECT sum(gb.hours)
+                               FROM table_credit_balances gb
+                              WHERE gb.owner_kind = 'G'
+                                AND gb.owner_id IN (%s)), 0)
+              FROM unnest(?::bigint[]) AS u(id)
+              LEFT JOIN table_credit_balances ub
+                     ON ub.owner_kind = 'U' AND ub.owner_id = u.id
+            """.formatted(ACTIVE_GROUPS_OF.formatted("u.id"));
+
+    private static final String LOCK_SQL = """
+            SELECT owner_kind, owner_id, hours
+              FROM table_credit_balances
+             WHERE (owner_kind = 'U' AND owner_id = ?)
+                OR (owner_kind = 'G' AND owner_id = ANY(?))
+             ORDER BY owner_kind, owner_id
+               FOR UPDATE
+            """;
+
+    private static final String RAW_BY_OWNER = """
+            SELECT CASE WHEN group_id IS NULL THEN 'U' ELSE 'G' END AS owner_kind,
+                   coalesce(group_id, user_id)                      AS owner_id,
+                   sum(hours_remaining)                             AS hours
+              FROM table_rental_credits
+             GROUP BY 1, 2
+            """;
+
+    private static final String MISMATCH_SQL = """
+            WITH raw AS (%s)
+            SELECT coalesce(b.owner_kind, r.owner_kind),
+                   coalesce(b.owner_id, r.owner_id),
+                   coalesce(b.hours, 0),
+                   coalesce(r.hours, 0)
+              FROM table_credit_balances b
+              FULL JOIN raw r
+                     ON r.owner_kind = b.owner_kind AND r.owner_id = b.owner_id
+             WHERE coalesce(b.hours, 0) <> coalesce(r.hours, 0)
+             ORDER BY 1, 2
+            """.formatted(RAW_BY_OWNER);
+
+    private static final String RAW_USER_SQL =
+            "SELECT coalesce(sum(hours_remaining), 0) FROM table_rental_credits WHERE group_id IS NULL AND user_id = ?";
+
+    private static final String RAW_GROUP_SQL =
+            "SELECT coalesce(sum(hours_remaining), 0) FROM table_rental_credits WHERE group_id = ?";
+
+    private static final String ENSURE_SQL = """
+            INSERT INTO table_credit_balances (owner_kind, owner_id, hours, updated_at)
+            VALUES (?, ?, 0, now())
+            ON CONFLICT (owner_kind, owner_id) DO NOTHING
+            """;
+
+    private static final String LOCK_ONE_SQL =
+            "SELECT hours FROM table_credit_balances WHERE owner_kind = ? AND owner_id = ? FOR UPDATE";
+
+    private static final String SET_SQL = """
+            INSERT INTO table_credit_balances (owner_kind, owner_id, hours, updated_at)
+            VALUES (?, ?, ?, now())
+            ON CONFLICT (owner_kind, owner_id) DO UPDATE
+               SET hours = EXCLUDED.hours, updated_at = now()
+            """;
+
+    private final JdbcTemplate jdbc;
+
+    public TableCreditLedger(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /* Writes (caller's transaction) */
+
+    /** Hours added to a credit row: group == null means the user's individual balance. */
+    public void credit(Long userId, Long groupId, BigDecimal hours) {
+        apply(groupId == null ? USER : GROUP, groupId == null ? userId : groupId, hours);
+    }
+
+    /** Hours drained from credit rows of one owner. */
+    public void debit(char ownerKind, long ownerId, BigDecimal hours) {
+        apply(ownerKind, ownerId, hours.negate());
+    }
+
+    private void apply(char ownerKind, Long ownerId, BigDecimal delta) {
+        Objects.requireNonNull(ownerId, "owner id required");
+        if (delta == null || delta.signum() == 0) return;
+        try {
+            jdbc.update(APPLY_SQL, String.valueOf(ownerKind), ownerId, delta);
+        } catch (DataIntegrityViolationException ex) {
+            if (!isNegativeBalance(ex)) throw ex;
+            throw new IllegalStateException("Table-credit balance " + ownerKind + "#" + ownerId
+                    + " is out of sync with its credits. Please retry after reconciliation.", ex);
+        }
+    }
+
+    private static boolean isNegativeBalance(DataIntegrityViolationException ex) {
+        Throwable root = ex.getMostSpecificCause();
+        return root.getMessage() != null && root.getMessage().contains("chk_tcb_hours");
+    }
+
+    /** Row-locks the user's individual row and the given group rows (deterministic order). */
+    public List<Balance> lockOwners(Long userId, Collection<Long> groupIds) {
+        return jdbc.query(con -> {
+            PreparedStatement ps = con.prepareStatement(LOCK_SQL);
+            ps.setLong(1, userId);
+            ps.setArray(2, con.createArrayOf("bigint", groupIds.toArray()));
+            return ps;
+        }, (rs, i) -> new Balance(rs.getString(1).charAt(0), rs.getLong(2), rs.getBigDecimal(3)));
+    }
+
+    /* Reads */
+
+    /** Individual + pooled hours across the user's currently-active groups. */
+    public BigDecimal balanceForUser(Long userId) {
+        BigDecimal v = jdbc.queryForObject(USER_BALANCE_SQL, BigDecimal.class, userId, userId);
+        return v != null ? v : BigDecimal.ZERO;
+    }
+
+    /** Same as {@link #balanceForUser} for many users in one query; every id is present in the result. */
+    public Map<Long, BigDecimal> balancesForUsers(Collection<Long> userIds) {
+        if (userIds.isEmpty()) return Map.of();
+        Map<Long, BigDecimal> out = new HashMap<>(userIds.size() * 2);
+        jdbc.query(con -> {
+            PreparedStatement ps = con.prepareStatement(USERS_BALANCE_SQL);
+            ps.setArray(1, con.createArrayOf("bigint", userIds.toArray()));
+            return ps;
+        }, rs -> {
+            out.put(rs.getLong(1), rs.getBigDecimal(2));
+        });
+        return out;
+    }
+
+    /** Pooled hours of one group. */
+    public BigDecimal balanceForGroup(Long groupId) {
+        List<BigDecimal> rows = jdbc.queryForList(
+                "SELECT hours FROM table_credit_balances WHERE owner_kind = 'G' AND owner_id = ?",
+                BigDecimal.class, groupId);
+        return rows.isEmpty() ? BigDecimal.ZERO : rows.get(0);
+    }
+
+    /* Reconciliation */
+
+    public List<Mismatch> findMismatches() {
+        return jdbc.query(MISMATCH_SQL, (rs, i) -> new Mismatch(
+                rs.getString(1).charAt(0), rs.getLong(2), rs.getBigDecimal(3), rs.getBigDecimal(4)));
+    }
+
+    /**
+     * Recomputes one owner's balance from the raw credits under the balance row lock.
+     * @return true when the stored value was actually changed
+     */
+    @Transactional
+    public boolean repair(char ownerKind, long ownerId) {
+        return resync(ownerKind, ownerId);
+    }
+
+    /**
+     * Same as {@link #repair} in the caller's transaction (which must have flushed its credit writes).
+     * The row is created first when missing: locking an absent row locks nothing, and a concurrent
+     * {@link #credit} could then commit its delta between the raw read and the SET and lose it.
+     * @return true when the stored value was actually changed
+     */
+    public boolean resync(char ownerKind, long ownerId) {
+        String kind = String.valueOf(ownerKind);
+        jdbc.update(ENSURE_SQL, kind, ownerId);
+        BigDecimal current = jdbc.queryForObject(LOCK_ONE_SQL, BigDecimal.class, kind, ownerId);
+        // read after the lock: any writer that got there first has committed and is counted
+        BigDecimal raw = jdbc.queryForObject(ownerKind == GROUP ? RAW_GROUP_SQL : RAW_USER_SQL,
+                BigDecimal.class, ownerId);
+        if (raw == null || (current != null && current.compareTo(raw) == 0)) return false;
+        jdbc.update(SET_SQL, kind, ownerId, raw);
+        return true;
+    }
+}
@@ -4,6 +4,8 @@ import com.ttclub.backend.booking.model.TableRentalCredit;
 import com.ttclub.backend.booking.model.TableRentalPackage;
 import com.ttclub.backend.booking.model.TableRentalPurchase;
 import com.ttclub.backend.booking.repository.TableRentalPurchaseRepository;
+import com.ttclub.backend.service.FinanceLedgerWriter;
+import com.ttclub.backend.service.PaymentIntentSingleFlight;
 import jakarta.persistence.EntityManager;
 import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
@@ -18,16 +20,35 @@ public class TableRentalPurchaseOrchestrator {
     private static final Logger log = LoggerFactory.getLogger(TableRentalPurchaseOrchestrator.class);
 
     private final TableRentalPurchaseRepository purchases;
+    private final TableCreditLedger ledger;
+    private final FinanceLedgerWriter finance;
+    private final PaymentIntentSingleFlight singleFlight;
     private final EntityManager em;
 
     public TableRentalPurchaseOrchestrator(TableRentalPurchaseRepository purchases,
+                                           TableCreditLedger ledger,
+                                           FinanceLedgerWriter finance,
+                                           PaymentIntentSingleFlight singleFlight,
                                            EntityManager em) {
         this.purchases = purchases;
+        this.ledger = ledger;
+        this.finance = finance;
+        this.singleFlight = singleFlight;
         this.em = em;
     }
 
+    /** Marks the payment SUCCEEDED and provisions it; single-flight per PaymentIntent. */
     @Transactional
     public void onSucceeded(String paymentIntentId, Long bookingIdFromMeta) {
+        singleFlight.run("table-rental.succeeded", paymentIntentId, () -> succeeded(paymentIntentId, bookingIdFromMeta));
+    }
+
+    @Transactional
+    public void onFailedOrCanceled(String paymentIntentId) {
+        singleFlight.run("table-rental.canceled", paymentIntentId, () -> failedOrCanceled(paymentIntentId));
+    }
+
+    private void succeeded(String paymentIntentId, Long bookingIdFromMeta) {
         TableRentalPurchase trp = null;
         if (bookingIdFromMeta != null) {
             trp = purchases.findById(bookingIdFromMeta).orElse(null);
@@ -45,6 +66,7 @@ public class TableRentalPurchaseOrchestrator {
 
         trp.setStatus(TableRentalPurchase.Status.SUCCEEDED);
         purchases.save(trp);
+        finance.tableRentalPaid(trp);
 
         // Provision credits (individual balance)
         TableRentalPackage pack = em.find(TableRentalPackage.class, trp.getPack().getId());
@@ -56,10 +78,10 @@ public class TableRentalPurchaseOrchestrator {
         trc.setSourcePlan(null);
         trc.setHoursRemaining(hours);
         em.persist(trc);
+        ledger.credit(trp.getUser().getId(), null, hours);
     }
 
-    @Transactional
-    public void onFailedOrCanceled(String paymentIntentId) {
+    private void failedOrCanceled(String paymentIntentId) {
         purchases.findByStripePaymentIntentId(paymentIntentId).ifPresent(p -> {
             if (p.getStatus() == TableRentalPurchase.Status.PENDING) {
                 p.setStatus(TableRentalPurchase.Status.CANCELED);
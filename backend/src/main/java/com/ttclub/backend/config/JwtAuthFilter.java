@@ -1,7 +1,9 @@
 package com.ttclub.backend.config;
 
+import com.ttclub.backend.model.Role;
+import com.ttclub.backend.model.RoleName;
 import com.ttclub.backend.model.User;
-import com.ttclub.backend.repository.UserRepository;
+import com.ttclub.backend.security.PrincipalCache;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
@@ -14,29 +16,45 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Authenticates requests from the access-token cookie (or Bearer header when enabled).<br>
+ * Notes:
+ *  - The principal comes from PrincipalCache (short TTL, evicted on user changes) instead of a
+ *    users lookup per request.
+ *  - GET/HEAD requests matching ttclub.auth.claims-principal-paths (public, read-only endpoints)
+ *    get a lightweight principal built from the token claims only (id + role), no lookup at all.
+ */
 @Component
 public class JwtAuthFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwt;
-    private final UserRepository users;
+    private final PrincipalCache principals;
 
     private final boolean acceptBearerHeader;
     private final String accessCookieName;
+    private final List<String> claimsPrincipalPaths;
+    private final AntPathMatcher matcher = new AntPathMatcher();
 
     public JwtAuthFilter(JwtUtil jwt,
-                         UserRepository users,
+                         PrincipalCache principals,
                          @Value("${ttclub.auth.accept-bearer-header:false}") boolean acceptBearerHeader,
-                         @Value("${ttclub.cookies.access-name:access_token}") String accessCookieName) {
+                         @Value("${ttclub.cookies.access-name:access_token}") String accessCookieName,
+                         @Value("${ttclub.auth.claims-principal-paths:}") List<String> claimsPrincipalPaths) {
         this.jwt = jwt;
-        this.users = users;
+        this.principals = principals;
         this.acceptBearerHeader = acceptBearerHeader;
         this.accessCookieName = accessCookieName;
+        this.claimsPrincipalPaths = claimsPrincipalPaths.stream()
+                .map(String::trim)
+                .filter(p -> !p.isEmpty())
+                .toList();
     }
 
     @Override
@@ -71,7 +89,9 @@ public class JwtAuthFilter extends OncePerRequestFilter {
                     Claims claims = jwt.parse(raw).getBody();
                     String role = claims.get("role", String.class);
                     Long uid = Long.valueOf(claims.getSubject());
-                    User principal = users.findById(uid).orElse(null);
+                    User principal = useClaimsPrincipal(req)
+                            ? claimsPrincipal(uid, role)
+                            : principals.resolve(uid);
 
                     List<SimpleGrantedAuthority> auths = new ArrayList<>();
                     auths.add(new SimpleGrantedAuthority("ROLE_" + role));
@@ -91,4 +111,23 @@ public class JwtAuthFilter extends OncePerRequestFilter {
 
         chain.doFilter(req, res);
     }
+
+    private boolean useClaimsPrincipal(HttpServletRequest req) {
+        if (claimsPrincipalPaths.isEmpty()) return false;
+        String m = req.getMethod();
+        if (!"GET".equals(m) && !"HEAD".equals(m)) return false;
+        String path = req.getRequestURI().substring(req.getContextPath().length());
+        for (String p : claimsPrincipalPaths) {
+            if (matcher.match(p, path)) return true;
+        }
+        return false;
+    }
+
+    /** Transient, read-only principal (id + role); never saved. */
+    private static User claimsPrincipal(Long uid, String role) {
+        User u = new User();
+        u.setId(uid);
+        if (role != null) u.setRole(new Role(RoleName.valueOf(role)));
+        return u;
+    }
 }
@@ -21,6 +21,7 @@ public class JwtUtil {
     private final long   ttlMs;
     private final String issuer;
     private final String audience;
+    private final JwtParser parser;
 
     public JwtUtil(@Value("${jwt.secret}") String secret,
                    @Value("${jwt.ttl-minutes:60}") long ttlMinutes,
@@ -39,6 +40,13 @@ public class JwtUtil {
         this.ttlMs    = ttlMinutes * 60 * 1_000L;
         this.issuer   = issuer;
         this.audience = audience;
+        // Immutable and thread-safe; built once instead of per request.
+        this.parser   = Jwts.parserBuilder()
+                .setSigningKey(this.key)
+                .setAllowedClockSkewSeconds(30)
+                .requireIssuer(issuer)
+                .requireAudience(audience)
+                .build();
     }
 
     public long getTtlSeconds() {
@@ -70,12 +78,6 @@ public class JwtUtil {
     }
 
     public Jws<Claims> parse(String raw) {
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .setAllowedClockSkewSeconds(30)
-                .requireIssuer(issuer)
-                .requireAudience(audience)
-                .build()
-                .parseClaimsJws(raw);
+        return parser.parseClaimsJws(raw);
     }
 }
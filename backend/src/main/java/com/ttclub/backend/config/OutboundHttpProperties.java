@@ -0,0 +1,67 @@
+package com.ttclub.backend.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-provider settings for outbound HTTP (service/http/OutboundHttp), keyed by provider name
+ * (e.g. ttclub.http.providers.canadapost.read-timeout-ms). Unlisted providers use the defaults.
+ */
+@Component
+@ConfigurationProperties(prefix = "ttclub.http")
+public class OutboundHttpProperties {
+
+    public static class Provider {
+        private int connectTimeoutMs = 2000;
+        private int readTimeoutMs = 5000;
+        /** Bulkhead: max concurrent calls, and how long a caller may wait for a slot. */
+        private int maxConcurrent = 16;
+        private int bulkheadWaitMs = 100;
+        /** Circuit breaker over the last window-size calls. */
+        private int windowSize = 20;
+        private int minimumCalls = 10;
+        private int failureRatePercent = 50;
+        private int openMs = 30000;
+        /** Idempotent calls: send a second copy when the first is slower than this (0 = off). */
+        private int hedgeDelayMs = 0;
+        /** Idempotent calls: total attempts including the first. */
+        private int maxAttempts = 2;
+        /** Idempotent calls: overall budget for all attempts and hedges of one call. */
+        private int deadlineMs = 8000;
+
+        public int getConnectTimeoutMs() { return connectTimeoutMs; }
+        public void setConnectTimeoutMs(int v) { this.connectTimeoutMs = v; }
+        public int getReadTimeoutMs() { return readTimeoutMs; }
+        public void setReadTimeoutMs(int v) { this.readTimeoutMs = v; }
+        public int getMaxConcurrent() { return maxConcurrent; }
+        public void setMaxConcurrent(int v) { this.maxConcurrent = v; }
+        public int getBulkheadWaitMs() { return bulkheadWaitMs; }
+        public void setBulkheadWaitMs(int v) { this.bulkheadWaitMs = v; }
+        public int getWindowSize() { return windowSize; }
+        public void setWindowSize(int v) { this.windowSize = v; }
+        public int getMinimumCalls() { return minimumCalls; }
+        public void setMinimumCalls(int v) { this.minimumCalls = v; }
+        public int getFailureRatePercent() { return failureRatePercent; }
+        public void setFailureRatePercent(int v) { this.failureRatePercent = v; }
+        public int getOpenMs() { return openMs; }
+        public void setOpenMs(int v) { this.openMs = v; }
+        public int getHedgeDelayMs() { return hedgeDelayMs; }
+        public void setHedgeDelayMs(int v) { this.hedgeDelayMs = v; }
+        public int getMaxAttempts() { return maxAttempts; }
+        public void setMaxAttempts(int v) { this.maxAttempts = v; }
+        public int getDeadlineMs() { return deadlineMs; }
+        public void setDeadlineMs(int v) { this.deadlineMs = v; }
+    }
+
+    private Map<String, Provider> providers = new HashMap<>();
+
+    public Map<String, Provider> getProviders() { return providers; }
+    public void setProviders(Map<String, Provider> p) { this.providers = p; }
+
+    public Provider provider(String name) {
+        return providers.getOrDefault(name, new Provider());
+    }
+}
@@ -15,8 +15,6 @@ import org.springframework.http.HttpMethod;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
@@ -107,6 +105,8 @@ public class SecurityConfig {
                                 "/actuator/health",
                                 "/swagger-ui.html", "/swagger-ui/**", "/v3/api-docs/**",
                                 "/oauth2/**", "/login/oauth2/**").permitAll()
+                        /* metrics / info are operational data: staff only */
+                        .requestMatchers("/actuator/**").hasAnyRole("ADMIN", "OWNER")
                         .anyRequest().authenticated())
                 .oauth2Login(oauth -> oauth
                         .userInfoEndpoint(ui -> ui.oidcUserService(oidcSvc))
@@ -121,11 +121,6 @@ public class SecurityConfig {
         return http.build();
     }
 
-    /* password encoder */
-    @Bean public static PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
-    }
-
     /* CORS (property-driven) */
     @Bean
     CorsConfigurationSource corsConfigurationSource(CorsProperties props) {
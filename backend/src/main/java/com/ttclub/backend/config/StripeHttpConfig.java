@@ -0,0 +1,35 @@
+package com.ttclub.backend.config;
+
+import com.stripe.Stripe;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Applies ttclub.http.providers.stripe timeouts to the Stripe SDK's own (pooled) HTTP client.<br>
+ * Notes:
+ *  - Stripe calls create or confirm payments, so they are not hedged and have no fallback;
+ *    retries use the SDK's network retries, which send an idempotency key.
+ */
+@Configuration
+public class StripeHttpConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(StripeHttpConfig.class);
+
+    private final OutboundHttpProperties props;
+
+    public StripeHttpConfig(OutboundHttpProperties props) {
+        this.props = props;
+    }
+
+    @PostConstruct
+    void init() {
+        OutboundHttpProperties.Provider p = props.provider("stripe");
+        Stripe.setConnectTimeout(p.getConnectTimeoutMs());
+        Stripe.setReadTimeout(p.getReadTimeoutMs());
+        Stripe.setMaxNetworkRetries(Math.max(0, p.getMaxAttempts() - 1));
+        log.info("Stripe HTTP: connect {} ms, read {} ms, {} network retries.",
+                p.getConnectTimeoutMs(), p.getReadTimeoutMs(), Math.max(0, p.getMaxAttempts() - 1));
+    }
+}
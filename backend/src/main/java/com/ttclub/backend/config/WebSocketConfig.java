@@ -0,0 +1,98 @@
+package com.ttclub.backend.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+
+import java.security.Principal;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * STOMP over WebSocket for live admin screens (attendance rosters).<br>
+ * Notes:
+ *  - Handshake at /api/ws goes through the JWT API chain, so the STOMP session carries the
+ *    authenticated user from the access cookie; anonymous handshakes are rejected there.
+ *  - /topic/** is served by the in-process simple broker (single node; every node only pushes
+ *    the changes it committed itself). /app/** is routed to @MessageMapping / @SubscribeMapping.
+ *  - Staff-only destinations are enforced per frame; clients may never SEND to /topic/**.
+ *  - Broker heartbeats let dead tablets drop off instead of lingering as half-open sockets.
+ */
+@Configuration
+@EnableWebSocketMessageBroker
+public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+
+    private static final List<String> STAFF_PREFIXES = List.of("/topic/attendance/", "/app/attendance/");
+    private static final Set<String> STAFF_ROLES = Set.of("ROLE_OWNER", "ROLE_ADMIN");
+
+    private final CorsProperties cors;
+    private final TaskScheduler brokerScheduler;
+
+    @Value("${ttclub.ws.heartbeat-ms:10000}")
+    private long heartbeatMs;
+
+    public WebSocketConfig(CorsProperties cors, @Lazy TaskScheduler messageBrokerTaskScheduler) {
+        this.cors = cors;
+        this.brokerScheduler = messageBrokerTaskScheduler;
+    }
+
+    @Override
+    public void registerStompEndpoints(StompEndpointRegistry registry) {
+        List<String> origins = cors.getAllowedOrigins();
+        registry.addEndpoint("/api/ws")
+                .setAllowedOriginPatterns(origins == null ? new String[0] : origins.toArray(String[]::new));
+    }
+
+    @Override
+    public void configureMessageBroker(MessageBrokerRegistry registry) {
+        registry.enableSimpleBroker("/topic")
+                .setHeartbeatValue(new long[]{ heartbeatMs, heartbeatMs })
+                .setTaskScheduler(brokerScheduler);
+        registry.setApplicationDestinationPrefixes("/app");
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                StompHeaderAccessor acc = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+                if (acc == null) return message;
+                StompCommand cmd = acc.getCommand();
+                String dest = acc.getDestination();
+                if (dest == null || (cmd != StompCommand.SUBSCRIBE && cmd != StompCommand.SEND)) return message;
+
+                if (cmd == StompCommand.SEND && dest.startsWith("/topic/")) {
+                    throw new AccessDeniedException("Clients cannot publish to broker destinations.");
+                }
+                if (STAFF_PREFIXES.stream().anyMatch(dest::startsWith) && !isStaff(acc.getUser())) {
+                    throw new AccessDeniedException("Staff only.");
+                }
+                return message;
+            }
+        });
+    }
+
+    private static boolean isStaff(Principal p) {
+        if (!(p instanceof Authentication a) || !a.isAuthenticated()) return false;
+        for (GrantedAuthority ga : a.getAuthorities()) {
+            if (STAFF_ROLES.contains(ga.getAuthority())) return true;
+        }
+        return false;
+    }
+}
@@ -3,6 +3,7 @@ package com.ttclub.backend.controller;
 import com.stripe.exception.StripeException;
 import com.ttclub.backend.dto.OrderDto;
 import com.ttclub.backend.dto.OrderSearchFilter;
+import com.ttclub.backend.dto.OrderSearchPage;
 import com.ttclub.backend.dto.RefundRequestDto;
 import com.ttclub.backend.model.OrderStatus;
 import com.ttclub.backend.service.OrderService;
@@ -38,6 +39,15 @@ public class AdminOrderController {
         return orders.search(filter);
     }
 
+    /* KEYSET SEARCH (GET /api/admin/orders/page?cursor=...&size=50)
+       Same filters; pass nextCursor back as cursor for the next page */
+    @GetMapping("/page")
+    public OrderSearchPage searchPage(@Valid OrderSearchFilter filter,
+                                      @RequestParam(required = false) String cursor,
+                                      @RequestParam(defaultValue = "50") int size) {
+        return orders.searchPage(filter, cursor, size);
+    }
+
     /* PARTIAL or FULL REFUND (POST /{id}/refund) */
     @PostMapping("/{id}/refund")
     @ResponseStatus(HttpStatus.NO_CONTENT)
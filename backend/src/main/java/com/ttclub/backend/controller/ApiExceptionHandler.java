@@ -1,8 +1,10 @@
 package com.ttclub.backend.controller;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.ttclub.backend.service.exceptions.PasswordHashingBusyException;
 import com.ttclub.backend.service.exceptions.RateLimitedException;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.mail.MailException;
@@ -28,6 +30,17 @@ public class ApiExceptionHandler {
         return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(body);
     }
 
+    @ExceptionHandler(PasswordHashingBusyException.class)
+    public ResponseEntity<Map<String,Object>> passwordHashingBusy(PasswordHashingBusyException ex) {
+        Map<String,Object> body = new LinkedHashMap<>();
+        body.put("code", "BUSY");
+        body.put("message", "The server is busy. Try again in a moment.");
+        body.put("retryAfterSec", ex.getRetryAfterSec());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(ex.getRetryAfterSec()))
+                .body(body);
+    }
+
     @ExceptionHandler(value = { com.ttclub.backend.booking.service.DuplicateEnrollmentException.class })
     public ResponseEntity<ApiError> duplicateEnrollment(RuntimeException ex) {
         return ResponseEntity.status(HttpStatus.CONFLICT)
@@ -1,16 +1,14 @@
 package com.ttclub.backend.controller;
 
-import com.ttclub.backend.dto.FinanceRowDto;
 import com.ttclub.backend.service.FinanceService;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
-import java.io.PrintWriter;
+import java.io.OutputStream;
 import java.sql.Timestamp;
 import java.time.LocalDate;
-import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 import jakarta.servlet.http.HttpServletResponse;
 
@@ -23,28 +21,34 @@ public class FinanceController {
 
     public FinanceController(FinanceService svc) { this.svc = svc; }
 
-    /* GET /api/admin/finance/csv?from=2025-01-01&to=2025-01-31 */
+    /* GET /api/admin/finance/csv?from=2025-01-01&to=2025-01-31[&gzip=true] */
     @GetMapping("/csv")
     public void csv(@RequestParam LocalDate from,
                     @RequestParam LocalDate to,
+                    @RequestParam(name = "gzip", defaultValue = "false") boolean gzip,
                     HttpServletResponse res) throws Exception {
 
-        res.setHeader(HttpHeaders.CONTENT_TYPE, "text/csv");
-        res.setHeader(HttpHeaders.CONTENT_DISPOSITION,
-                "attachment; filename=\"finance_%s_%s.csv\""
-                        .formatted(from, to));
-
-        List<FinanceRowDto> rows = svc.fetchBetween(
-                Timestamp.valueOf(from.atStartOfDay()),
-                Timestamp.valueOf(to.plusDays(1).atStartOfDay().minusSeconds(1)));
-
-        try (PrintWriter pw = res.getWriter()) {
-            pw.println("id,date,action,subtotal,shipping,tax,total,status");
-            for (FinanceRowDto r : rows) {
-                pw.printf("%d,%s,%s,%.2f,%.2f,%.2f,%.2f,%s%n",
-                        r.id(), r.ts(), r.action(),
-                        r.subtotal(), r.shipping(), r.tax(), r.total(), r.status());
+        String file = "finance_%s_%s.csv".formatted(from, to) + (gzip ? ".gz" : "");
+        res.setHeader(HttpHeaders.CONTENT_TYPE, gzip ? "application/gzip" : "text/csv");
+        res.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"%s\"".formatted(file));
+
+        // Streamed straight from the cursor; nothing is held in memory beyond the write buffer
+        OutputStream out = res.getOutputStream();
+        if (gzip) {
+            try (GZIPOutputStream gz = new GZIPOutputStream(out, 64 * 1024, true)) {
+                svc.streamCsv(start(from), end(to), gz);
+                gz.finish();
             }
+        } else {
+            svc.streamCsv(start(from), end(to), out);
         }
     }
+
+    private static Timestamp start(LocalDate from) {
+        return Timestamp.valueOf(from.atStartOfDay());
+    }
+
+    private static Timestamp end(LocalDate to) {
+        return Timestamp.valueOf(to.plusDays(1).atStartOfDay().minusSeconds(1));
+    }
 }
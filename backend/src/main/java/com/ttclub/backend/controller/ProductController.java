@@ -27,6 +27,15 @@ public class ProductController {
         return svc.search(q, category, page, size);
     }
 
+    /** Keyset-paginated card search of the active catalogue; pass nextCursor back as cursor. */
+    @GetMapping("/search")
+    public ProductSearchDtos.ProductSearchPage searchCards(@RequestParam(required = false) String q,
+                                                           @RequestParam(required = false) Long category,
+                                                           @RequestParam(required = false) String cursor,
+                                                           @RequestParam(defaultValue = "20") int size) {
+        return svc.searchCards(q, category, cursor, size);
+    }
+
     /* CRUD for owner and admin */
 
     @PreAuthorize("hasRole('ADMIN') or hasRole('OWNER')")
@@ -12,6 +12,7 @@ import org.springframework.web.bind.annotation.*;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/shipping")
@@ -65,9 +66,8 @@ public class ShippingQuoteController {
             throw new IllegalStateException("No cart items available for quote");
 
         /* Canada Post live rates */
-        BigDecimal reg = rates.rateFor(ShippingMethod.REGULAR, items, req.shippingAddress());
-        BigDecimal exp = rates.rateFor(ShippingMethod.EXPRESS, items, req.shippingAddress());
+        Map<ShippingMethod, BigDecimal> all = rates.ratesFor(items, req.shippingAddress());
 
-        return new ShippingQuoteResponse(reg, exp);
+        return new ShippingQuoteResponse(all.get(ShippingMethod.REGULAR), all.get(ShippingMethod.EXPRESS));
     }
 }
@@ -0,0 +1,13 @@
+package com.ttclub.backend.dto;
+
+import java.util.List;
+
+/**
+ * One keyset page of the admin order search (GET /api/admin/orders/page).<br>
+ * nextCursor is null on the last page. estimatedTotal is only filled on the first page
+ * (null afterwards); totalExact tells whether it is a real count or the planner's estimate.
+ */
+public record OrderSearchPage(List<OrderDto> items,
+                              String nextCursor,
+                              Long estimatedTotal,
+                              boolean totalExact) { }
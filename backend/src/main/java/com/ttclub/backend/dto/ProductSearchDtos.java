@@ -0,0 +1,21 @@
+package com.ttclub.backend.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/** Lightweight product search results (GET /api/products/search). */
+public final class ProductSearchDtos {
+
+    public record ProductCardDto(Long id,
+                                 String sku,
+                                 String name,
+                                 String brand,
+                                 BigDecimal price,
+                                 Integer inventoryQty,
+                                 Long categoryId,
+                                 String categoryName,
+                                 String imageUrl) { }
+
+    /** nextCursor is null on the last page; mode is "browse", "fulltext" or "fuzzy". */
+    public record ProductSearchPage(List<ProductCardDto> items, String nextCursor, String mode) { }
+}
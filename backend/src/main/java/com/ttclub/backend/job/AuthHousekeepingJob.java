@@ -0,0 +1,188 @@
+package com.ttclub.backend.job;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Purges expired / consumed auth artefacts: refresh tokens, pre-auth (MFA step) sessions,
+ * e-mail verification codes and used MFA recovery codes; plus processed entries of the
+ * program_slot_changes journal, which the slot materialiser never reads again.
+ * - Each table is emptied in chunks of DELETE ... WHERE ctid IN (SELECT ctid ... LIMIT batch-size),
+ *   one autocommit statement per chunk with jobs.auth-housekeeping.pause-ms between chunks, so no
+ *   pass holds row locks for long or starves the request path.
+ * - Rows become purgeable retention-min minutes after their cut-off column (expires_at, used_at
+ *   for recovery codes, processed_at for the journal; a null cut-off is never purged, so pending
+ *   journal rows stay); a pass stops a table after max-batches chunks and picks up on the next one.
+ * - Leader election: a pass runs on one pooled connection holding a session pg_try_advisory_lock;
+ *   nodes that do not get it skip the pass. The lock goes with the session if the node dies.
+ * - Metrics per table: ttclub.auth.housekeeping.purged (rows) and
+ *   ttclub.auth.housekeeping.lag-seconds (age of the oldest row still past its cut-off).
+ * - The pass (pauses included) runs on the job's own thread via {@link BackgroundPass}; ticks
+ *   during a pass are skipped.
+ * - Enabled by default; disable via jobs.auth-housekeeping.enabled=false.
+ */
+@Component
+@ConditionalOnProperty(
+        name = "jobs.auth-housekeeping.enabled",
+        havingValue = "true",
+        matchIfMissing = true
+)
+public class AuthHousekeepingJob {
+
+    private static final Logger log = LoggerFactory.getLogger(AuthHousekeepingJob.class);
+
+    /* two-int advisory lock key: class "hk" (housekeeping), job 1 */
+    private static final int LOCK_CLASS = 0x686b;
+    private static final int LOCK_ID = 1;
+
+    /** One purgeable table: rows with column < now() - retention are deleted. */
+    private record Target(String table, String column, long retentionMin, Counter purged, AtomicLong lagSeconds) {
+
+        String deleteSql() {
+            return "DELETE FROM " + table + " WHERE ctid IN (SELECT ctid FROM " + table
+                    + " WHERE " + column + " < now() - ? * interval '1 minute' LIMIT ?)";
+        }
+
+        String lagSql() {
+            return "SELECT coalesce(extract(epoch FROM now() - min(" + column + ")), 0) FROM " + table
+                    + " WHERE " + column + " < now() - ? * interval '1 minute'";
+        }
+    }
+
+    private final JdbcTemplate jdbc;
+    private final List<Target> targets;
+    private final BackgroundPass pass = new BackgroundPass("auth-housekeeping", this::purge);
+
+    @Value("${jobs.auth-housekeeping.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${jobs.auth-housekeeping.pause-ms:50}")
+    private long pauseMs;
+
+    @Value("${jobs.auth-housekeeping.max-batches:200}")
+    private int maxBatches;
+
+    public AuthHousekeepingJob(JdbcTemplate jdbc,
+                               MeterRegistry meters,
+                               @Value("${jobs.auth-housekeeping.retention-min.refresh-tokens:1440}") long refreshTokens,
+                               @Value("${jobs.auth-housekeeping.retention-min.pre-auth-sessions:60}") long preAuth,
+                               @Value("${jobs.auth-housekeeping.retention-min.email-codes:60}") long emailCodes,
+                               @Value("${jobs.auth-housekeeping.retention-min.mfa-recovery-codes:43200}") long recovery,
+                               @Value("${jobs.auth-housekeeping.retention-min.slot-changes:43200}") long slotChanges) {
+        this.jdbc = jdbc;
+        this.targets = List.of(
+                target(meters, "refresh_tokens", "expires_at", refreshTokens),
+                target(meters, "pre_auth_sessions", "expires_at", preAuth),
+                target(meters, "email_verification_codes", "expires_at", emailCodes),
+                target(meters, "user_mfa_recovery_codes", "used_at", recovery),
+                target(meters, "program_slot_changes", "processed_at", slotChanges));
+    }
+
+    @Scheduled(fixedDelayString = "${jobs.auth-housekeeping.interval-ms:600000}", initialDelay = 120000)
+    public void tick() {
+        pass.trigger();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pass.close();
+    }
+
+    /** One purge pass over every table (blocking; runs on the job's worker thread). */
+    public void purge() {
+        jdbc.execute((ConnectionCallback<Void>) con -> {
+            if (!con.getAutoCommit()) con.setAutoCommit(true);   // one short transaction per chunk
+            if (!tryLock(con)) {
+                log.debug("AuthHousekeepingJob: another node holds the housekeeping lock; skipping.");
+                return null;
+            }
+            try {
+                for (Target t : targets) {
+                    long n = purge(con, t);
+                    if (n > 0) log.info("AuthHousekeepingJob: purged {} row(s) from {}.", n, t.table());
+                }
+            } finally {
+                unlock(con);
+            }
+            return null;
+        });
+    }
+
+    /* internals */
+
+    private long purge(Connection con, Target t) throws SQLException {
+        long total = 0;
+        try (PreparedStatement ps = con.prepareStatement(t.deleteSql())) {
+            for (int i = 0; i < Math.max(1, maxBatches); i++) {
+                ps.setLong(1, t.retentionMin());
+                ps.setInt(2, Math.max(1, batchSize));
+                int n = ps.executeUpdate();
+                total += n;
+                t.purged().increment(n);
+                if (n < batchSize || !pause()) break;
+            }
+        }
+        try (PreparedStatement ps = con.prepareStatement(t.lagSql())) {
+            ps.setLong(1, t.retentionMin());
+            try (ResultSet rs = ps.executeQuery()) {
+                t.lagSeconds().set(rs.next() ? rs.getLong(1) : 0);
+            }
+        }
+        return total;
+    }
+
+    /** False when interrupted (shutdown): the pass ends early. */
+    private boolean pause() {
+        if (pauseMs <= 0) return true;
+        try {
+            Thread.sleep(pauseMs);
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static boolean tryLock(Connection con) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement("SELECT pg_try_advisory_lock(?, ?)")) {
+            ps.setInt(1, LOCK_CLASS);
+            ps.setInt(2, LOCK_ID);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+
+    private static void unlock(Connection con) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement("SELECT pg_advisory_unlock(?, ?)")) {
+            ps.setInt(1, LOCK_CLASS);
+            ps.setInt(2, LOCK_ID);
+            ps.executeQuery().close();
+        }
+    }
+
+    private static Target target(MeterRegistry meters, String table, String column, long retentionMin) {
+        AtomicLong lag = new AtomicLong();
+        meters.gauge("ttclub.auth.housekeeping.lag-seconds", Tags.of("table", table), lag);
+        return new Target(table, column, Math.max(0, retentionMin),
+                Counter.builder("ttclub.auth.housekeeping.purged").tag("table", table).register(meters),
+                lag);
+    }
+}
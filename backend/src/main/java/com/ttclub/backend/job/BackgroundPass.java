@@ -0,0 +1,56 @@
+package com.ttclub.backend.job;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs a job's pass on the job's own daemon thread, so the @Scheduled tick only hands it over and
+ * the shared scheduler threads are never parked by a long (paced, or blocking) pass.<br>
+ * Notes:
+ *  - At most one pass at a time: a trigger while a pass is still running is skipped.
+ *  - A pass that throws is logged; the next trigger runs normally.
+ *  - close() interrupts a running pass; call it from the job's @PreDestroy.
+ */
+final class BackgroundPass implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(BackgroundPass.class);
+
+    private final String name;
+    private final Runnable pass;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ExecutorService worker;
+
+    BackgroundPass(String name, Runnable pass) {
+        this.name = name;
+        this.pass = pass;
+        this.worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, name);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Hands a pass to the worker thread; false (and nothing runs) while the previous one is still running. */
+    boolean trigger() {
+        if (!running.compareAndSet(false, true)) return false;
+        worker.execute(() -> {
+            try {
+                pass.run();
+            } catch (RuntimeException ex) {
+                log.warn("{}: pass failed: {}", name, ex.getMessage());
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public void close() {
+        worker.shutdownNow();
+    }
+}
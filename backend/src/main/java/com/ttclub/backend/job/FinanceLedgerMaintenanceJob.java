@@ -0,0 +1,75 @@
+package com.ttclub.backend.job;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Housekeeping for the finance ledger.
+ * - Table mode (default): makes sure monthly finance_ledger partitions exist for the current
+ *   month and jobs.finance-ledger.months-ahead months after it (at startup and monthly), so
+ *   writes never land in finance_ledger_default.
+ * - View mode (ttclub.finance.ledger.mode=view): legacy fallback that periodically runs
+ *   REFRESH MATERIALIZED VIEW CONCURRENTLY on finance_ledger_mv.
+ */
+@Component
+public class FinanceLedgerMaintenanceJob {
+
+    private static final Logger log = LoggerFactory.getLogger(FinanceLedgerMaintenanceJob.class);
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+    private final JdbcTemplate jdbc;
+
+    @Value("${ttclub.finance.ledger.mode:table}")
+    private String mode;
+
+    @Value("${jobs.finance-ledger.months-ahead:3}")
+    private int monthsAhead;
+
+    public FinanceLedgerMaintenanceJob(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        ensurePartitions();
+    }
+
+    @Scheduled(cron = "${jobs.finance-ledger.partition-cron:0 15 1 1 * *}")
+    public void ensurePartitions() {
+        LocalDate month = LocalDate.now().withDayOfMonth(1);
+        int created = 0;
+        for (int i = 0; i <= Math.max(0, monthsAhead); i++) {
+            LocalDate from = month.plusMonths(i);
+            String name = "finance_ledger_" + from.format(SUFFIX);
+            try {
+                Boolean exists = jdbc.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, name);
+                if (Boolean.TRUE.equals(exists)) continue;
+                jdbc.execute("CREATE TABLE IF NOT EXISTS " + name
+                        + " PARTITION OF finance_ledger FOR VALUES FROM ('" + from + "') TO ('" + from.plusMonths(1) + "')");
+                created++;
+            } catch (DataAccessException ex) {
+                // e.g. rows for that month already sit in the default partition
+                log.warn("Could not create finance ledger partition {}: {}", name, ex.getMostSpecificCause().getMessage());
+            }
+        }
+        if (created > 0) log.info("Finance ledger: created {} monthly partition(s).", created);
+    }
+
+    @Scheduled(cron = "${jobs.finance-ledger.refresh-cron:0 */15 * * * *}")
+    public void refreshView() {
+        if (!"view".equalsIgnoreCase(mode)) return;
+        long t0 = System.currentTimeMillis();
+        jdbc.execute("REFRESH MATERIALIZED VIEW CONCURRENTLY finance_ledger_mv");
+        log.info("Finance ledger view refreshed in {} ms.", System.currentTimeMillis() - t0);
+    }
+}
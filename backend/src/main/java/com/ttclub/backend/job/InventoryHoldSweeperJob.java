@@ -0,0 +1,105 @@
+package com.ttclub.backend.job;
+
+import com.stripe.exception.StripeException;
+import com.stripe.model.PaymentIntent;
+import com.ttclub.backend.service.InventoryService;
+import com.ttclub.backend.service.InventoryService.ExpiredHold;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Releases stock held by PENDING_PAYMENT orders whose hold has expired.
+ * - Expired orders are read in batches (oldest first, jobs.inventory-holds.batch-size per pass).
+ * - The hold is tied to the order's PaymentIntent: it is only released once the PI can no
+ *   longer be paid (cancelled here, or already cancelled). A PI that succeeded or is still
+ *   processing keeps its hold for another TTL, so the webhook captures it and a paid order
+ *   never runs short of stock.
+ * - Orders without a PI (checkout failed before one was created) are released directly.
+ * - Release + order cancellation run in one transaction per order; Stripe is called outside it.
+ * - A pass makes blocking Stripe calls, so it runs on the job's own thread via
+ *   {@link BackgroundPass}; ticks during a pass are skipped.
+ * - Enabled by default; disable via jobs.inventory-holds.enabled=false.
+ */
+@Component
+@ConditionalOnProperty(
+        name = "jobs.inventory-holds.enabled",
+        havingValue = "true",
+        matchIfMissing = true
+)
+public class InventoryHoldSweeperJob {
+
+    private static final Logger log = LoggerFactory.getLogger(InventoryHoldSweeperJob.class);
+
+    /* PaymentIntent states that may still turn into a successful payment without the customer */
+    private static final Set<String> STILL_PAYABLE = Set.of("succeeded", "processing", "requires_capture");
+
+    private final InventoryService inventory;
+    private final Counter released;
+    private final Counter extended;
+    private final BackgroundPass pass = new BackgroundPass("inventory-hold-sweeper", this::sweep);
+
+    @Value("${jobs.inventory-holds.batch-size:100}")
+    private int batchSize;
+
+    public InventoryHoldSweeperJob(InventoryService inventory, MeterRegistry meters) {
+        this.inventory = inventory;
+        this.released = Counter.builder("ttclub.inventory.holds.expired").tag("result", "released").register(meters);
+        this.extended = Counter.builder("ttclub.inventory.holds.expired").tag("result", "extended").register(meters);
+    }
+
+    @Scheduled(fixedDelayString = "${jobs.inventory-holds.sweep-ms:60000}", initialDelay = 30000)
+    public void tick() {
+        pass.trigger();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pass.close();
+    }
+
+    /** One sweep pass (blocking; runs on the job's worker thread). */
+    public void sweep() {
+        List<ExpiredHold> batch = inventory.expired(Math.max(1, batchSize));
+        if (batch.isEmpty()) return;
+
+        int rel = 0, ext = 0;
+        for (ExpiredHold h : batch) {
+            try {
+                if (h.paymentIntentId() != null && !cancelPaymentIntent(h.paymentIntentId())) {
+                    inventory.extend(h.orderId());
+                    extended.increment();
+                    ext++;
+                    continue;
+                }
+                inventory.releaseExpired(h.orderId());
+                released.increment();
+                rel++;
+            } catch (StripeException | RuntimeException ex) {
+                // left expired: retried on the next pass
+                log.warn("InventoryHoldSweeperJob: order {} not released: {}", h.orderId(), ex.getMessage());
+            }
+        }
+        log.info("InventoryHoldSweeperJob: {} expired order hold(s): {} released, {} kept for a payable PI.",
+                batch.size(), rel, ext);
+    }
+
+    /** True when the PaymentIntent is (now) cancelled; false when it may still be paid. */
+    private boolean cancelPaymentIntent(String paymentIntentId) throws StripeException {
+        PaymentIntent pi = PaymentIntent.retrieve(paymentIntentId);
+        String status = pi.getStatus();
+        if ("canceled".equals(status)) return true;
+        if (STILL_PAYABLE.contains(status)) return false;
+        pi.cancel();
+        return true;
+    }
+}
@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 
 import java.time.Instant;
 import java.util.Objects;
+import java.util.UUID;
 
 @Entity
 @Table(name = "refresh_tokens")
@@ -30,12 +31,21 @@ public class RefreshToken {
     @Column(nullable = false)
     private Instant createdAt = Instant.now();
 
+    /** Rotation family (one per login); see RefreshTokenStore */
+    @Column(name = "family_id", nullable = false)
+    private UUID familyId;
+
+    /** Set when rotated, or when the family was revoked (reuse / logout) */
+    @Column(name = "revoked_at")
+    private Instant revokedAt;
+
     protected RefreshToken() { }
 
     public RefreshToken(String token, User user, Instant expiresAt) {
         this.token     = token;
         this.user      = user;
         this.expiresAt = expiresAt;
+        this.familyId  = UUID.randomUUID();
     }
 
     public Long      getId()        { return id; }
@@ -43,12 +53,16 @@ public class RefreshToken {
     public User      getUser()      { return user; }
     public Instant   getExpiresAt() { return expiresAt; }
     public Instant   getCreatedAt() { return createdAt; }
+    public UUID      getFamilyId()  { return familyId; }
+    public Instant   getRevokedAt() { return revokedAt; }
 
     public void setId(Long id)                { this.id = id; }
     public void setToken(String token)        { this.token = token; }
     public void setUser(User user)            { this.user = user; }
     public void setExpiresAt(Instant expires) { this.expiresAt = expires; }
     public void setCreatedAt(Instant created) { this.createdAt = created; }
+    public void setFamilyId(UUID familyId)    { this.familyId = familyId; }
+    public void setRevokedAt(Instant revoked) { this.revokedAt = revoked; }
 
     @Override public boolean equals(Object o) {
         if (this == o) return true;
@@ -1,45 +1,142 @@
 package com.ttclub.backend.repository;
 
 import com.ttclub.backend.model.Product;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
 
 /**
  * Product repository with a PostgreSQL full-text / trigram search.
  *
- * <p>The native query behaves as follows:</p>
+ * <p>All search queries run over the stored, GIN-indexed <code>search_vector</code>
+ * column (V53) and push filters, ordering and LIMIT into SQL:</p>
  * <ul>
- *   <li>If <code>:q</code> is an empty string, it returns <em>all</em> products
- *       ordered by name - a convenient fall-back when the caller only
- *       filters by category.</li>
- *   <li>Otherwise it ranks matches by <code>ts_rank</code>
- *       in descending order.</li>
+ *   <li>{@link #searchPage} - offset pages of entities for the classic endpoint. An empty
+ *       <code>:q</code> lists everything by name, otherwise matches are ranked by
+ *       <code>ts_rank</code>.</li>
+ *   <li>{@link #browseCards}, {@link #fullTextCards}, {@link #fuzzyCards} - keyset pages of
+ *       lightweight projections for the search endpoint. The caller passes the last row's sort
+ *       key; <code>:lim</code> is page size + 1 so the caller can tell whether there is more.</li>
  * </ul>
  */
 public interface ProductRepository extends JpaRepository<Product, Long> {
 
     Optional<Product> findBySku(String sku);
 
+    /** Projection for search result cards (no entity hydration, no image collection). */
+    interface ProductCardView {
+        Long getId();
+        String getSku();
+        String getName();
+        String getBrand();
+        BigDecimal getPrice();
+        Integer getInventoryQty();
+        Long getCategoryId();
+        String getCategoryName();
+        String getImageUrl();
+        Float getScore();
+    }
+
     /**
-     * Full-text search over product name + description.
-     * @param q the raw user query (can be blank).
+     * Full-text search over name, brand and description, paged in SQL.
+     * @param q the raw user query (blank = no text filter).
+     * @param categoryId optional category filter.
      */
     @Query(value = """
-        SELECT *
-        FROM products
-        WHERE (:q = '' OR
-               to_tsvector('simple', name || ' ' || coalesce(description, ''))
-                   @@ plainto_tsquery('simple', :q))
+        SELECT p.*
+        FROM products p
+        WHERE (:q = '' OR p.search_vector @@ plainto_tsquery('simple', :q))
+          AND (CAST(:categoryId AS bigint) IS NULL OR p.category_id = CAST(:categoryId AS bigint))
         ORDER BY
-            CASE WHEN :q = '' THEN name END ASC,
-            ts_rank(
-              to_tsvector('simple', name || ' ' || coalesce(description, '')),
-              plainto_tsquery('simple', :q)
-            ) DESC
+            CASE WHEN :q = '' THEN p.name END ASC,
+            ts_rank(p.search_vector, plainto_tsquery('simple', :q)) DESC,
+            p.id ASC
+        """,
+        countQuery = """
+        SELECT count(*)
+        FROM products p
+        WHERE (:q = '' OR p.search_vector @@ plainto_tsquery('simple', :q))
+          AND (CAST(:categoryId AS bigint) IS NULL OR p.category_id = CAST(:categoryId AS bigint))
+        """,
+        nativeQuery = true)
+    Page<Product> searchPage(@Param("q") String q,
+                             @Param("categoryId") Long categoryId,
+                             Pageable pageable);
+
+    /** Active catalogue by (name, id) after the given key (null afterName = first page). */
+    @Query(value = CARD_COLUMNS + """
+        , NULL AS score
+        FROM products p
+        LEFT JOIN categories c ON c.id = p.category_id
+        WHERE p.is_active
+          AND (CAST(:categoryId AS bigint) IS NULL OR p.category_id = CAST(:categoryId AS bigint))
+          AND (CAST(:afterName AS text) IS NULL
+               OR (p.name, p.id) > (CAST(:afterName AS text), CAST(:afterId AS bigint)))
+        ORDER BY p.name, p.id
+        LIMIT :lim
+        """, nativeQuery = true)
+    List<ProductCardView> browseCards(@Param("categoryId") Long categoryId,
+                                      @Param("afterName") String afterName,
+                                      @Param("afterId") long afterId,
+                                      @Param("lim") int lim);
+
+    /** Ranked full-text matches by (rank desc, id) after the given key (null afterScore = first page). */
+    @Query(value = "WITH q AS (SELECT plainto_tsquery('simple', :q) AS tsq) " + CARD_COLUMNS + """
+        , r.score
+        FROM products p
+        CROSS JOIN q
+        CROSS JOIN LATERAL (SELECT ts_rank(p.search_vector, q.tsq) AS score) r
+        LEFT JOIN categories c ON c.id = p.category_id
+        WHERE p.is_active
+          AND p.search_vector @@ q.tsq
+          AND (CAST(:categoryId AS bigint) IS NULL OR p.category_id = CAST(:categoryId AS bigint))
+          AND (CAST(:afterScore AS real) IS NULL
+               OR r.score < CAST(:afterScore AS real)
+               OR (r.score = CAST(:afterScore AS real) AND p.id > CAST(:afterId AS bigint)))
+        ORDER BY r.score DESC, p.id
+        LIMIT :lim
         """, nativeQuery = true)
-    List<Product> fullTextSearch(@Param("q") String q);
+    List<ProductCardView> fullTextCards(@Param("q") String q,
+                                        @Param("categoryId") Long categoryId,
+                                        @Param("afterScore") Float afterScore,
+                                        @Param("afterId") long afterId,
+                                        @Param("lim") int lim);
+
+    /** Trigram (typo-tolerant) name matches by (similarity desc, id); used when full text finds nothing. */
+    @Query(value = CARD_COLUMNS + """
+        , r.score
+        FROM products p
+        CROSS JOIN LATERAL (SELECT similarity(lower(p.name), lower(:q)) AS score) r
+        LEFT JOIN categories c ON c.id = p.category_id
+        WHERE p.is_active
+          AND lower(p.name) % lower(:q)
+          AND (CAST(:categoryId AS bigint) IS NULL OR p.category_id = CAST(:categoryId AS bigint))
+          AND (CAST(:afterScore AS real) IS NULL
+               OR r.score < CAST(:afterScore AS real)
+               OR (r.score = CAST(:afterScore AS real) AND p.id > CAST(:afterId AS bigint)))
+        ORDER BY r.score DESC, p.id
+        LIMIT :lim
+        """, nativeQuery = true)
+    List<ProductCardView> fuzzyCards(@Param("q") String q,
+                                     @Param("categoryId") Long categoryId,
+                                     @Param("afterScore") Float afterScore,
+                                     @Param("afterId") long afterId,
+                                     @Param("lim") int lim);
+
+    String CARD_COLUMNS = """
+        SELECT p.id, p.sku, p.name, p.brand, p.price,
+               p.inventory_qty AS "inventoryQty",
+               p.category_id   AS "categoryId",
+               c.name          AS "categoryName",
+               (SELECT i.url FROM product_images i
+                 WHERE i.product_id = p.id
+                 ORDER BY i.is_primary DESC, i.sort_order, i.id
+                 LIMIT 1)      AS "imageUrl"
+        """;
 }
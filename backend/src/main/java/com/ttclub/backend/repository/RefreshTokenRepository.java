@@ -1,13 +0,0 @@
-package com.ttclub.backend.repository;
-
-import com.ttclub.backend.model.RefreshToken;
-import org.springframework.data.jpa.repository.JpaRepository;
-
-import java.util.Optional;
-
-public interface RefreshTokenRepository
-        extends JpaRepository<RefreshToken, Long> {
-
-    Optional<RefreshToken> findByToken(String token);
-    void deleteByToken(String token);
-}
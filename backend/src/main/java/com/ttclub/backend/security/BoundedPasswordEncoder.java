@@ -0,0 +1,137 @@
+package com.ttclub.backend.security;
+
+import com.ttclub.backend.service.exceptions.PasswordHashingBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The application's PasswordEncoder: BCrypt, run on a dedicated CPU-sized pool.<br>
+ * Notes:
+ *  - A login storm would otherwise put BCrypt on every request thread at once and starve the
+ *    rest of the API. Here at most ttclub.auth.password-hashing.threads hashes run concurrently
+ *    (default: available processors) and at most queue-capacity wait behind them.
+ *  - When the queue is full, or a caller has waited max-wait-ms, the call fails fast with
+ *    PasswordHashingBusyException (503 + Retry-After) instead of piling up.
+ *  - Callers should hash outside transactions (AuthService register/login/reset, UserService
+ *    changePasswordOwn): a caller parked here inside one holds a pooled DB connection for up to
+ *    max-wait-ms. The remaining in-transaction callers (admin resets, MFA, OIDC provisioning) are
+ *    low-volume and rate-limited; do not move a bulk flow into that group.
+ *  - bcrypt-cost is the work factor for new hashes. {@link #upgradeEncoding} reports hashes of
+ *    any other cost, so AuthService.login rehashes them once the password has been verified.
+ *  - Metrics: ttclub.auth.password-hash{op} (hash time), ttclub.auth.password-hash.wait (queue
+ *    time), ttclub.auth.password-hash.queue / .active gauges and .rejected counter.
+ */
+@Component
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private static final Pattern BCRYPT_COST = Pattern.compile("^\\$2[abxy]?\\$(\\d\\d)\\$");
+
+    private final BCryptPasswordEncoder bcrypt;
+    private final int cost;
+    private final ThreadPoolExecutor pool;
+    private final long maxWaitMs;
+    private final long retryAfterSec;
+
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+    private final Timer waitTimer;
+    private final Counter rejected;
+
+    public BoundedPasswordEncoder(MeterRegistry meters,
+                                  @Value("${ttclub.auth.password-hashing.bcrypt-cost:10}") int cost,
+                                  @Value("${ttclub.auth.password-hashing.threads:0}") int threads,
+                                  @Value("${ttclub.auth.password-hashing.queue-capacity:64}") int queueCapacity,
+                                  @Value("${ttclub.auth.password-hashing.max-wait-ms:5000}") long maxWaitMs,
+                                  @Value("${ttclub.auth.password-hashing.retry-after-sec:2}") long retryAfterSec) {
+        this.cost = Math.min(31, Math.max(4, cost));
+        this.bcrypt = new BCryptPasswordEncoder(this.cost);
+        this.maxWaitMs = Math.max(1, maxWaitMs);
+        this.retryAfterSec = Math.max(1, retryAfterSec);
+
+        int n = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger seq = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(n, n, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), r -> {
+            Thread t = new Thread(r, "password-hash-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.AbortPolicy());
+
+        this.encodeTimer = Timer.builder("ttclub.auth.password-hash").tag("op", "encode").register(meters);
+        this.matchesTimer = Timer.builder("ttclub.auth.password-hash").tag("op", "matches").register(meters);
+        this.waitTimer = Timer.builder("ttclub.auth.password-hash.wait")
+                .description("Time a hash request waited for a pool thread")
+                .register(meters);
+        this.rejected = Counter.builder("ttclub.auth.password-hash.rejected").register(meters);
+        meters.gauge("ttclub.auth.password-hash.queue", pool, p -> p.getQueue().size());
+        meters.gauge("ttclub.auth.password-hash.active", pool, ThreadPoolExecutor::getActiveCount);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(encodeTimer, () -> bcrypt.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (rawPassword == null || encodedPassword == null || encodedPassword.isEmpty()) return false;
+        return run(matchesTimer, () -> bcrypt.matches(rawPassword, encodedPassword));
+    }
+
+    /** True when the hash was made with a cost other than the configured one (or is not BCrypt). */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null || encodedPassword.isEmpty()) return false;
+        Matcher m = BCRYPT_COST.matcher(encodedPassword);
+        return !m.find() || Integer.parseInt(m.group(1)) != cost;
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    /* internals */
+
+    private <T> T run(Timer timer, Callable<T> work) {
+        long queuedAt = System.nanoTime();
+        Future<T> f;
+        try {
+            f = pool.submit(() -> {
+                waitTimer.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                return timer.recordCallable(work);
+            });
+        } catch (RejectedExecutionException ex) {
+            rejected.increment();
+            throw new PasswordHashingBusyException(retryAfterSec);
+        }
+
+        try {
+            return f.get(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            f.cancel(true);
+            rejected.increment();
+            throw new PasswordHashingBusyException(retryAfterSec);
+        } catch (InterruptedException ex) {
+            f.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while hashing a password", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException re) throw re;
+            if (cause instanceof Error err) throw err;
+            throw new IllegalStateException("Password hashing failed", cause);
+        }
+    }
+}
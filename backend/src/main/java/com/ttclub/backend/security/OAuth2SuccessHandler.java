@@ -1,9 +1,7 @@
 package com.ttclub.backend.security;
 
 import com.ttclub.backend.config.JwtUtil;
-import com.ttclub.backend.model.RefreshToken;
 import com.ttclub.backend.model.User;
-import com.ttclub.backend.repository.RefreshTokenRepository;
 import com.ttclub.backend.repository.UserRepository;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -16,22 +14,16 @@ import org.springframework.stereotype.Component;
 import java.io.IOException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.time.Instant;
-import java.util.UUID;
 
 @Component
 public class OAuth2SuccessHandler implements AuthenticationSuccessHandler {
 
     private final JwtUtil jwt;
     private final UserRepository users;
-    private final RefreshTokenRepository refreshTokens;
+    private final RefreshTokenStore refreshTokens;
     private final TokenCookieService cookies;
-    private final TokenHashingService hasher;
     private final String frontendUrl;
 
-    /** 12h sliding TTL (seconds) injected from yml */
-    private final long refreshTtlSec;
-
     /**
      * If true we include tokens in the redirect URL for legacy SPAs.
      * This must match ttclub.auth.redirect-include-tokens in application.yml.
@@ -41,19 +33,15 @@ public class OAuth2SuccessHandler implements AuthenticationSuccessHandler {
     public OAuth2SuccessHandler(
             JwtUtil jwt,
             UserRepository users,
-            RefreshTokenRepository refreshTokens,
+            RefreshTokenStore refreshTokens,
             TokenCookieService cookies,
-            TokenHashingService hasher,
             @Value("${ttclub.frontend-url:http://localhost:5173}") String feUrl,
-            @Value("${ttclub.auth.refresh-ttl-sec:43200}") long refreshTtlSec,
             @Value("${ttclub.auth.redirect-include-tokens:false}") boolean redirectIncludeTokens
     ) {
         this.jwt                   = jwt;
         this.users                 = users;
         this.refreshTokens         = refreshTokens;
         this.cookies               = cookies;
-        this.hasher                = hasher;
-        this.refreshTtlSec         = refreshTtlSec;
         this.redirectIncludeTokens = redirectIncludeTokens;
         this.frontendUrl           = feUrl.replaceAll("/+$", "");
     }
@@ -72,13 +60,7 @@ public class OAuth2SuccessHandler implements AuthenticationSuccessHandler {
 
         /* 2 JWT + refresh-token (rotate-like on each OAuth2 login) */
         String access      = jwt.generate(user);
-        String refreshRaw  = UUID.randomUUID().toString();
-        String refreshHash = hasher.hash(refreshRaw);
-
-        refreshTokens.save(new RefreshToken(
-                refreshHash,
-                user,
-                Instant.now().plusSeconds(refreshTtlSec)));
+        String refreshRaw  = refreshTokens.issue(user);
 
         // Always set cookies (additive)
         cookies.writeAuthCookies(res, access, refreshRaw);
@@ -0,0 +1,107 @@
+package com.ttclub.backend.security;
+
+import com.ttclub.backend.model.User;
+import com.ttclub.backend.repository.UserRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Short-TTL cache of authenticated principals keyed by user id (used by JwtAuthFilter).<br>
+ * Notes:
+ *  - Every request receives its own detached copy: some services mutate and save the principal
+ *    (e.g. MfaService), so the cached snapshot itself is never handed out.
+ *  - UserService, AuthService and MfaService call evict(userId) on role/email/password/MFA/deletion
+ *    changes; inside a transaction the eviction is repeated after commit. The TTL bounds staleness
+ *    for any write path that does not evict.
+ */
+@Component
+public class PrincipalCache {
+
+    private record Entry(User snapshot, long expiresAtNanos) { }
+
+    private final UserRepository users;
+    private final Map<Long, Entry> cache = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final int maxSize;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public PrincipalCache(UserRepository users,
+                          MeterRegistry meters,
+                          @Value("${ttclub.auth.principal-cache.ttl-sec:30}") long ttlSec,
+                          @Value("${ttclub.auth.principal-cache.max-size:10000}") int maxSize) {
+        this.users = users;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(Math.max(0, ttlSec));
+        this.maxSize = Math.max(1, maxSize);
+        this.hits = Counter.builder("ttclub.auth.principal-cache").tag("result", "hit").register(meters);
+        this.misses = Counter.builder("ttclub.auth.principal-cache").tag("result", "miss").register(meters);
+        meters.gauge("ttclub.auth.principal-cache.size", cache, Map::size);
+    }
+
+    /** Fresh detached copy of the user, or null when the user does not exist. */
+    public User resolve(Long userId) {
+        long now = System.nanoTime();
+        Entry e = cache.get(userId);
+        if (e != null && e.expiresAtNanos() - now > 0) {
+            hits.increment();
+            return copyOf(e.snapshot());
+        }
+        misses.increment();
+
+        User loaded = users.findById(userId).orElse(null);
+        if (loaded == null) {
+            cache.remove(userId);
+            return null;
+        }
+        if (ttlNanos > 0) {
+            if (cache.size() >= maxSize) {
+                cache.values().removeIf(x -> x.expiresAtNanos() - now <= 0);
+                if (cache.size() >= maxSize) cache.clear();
+            }
+            cache.put(userId, new Entry(copyOf(loaded), now + ttlNanos));
+        }
+        return loaded;
+    }
+
+    /** Drop the cached principal now and, inside a transaction, again after commit. */
+    public void evict(Long userId) {
+        if (userId == null) return;
+        cache.remove(userId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.remove(userId);
+                }
+            });
+        }
+    }
+
+    private static User copyOf(User u) {
+        User c = new User();
+        c.setId(u.getId());
+        c.setEmail(u.getEmail());
+        c.setPasswordHash(u.getPasswordHash());
+        c.setProvider(u.getProvider());
+        c.setRole(u.getRole());
+        c.setFirstName(u.getFirstName());
+        c.setLastName(u.getLastName());
+        c.setCreatedAt(u.getCreatedAt());
+        c.setMfaEnabled(u.getMfaEnabled());
+        c.setMfaSecretEnc(u.getMfaSecretEnc());
+        c.setMfaSecretTmpEnc(u.getMfaSecretTmpEnc());
+        c.setTempPasswordHash(u.getTempPasswordHash());
+        c.setTempPasswordExpiresAt(u.getTempPasswordExpiresAt());
+        c.setDeletedAt(u.getDeletedAt());
+        return c;
+    }
+}
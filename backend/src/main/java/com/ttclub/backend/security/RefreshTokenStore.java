@@ -0,0 +1,168 @@
+package com.ttclub.backend.security;
+
+import com.ttclub.backend.model.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Refresh-token rotation with token families.<br>
+ * Notes:
+ *  - Only the SHA-256 hash is stored (V60 hashed the legacy plaintext rows), so a refresh is one
+ *    indexed lookup by token_hash.
+ *  - A login starts a family; each rotation marks the presented token revoked and adds its
+ *    successor to the family. Rows stay until AuthHousekeepingJob purges them after expiry.
+ *  - Presenting a revoked token again is reuse (stolen / replayed token): the whole family is
+ *    revoked with one UPDATE. A token revoked less than ttclub.auth.refresh.reuse-grace-sec ago
+ *    is only rejected, so two tabs refreshing at once do not log the user out everywhere.
+ *  - Logout revokes the token's family with the same single statement.
+ *  - Revoked families are fed to the optional {@link RevokedTokenFilter}.
+ *  - Runs in the caller's transaction; callers must let the reuse revocation commit.
+ */
+@Component
+public class RefreshTokenStore {
+
+    private static final Logger log = LoggerFactory.getLogger(RefreshTokenStore.class);
+
+    private static final String INSERT_SQL = """
+            INSERT INTO refresh_tokens (token_hash, user_id, family_id, expires_at, created_at)
+            VALUES (?, ?, ?, ?, now())
+            """;
+
+    private static final String LOOKUP_SQL = """
+            SELECT id, user_id, family_id, expires_at, revoked_at FROM refresh_tokens WHERE token_hash = ?
+            """;
+
+    private static final String CLAIM_SQL = """
+            UPDATE refresh_tokens SET revoked_at = now() WHERE id = ? AND revoked_at IS NULL
+            """;
+
+    private static final String REVOKE_FAMILY_SQL = """
+            UPDATE refresh_tokens SET revoked_at = coalesce(revoked_at, now())
+             WHERE family_id = ?
+            RETURNING token_hash
+            """;
+
+    private static final String REVOKE_FAMILY_OF_SQL = """
+            UPDATE refresh_tokens SET revoked_at = coalesce(revoked_at, now())
+             WHERE family_id = (SELECT family_id FROM refresh_tokens WHERE token_hash = ?)
+            RETURNING token_hash
+            """;
+
+    /** A successful rotation: the owner and the new raw token to hand to the client. */
+    public record Rotation(Long userId, String refreshToken) { }
+
+    private record Row(long id, long userId, UUID familyId, Instant expiresAt, Instant revokedAt) { }
+
+    private final JdbcTemplate jdbc;
+    private final TokenHashingService hasher;
+    private final RevokedTokenFilter revoked;
+    private final long refreshTtlSec;
+
+    private final Counter rotated;
+    private final Counter invalid;
+    private final Counter reuse;
+    private final Counter filtered;
+
+    @Value("${ttclub.auth.refresh.reuse-grace-sec:10}")
+    private long reuseGraceSec;
+
+    public RefreshTokenStore(JdbcTemplate jdbc,
+                             TokenHashingService hasher,
+                             RevokedTokenFilter revoked,
+                             MeterRegistry meters,
+                             @Value("${ttclub.auth.refresh-ttl-sec:43200}") long refreshTtlSec) {
+        this.jdbc = jdbc;
+        this.hasher = hasher;
+        this.revoked = revoked;
+        this.refreshTtlSec = refreshTtlSec;
+        this.rotated = Counter.builder("ttclub.auth.refresh").tag("result", "rotated").register(meters);
+        this.invalid = Counter.builder("ttclub.auth.refresh").tag("result", "invalid").register(meters);
+        this.reuse = Counter.builder("ttclub.auth.refresh").tag("result", "reuse").register(meters);
+        this.filtered = Counter.builder("ttclub.auth.refresh").tag("result", "filtered").register(meters);
+    }
+
+    /** Starts a new family for user; @return the raw refresh token */
+    public String issue(User user) {
+        return insert(user.getId(), UUID.randomUUID());
+    }
+
+    /**
+     * Exchanges a raw refresh token for its successor in the same family.
+     * @throws IllegalArgumentException when the token is unknown, expired, revoked or reused
+     */
+    public Rotation rotate(String rawToken) {
+        String hash = hasher.hash(rawToken);
+        if (hash == null) throw new IllegalArgumentException("Invalid refreshToken");
+        if (revoked.mightBeRevoked(hash)) {
+            filtered.increment();
+            throw new IllegalArgumentException("Invalid refreshToken");
+        }
+
+        List<Row> rows = jdbc.query(LOOKUP_SQL, (rs, i) -> new Row(
+                rs.getLong(1),
+                rs.getLong(2),
+                rs.getObject(3, UUID.class),
+                rs.getTimestamp(4).toInstant(),
+                rs.getTimestamp(5) == null ? null : rs.getTimestamp(5).toInstant()), hash);
+        if (rows.isEmpty()) {
+            invalid.increment();
+            throw new IllegalArgumentException("Invalid refreshToken");
+        }
+
+        Row row = rows.get(0);
+        if (row.revokedAt() != null) {
+            rejectRevoked(row);
+        }
+        if (row.expiresAt().isBefore(Instant.now())) {
+            invalid.increment();
+            throw new IllegalArgumentException("Refresh token expired");
+        }
+        if (jdbc.update(CLAIM_SQL, row.id()) == 0) {
+            // a concurrent refresh rotated it between our lookup and this claim
+            invalid.increment();
+            throw new IllegalArgumentException("Invalid refreshToken");
+        }
+
+        rotated.increment();
+        return new Rotation(row.userId(), insert(row.userId(), row.familyId()));
+    }
+
+    /** Revokes the family of the given raw token (logout); unknown tokens are ignored. */
+    public void revokeFamilyOf(String rawToken) {
+        String hash = hasher.hash(rawToken);
+        if (hash == null) return;
+        revoked.addAll(jdbc.queryForList(REVOKE_FAMILY_OF_SQL, String.class, hash));
+    }
+
+    /* internals */
+
+    private void rejectRevoked(Row row) {
+        if (row.revokedAt().isAfter(Instant.now().minusSeconds(Math.max(0, reuseGraceSec)))) {
+            invalid.increment();
+            throw new IllegalArgumentException("Invalid refreshToken");
+        }
+        List<String> hashes = jdbc.queryForList(REVOKE_FAMILY_SQL, String.class, row.familyId());
+        revoked.addAll(hashes);
+        reuse.increment();
+        log.warn("Refresh token reuse for user {}: revoked family {} ({} token(s)).",
+                row.userId(), row.familyId(), hashes.size());
+        throw new IllegalArgumentException("Refresh token reuse detected");
+    }
+
+    private String insert(Long userId, UUID familyId) {
+        String raw = UUID.randomUUID().toString();
+        jdbc.update(INSERT_SQL, hasher.hash(raw), userId, familyId,
+                Timestamp.from(Instant.now().plusSeconds(refreshTtlSec)));
+        return raw;
+    }
+}
@@ -0,0 +1,139 @@
+package com.ttclub.backend.security;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
+
+/**
+ * Optional in-memory Bloom filter of refresh-token hashes whose whole family has been revoked
+ * (reuse detected, logout). RefreshTokenStore rejects a token the filter reports without a query.<br>
+ * Notes:
+ *  - Only dead families are added - never tokens that were merely rotated - so a hit never hides
+ *    reuse detection: the family is already revoked in the DB.
+ *  - A false positive (ttclub.auth.refresh.bloom.fpp) rejects a live token; the user signs in
+ *    again. Misses are harmless: the DB lookup decides as before.
+ *  - Two generations of ttclub.auth.refresh-ttl-sec each: a revoked token has expired before its
+ *    generation is dropped, so the filter stays bounded without deletions.
+ *  - Per node; entries revoked on other nodes simply take the DB path. Lock-free adds and reads.
+ *  - Disabled by default (ttclub.auth.refresh.bloom.enabled).
+ */
+@Component
+public class RevokedTokenFilter {
+
+    /** Fixed-size bit set with k probes derived from the (already uniform) SHA-256 hex. */
+    private static final class Bits {
+        final AtomicLongArray words;
+        final long size;
+        final int probes;
+        final long createdAtMillis;
+
+        Bits(long size, int probes, long createdAtMillis) {
+            this.words = new AtomicLongArray((int) ((size + 63) >>> 6));
+            this.size = size;
+            this.probes = probes;
+            this.createdAtMillis = createdAtMillis;
+        }
+
+        void add(long h1, long h2) {
+            for (int i = 0; i < probes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, size);
+                long mask = 1L << bit;
+                words.getAndAccumulate((int) (bit >>> 6), mask, (a, b) -> a | b);
+            }
+        }
+
+        boolean mightContain(long h1, long h2) {
+            for (int i = 0; i < probes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, size);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+            }
+            return true;
+        }
+    }
+
+    private final boolean enabled;
+    private final long generationMillis;
+    private final long bits;
+    private final int probes;
+    private final LongSupplier clock;
+
+    private volatile Bits current;
+    private volatile Bits previous;
+
+    @Autowired
+    public RevokedTokenFilter(@Value("${ttclub.auth.refresh.bloom.enabled:false}") boolean enabled,
+                              @Value("${ttclub.auth.refresh.bloom.expected:100000}") long expected,
+                              @Value("${ttclub.auth.refresh.bloom.fpp:0.000001}") double fpp,
+                              @Value("${ttclub.auth.refresh-ttl-sec:43200}") long refreshTtlSec) {
+        this(enabled, expected, fpp, refreshTtlSec, System::currentTimeMillis);
+    }
+
+    /** clock: epoch millis that age the generations (tests) */
+    RevokedTokenFilter(boolean enabled, long expected, double fpp, long refreshTtlSec, LongSupplier clock) {
+        this.enabled = enabled;
+        this.clock = clock;
+        this.generationMillis = Math.max(60, refreshTtlSec) * 1000L;
+        long n = Math.max(1000, expected);
+        double p = Math.min(0.1, Math.max(1e-12, fpp));
+        // m = -n ln p / (ln 2)^2, k = m / n ln 2
+        this.bits = Math.max(64, (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2))));
+        this.probes = Math.max(1, (int) Math.round((double) bits / n * Math.log(2)));
+        if (enabled) {
+            this.current = new Bits(bits, probes, clock.getAsLong());
+            this.previous = new Bits(bits, probes, clock.getAsLong());
+        }
+    }
+
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /** Records token hashes (64-char hex) of a revoked family. */
+    public void addAll(Collection<String> tokenHashes) {
+        if (!enabled || tokenHashes.isEmpty()) return;
+        Bits b = rotateIfDue();
+        for (String h : tokenHashes) {
+            if (isHash(h)) b.add(h1(h), h2(h));
+        }
+    }
+
+    /** False = certainly not revoked here; true = revoked (or a false positive). */
+    public boolean mightBeRevoked(String tokenHash) {
+        if (!enabled || !isHash(tokenHash)) return false;
+        Bits cur = rotateIfDue();
+        long h1 = h1(tokenHash), h2 = h2(tokenHash);
+        return cur.mightContain(h1, h2) || previous.mightContain(h1, h2);
+    }
+
+    /* internals */
+
+    private Bits rotateIfDue() {
+        Bits cur = current;
+        long now = clock.getAsLong();
+        if (now - cur.createdAtMillis < generationMillis) return cur;
+        synchronized (this) {
+            if (current == cur) {
+                previous = cur;
+                current = new Bits(bits, probes, now);
+            }
+            return current;
+        }
+    }
+
+    private static boolean isHash(String h) {
+        return h != null && h.length() == 64;
+    }
+
+    private static long h1(String hex) {
+        return Long.parseUnsignedLong(hex, 0, 16, 16);
+    }
+
+    /* odd, so successive probes never collapse onto the same bit */
+    private static long h2(String hex) {
+        return Long.parseUnsignedLong(hex, 16, 32, 16) | 1L;
+    }
+}
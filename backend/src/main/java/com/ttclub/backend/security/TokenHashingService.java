@@ -9,40 +9,39 @@ import java.security.NoSuchAlgorithmException;
 /**
  * Stateless SHA-256 hashing for refresh tokens (hex output).
  * Stored in DB as 64 lowercase hex chars.
+ * One MessageDigest per thread: concurrent logins / refreshes never wait on each other.
  */
 @Component
 public class TokenHashingService {
 
-    private final MessageDigest sha256;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
 
-    public TokenHashingService() {
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
         try {
-            this.sha256 = MessageDigest.getInstance("SHA-256");
+            return MessageDigest.getInstance("SHA-256");
         } catch (NoSuchAlgorithmException e) {
             throw new IllegalStateException("SHA-256 not available", e);
         }
+    });
+
+    public TokenHashingService() {
+        SHA256.get();   // fail fast at startup if the JVM lacks SHA-256
     }
 
     /** @return 64-char lowercase hex digest, or null if input is null */
     public String hash(String raw) {
         if (raw == null) return null;
-        byte[] bytes;
-        synchronized (sha256) {
-            sha256.reset();
-            sha256.update(raw.getBytes(StandardCharsets.UTF_8));
-            bytes = sha256.digest();
-        }
-        return toHex(bytes);
+        // digest() resets the instance, so it is ready for the thread's next call
+        return toHex(SHA256.get().digest(raw.getBytes(StandardCharsets.UTF_8)));
     }
 
     private static String toHex(byte[] b) {
         char[] out = new char[b.length * 2];
-        final char[] digits = "0123456789abcdef".toCharArray();
         int i = 0;
         for (byte value : b) {
             int v = value & 0xFF;
-            out[i++] = digits[v >>> 4];
-            out[i++] = digits[v & 0x0F];
+            out[i++] = HEX[v >>> 4];
+            out[i++] = HEX[v & 0x0F];
         }
         return new String(out);
     }
@@ -6,13 +6,18 @@ import com.ttclub.backend.dto.*;
 import com.ttclub.backend.mapper.UserMapper;
 import com.ttclub.backend.model.*;
 import com.ttclub.backend.repository.*;
-import com.ttclub.backend.security.TokenHashingService;
-import org.springframework.beans.factory.annotation.Value;
+import com.ttclub.backend.security.PrincipalCache;
+import com.ttclub.backend.security.RefreshTokenStore;
+import com.ttclub.backend.security.RefreshTokenStore.Rotation;
+import com.ttclub.backend.service.exceptions.PasswordHashingBusyException;
+import com.ttclub.backend.service.mail.EmailOutbox;
 import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.StringUtils;
 
 import java.security.SecureRandom;
@@ -25,33 +30,31 @@ public class AuthService {
 
     private final UserRepository         users;
     private final RoleRepository         roles;
-    private final RefreshTokenRepository refreshTokens;
+    private final RefreshTokenStore      refreshTokens;
     private final RegistrationProperties regProps;
     private final PasswordEncoder        pe;
     private final JwtUtil                jwt;
     private final UserMapper             mapper;
     private final EmailCodeService       emailCodes;
-    private final TokenHashingService    hasher;
     private final MfaService             mfa;
-    private final long                   refreshTtlSec;
-    private final JavaMailSender         mail;
-    private final boolean                mailEnabled;
+    private final PrincipalCache         principals;
+    private final EmailOutbox            outbox;
+    private final TransactionTemplate    tx;
 
     private static final SecureRandom RNG = new SecureRandom();
 
     public AuthService(UserRepository users,
                        RoleRepository roles,
-                       RefreshTokenRepository refreshTokens,
+                       RefreshTokenStore refreshTokens,
                        RegistrationProperties regProps,
                        PasswordEncoder pe,
                        JwtUtil jwt,
                        UserMapper mapper,
                        EmailCodeService emailCodes,
-                       TokenHashingService hasher,
                        MfaService mfa,
-                       JavaMailSender mailSender,
-                       @Value("${ttclub.auth.refresh-ttl-sec:43200}") long refreshTtlSec,
-                       @Value("${ttclub.mail.enabled:true}") boolean mailEnabled) {
+                       PrincipalCache principals,
+                       EmailOutbox outbox,
+                       PlatformTransactionManager txManager) {
         this.users          = users;
         this.roles          = roles;
         this.refreshTokens  = refreshTokens;
@@ -60,30 +63,44 @@ public class AuthService {
         this.jwt            = jwt;
         this.mapper         = mapper;
         this.emailCodes     = emailCodes;
-        this.hasher         = hasher;
         this.mfa            = mfa;
-        this.mail           = mailSender;
-        this.refreshTtlSec  = refreshTtlSec;
-        this.mailEnabled    = mailEnabled;
+        this.principals     = principals;
+        this.outbox         = outbox;
+        this.tx             = new TransactionTemplate(txManager);
     }
 
     public void sendVerificationCode(String emailRaw) {
         emailCodes.sendCode(emailRaw);
     }
 
+    /*
+     * register / login / requestPasswordReset hash passwords outside any transaction: the BCrypt pool
+     * may queue a caller for a while, and it must not hold a pooled DB connection meanwhile.
+     * Reads and writes around the hash run in their own short transactions. Everything that can
+     * reject the request cheaply (verification code, registration code) is checked before hashing,
+     * so invalid requests never take a slot on the pool.
+     */
+
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public LoginResponseDto register(RegisterDto dto) {
         Objects.requireNonNull(dto.verificationCode(), "verificationCode is required");
 
         String email = normalize(dto.email());
         if (!StringUtils.hasText(email)) throw new IllegalArgumentException("Email cannot be blank");
         if (users.existsByEmailIgnoreCase(email)) throw new IllegalArgumentException("Email already exists");
-
-        emailCodes.assertValid(email, dto.verificationCode());
+        emailCodes.checkValid(email, dto.verificationCode());
         RoleName targetRole = resolveTargetRole(dto);
 
+        String passwordHash = pe.encode(dto.password());
+        return tx.execute(s -> createUser(dto, email, targetRole, passwordHash));
+    }
+
+    private LoginResponseDto createUser(RegisterDto dto, String email, RoleName targetRole, String passwordHash) {
+        emailCodes.assertValid(email, dto.verificationCode());   // consumed with the insert
+
         User entity = mapper.toEntity(dto);
         entity.setEmail(email);
-        entity.setPasswordHash(pe.encode(dto.password()));
+        entity.setPasswordHash(passwordHash);
         entity.setFirstName(dto.firstName() == null ? null : dto.firstName().trim());
         entity.setLastName(dto.lastName() == null ? null : dto.lastName().trim());
         entity.setRole(
@@ -99,9 +116,11 @@ public class AuthService {
      * Login: accepts either the real password OR, if present and not expired, the temporary password.
      * When temp password is used, JWT carries claim pwd_change_required=true and API is gated.
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Object login(LoginDto dto) {
         String email = normalize(dto.email());
 
+        // detached snapshot; role is eager
         User user = users.findByEmailIgnoreCase(email)
                 .orElseThrow(() -> new IllegalArgumentException("Bad credentials"));
 
@@ -120,42 +139,42 @@ public class AuthService {
 
         if (!realOk && !tempOk) throw new IllegalArgumentException("Bad credentials");
 
+        String rehash = realOk ? rehashIfPolicyChanged(user.getPasswordHash(), dto.password()) : null;
         boolean mustChange = tempOk;
+        Long userId = user.getId();
 
-        if (Boolean.TRUE.equals(user.getMfaEnabled()) && user.getMfaSecretEnc() != null && !user.getMfaSecretEnc().isBlank()) {
-            String token = mfa.createPreAuthToken(user, 300, mustChange);
-            return new com.ttclub.backend.dto.MfaDtos.MfaChallengeDto("MFA_REQUIRED", token, List.of("TOTP"));
-        }
+        return tx.execute(s -> {
+            User u = users.findById(userId)
+                    .orElseThrow(() -> new IllegalArgumentException("Bad credentials"));
+            if (rehash != null) u.setPasswordHash(rehash);
+
+            if (Boolean.TRUE.equals(u.getMfaEnabled()) && u.getMfaSecretEnc() != null && !u.getMfaSecretEnc().isBlank()) {
+                String token = mfa.createPreAuthToken(u, 300, mustChange);
+                return new com.ttclub.backend.dto.MfaDtos.MfaChallengeDto("MFA_REQUIRED", token, List.of("TOTP"));
+            }
 
-        return mustChange
-                ? issueTokens(user, Map.of("pwd_change_required", true))
-                : issueTokens(user);
+            return mustChange
+                    ? issueTokens(u, Map.of("pwd_change_required", true))
+                    : issueTokens(u);
+        });
     }
 
+    /** Rotates the refresh token; a detected reuse revokes its family, which must survive the exception. */
+    @Transactional(noRollbackFor = IllegalArgumentException.class)
     public LoginResponseDto refresh(String oldRefreshToken) {
-        String hash = hasher.hash(oldRefreshToken);
-        RefreshToken row = refreshTokens.findByToken(hash)
-                .orElseGet(() -> refreshTokens.findByToken(oldRefreshToken)
-                        .orElseThrow(() -> new IllegalArgumentException("Invalid refreshToken")));
-
-        if (row.getExpiresAt().isBefore(Instant.now())) {
-            refreshTokens.delete(row);
-            throw new IllegalArgumentException("Refresh token expired");
-        }
-        User user = row.getUser();
-
-        refreshTokens.delete(row);
-        return issueTokens(user);
+        Rotation r = refreshTokens.rotate(oldRefreshToken);
+        User user = users.findById(r.userId())
+                .orElseThrow(() -> new IllegalArgumentException("Invalid refreshToken"));
+        return new LoginResponseDto(jwt.generate(user, Map.of()), r.refreshToken(), user.getFirstName());
     }
 
     public void logout(String refreshToken) {
         if (refreshToken == null || refreshToken.isBlank()) return;
-        String hash = hasher.hash(refreshToken);
-        refreshTokens.deleteByToken(hash);
-        refreshTokens.deleteByToken(refreshToken);
+        refreshTokens.revokeFamilyOf(refreshToken);
     }
 
     /* Password reset: email-only, LOCAL accounts */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void requestPasswordReset(String rawEmail) {
         String email = normalize(rawEmail);
         if (!StringUtils.hasText(email)) return;   // noop
@@ -168,11 +187,21 @@ public class AuthService {
         }
 
         String temp = generateTempPassword(20);
-        u.setTempPasswordHash(pe.encode(temp));
-        u.setTempPasswordExpiresAt(Instant.now().plusSeconds(45 * 60));
-        users.save(u);
+        String tempHash = pe.encode(temp);
+        Long userId = u.getId();
+
+        tx.executeWithoutResult(s -> {
+            User managed = users.findById(userId).orElseThrow(() -> new IllegalArgumentException("User not found"));
+            managed.setTempPasswordHash(tempHash);
+            managed.setTempPasswordExpiresAt(Instant.now().plusSeconds(45 * 60));
+            queueTempPasswordMail(email, temp);
+        });
+        principals.evict(userId);
+    }
+
+    private void queueTempPasswordMail(String email, String temp) {
 
-        // send/log email with the temporary password
+        // queued on the outbox; sent (or logged when mail is disabled) after commit
         SimpleMailMessage msg = new SimpleMailMessage();
         msg.setTo(email);
         msg.setSubject("Your temporary password");
@@ -185,12 +214,7 @@ public class AuthService {
                 Sign in with the temporary password, and you will be required to set a new password before continuing.
                 If you did not request this change, you can ignore this email.
                 """.formatted(temp));
-        if (mailEnabled) {
-            mail.send(msg);
-        } else {
-            // Email is logged by Logging sender (GmailOAuth2Config) as well; this is a second explicit log.
-            org.slf4j.LoggerFactory.getLogger(AuthService.class).info("[DEV-MAIL] temp password for {} is {}", email, temp);
-        }
+        outbox.enqueue("password-reset", msg);
     }
 
     /* Helpers */
@@ -206,17 +230,24 @@ public class AuthService {
 
     private LoginResponseDto issueTokens(User user, Map<String, Object> claims) {
         String access     = jwt.generate(user, claims);
-        String refreshRaw = UUID.randomUUID().toString();
-        String refreshHashed = hasher.hash(refreshRaw);
-
-        refreshTokens.save(new RefreshToken(
-                refreshHashed,
-                user,
-                Instant.now().plusSeconds(refreshTtlSec)));
+        String refreshRaw = refreshTokens.issue(user);
 
         return new LoginResponseDto(access, refreshRaw, user.getFirstName());
     }
 
+    /**
+     * New hash for a verified password stored with another BCrypt cost, or null when none is needed
+     * (or hashing is saturated: the next login retries).
+     */
+    private String rehashIfPolicyChanged(String storedHash, String rawPassword) {
+        if (!pe.upgradeEncoding(storedHash)) return null;
+        try {
+            return pe.encode(rawPassword);
+        } catch (PasswordHashingBusyException ex) {
+            return null;
+        }
+    }
+
     private RoleName resolveTargetRole(RegisterDto dto) {
         Map<RoleName, String> codes = regProps.getCodes();
         if (dto.requestedRole() != null && dto.requestedRole() != RoleName.CLIENT) {
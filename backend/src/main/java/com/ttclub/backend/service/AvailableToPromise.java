@@ -0,0 +1,542 @@
+package com.ttclub.backend.service;
+
+import com.ttclub.backend.util.LongIntMap;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory available-to-promise per product: inventory_qty - reserved_qty.<br>
+ * Notes:
+ *  - Every product is loaded into a primitive long -> int map at startup; /api/stock/availability
+ *    and the cart/checkout availability checks are answered from it without touching the DB.
+ *  - Writers report what they changed: InventoryService moves the counter by its deltas after
+ *    commit (holds, releases, takes, restocks - which covers orders and refunds), product
+ *    create/update/changeStock/delete report their ids via {@link #changedAfterCommit}, and those
+ *    rows are re-read once committed.
+ *  - Other nodes are told through Postgres NOTIFY on ttclub.inventory.atp.channel. Ids are queued
+ *    after commit and sent by one background thread, coalesced into as few notifications as
+ *    possible, outside any writer transaction (NOTIFY inside it would serialise commits on the
+ *    global notify lock). Delivery is best-effort: the consistency check repairs misses. Each node
+ *    LISTENs on a dedicated connection and re-reads the ids it is sent. Set
+ *    ttclub.inventory.atp.invalidation=none on a single node.
+ *  - Re-reads never overwrite a local delta: every product carries a version bumped by each write
+ *    to its entry and by each delta registered / settled, and a re-read (refresh, full reload,
+ *    consistency fix) is applied only to ids whose version did not move while the DB was read and
+ *    that have no delta still in flight. Skipped ids are retried, finally when the blocking
+ *    transaction settles.
+ *  - Staleness bound for a product, per node:
+ *      - own writes: exact once the writer's afterCommit has run;
+ *      - other nodes' writes: about listen-poll-ms plus one re-read after their commit;
+ *      - a lost notification: at most consistency-check-ms (single pass, version-guarded).
+ *    When the listener has not been connected (or, without one, the consistency check has not
+ *    completed) for ttclub.inventory.atp.max-staleness-ms, reads fall back to the DB instead.
+ *  - Values may go negative internally (stock edited below reservations); reads clamp to 0.
+ */
+@Component
+public class AvailableToPromise {
+
+    private static final Logger log = LoggerFactory.getLogger(AvailableToPromise.class);
+
+    private static final String LOAD_ALL_SQL = "SELECT id, inventory_qty - reserved_qty FROM products";
+
+    private static final String LOAD_SQL = """
+            SELECT id, inventory_qty - reserved_qty FROM products WHERE id = ANY (?)
+            """;
+
+    private static final Pattern CHANNEL = Pattern.compile("[a-z_][a-z0-9_]{0,62}");
+
+    /* NOTIFY payloads are limited to 8000 bytes; ids are sent in chunks well below that */
+    private static final int IDS_PER_NOTIFY = 500;
+
+    private static final int ABSENT = Integer.MIN_VALUE;
+
+    private final JdbcTemplate jdbc;
+    private final DataSourceProperties dataSource;
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private final StampedLock lock = new StampedLock();
+    private LongIntMap atp = new LongIntMap();                  // guarded by lock
+    private final LongIntMap versions = new LongIntMap();       // id -> write version, guarded by lock
+    private final LongIntMap inFlight = new LongIntMap();       // id -> unsettled local deltas, guarded by lock
+    private long reloads;                                       // guarded by lock
+    private volatile boolean loaded;
+    private volatile long lastSyncMillis;
+
+    /* ids a re-read had to skip; re-read again when a delta settles or on the consistency pass */
+    private final Set<Long> retry = new LinkedHashSet<>();      // guarded by itself
+
+    /* ids waiting to be sent to the other nodes */
+    private final Set<Long> outbox = new LinkedHashSet<>();     // guarded by itself
+    private final ExecutorService notifier;
+
+    private final Counter memoryReads;
+    private final Counter dbReads;
+    private final Counter drift;
+
+    private volatile boolean running = true;
+    private Thread listener;
+
+    @Value("${ttclub.inventory.atp.invalidation:notify}")
+    private String invalidation;
+
+    @Value("${ttclub.inventory.atp.channel:ttclub_stock}")
+    private String channel;
+
+    @Value("${ttclub.inventory.atp.max-staleness-ms:120000}")
+    private long maxStalenessMs;
+
+    @Value("${ttclub.inventory.atp.listen-poll-ms:1000}")
+    private int listenPollMs;
+
+    public AvailableToPromise(JdbcTemplate jdbc, DataSourceProperties dataSource, MeterRegistry meters) {
+        this.jdbc = jdbc;
+        this.dataSource = dataSource;
+        this.memoryReads = Counter.builder("ttclub.inventory.atp.reads").tag("source", "memory").register(meters);
+        this.dbReads = Counter.builder("ttclub.inventory.atp.reads").tag("source", "db").register(meters);
+        this.drift = Counter.builder("ttclub.inventory.atp.drift").register(meters);
+        this.notifier = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "atp-notify");
+            t.setDaemon(true);
+            return t;
+        });
+        meters.gauge("ttclub.inventory.atp.products", this, AvailableToPromise::size);
+        meters.gauge("ttclub.inventory.atp.staleness-ms", this,
+                a -> a.loaded ? System.currentTimeMillis() - a.lastSyncMillis : -1);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (notifyEnabled()) {
+            if (!CHANNEL.matcher(channel).matches()) {
+                throw new IllegalStateException("Invalid ttclub.inventory.atp.channel: " + channel);
+            }
+            listener = new Thread(this::listen, "atp-listener");
+            listener.setDaemon(true);
+            listener.start();    // loads the map once connected
+        } else {
+            reloadAll();
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (listener != null) listener.interrupt();
+        notifier.shutdown();
+    }
+
+    /** id -> available qty (>= 0, 0 for unknown ids), in request order. */
+    public Map<Long, Integer> get(Collection<Long> productIds) {
+        Map<Long, Integer> out = new LinkedHashMap<>();
+        if (!fresh()) {
+            dbReads.increment();
+            List<Long> ids = productIds.stream().filter(Objects::nonNull).distinct().toList();
+            ids.forEach(id -> out.put(id, 0));
+            if (!ids.isEmpty()) load(ids).forEach((id, q) -> out.put(id, Math.max(0, q)));
+            return out;
+        }
+
+        memoryReads.increment();
+        long stamp = lock.readLock();
+        try {
+            for (Long id : productIds) {
+                if (id == null || out.containsKey(id)) continue;
+                out.put(id, Math.max(0, atp.get(id, 0)));
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return out;
+    }
+
+    /**
+     * Applies per-product deltas once the surrounding transaction commits (immediately if none)
+     * and tells the other nodes to re-read those products. Until the transaction completes the
+     * ids count as in flight, so no concurrent re-read overwrites them.
+     */
+    public void adjustAfterCommit(Map<Long, Integer> deltas) {
+        if (deltas.isEmpty()) return;
+        Map<Long, Integer> copy = Map.copyOf(deltas);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            track(copy.keySet());
+            settle(copy, true);
+            return;
+        }
+        track(copy.keySet());
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                settle(copy, status == STATUS_COMMITTED);
+            }
+        });
+    }
+
+    /**
+     * Re-reads the given products once the surrounding transaction commits (immediately if none)
+     * and tells the other nodes to do the same. For writers that set stock absolutely or
+     * create / delete products.
+     */
+    public void changedAfterCommit(Collection<Long> productIds) {
+        List<Long> ids = productIds.stream().filter(Objects::nonNull).distinct().toList();
+        if (ids.isEmpty()) return;
+        afterCommit(() -> {
+            refresh(ids);
+            notifyPeers(ids);
+        });
+    }
+
+    /**
+     * Compares the map with the table and corrects what differs, except ids written to while
+     * the table was read (their own re-read settles them). Also retries skipped re-reads.
+     */
+    @Scheduled(fixedDelayString = "${ttclub.inventory.atp.consistency-check-ms:60000}", initialDelay = 60000)
+    public void checkConsistency() {
+        if (!loaded) return;
+        retryPending();
+        Snapshot before = snapshot();
+        LongIntMap table = loadAll();
+
+        int fixed = 0, removed = 0;
+        long stamp = lock.writeLock();
+        try {
+            if (reloads == before.reloads) {
+                List<long[]> fixes = new ArrayList<>();
+                List<Long> gone = new ArrayList<>();
+                table.forEach((id, q) -> {
+                    if (atp.get(id, ABSENT) != q && untouched(id, before)) fixes.add(new long[]{ id, q });
+                });
+                atp.forEach((id, q) -> {
+                    if (!table.containsKey(id) && untouched(id, before)) gone.add(id);
+                });
+                for (long[] f : fixes) put(f[0], (int) f[1]);
+                for (Long id : gone) {
+                    atp.remove(id);
+                    bump(id);
+                }
+                fixed = fixes.size();
+                removed = gone.size();
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+
+        if (fixed + removed > 0) {
+            drift.increment(fixed + removed);
+            log.warn("AvailableToPromise: corrected {} drifted and {} deleted product(s).", fixed, removed);
+        }
+        if (!notifyEnabled()) lastSyncMillis = System.currentTimeMillis();
+    }
+
+    /* internals */
+
+    private boolean notifyEnabled() {
+        return "notify".equalsIgnoreCase(invalidation);
+    }
+
+    private boolean fresh() {
+        return loaded && System.currentTimeMillis() - lastSyncMillis <= maxStalenessMs;
+    }
+
+    private int size() {
+        long stamp = lock.readLock();
+        try {
+            return atp.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /* versions */
+
+    /** Versions seen before a DB read; reloads guards against a full reload in between. */
+    private record Snapshot(LongIntMap versions, long reloads) {}
+
+    private Snapshot snapshot() {
+        long stamp = lock.readLock();
+        try {
+            LongIntMap copy = new LongIntMap(Math.max(16, versions.size()));
+            versions.forEach(copy::put);
+            return new Snapshot(copy, reloads);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Same, limited to the given ids (cheaper for small re-reads). */
+    private Snapshot snapshot(List<Long> ids) {
+        long stamp = lock.readLock();
+        try {
+            LongIntMap copy = new LongIntMap(ids.size());
+            for (Long id : ids) copy.put(id, versions.get(id, 0));
+            return new Snapshot(copy, reloads);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /** Caller holds the write lock. */
+    private boolean untouched(long id, Snapshot before) {
+        return !inFlight.containsKey(id) && versions.get(id, 0) == before.versions.get(id, 0);
+    }
+
+    /** Caller holds the write lock. */
+    private void bump(long id) {
+        versions.put(id, versions.get(id, 0) + 1);
+    }
+
+    /** Caller holds the write lock. */
+    private void put(long id, int q) {
+        atp.put(id, q);
+        bump(id);
+    }
+
+    /* writes */
+
+    private void track(Collection<Long> ids) {
+        long stamp = lock.writeLock();
+        try {
+            for (Long id : ids) {
+                inFlight.put(id, inFlight.get(id, 0) + 1);
+                bump(id);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Applies (on commit) and releases a tracked delta, then re-reads anything that had to wait. */
+    private void settle(Map<Long, Integer> deltas, boolean committed) {
+        long stamp = lock.writeLock();
+        try {
+            deltas.forEach((id, d) -> {
+                // absent entries (product created on another node, not yet seen) are read on refresh
+                if (committed) atp.addIfPresent(id, d);
+                int n = inFlight.get(id, 0) - 1;
+                if (n > 0) inFlight.put(id, n);
+                else inFlight.remove(id);
+                bump(id);
+            });
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (committed) notifyPeers(deltas.keySet());
+        retryPending();
+    }
+
+    private void retryPending() {
+        List<Long> ids;
+        synchronized (retry) {
+            if (retry.isEmpty()) return;
+            ids = new ArrayList<>(retry);
+            retry.clear();
+        }
+        refresh(ids);
+    }
+
+    /** Re-reads ids, skipping (and retrying) any that a concurrent write touched meanwhile. */
+    private void refresh(List<Long> ids) {
+        List<Long> todo = ids;
+        for (int attempt = 0; attempt < 3 && !todo.isEmpty(); attempt++) {
+            Snapshot before = snapshot(todo);
+            Map<Long, Integer> rows = load(todo);
+            List<Long> busy = new ArrayList<>();
+            long stamp = lock.writeLock();
+            try {
+                for (Long id : todo) {
+                    if (reloads != before.reloads || !untouched(id, before)) {
+                        busy.add(id);
+                        continue;
+                    }
+                    Integer q = rows.get(id);
+                    if (q == null) {
+                        atp.remove(id);
+                        bump(id);
+                    } else {
+                        put(id, q);
+                    }
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            todo = busy;
+        }
+        if (!todo.isEmpty()) {
+            synchronized (retry) {
+                retry.addAll(todo);
+            }
+        }
+    }
+
+    /** Swaps in a full table read, keeping the current entry for ids written to meanwhile. */
+    private void reloadAll() {
+        Snapshot before = snapshot();
+        LongIntMap fresh = loadAll();
+        List<Long> busy = new ArrayList<>();
+        long stamp = lock.writeLock();
+        try {
+            versions.forEach((id, v) -> {
+                if (!untouched(id, before)) busy.add(id);
+            });
+            for (Long id : busy) {
+                int mine = atp.get(id, ABSENT);
+                if (mine == ABSENT) fresh.remove(id);
+                else fresh.put(id, mine);
+            }
+            atp = fresh;
+            reloads++;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        if (!busy.isEmpty()) {
+            synchronized (retry) {
+                retry.addAll(busy);
+            }
+            retryPending();
+        }
+        lastSyncMillis = System.currentTimeMillis();
+        loaded = true;
+        log.info("AvailableToPromise: loaded {} product(s).", fresh.size());
+    }
+
+    private LongIntMap loadAll() {
+        LongIntMap m = new LongIntMap(1024);
+        jdbc.query(LOAD_ALL_SQL, rs -> {
+            m.put(rs.getLong(1), rs.getInt(2));
+        });
+        return m;
+    }
+
+    private Map<Long, Integer> load(List<Long> ids) {
+        Map<Long, Integer> m = new HashMap<>();
+        jdbc.query(con -> {
+            PreparedStatement ps = con.prepareStatement(LOAD_SQL);
+            ps.setArray(1, con.createArrayOf("bigint", ids.toArray()));
+            return ps;
+        }, rs -> {
+            m.put(rs.getLong(1), rs.getInt(2));
+        });
+        return m;
+    }
+
+    private static void afterCommit(Runnable r) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    r.run();
+                }
+            });
+        } else {
+            r.run();
+        }
+    }
+
+    /* invalidation channel */
+
+    /** Queues ids for the other nodes; the notifier thread sends whatever has queued up meanwhile. */
+    private void notifyPeers(Collection<Long> ids) {
+        if (!notifyEnabled()) return;
+        boolean idle;
+        synchronized (outbox) {
+            idle = outbox.isEmpty();
+            outbox.addAll(ids);
+        }
+        if (!idle) return;   // a send is already scheduled and will pick these up
+        try {
+            notifier.execute(this::sendQueued);
+        } catch (RejectedExecutionException ex) {
+            log.debug("AvailableToPromise: notifier stopped, dropping invalidation");
+        }
+    }
+
+    /** Runs on the notifier thread, outside any transaction (autocommit: delivered at once). */
+    private void sendQueued() {
+        List<Long> all;
+        synchronized (outbox) {
+            all = new ArrayList<>(outbox);
+            outbox.clear();
+        }
+        try {
+            for (int from = 0; from < all.size(); from += IDS_PER_NOTIFY) {
+                StringJoiner payload = new StringJoiner(",", nodeId + ":", "");
+                all.subList(from, Math.min(all.size(), from + IDS_PER_NOTIFY)).forEach(id -> payload.add(id.toString()));
+                jdbc.query("SELECT pg_notify(?, ?)", rs -> null, channel, payload.toString());
+            }
+        } catch (RuntimeException ex) {
+            // best-effort: peers catch up on their next consistency pass
+            log.warn("AvailableToPromise: could not notify peers of {} product(s): {}", all.size(), ex.getMessage());
+        }
+    }
+
+    private void listen() {
+        long backoffMs = 1000;
+        while (running) {
+            try (Connection con = DriverManager.getConnection(
+                    dataSource.determineUrl(), dataSource.determineUsername(), dataSource.determinePassword())) {
+                try (Statement st = con.createStatement()) {
+                    st.execute("LISTEN " + channel);
+                }
+                PGConnection pg = con.unwrap(PGConnection.class);
+                reloadAll();   // catches up on anything sent while not listening
+                backoffMs = 1000;
+
+                while (running) {
+                    PGNotification[] batch = pg.getNotifications(listenPollMs);
+                    lastSyncMillis = System.currentTimeMillis();
+                    if (batch != null) onNotifications(batch);
+                }
+            } catch (SQLException | RuntimeException ex) {
+                if (!running) return;
+                log.warn("AvailableToPromise: invalidation listener down ({}); retrying in {} ms",
+                        ex.getMessage(), backoffMs);
+            }
+            try {
+                Thread.sleep(backoffMs);
+            } catch (InterruptedException ie) {
+                return;
+            }
+            backoffMs = Math.min(backoffMs * 2, 30000);
+        }
+    }
+
+    private void onNotifications(PGNotification[] batch) {
+        Set<Long> ids = new LinkedHashSet<>();
+        for (PGNotification n : batch) {
+            String p = n.getParameter();
+            int colon = p.indexOf(':');
+            if (colon < 0 || p.substring(0, colon).equals(nodeId)) continue;   // own changes already applied
+            for (String s : p.substring(colon + 1).split(",")) {
+                if (!s.isEmpty()) ids.add(Long.parseLong(s));
+            }
+        }
+        if (!ids.isEmpty()) refresh(new ArrayList<>(ids));
+    }
+}
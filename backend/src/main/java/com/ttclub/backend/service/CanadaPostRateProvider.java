@@ -3,23 +3,34 @@ package com.ttclub.backend.service;
 import com.ttclub.backend.model.OrderItem;
 import com.ttclub.backend.model.ShippingAddress;
 import com.ttclub.backend.model.ShippingMethod;
+import com.ttclub.backend.service.http.OutboundHttp;
+import com.ttclub.backend.service.http.ProviderClient;
+import com.ttclub.backend.service.http.ProviderUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
-import org.xml.sax.InputSource;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-import java.io.StringReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.util.Base64;
-import java.util.List;
-import java.util.Locale;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Canada Post “Get Rates” REST v4.
@@ -47,17 +58,42 @@ import java.util.Locale;
  *
  * • If any CP credential is missing => flat fee (10/20 CAD).
  * • If dims are configured, we add dimensions to the request.
+ * • One counter-quote call returns every service; the answer is cached per
+ *   (weight band, box, origin, destination FSA) for shipping.quote-cache.ttl-sec, so quote,
+ *   details and checkout pricing for the same cart share one CP round-trip. Identical
+ *   concurrent lookups are coalesced; stats are published as ttclub.shipping.quote-cache.*.
+ * • Calls go through the shared outbound HTTP layer (provider "canadapost": timeouts,
+ *   bulkhead, circuit breaker, hedging); when it refuses or fails, the flat fee is used.
+ * • The weight sent to CP is rounded up to the band, so a cached quote is never below the
+ *   price of any parcel that maps to it.
  */
 @Service
 public class CanadaPostRateProvider implements ShippingRateProvider {
 
     private static final Logger log = LoggerFactory.getLogger(CanadaPostRateProvider.class);
 
-    private static final String URL        = "https://ct.soa-gw.canadapost.ca/rs/ship/price";
     private static final String MEDIA_TYPE = "application/vnd.cpc.ship.rate-v4+xml";
     private static final BigDecimal MIN_WEIGHT_KG = new BigDecimal("0.001");   // >= 1 g
 
-    private final RestTemplate rest = new RestTemplate();
+    private static final XMLInputFactory XML_INPUT = newXmlInputFactory();
+
+    private final ProviderClient http;
+    private final String url;
+
+    /** Cache key: parcel bucket + lane (destination reduced to its FSA). */
+    private record QuoteKey(long bandGrams, Integer l, Integer w, Integer h, String origin, String destFsa) { }
+
+    /** In-flight or completed lookup; expiry only applies once the future is done. */
+    private record CachedQuote(CompletableFuture<Map<String, BigDecimal>> future, long expiresAtNanos) { }
+
+    private final Map<QuoteKey, CachedQuote> quoteCache = new ConcurrentHashMap<>();
+    private final long quoteTtlNanos;
+    private final int  quoteCacheMaxSize;
+    private final long weightBandGrams;
+
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final Counter cacheCoalesced;
 
     private final boolean liveCreds;
     private final String  authHeader;      // "Basic"
@@ -78,6 +114,8 @@ public class CanadaPostRateProvider implements ShippingRateProvider {
             @Value("${canadapost.password:}")             String pass,
             @Value("${canadapost.customer:}")             String custNo,
             @Value("${store.origin.postal:K1V1J5}")       String originPostal,
+            @Value("${canadapost.url:https://ct.soa-gw.canadapost.ca/rs/ship/price}") String url,
+            OutboundHttp outbound,
 
             // Optional dimension heuristics (safe defaults)
             @Value("${shipping.dims.small:28,21,4}")      String smallDims,
@@ -85,7 +123,13 @@ public class CanadaPostRateProvider implements ShippingRateProvider {
             @Value("${shipping.dims.large:45,35,20}")     String largeDims,
             @Value("${shipping.thresholds.maxSmallItems:2}") int maxSmallItems,
             @Value("${shipping.thresholds.maxSmallKg:0.5}")  BigDecimal maxSmallKg,
-            @Value("${shipping.thresholds.maxMediumKg:5.0}") BigDecimal maxMediumKg
+            @Value("${shipping.thresholds.maxMediumKg:5.0}") BigDecimal maxMediumKg,
+
+            // Quote cache
+            @Value("${shipping.quote-cache.ttl-sec:900}")            long quoteTtlSec,
+            @Value("${shipping.quote-cache.max-size:5000}")          int quoteCacheMaxSize,
+            @Value("${shipping.quote-cache.weight-band-grams:100}")  long weightBandGrams,
+            MeterRegistry meters
     ) {
 
         this.liveCreds     = !user.isBlank() && !pass.isBlank();
@@ -95,6 +139,8 @@ public class CanadaPostRateProvider implements ShippingRateProvider {
                 : "";
         this.customerNumber = custNo == null ? "" : custNo.trim();
         this.originPostal   = originPostal.replaceAll("\\s+", "");
+        this.url            = url;
+        this.http           = outbound.client("canadapost");
 
         // parse dimensions
         int[] s = parseDims(smallDims);
@@ -109,6 +155,15 @@ public class CanadaPostRateProvider implements ShippingRateProvider {
         this.maxSmallKg    = maxSmallKg;
         this.maxMediumKg   = maxMediumKg;
         this.haveDims      = (smallL > 0 && smallW > 0 && smallH > 0);
+
+        this.quoteTtlNanos     = TimeUnit.SECONDS.toNanos(Math.max(0, quoteTtlSec));
+        this.quoteCacheMaxSize = Math.max(1, quoteCacheMaxSize);
+        this.weightBandGrams   = Math.max(1, weightBandGrams);
+
+        this.cacheHits      = Counter.builder("ttclub.shipping.quote-cache").tag("result", "hit").register(meters);
+        this.cacheMisses    = Counter.builder("ttclub.shipping.quote-cache").tag("result", "miss").register(meters);
+        this.cacheCoalesced = Counter.builder("ttclub.shipping.quote-cache").tag("result", "coalesced").register(meters);
+        meters.gauge("ttclub.shipping.quote-cache.size", quoteCache, Map::size);
     }
 
     private static int[] parseDims(String csv) {
@@ -192,8 +247,107 @@ public class CanadaPostRateProvider implements ShippingRateProvider {
         /* flat-fee fallback when creds absent */
         if (!liveCreds) return fallback(method);
 
+        Map<String, BigDecimal> all = quotesFor(parcel, to);
+        BigDecimal due = all == null ? null : all.get(serviceCode(method));
+        if (due == null) {
+            if (all != null) log.warn("Service {} not found in CP response (services: {})", serviceCode(method), all.keySet());
+            return fallback(method);
+        }
+        return due;
+    }
+
+    /** Both methods from one (cached) Canada Post call. */
+    @Override
+    public Map<ShippingMethod, BigDecimal> ratesFor(List<OrderItem> items, ShippingAddress to) {
+        ParcelInfo parcel = parcelFor(items);
+        Map<ShippingMethod, BigDecimal> out = new EnumMap<>(ShippingMethod.class);
+        for (ShippingMethod m : ShippingMethod.values()) {
+            out.put(m, rateFor(m, parcel, to));
+        }
+        return out;
+    }
+
+    /* Quote cache */
+
+    /**
+     * Every service quoted by CP for this parcel/destination (service-code -> due), or null when
+     * the call failed. Identical concurrent lookups share one in-flight request; failures are not
+     * cached so the next caller tries again.
+     */
+    private Map<String, BigDecimal> quotesFor(ParcelInfo parcel, ShippingAddress to) {
+        String destPc = to.getPostalCode().replaceAll("\\s+", "").toUpperCase(Locale.ROOT);
+        long bandGrams = weightBand(parcel.grams());
+        QuoteKey key = new QuoteKey(bandGrams, parcel.lengthCm(), parcel.widthCm(), parcel.heightCm(),
+                originPostal, destPc.length() > 3 ? destPc.substring(0, 3) : destPc);
+
+        long now = System.nanoTime();
+        CachedQuote c = quoteCache.get(key);
+        if (c != null && (!c.future().isDone() || c.expiresAtNanos() - now > 0)) {
+            if (c.future().isDone()) cacheHits.increment();
+            else cacheCoalesced.increment();
+            return join(c.future());
+        }
+
+        CompletableFuture<Map<String, BigDecimal>> mine = new CompletableFuture<>();
+        CachedQuote fresh = new CachedQuote(mine, now + quoteTtlNanos);
+        CachedQuote raced = (c == null)
+                ? quoteCache.putIfAbsent(key, fresh)
+                : (quoteCache.replace(key, c, fresh) ? null : quoteCache.get(key));
+        if (raced != null && raced != fresh) {
+            cacheCoalesced.increment();
+            return join(raced.future());
+        }
+        cacheMisses.increment();
+        trimQuoteCache(now);
+
+        Map<String, BigDecimal> result = null;
+        try {
+            BigDecimal weightKg = BigDecimal.valueOf(bandGrams)
+                    .divide(BigDecimal.valueOf(1_000), 3, RoundingMode.UP)
+                    .max(MIN_WEIGHT_KG);
+            result = fetchQuotes(weightKg, parcel, destPc);
+        } finally {
+            mine.complete(result);
+            if (result == null) quoteCache.remove(key, fresh);
+        }
+        return result;
+    }
+
+    private static Map<String, BigDecimal> join(CompletableFuture<Map<String, BigDecimal>> f) {
+        try {
+            return f.join();
+        } catch (CompletionException | CancellationException ex) {
+            return null;
+        }
+    }
+
+    /** Round up to the configured band so nearby parcels share one quote (CP prices by weight steps). */
+    private long weightBand(long grams) {
+        long g = Math.max(1, grams);
+        return ((g + weightBandGrams - 1) / weightBandGrams) * weightBandGrams;
+    }
+
+    /** Size bound: drop expired entries first, then the ones closest to expiry. */
+    private void trimQuoteCache(long now) {
+        if (quoteCache.size() <= quoteCacheMaxSize) return;
+        quoteCache.entrySet().removeIf(e -> e.getValue().future().isDone()
+                && e.getValue().expiresAtNanos() - now <= 0);
+        int excess = quoteCache.size() - quoteCacheMaxSize;
+        if (excess <= 0) return;
+        quoteCache.entrySet().stream()
+                .filter(e -> e.getValue().future().isDone())
+                .sorted(Comparator.comparingLong(e -> e.getValue().expiresAtNanos() - now))
+                .limit(excess + quoteCacheMaxSize / 10)
+                .map(Map.Entry::getKey)
+                .toList()
+                .forEach(quoteCache::remove);
+    }
+
+    /* Canada Post call */
+
+    /** One counter-quote request; CP answers with every available service. Null on any failure. */
+    private Map<String, BigDecimal> fetchQuotes(BigDecimal weightKg, ParcelInfo parcel, String destPc) {
         /*  XML payload (counter quote) */
-        String destPc = to.getPostalCode().replaceAll("\\s+", "");
         StringBuilder xml = new StringBuilder(320)
                 .append("<?xml version=\"1.0\" encoding=\"utf-8\"?>")
                 .append("<mailing-scenario xmlns=\"http://www.canadapost.ca/ws/ship/rate-v4\">");
@@ -202,7 +356,7 @@ public class CanadaPostRateProvider implements ShippingRateProvider {
         }
         xml.append("<quote-type>counter</quote-type>")
                 .append("<parcel-characteristics><weight>")
-                .append(parcel.weightKg().stripTrailingZeros().toPlainString())
+                .append(weightKg.stripTrailingZeros().toPlainString())
                 .append("</weight>");
 
         // add dimensions if configured
@@ -221,26 +375,30 @@ public class CanadaPostRateProvider implements ShippingRateProvider {
                 .append("</postal-code></domestic></destination>")
                 .append("</mailing-scenario>");
 
-        /*  HTTP call */
-        HttpHeaders h = new HttpHeaders();
-        h.set(HttpHeaders.AUTHORIZATION, authHeader);
-        h.setAccept(List.of(MediaType.parseMediaType(MEDIA_TYPE)));
-        h.setContentType(MediaType.parseMediaType(MEDIA_TYPE));
-        h.setAcceptLanguageAsLocales(List.of(Locale.CANADA));
+        /*  HTTP call (pooled, time-boxed, bulkheaded, circuit-broken; quotes are idempotent) */
+        HttpRequest.Builder req = HttpRequest.newBuilder(URI.create(url))
+                .header(HttpHeaders.AUTHORIZATION, authHeader)
+                .header(HttpHeaders.ACCEPT, MEDIA_TYPE)
+                .header(HttpHeaders.CONTENT_TYPE, MEDIA_TYPE)
+                .header(HttpHeaders.ACCEPT_LANGUAGE, "en-CA")
+                .POST(HttpRequest.BodyPublishers.ofString(xml.toString(), StandardCharsets.UTF_8));
 
         try {
-            ResponseEntity<String> resp = rest.exchange(
-                    URL, HttpMethod.POST, new HttpEntity<>(xml.toString(), h), String.class);
+            HttpResponse<byte[]> resp = http.send(req, true);
 
-            if (!resp.getStatusCode().is2xxSuccessful() || resp.getBody() == null) {
-                log.warn("Canada Post rating call non-OK: {}", resp.getStatusCode());
-                return fallback(method);
+            if (resp.statusCode() / 100 != 2 || resp.body() == null) {
+                log.warn("Canada Post rating call non-OK: {}", resp.statusCode());
+                return null;
             }
-            return extractRate(resp.getBody(), method);
+            Map<String, BigDecimal> quotes = extractRates(resp.body());
+            return quotes.isEmpty() ? null : quotes;
 
+        } catch (ProviderUnavailableException ex) {
+            log.warn("Canada Post unavailable - using flat fee: {}", ex.getMessage());
+            return null;
         } catch (Exception ex) {
             log.error("Canada Post rating call failed - using flat fee", ex);
-            return fallback(method);
+            return null;
         }
     }
 
@@ -263,33 +421,53 @@ public class CanadaPostRateProvider implements ShippingRateProvider {
                 : new BigDecimal("20.00");
     }
 
-    /** Pull due for DOM.RP/DOM.XP out of the XML answer. */
-    private static BigDecimal extractRate(String xml, ShippingMethod m) {
-        String svc = (m == ShippingMethod.REGULAR) ? "DOM.RP" : "DOM.XP";
+    private static String serviceCode(ShippingMethod m) {
+        return (m == ShippingMethod.REGULAR) ? "DOM.RP" : "DOM.XP";
+    }
+
+    /** Streaming (StAX) pass over the price-quotes answer: service-code -> price-details/due. */
+    static Map<String, BigDecimal> extractRates(byte[] xml) {
+        Map<String, BigDecimal> out = new HashMap<>();
+        XMLStreamReader r = null;
         try {
-            var db = DocumentBuilderFactory.newInstance();
-            db.setNamespaceAware(true);
-            var doc = db.newDocumentBuilder().parse(new InputSource(new StringReader(xml)));
-
-            NodeList quotes = doc.getElementsByTagNameNS("*", "price-quote");
-            for (int i = 0; i < quotes.getLength(); i++) {
-                Element q = (Element) quotes.item(i);
-                if (svc.equalsIgnoreCase(getChildText(q, "service-code"))) {
-                    Element priceDetails =
-                            (Element) q.getElementsByTagNameNS("*", "price-details").item(0);
-                    return new BigDecimal(getChildText(priceDetails, "due").trim());
+            r = XML_INPUT.createXMLStreamReader(new ByteArrayInputStream(xml));
+            String code = null;
+            BigDecimal due = null;
+            boolean inDetails = false;
+            while (r.hasNext()) {
+                int ev = r.next();
+                if (ev == XMLStreamConstants.START_ELEMENT) {
+                    switch (r.getLocalName()) {
+                        case "price-quote"   -> { code = null; due = null; }
+                        case "service-code"  -> code = r.getElementText().trim();
+                        case "price-details" -> inDetails = true;
+                        case "due"           -> { if (inDetails && due == null) due = new BigDecimal(r.getElementText().trim()); }
+                        default -> { }
+                    }
+                } else if (ev == XMLStreamConstants.END_ELEMENT) {
+                    switch (r.getLocalName()) {
+                        case "price-details" -> inDetails = false;
+                        case "price-quote"   -> { if (code != null && due != null) out.put(code.toUpperCase(Locale.ROOT), due); }
+                        default -> { }
+                    }
                 }
             }
-            // If exact service not found, fall back (keeps UX responsive)
-            log.warn("Service {} not found in CP response - XML:\n{}", svc, xml);
         } catch (Exception ex) {
-            log.error("Failed parsing CP response - XML:\n{}", xml, ex);
+            log.error("Failed parsing CP response - XML:\n{}", new String(xml, StandardCharsets.UTF_8), ex);
+            return Map.of();
+        } finally {
+            if (r != null) {
+                try { r.close(); } catch (XMLStreamException ignored) { }
+            }
         }
-        return fallback(m);
+        return out;
     }
 
-    private static String getChildText(Element parent, String local) {
-        NodeList nl = parent.getElementsByTagNameNS("*", local);
-        return nl.getLength() == 0 ? "" : nl.item(0).getTextContent();
+    private static XMLInputFactory newXmlInputFactory() {
+        XMLInputFactory f = XMLInputFactory.newFactory();
+        f.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        f.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return f;
     }
 }
@@ -5,13 +5,14 @@ import com.ttclub.backend.dto.CartDto;
 import com.ttclub.backend.mapper.CartMapper;
 import com.ttclub.backend.model.*;
 import com.ttclub.backend.repository.*;
-import jakarta.persistence.*;
 import jakarta.transaction.Transactional;
 import org.springframework.stereotype.Service;
 
 /**
- * Cart operations. Policy change: we DO NOT “reserve” inventory for PENDING_PAYMENT;
- * availability checks are against current product.inventoryQty only.
+ * Cart operations. Carts do not reserve stock; availability checks are against the
+ * available-to-promise qty (on-hand minus holds of pending orders, see InventoryService).
+ * Those checks are plain reads (no product row lock): the atomic hold taken when the order
+ * is placed is what prevents oversell.
  */
 @Service
 @Transactional
@@ -22,25 +23,25 @@ public class CartService {
     private final ProductRepository  productRepo;
     private final UserRepository     userRepo;
     private final CartMapper         mapper;
-
-    @PersistenceContext
-    private EntityManager em;
+    private final InventoryService   inventory;
 
     public CartService(CartRepository cartRepo,
                        CartItemRepository cartItemRepo,
                        ProductRepository productRepo,
                        UserRepository userRepo,
-                       CartMapper mapper) {
+                       CartMapper mapper,
+                       InventoryService inventory) {
         this.cartRepo     = cartRepo;
         this.cartItemRepo = cartItemRepo;
         this.productRepo  = productRepo;
         this.userRepo     = userRepo;
         this.mapper       = mapper;
+        this.inventory    = inventory;
     }
 
-    /** Lock the product row to keep concurrent edits consistent. */
-    private Product lockProduct(Long productId) {
-        return em.find(Product.class, productId, LockModeType.PESSIMISTIC_WRITE);
+    private Product product(Long productId) {
+        return productRepo.findById(productId)
+                .orElseThrow(() -> new IllegalArgumentException("Product not found"));
     }
 
     /** Fetch or create the user's cart (by email). */
@@ -53,9 +54,9 @@ public class CartService {
 
     public CartDto addItem(String userEmail, Long productId, int qty) {
         Cart cart       = getOrCreateCart(userEmail);
-        Product product = lockProduct(productId);
+        Product product = product(productId);
 
-        int avail = Math.max(0, product.getInventoryQty());
+        int avail = inventory.availableQty(productId);
         if (qty > avail) throw new IllegalArgumentException("Not enough stock");
 
         CartItem item = cart.getItems().stream()
@@ -88,8 +89,8 @@ public class CartService {
         if (!item.getCart().getUser().getEmail().equals(userEmail))
             throw new SecurityException("Not owner of cart");
 
-        Product product = lockProduct(item.getProduct().getId());
-        int avail       = Math.max(0, product.getInventoryQty());
+        Product product = item.getProduct();
+        int avail       = inventory.availableQty(product.getId());
 
         if (qty > avail) throw new IllegalArgumentException("Not enough stock");
 
@@ -3,11 +3,9 @@ package com.ttclub.backend.service;
 import com.ttclub.backend.model.EmailVerificationCode;
 import com.ttclub.backend.repository.EmailVerificationCodeRepository;
 import com.ttclub.backend.repository.UserRepository;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.ttclub.backend.service.mail.EmailOutbox;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
@@ -21,31 +19,28 @@ import java.util.Locale;
  * Rules:
  *  - Code is 6 digits, TTL is configurable (default 10 minutes), single-use.<br>
  *  - If email exists (LOCAL or OAUTH), send-code returns 409 EMAIL_EXISTS.<br>
- *  - When ttclub.mail.enabled=false, no email is sent; content is logged instead.
+ *  - Codes are queued on the e-mail outbox and go out after commit; when ttclub.mail.enabled=false
+ *    the dispatcher logs the content instead of sending it.
  */
 @Service
 @Transactional
 public class EmailCodeService {
 
-    private static final Logger log = LoggerFactory.getLogger(EmailCodeService.class);
     private static final SecureRandom RNG = new SecureRandom();
 
     private final EmailVerificationCodeRepository codes;
     private final UserRepository users;
-    private final JavaMailSender mail;
+    private final EmailOutbox outbox;
 
-    private final boolean mailEnabled;
     private final int ttlSeconds;
 
     public EmailCodeService(EmailVerificationCodeRepository codes,
                             UserRepository users,
-                            JavaMailSender mailSender,
-                            @Value("${ttclub.mail.enabled:true}") boolean mailEnabled,
+                            EmailOutbox outbox,
                             @Value("${ttclub.auth.code-ttl-sec:600}") int ttlSeconds) {
         this.codes = codes;
         this.users = users;
-        this.mail = mailSender;
-        this.mailEnabled = mailEnabled;
+        this.outbox = outbox;
         this.ttlSeconds = ttlSeconds;
     }
 
@@ -69,32 +64,28 @@ public class EmailCodeService {
             row.setExpiresAt(exp);
         }, () -> codes.save(new EmailVerificationCode(email, code, exp)));
 
-        if (!mailEnabled) {
-            log.info("[DEV-MAIL] verification code for {} is {} (expires in {} seconds)", email, code, ttlSeconds);
-            return;
-        }
-
         SimpleMailMessage msg = new SimpleMailMessage();
         msg.setTo(email);
         msg.setSubject("Your verification code");
         msg.setText(buildBody(code, ttlSeconds));
-        mail.send(msg);
+        outbox.enqueue("verification-code", msg);
     }
 
-    /** Validate and consume the code (single-use). Throws on invalid or expired. */
-    public void assertValid(String rawEmail, String providedCode) {
-        String email = normalize(rawEmail);
-
-        if (!StringUtils.hasText(email)) {
-            throw new IllegalArgumentException("Email cannot be blank");
-        }
-        if (providedCode == null || !providedCode.matches("\\d{6}")) {
-            // do not leak specifics
+    /**
+     * Validate without consuming (read-only). Lets callers reject a bad code before doing expensive
+     * work (password hashing); {@link #assertValid} must still consume it. Throws on invalid or expired.
+     */
+    @Transactional(readOnly = true)
+    public void checkValid(String rawEmail, String providedCode) {
+        EmailVerificationCode row = find(rawEmail, providedCode);
+        if (row.getExpiresAt().isBefore(Instant.now()) || !row.getCode().equals(providedCode)) {
             throw new IllegalArgumentException("Invalid verification code");
         }
+    }
 
-        EmailVerificationCode row = codes.findByEmailIgnoreCase(email)
-                .orElseThrow(() -> new IllegalArgumentException("Invalid verification code"));
+    /** Validate and consume the code (single-use). Throws on invalid or expired. */
+    public void assertValid(String rawEmail, String providedCode) {
+        EmailVerificationCode row = find(rawEmail, providedCode);
 
         if (row.getExpiresAt().isBefore(Instant.now())) {
             codes.delete(row);
@@ -108,6 +99,20 @@ public class EmailCodeService {
         codes.delete(row);
     }
 
+    private EmailVerificationCode find(String rawEmail, String providedCode) {
+        String email = normalize(rawEmail);
+
+        if (!StringUtils.hasText(email)) {
+            throw new IllegalArgumentException("Email cannot be blank");
+        }
+        if (providedCode == null || !providedCode.matches("\\d{6}")) {
+            // do not leak specifics
+            throw new IllegalArgumentException("Invalid verification code");
+        }
+        return codes.findByEmailIgnoreCase(email)
+                .orElseThrow(() -> new IllegalArgumentException("Invalid verification code"));
+    }
+
     private static String normalize(String email) {
         if (email == null) return "";
         return email.trim().toLowerCase(Locale.ROOT);
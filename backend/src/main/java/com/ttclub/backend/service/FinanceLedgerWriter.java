@@ -0,0 +1,84 @@
+package com.ttclub.backend.service;
+
+import com.ttclub.backend.booking.model.MembershipPayment;
+import com.ttclub.backend.booking.model.ProgramEnrollmentPayment;
+import com.ttclub.backend.booking.model.TableRentalPurchase;
+import com.ttclub.backend.model.Order;
+import com.ttclub.backend.model.RefundEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+
+/**
+ * Append-only writer for the finance_ledger table (partitioned by month on ts).<br>
+ * Notes:
+ *  - Called in the same transaction as the money movement (JdbcTemplate shares the JPA
+ *    connection), so a ledger row exists exactly when the payment / refund commits.
+ *  - Rows are never updated; corrections are new rows (refunds are negative).
+ *  - Callers only append on their own PENDING -> SUCCEEDED / PAID transitions, which keeps
+ *    webhook retries from double-counting.
+ */
+@Service
+public class FinanceLedgerWriter {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO finance_ledger
+                   (ts, action, source_id, user_id, subtotal, shipping, tax, total, status, currency)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private final JdbcTemplate jdbc;
+
+    public FinanceLedgerWriter(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /** Shop order that just became PAID. */
+    public void orderPaid(Order o) {
+        append("PURCHASE", o.getId(), o.getUser() == null ? null : o.getUser().getId(),
+                o.getSubtotalAmount(), o.getShippingAmount(), o.getTaxAmount(), o.getTotalAmount(),
+                o.getStatus().name(), "cad");
+    }
+
+    /** Refund recorded against an order (stored negative). */
+    public void refund(RefundEvent r) {
+        Order o = r.getOrder();
+        BigDecimal amt = nz(r.getAmount()).negate();
+        append("REFUND", r.getId(), o.getUser() == null ? null : o.getUser().getId(),
+                amt, BigDecimal.ZERO, BigDecimal.ZERO, amt, "REFUNDED", r.getCurrency());
+    }
+
+    public void membershipPaid(MembershipPayment p) {
+        append("MEMBERSHIP", p.getId(), p.getUser().getId(),
+                p.getPriceCad(), BigDecimal.ZERO, p.getTaxCad(), p.getTotalCad(),
+                p.getStatus().name(), p.getCurrency());
+    }
+
+    public void enrollmentPaid(ProgramEnrollmentPayment p) {
+        append("ENROLLMENT", p.getId(), p.getUser().getId(),
+                p.getPriceCad(), BigDecimal.ZERO, p.getTaxCad(), p.getTotalCad(),
+                p.getStatus().name(), p.getCurrency());
+    }
+
+    public void tableRentalPaid(TableRentalPurchase p) {
+        append("TABLE_RENTAL", p.getId(), p.getUser().getId(),
+                p.getPriceCad(), BigDecimal.ZERO, p.getTaxCad(), p.getTotalCad(),
+                p.getStatus().name(), p.getCurrency());
+    }
+
+    private void append(String action, Long sourceId, Long userId,
+                        BigDecimal subtotal, BigDecimal shipping, BigDecimal tax, BigDecimal total,
+                        String status, String currency) {
+        jdbc.update(INSERT_SQL,
+                Timestamp.from(Instant.now()), action, sourceId, userId,
+                nz(subtotal), nz(shipping), nz(tax), nz(total), status,
+                currency == null || currency.isBlank() ? "cad" : currency);
+    }
+
+    private static BigDecimal nz(BigDecimal v) {
+        return v != null ? v : BigDecimal.ZERO;
+    }
+}
@@ -1,36 +1,122 @@
 package com.ttclub.backend.service;
 
-import com.ttclub.backend.dto.FinanceRowDto;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.PersistenceContext;
+import com.ttclub.backend.util.CsvWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.Timestamp;
-import java.util.List;
 
+/**
+ * Finance exports.<br>
+ * Notes:
+ *  - Default source is the append-only finance_ledger table (monthly range partitions on ts),
+ *    so a date range only touches the partitions it overlaps; "id" is the source row id.
+ *  - ttclub.finance.ledger.mode=view reads the legacy finance_ledger_mv instead (orders and
+ *    refunds only), refreshed by FinanceLedgerMaintenanceJob.
+ *  - {@link #streamCsv} is the export path: a forward-only cursor (fetch-size rows per round-trip,
+ *    needs the read-only transaction so Postgres keeps the portal open) feeding a CsvWriter,
+ *    so memory stays flat whatever the date range.
+ */
 @Service
 public class FinanceService {
 
-    @PersistenceContext
-    private EntityManager em;
-
-    @SuppressWarnings("unchecked")
-    public List<FinanceRowDto> fetchBetween(Timestamp from, Timestamp to) {
-        return em.createNativeQuery("""
-                SELECT id,
-                       ts,
-                       action,
-                       subtotal,
-                       shipping,
-                       tax,
-                       total,
-                       status
-                FROM finance_ledger
-                WHERE ts BETWEEN :from AND :to
-                ORDER BY ts
-                """, "FinanceRowMapping")
-                .setParameter("from", from)
-                .setParameter("to", to)
-                .getResultList();
+    private static final String TABLE_SQL = """
+            SELECT source_id AS id,
+                   ts,
+                   action,
+                   subtotal,
+                   shipping,
+                   tax,
+                   total,
+                   status
+            FROM finance_ledger
+            WHERE ts BETWEEN ? AND ?
+            ORDER BY ts, id
+            """;
+
+    private static final String VIEW_SQL = """
+            SELECT id,
+                   ts,
+                   action,
+                   subtotal,
+                   shipping,
+                   tax,
+                   total,
+                   status
+            FROM finance_ledger_mv
+            WHERE ts BETWEEN ? AND ?
+            ORDER BY ts
+            """;
+
+    private static final byte[] CSV_HEADER =
+            "id,date,action,subtotal,shipping,tax,total,status\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final JdbcTemplate jdbc;
+
+    @Value("${ttclub.finance.ledger.mode:table}")
+    private String mode;
+
+    @Value("${ttclub.finance.csv.fetch-size:2000}")
+    private int fetchSize;
+
+    @Value("${ttclub.finance.csv.flush-rows:5000}")
+    private int flushRows;
+
+    @Value("${ttclub.finance.csv.buffer-bytes:65536}")
+    private int bufferBytes;
+
+    public FinanceService(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    /**
+     * Writes the CSV export for [from, to] to out, row by row.
+     * @return number of data rows written
+     */
+    @Transactional(readOnly = true)
+    public long streamCsv(Timestamp from, Timestamp to, OutputStream out) throws IOException {
+        String sql = "view".equalsIgnoreCase(mode) ? VIEW_SQL : TABLE_SQL;
+        CsvWriter csv = new CsvWriter(out, bufferBytes);
+        out.write(CSV_HEADER);
+        long[] rows = {0};
+        int every = Math.max(1, flushRows);
+        try {
+            jdbc.query(con -> {
+                PreparedStatement ps = con.prepareStatement(sql,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(Math.max(1, fetchSize));
+                ps.setTimestamp(1, from);
+                ps.setTimestamp(2, to);
+                return ps;
+            }, rs -> {
+                try {
+                    Timestamp ts = rs.getTimestamp(2);
+                    csv.field(rs.getLong(1))
+                       .raw(ts == null ? null : ts.toString())
+                       .field(rs.getString(3))
+                       .money(rs.getBigDecimal(4))
+                       .money(rs.getBigDecimal(5))
+                       .money(rs.getBigDecimal(6))
+                       .money(rs.getBigDecimal(7))
+                       .field(rs.getString(8))
+                       .endRow();
+                    if (++rows[0] % every == 0) csv.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e); // client went away: stop reading the cursor
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        csv.flush();
+        return rows[0];
     }
 }
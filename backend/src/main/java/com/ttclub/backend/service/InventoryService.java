@@ -1,48 +1,254 @@
 /* src/main/java/com/ttclub/backend/service/InventoryService.java */
 package com.ttclub.backend.service;
 
-import com.ttclub.backend.model.Product;
-import com.ttclub.backend.repository.ProductRepository;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.PersistenceContext;
+import jakarta.transaction.Transactional;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
- * Read-only helpers for available stock.
- * Policy: we DO NOT reserve inventory for PENDING_PAYMENT.
- * Availability == product.inventoryQty (non-negative).
+ * Available stock, reservations of pending orders and the stock movements of orders / refunds.<br>
+ * Policy: a PENDING_PAYMENT order holds its quantities (inventory_holds, products.reserved_qty)
+ * until it is paid, cancelled, or its hold expires and the sweeper cancels its PaymentIntent.
+ * Availability (available-to-promise) == inventory_qty - reserved_qty, clamped at 0.<br>
+ * Notes:
+ *  - Every movement is a conditional atomic UPDATE sent as one JDBC batch in ascending product
+ *    id order: the stock check and the write are one statement (no SELECT ... FOR UPDATE round
+ *    trip first), and two multi-item checkouts always touch rows in the same order, so they
+ *    cannot deadlock.
+ *  - The row lock an UPDATE takes is still held until the caller's transaction commits: takes of
+ *    one hot SKU are serialised per transaction, so keep the transactions around them short.
+ *  - hold / take are all-or-nothing: when any line is short, the lines already applied are
+ *    undone before the exception, so callers that catch it keep consistent stock.
+ *  - capture turns an order's holds into a real decrement and cannot fail for lack of stock,
+ *    which is what keeps paid orders from being cancelled at capture time.
+ *  - Rows are changed behind Hibernate; managed Product instances keep their loaded qty until
+ *    refreshed (none of the callers write Product entities in the same transaction).
+ *  - The in-memory AvailableToPromise counter is moved by the same deltas after commit.
  */
 @Service
 public class InventoryService {
 
-    private final ProductRepository products;
+    private static final String HOLD_SQL = """
+            UPDATE products SET reserved_qty = reserved_qty + ?
+             WHERE id = ? AND inventory_qty - reserved_qty >= ?
+            """;
 
-    @PersistenceContext
-    private EntityManager em;
+    private static final String UNHOLD_SQL = """
+            UPDATE products SET reserved_qty = GREATEST(reserved_qty - ?, 0) WHERE id = ?
+            """;
 
-    public InventoryService(ProductRepository products) {
-        this.products = products;
+    private static final String INSERT_HOLD_SQL = """
+            INSERT INTO inventory_holds (order_id, product_id, qty, expires_at) VALUES (?, ?, ?, ?)
+            """;
+
+    private static final String CAPTURE_SQL = """
+            UPDATE products SET inventory_qty = GREATEST(inventory_qty - ?, 0),
+                                reserved_qty  = GREATEST(reserved_qty - ?, 0)
+             WHERE id = ?
+            """;
+
+    private static final String TAKE_SQL = """
+            UPDATE products SET inventory_qty = inventory_qty - ?
+             WHERE id = ? AND inventory_qty - reserved_qty >= ?
+            """;
+
+    private static final String RESTOCK_SQL = "UPDATE products SET inventory_qty = inventory_qty + ? WHERE id = ?";
+
+    private static final String DELETE_HOLDS_SQL = """
+            DELETE FROM inventory_holds WHERE order_id = ANY (?) RETURNING product_id, qty
+            """;
+
+    private static final String EXPIRED_SQL = """
+            SELECT h.order_id, o.stripe_payment_intent_id
+              FROM inventory_holds h
+              JOIN orders o ON o.id = h.order_id
+             WHERE h.expires_at < now()
+             GROUP BY h.order_id, o.stripe_payment_intent_id
+             ORDER BY min(h.expires_at)
+             LIMIT ?
+            """;
+
+    /** An order with at least one expired hold. */
+    public record ExpiredHold(long orderId, String paymentIntentId) { }
+
+    private final JdbcTemplate jdbc;
+    private final AvailableToPromise atp;
+
+    @Value("${ttclub.inventory.hold-ttl-min:30}")
+    private long holdTtlMin;
+
+    public InventoryService(JdbcTemplate jdbc, AvailableToPromise atp) {
+        this.jdbc = jdbc;
+        this.atp = atp;
     }
 
     public int availableQty(Long productId) {
-        return products.findById(productId)
-                .map(Product::getInventoryQty)
-                .map(q -> Math.max(0, q))
-                .orElse(0);
+        return atp.get(List.of(productId)).getOrDefault(productId, 0);
     }
 
-    /** Bulk helper: each id -> available qty (0 for unknown ids). */
+    /** Bulk helper: each id -> available-to-promise qty (0 for unknown ids). */
     public Map<Long, Integer> availabilityFor(Collection<Long> productIds) {
         if (productIds == null || productIds.isEmpty()) return Collections.emptyMap();
-        Set<Long> ids = productIds.stream().filter(Objects::nonNull).collect(Collectors.toSet());
-        Map<Long, Integer> invById = new HashMap<>();
-        products.findAllById(ids).forEach(p -> invById.put(p.getId(), Math.max(0, p.getInventoryQty())));
+        return atp.get(productIds);
+    }
+
+    /* Reservations (run inside the caller's transaction) */
+
+    /**
+     * Reserves qty per product (productId -> qty) for a pending order, or nothing at all.
+     * @throws IllegalArgumentException naming the first product without enough available stock
+     */
+    public void hold(Long orderId, Map<Long, Integer> qtyByProduct) {
+        List<Map.Entry<Long, Integer>> lines = ordered(qtyByProduct);
+        if (lines.isEmpty()) return;
+
+        Long shortId = applyAllOrNothing(HOLD_SQL, UNHOLD_SQL, lines);
+        if (shortId != null) {
+            throw new IllegalArgumentException("Not enough stock for " + nameOf(shortId));
+        }
+
+        Timestamp expires = holdExpiry();
+        jdbc.batchUpdate(INSERT_HOLD_SQL, lines.stream()
+                .map(e -> new Object[]{ orderId, e.getKey(), e.getValue(), expires })
+                .toList());
+        atp.adjustAfterCommit(deltas(lines, -1));
+    }
+
+    /**
+     * Converts the order's holds into a stock decrement (payment captured).
+     * @return false when the order holds nothing (legacy order, or already released)
+     */
+    public boolean capture(Long orderId) {
+        Map<Long, Integer> held = deleteHolds(List.of(orderId));
+        if (held.isEmpty()) return false;
+        List<Map.Entry<Long, Integer>> lines = ordered(held);
+        jdbc.batchUpdate(CAPTURE_SQL, lines.stream()
+                .map(e -> new Object[]{ e.getValue(), e.getValue(), e.getKey() })
+                .toList());
+        return true;   // on-hand and reserved drop together: available-to-promise is unchanged
+    }
+
+    /** Releases every hold of the given orders (cancelled / failed / replaced). */
+    public void release(Collection<Long> orderIds) {
+        if (orderIds == null || orderIds.isEmpty()) return;
+        List<Map.Entry<Long, Integer>> lines = ordered(deleteHolds(orderIds));
+        if (lines.isEmpty()) return;
+        jdbc.batchUpdate(UNHOLD_SQL, lines.stream()
+                .map(e -> new Object[]{ e.getValue(), e.getKey() })
+                .toList());
+        atp.adjustAfterCommit(deltas(lines, +1));
+    }
+
+    /** Orders whose holds are past expires_at, oldest first. */
+    public List<ExpiredHold> expired(int limit) {
+        return jdbc.query(EXPIRED_SQL, (rs, i) -> new ExpiredHold(rs.getLong(1), rs.getString(2)), limit);
+    }
+
+    /** Pushes the order's holds one TTL further (its PaymentIntent may still be paid). */
+    public void extend(Long orderId) {
+        jdbc.update("UPDATE inventory_holds SET expires_at = ? WHERE order_id = ?", holdExpiry(), orderId);
+    }
+
+    /** Releases an expired order's holds and cancels the order if it is still unpaid. */
+    @Transactional
+    public void releaseExpired(Long orderId) {
+        release(List.of(orderId));
+        jdbc.update("""
+                UPDATE orders SET status = 'CANCELLED', updated_at = now(), version = version + 1
+                 WHERE id = ? AND status = 'PENDING_PAYMENT'
+                """, orderId);
+    }
+
+    /* Movements of unreserved stock (run inside the caller's transaction) */
+
+    /**
+     * Takes qty per product (productId -> qty) from unreserved stock, or nothing at all.
+     * @throws IllegalStateException naming the first product that does not have enough stock
+     */
+    public void take(Map<Long, Integer> qtyByProduct) {
+        List<Map.Entry<Long, Integer>> lines = ordered(qtyByProduct);
+        if (lines.isEmpty()) return;
+
+        Long shortId = applyAllOrNothing(TAKE_SQL, RESTOCK_SQL, lines);
+        if (shortId != null) {
+            throw new IllegalStateException("Insufficient stock for product " + nameOf(shortId));
+        }
+        atp.adjustAfterCommit(deltas(lines, -1));
+    }
+
+    /** Puts qty back per product (productId -> qty); unknown ids are ignored. */
+    public void restock(Map<Long, Integer> qtyByProduct) {
+        List<Map.Entry<Long, Integer>> lines = ordered(qtyByProduct);
+        if (lines.isEmpty()) return;
+        jdbc.batchUpdate(RESTOCK_SQL, lines.stream()
+                .map(e -> new Object[]{ e.getValue(), e.getKey() })
+                .toList());
+        atp.adjustAfterCommit(deltas(lines, +1));
+    }
+
+    /* internals */
+
+    /**
+     * Runs conditional (qty, id, qty) updates as one batch; if any row did not match, the
+     * matched ones are undone with (qty, id) and the first short product id is returned.
+     */
+    private Long applyAllOrNothing(String sql, String undoSql, List<Map.Entry<Long, Integer>> lines) {
+        int[] counts = jdbc.batchUpdate(sql, lines.stream()
+                .map(e -> new Object[]{ e.getValue(), e.getKey(), e.getValue() })
+                .toList());
+
+        List<Object[]> undo = new ArrayList<>();
+        Long shortId = null;
+        for (int i = 0; i < lines.size(); i++) {
+            Map.Entry<Long, Integer> e = lines.get(i);
+            if (counts[i] == 1) undo.add(new Object[]{ e.getValue(), e.getKey() });
+            else if (shortId == null) shortId = e.getKey();
+        }
+        if (shortId != null && !undo.isEmpty()) jdbc.batchUpdate(undoSql, undo);
+        return shortId;
+    }
+
+    private Map<Long, Integer> deleteHolds(Collection<Long> orderIds) {
+        Map<Long, Integer> held = new HashMap<>();
+        jdbc.query(con -> {
+            PreparedStatement ps = con.prepareStatement(DELETE_HOLDS_SQL);
+            ps.setArray(1, con.createArrayOf("bigint", orderIds.toArray()));
+            return ps;
+        }, rs -> {
+            held.merge(rs.getLong(1), rs.getInt(2), Integer::sum);
+        });
+        return held;
+    }
+
+    private Timestamp holdExpiry() {
+        return Timestamp.from(Instant.now().plus(Duration.ofMinutes(Math.max(1, holdTtlMin))));
+    }
+
+    /** Positive lines in ascending product id order (the lock order shared by every writer). */
+    private static List<Map.Entry<Long, Integer>> ordered(Map<Long, Integer> qtyByProduct) {
+        if (qtyByProduct == null || qtyByProduct.isEmpty()) return List.of();
+        TreeMap<Long, Integer> sorted = new TreeMap<>();
+        qtyByProduct.forEach((id, q) -> {
+            if (id != null && q != null && q > 0) sorted.merge(id, q, Integer::sum);
+        });
+        return new ArrayList<>(sorted.entrySet());
+    }
+
+    private static Map<Long, Integer> deltas(List<Map.Entry<Long, Integer>> lines, int sign) {
+        Map<Long, Integer> d = new HashMap<>();
+        for (Map.Entry<Long, Integer> e : lines) d.put(e.getKey(), sign * e.getValue());
+        return d;
+    }
 
-        Map<Long, Integer> result = new LinkedHashMap<>();
-        for (Long id : ids) result.put(id, invById.getOrDefault(id, 0));
-        return result;
+    private String nameOf(Long productId) {
+        List<String> names = jdbc.queryForList("SELECT name FROM products WHERE id = ?", String.class, productId);
+        return names.isEmpty() ? "#" + productId : names.get(0);
     }
 }
@@ -8,6 +8,7 @@ import com.ttclub.backend.model.User;
 import com.ttclub.backend.repository.MfaRecoveryCodeRepository;
 import com.ttclub.backend.repository.PreAuthSessionRepository;
 import com.ttclub.backend.repository.UserRepository;
+import com.ttclub.backend.security.PrincipalCache;
 import com.ttclub.backend.security.SecretCrypto;
 import com.ttclub.backend.security.TokenHashingService;
 import org.springframework.beans.factory.annotation.Value;
@@ -51,6 +52,7 @@ public class MfaService {
     private final PasswordEncoder pe;
     private final SecretCrypto crypto;
     private final TokenHashingService hasher;
+    private final PrincipalCache principals;
     private final String issuer;
     private final int mfaVerifyMaxAttempts;
 
@@ -60,6 +62,7 @@ public class MfaService {
                       PasswordEncoder pe,
                       SecretCrypto crypto,
                       TokenHashingService hasher,
+                      PrincipalCache principals,
                       @Value("${ttclub.mfa.issuer:TT Club}") String issuer,
                       @Value("${ttclub.mfa.verify-max-attempts:6}") int maxAttempts) {
         this.users = users;
@@ -68,6 +71,7 @@ public class MfaService {
         this.pe = pe;
         this.crypto = crypto;
         this.hasher = hasher;
+        this.principals = principals;
         this.issuer = issuer;
         this.mfaVerifyMaxAttempts = Math.max(1, maxAttempts);
     }
@@ -88,6 +92,7 @@ public class MfaService {
         String secret = newSecret();
         user.setMfaSecretTmpEnc(crypto.encrypt(secret));
         users.save(user);
+        principals.evict(user.getId());
 
         String label = issuer + ":" + user.getEmail();
         String uri = "otpauth://totp/" +
@@ -122,6 +127,7 @@ public class MfaService {
         user.setMfaSecretTmpEnc(null);
         user.setMfaEnabled(true);
         users.save(user);
+        principals.evict(user.getId());
 
         // Generate and store recovery codes (8 random codes)
         recovery.deleteByUser(user);
@@ -161,6 +167,7 @@ public class MfaService {
         user.setMfaSecretEnc(null);
         user.setMfaSecretTmpEnc(null);
         users.save(user);
+        principals.evict(user.getId());
         recovery.deleteByUser(user);
     }
 
@@ -170,6 +177,7 @@ public class MfaService {
         u.setMfaSecretEnc(null);
         u.setMfaSecretTmpEnc(null);
         users.save(u);
+        principals.evict(u.getId());
         recovery.deleteByUser(u);
     }
 
@@ -5,12 +5,11 @@ import com.ttclub.backend.model.Order;
 import com.ttclub.backend.model.OrderItem;
 import com.ttclub.backend.model.Product;
 import com.ttclub.backend.model.ShippingAddress;
+import com.ttclub.backend.service.mail.EmailOutbox;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.MailException;
 import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
@@ -23,22 +22,19 @@ public class OrderEmailService {
 
     private static final Logger log = LoggerFactory.getLogger(OrderEmailService.class);
 
-    private final JavaMailSender mail;
-    private final boolean mailEnabled;
+    private final EmailOutbox outbox;
     private final String fromAddress;
     private final String bccInternal;
 
-    public OrderEmailService(JavaMailSender mail,
-                             @Value("${ttclub.mail.enabled:true}") boolean mailEnabled,
+    public OrderEmailService(EmailOutbox outbox,
                              @Value("${ttclub.mail.from:no-reply@ttclub.local}") String fromAddress,
                              @Value("${ttclub.mail.bcc-internal:}") String bccInternal) {
-        this.mail = mail;
-        this.mailEnabled = mailEnabled;
+        this.outbox = outbox;
         this.fromAddress = fromAddress;
         this.bccInternal = bccInternal;
     }
 
-    /** Sends a simple, itemized receipt to the buyer when the order is PAID. */
+    /** Queues a simple, itemized receipt to the buyer (e-mail outbox, same transaction) when the order is PAID. */
     public void sendOrderConfirmation(Order order) {
         String to = resolveRecipient(order);
         if (!StringUtils.hasText(to)) {
@@ -58,16 +54,8 @@ public class OrderEmailService {
         msg.setSubject(subject);
         msg.setText(body);
 
-        if (!mailEnabled) {
-            log.info("[DEV-MAIL] would send to {}: \n{}\n{}", to, subject, body);
-            return;
-        }
-        try {
-            mail.send(msg);
-        } catch (MailException ex) {
-            // do not fail the webhook or checkout flow due to mail problems
-            log.error("Failed to send order confirmation for order {}", order.getId(), ex);
-        }
+        // an INSERT in the caller's transaction: a failure here must roll the caller back too
+        outbox.enqueue("order-confirmation", msg);
     }
 
     private String resolveRecipient(Order o) {
@@ -5,21 +5,26 @@ import com.ttclub.backend.mapper.OrderMapper;
 import com.ttclub.backend.model.*;
 import com.ttclub.backend.model.Order;
 import com.ttclub.backend.repository.*;
+import com.ttclub.backend.service.mail.EmailOutbox;
 import jakarta.persistence.*;
 import jakarta.persistence.criteria.*;
 import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 @Service
 @Transactional
@@ -29,6 +34,11 @@ public class OrderService {
 
     private static final Logger log = LoggerFactory.getLogger(OrderService.class);
 
+    private static final int MAX_SEARCH_PAGE = 200;
+    /* first-page totals: count exactly up to this many rows, above it trust the planner */
+    private static final long EXACT_COUNT_BELOW = 1000;
+    private static final Pattern PLAN_ROWS = Pattern.compile("rows=(\\d+)");
+
     private final CartRepository      carts;
     private final OrderRepository     orders;
     private final ProductRepository   products;
@@ -40,7 +50,10 @@ public class OrderService {
     private final TaxService          tax;
     private final CouponRepository    coupons;
     private final PaymentEventRepository paymentEvents;
-    private final JavaMailSender      mailer;   
+    private final EmailOutbox         outbox;
+    private final FinanceLedgerWriter ledger;
+    private final JdbcTemplate        jdbc;
+    private final InventoryService    inventory;
 
     @PersistenceContext
     private EntityManager em;
@@ -56,7 +69,10 @@ public class OrderService {
                         TaxService tax,
                         CouponRepository coupons,
                         PaymentEventRepository paymentEvents,
-                        JavaMailSender mailer) {         
+                        EmailOutbox outbox,
+                        FinanceLedgerWriter ledger,
+                        JdbcTemplate jdbc,
+                        InventoryService inventory) {
         this.carts    = carts;
         this.orders   = orders;
         this.products = products;
@@ -68,7 +84,10 @@ public class OrderService {
         this.tax      = tax;
         this.coupons  = coupons;
         this.paymentEvents = paymentEvents;
-        this.mailer   = mailer;  
+        this.outbox   = outbox;
+        this.ledger   = ledger;
+        this.jdbc     = jdbc;
+        this.inventory = inventory;
     }
 
     /* Admin Search */
@@ -160,9 +179,238 @@ public class OrderService {
         return mapper.toDtoList(em.createQuery(cq).setMaxResults(200).getResultList());
     }
 
+    /**
+     * Keyset-paginated admin search (newest first) with a two-phase fetch.<br>
+     * Notes:
+     *  - Same filters and defaults as {@link #search}. Phase 1 reads only (id, created_at) of
+     *    the page through idx_orders_created_at_id, seeking past the cursor with
+     *    (created_at, id) &lt; (?, ?) instead of an OFFSET, so page N costs the same as page 1.
+     *  - Phase 2 loads those orders with their items/products, refund events and lines in a
+     *    fixed number of batch queries, so the mapper never hits a lazy association.
+     *  - Contact filters are substring matches served by trigram GIN indexes: V56's on
+     *    lower(shipping_email), lower(shipping_full_name) and the users full-name expression,
+     *    V31's idx_users_email_trgm on lower(users.email). The users side is resolved once into
+     *    an id array, so both sides stay index scans on orders.
+     *  - The first page carries a total: an exact count when small, otherwise the planner's
+     *    row estimate (no full count over large result sets).
+     */
+    @PreAuthorize("hasRole('ADMIN') or hasRole('OWNER')")
+    public OrderSearchPage searchPage(OrderSearchFilter f, String cursor, int size) {
+        int lim = Math.max(1, Math.min(size, MAX_SEARCH_PAGE));
+        OrderCursor after = OrderCursor.decode(cursor);
+
+        List<Object> args = new ArrayList<>();
+        String where = searchWhere(f, args);
+
+        /* phase 1: page keys */
+        List<Object> pageArgs = new ArrayList<>(args);
+        String seek = "";
+        if (after != null) {
+            seek = " AND (o.created_at, o.id) < (?, ?)";
+            pageArgs.add(Timestamp.from(after.createdAt()));
+            pageArgs.add(after.id());
+        }
+        pageArgs.add(lim + 1);
+        List<OrderCursor> keys = jdbc.query(
+                "SELECT o.id, o.created_at FROM orders o WHERE " + where + seek
+                        + " ORDER BY o.created_at DESC, o.id DESC LIMIT ?",
+                (rs, i) -> new OrderCursor(rs.getTimestamp(2).toInstant(), rs.getLong(1)),
+                pageArgs.toArray());
+
+        String next = null;
+        if (keys.size() > lim) {
+            keys = keys.subList(0, lim);
+            next = keys.get(lim - 1).encode();
+        }
+
+        Long total = null;
+        boolean exact = false;
+        if (after == null) {
+            long estimate = estimateRows(where, args);
+            if (estimate <= EXACT_COUNT_BELOW) {
+                List<Object> countArgs = new ArrayList<>(args);
+                countArgs.add(EXACT_COUNT_BELOW + 1);
+                Long n = jdbc.queryForObject(
+                        "SELECT count(*) FROM (SELECT 1 FROM orders o WHERE " + where + " LIMIT ?) t",
+                        Long.class, countArgs.toArray());
+                estimate = n == null ? 0 : n;
+                exact = estimate <= EXACT_COUNT_BELOW;
+            }
+            total = estimate;
+        }
+
+        /* phase 2: batch-load the page */
+        List<Long> ids = keys.stream().map(OrderCursor::id).toList();
+        return new OrderSearchPage(loadForDto(ids), next, total, exact);
+    }
+
+    /** Loads orders with everything OrderMapper touches, returned in the order of ids. */
+    private List<OrderDto> loadForDto(List<Long> ids) {
+        if (ids.isEmpty()) return List.of();
+
+        List<Order> loaded = em.createQuery("""
+                select distinct o from Order o
+                  left join fetch o.user
+                  left join fetch o.coupon
+                  left join fetch o.items i
+                  left join fetch i.product p
+                  left join fetch p.category
+                 where o.id in :ids
+                """, Order.class)
+                .setParameter("ids", ids)
+                .getResultList();
+
+        // separate queries: two bag fetches in one select would multiply rows (and Hibernate refuses)
+        Set<Long> productIds = new HashSet<>();
+        for (Order o : loaded) {
+            for (OrderItem it : o.getItems()) {
+                if (it.getProduct() != null) productIds.add(it.getProduct().getId());
+            }
+        }
+        if (!productIds.isEmpty()) {
+            em.createQuery("select distinct p from Product p left join fetch p.images where p.id in :ids",
+                            Product.class)
+                    .setParameter("ids", productIds)
+                    .getResultList();
+        }
+        em.createQuery("select distinct o from Order o left join fetch o.refundEvents where o.id in :ids",
+                        Order.class)
+                .setParameter("ids", ids)
+                .getResultList();
+        em.createQuery("select distinct r from RefundEvent r left join fetch r.lines where r.order.id in :ids",
+                        RefundEvent.class)
+                .setParameter("ids", ids)
+                .getResultList();
+
+        Map<Long, Order> byId = new HashMap<>();
+        for (Order o : loaded) byId.put(o.getId(), o);
+        List<OrderDto> out = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Order o = byId.get(id);
+            if (o != null) out.add(mapper.toDto(o));
+        }
+        return out;
+    }
+
+    /** SQL twin of the Criteria predicates in {@link #search}; appends bind values to args. */
+    private static String searchWhere(OrderSearchFilter f, List<Object> args) {
+        StringBuilder w = new StringBuilder("TRUE");
+
+        if (f.getOrderId() != null) {
+            w.append(" AND o.id = ?");
+            args.add(f.getOrderId());
+        }
+
+        if (StringUtils.hasText(f.getEmail())) {
+            String needle = "%" + f.getEmail().toLowerCase() + "%";
+            w.append("""
+                     AND (lower(o.shipping_email) LIKE ?
+                          OR o.user_id = ANY(ARRAY(SELECT u.id FROM users u WHERE lower(u.email) LIKE ?)))""");
+            args.add(needle);
+            args.add(needle);
+        }
+
+        if (StringUtils.hasText(f.getName())) {
+            String needle = "%" + f.getName().toLowerCase() + "%";
+            w.append("""
+                     AND (lower(o.shipping_full_name) LIKE ?
+                          OR o.user_id = ANY(ARRAY(SELECT u.id FROM users u
+                                 WHERE lower(coalesce(u.first_name, '') || ' ' || coalesce(u.last_name, '')) LIKE ?)))""");
+            args.add(needle);
+            args.add(needle);
+        }
+
+        if (f.getStatus() != null) {
+            w.append(" AND o.status = CAST(? AS order_status)");
+            args.add(f.getStatus().name());
+        }
+
+        if (f.getMinTotal() != null) {
+            w.append(" AND o.total_amount >= ?");
+            args.add(f.getMinTotal());
+        }
+        if (f.getMaxTotal() != null) {
+            w.append(" AND o.total_amount <= ?");
+            args.add(f.getMaxTotal());
+        }
+
+        if (f.getFrom() != null) {
+            w.append(" AND o.created_at >= ?");
+            args.add(Timestamp.from(f.getFrom()));
+        }
+        if (f.getTo() != null) {
+            w.append(" AND o.created_at <= ?");
+            args.add(Timestamp.from(f.getTo()));
+        }
+
+        if (StringUtils.hasText(f.getOrigin())) {
+            String o = f.getOrigin().trim().toUpperCase(Locale.ROOT);
+            if ("ONLINE".equals(o)) {
+                w.append(" AND o.stripe_payment_intent_id IS NOT NULL");
+            } else if ("IN_PERSON".equals(o) || "OFFLINE".equals(o)) {
+                w.append(" AND o.stripe_payment_intent_id IS NULL");
+            }
+        }
+
+        if (StringUtils.hasText(f.getOfflinePaymentMethod())) {
+            try {
+                OfflinePaymentMethod m = OfflinePaymentMethod.valueOf(
+                        f.getOfflinePaymentMethod().trim().toUpperCase(Locale.ROOT));
+                w.append(" AND o.offline_payment_method = ?");
+                args.add(m.name());
+            } catch (IllegalArgumentException ignore) { /* invalid filter -> ignore */ }
+        }
+
+        if (f.getStatus() != OrderStatus.PENDING_PAYMENT && !f.isIncludePendingPayment()) {
+            w.append(" AND o.status <> 'PENDING_PAYMENT'");
+        }
+        if (f.getStatus() != OrderStatus.CANCELLED) {
+            w.append(" AND o.status <> 'CANCELLED'");
+        }
+        return w.toString();
+    }
+
+    /** Planner row estimate for the filtered set (EXPLAIN only plans, it does not execute). */
+    private long estimateRows(String where, List<Object> args) {
+        String plan = jdbc.query("EXPLAIN SELECT 1 FROM orders o WHERE " + where,
+                rs -> rs.next() ? rs.getString(1) : null, args.toArray());
+        if (plan != null) {
+            Matcher m = PLAN_ROWS.matcher(plan);
+            if (m.find()) return Long.parseLong(m.group(1));
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /** Opaque keyset cursor: base64url("createdAt|id") of the last row on the page. */
+    private record OrderCursor(Instant createdAt, long id) {
+
+        String encode() {
+            String raw = createdAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static OrderCursor decode(String cursor) {
+            if (!StringUtils.hasText(cursor)) return null;
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int bar = raw.indexOf('|');
+                return new OrderCursor(Instant.parse(raw.substring(0, bar)), Long.parseLong(raw.substring(bar + 1)));
+            } catch (RuntimeException ex) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
+    }
+
     /* Checkout Flows */
 
     private void cancelPendingOrdersForUser(Long userId) {
+        List<Long> pending = em.createQuery(
+                        "select o.id from Order o where o.user.id = :uid and o.status = :pending", Long.class)
+                .setParameter("uid", userId)
+                .setParameter("pending", OrderStatus.PENDING_PAYMENT)
+                .getResultList();
+        inventory.release(pending);
+
         em.createQuery("""
                 update Order o
                    set o.status = :cancelled
@@ -191,14 +439,6 @@ public class OrderService {
         if (cart.getItems().isEmpty())
             throw new IllegalStateException("Cart is empty");
 
-        // IMPORTANT: do NOT subtract pending holds. Inventory is released until PAID.
-        for (CartItem ci : cart.getItems()) {
-            Product p = em.find(Product.class, ci.getProduct().getId(), LockModeType.PESSIMISTIC_WRITE);
-            int avail = p.getInventoryQty();
-            if (ci.getQuantity() > avail)
-                throw new IllegalArgumentException("Not enough stock for " + p.getName());
-        }
-
         Order order = buildOrderSkeleton(cart.getUser(), addr, method);
 
         BigDecimal subtotal = BigDecimal.ZERO;
@@ -209,7 +449,10 @@ public class OrderService {
 
         pricing.price(order);
 
-        return mapper.toDto(orders.save(order));
+        // Reserve the lines until payment (time-boxed); fails with nothing held when short
+        Order saved = orders.save(order);
+        inventory.hold(saved.getId(), quantitiesOf(saved));
+        return mapper.toDto(saved);
     }
 
     public Order placeOrderEntity(Long userId, ShippingAddress addr, ShippingMethod method) {
@@ -225,20 +468,18 @@ public class OrderService {
 
         BigDecimal subtotal = BigDecimal.ZERO;
         for (GuestCartItemDto li : req.items()) {
-            Product p = em.find(Product.class, li.productId(), LockModeType.PESSIMISTIC_WRITE);
+            Product p = em.find(Product.class, li.productId());
             if (p == null)
                 throw new IllegalArgumentException("Product " + li.productId() + " not found");
 
-            int avail = p.getInventoryQty(); // do not subtract pending holds
-            if (li.quantity() > avail)
-                throw new IllegalArgumentException("Not enough stock for " + p.getName());
-
             subtotal = subtotal.add(addLine(order, p, li.quantity(), p.getPrice()));
         }
         initialiseTotals(order, subtotal);
 
         pricing.price(order);
-        return orders.save(order);
+        Order saved = orders.save(order);
+        inventory.hold(saved.getId(), quantitiesOf(saved));
+        return saved;
     }
 
     /* Using Coupons */
@@ -382,11 +623,13 @@ public class OrderService {
         if (adminCart.getItems().isEmpty())
             throw new IllegalStateException("Admin cart is empty");
 
-        // Check stock without subtracting pending holds
+        // Pre-check against available-to-promise (stock held by pending orders excluded) for a clean
+        // error; adjustInventory below takes it atomically
+        Map<Long, Integer> avail = inventory.availabilityFor(
+                adminCart.getItems().stream().map(ci -> ci.getProduct().getId()).toList());
         for (CartItem ci : adminCart.getItems()) {
-            Product p = em.find(Product.class, ci.getProduct().getId(), LockModeType.PESSIMISTIC_WRITE);
-            int avail = p.getInventoryQty();
-            if (ci.getQuantity() > avail)
+            Product p = ci.getProduct();
+            if (ci.getQuantity() > avail.getOrDefault(p.getId(), 0))
                 throw new IllegalArgumentException("Not enough stock for " + p.getName());
         }
 
@@ -454,6 +697,7 @@ public class OrderService {
         ev.setEventType("manual_checkout");
         ev.setPayloadJson(null);
         paymentEvents.save(ev);
+        ledger.orderPaid(order);
 
         // Email confirmation (manual orders are paid immediately)
         safeSendConfirmationEmail(order);
@@ -470,33 +714,23 @@ public class OrderService {
         }
     }
 
-    private int pendingReservedQty(Long productId) {
-        // kept for compatibility - NOT used in availability checks anymore
-        Number n = (Number) em.createQuery("""
-                select coalesce(sum(oi.quantity),0)
-                from OrderItem oi
-                where oi.product.id = :pid
-                  and oi.order.status = :status
-                """)
-                .setParameter("pid", productId)
-                .setParameter("status", OrderStatus.PENDING_PAYMENT)
-                .getSingleResult();
-        return n.intValue();
+    /** factor -1 takes the order's quantities (all-or-nothing, never negative), +1 puts them back. */
+    private void adjustInventory(Order order, int factor) {
+        Map<Long, Integer> qty = quantitiesOf(order);
+        if (factor < 0) {
+            // Guard against oversell; throws IllegalStateException with nothing taken
+            inventory.take(qty);
+        } else {
+            inventory.restock(qty);
+        }
     }
 
-    private void adjustInventory(Order order, int factor) {
+    private static Map<Long, Integer> quantitiesOf(Order order) {
+        Map<Long, Integer> qty = new HashMap<>();
         for (OrderItem oi : order.getItems()) {
-            Product p = em.find(Product.class, oi.getProduct().getId(), LockModeType.PESSIMISTIC_WRITE);
-            int cur = p.getInventoryQty();
-            int delta = factor * oi.getQuantity();
-            int next = cur + delta;
-
-            if (delta < 0 && next < 0) {
-                // Guard against oversell; do not allow negative stock.
-                throw new IllegalStateException("Insufficient stock while finalizing payment for product " + p.getName());
-            }
-            p.setInventoryQty(next);
+            if (oi.getProduct() != null) qty.merge(oi.getProduct().getId(), oi.getQuantity(), Integer::sum);
         }
+        return qty;
     }
 
     public void attachPaymentIntent(Long orderId, String intentId) {
@@ -513,7 +747,9 @@ public class OrderService {
                 case "succeeded" -> {
                     if (order.getStatus() == OrderStatus.PENDING_PAYMENT) {
                         try {
-                            adjustInventory(order, -1);  // decrement only on capture
+                            // held stock is converted and cannot run short; orders placed before
+                            // reservations existed (or whose holds were released) take it directly
+                            if (!inventory.capture(order.getId())) adjustInventory(order, -1);
                             order.setStatus(OrderStatus.PAID);
                             if (order.getUser() != null) {
                                 clearCartForUser(order.getUser().getId());
@@ -527,10 +763,12 @@ public class OrderService {
                     }
                     // send confirmation only if we just transitioned to PAID
                     if (before != OrderStatus.PAID && order.getStatus() == OrderStatus.PAID) {
+                        ledger.orderPaid(order);
                         safeSendConfirmationEmail(order);
                     }
                 }
                 case "payment_failed", "canceled" -> {
+                    inventory.release(List.of(order.getId()));
                     order.setStatus(OrderStatus.CANCELLED);
                 }
                 default -> { /* ignore */ }
@@ -566,7 +804,11 @@ public class OrderService {
 
     @PreAuthorize("hasRole('ADMIN') or hasRole('OWNER')")
     public void markCancelled(Long id) {
-        orders.findById(id).ifPresent(o -> o.setStatus(OrderStatus.CANCELLED));
+        orders.findById(id).ifPresent(o -> {
+            // an unpaid order gives its held stock back; paid orders hold nothing (captured)
+            if (o.getStatus() == OrderStatus.PENDING_PAYMENT) inventory.release(List.of(o.getId()));
+            o.setStatus(OrderStatus.CANCELLED);
+        });
     }
 
     private Order buildOrderSkeleton(User buyer, ShippingAddress addr, ShippingMethod method) {
@@ -685,7 +927,7 @@ public class OrderService {
         msg.setSubject("Your order #" + order.getId() + " is confirmed");
         msg.setText(body.toString());
 
-        mailer.send(msg);
+        outbox.enqueue("order-confirmation", msg);
     }
 
     private static String firstNonBlank(String a, String b) {
@@ -0,0 +1,122 @@
+package com.ttclub.backend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Single-flight execution of payment finalisation per Stripe PaymentIntent.<br>
+ * Notes:
+ *  - The webhook worker and the client-side finalize endpoints may both report the same
+ *    PaymentIntent at once. In-process, the first caller of (operation, PI) runs the work and
+ *    later callers wait for its outcome: once it has committed they return without redoing
+ *    provisioning; if it rolled back (or the wait times out) they run it themselves.
+ *  - Across nodes, the work runs under pg_advisory_xact_lock on a hash of the PI id, taken in
+ *    the caller's transaction and released by its commit/rollback. The orchestrators' status
+ *    checks therefore always read the previous winner's committed state.
+ *  - Must be called inside a transaction (the orchestrators are @Transactional); the work stays
+ *    on the caller's thread so it joins that transaction.
+ *  - A waiting duplicate already holds its transaction's pooled connection, so the wait is short
+ *    (await-ms, default 2 s: the winner's work is a few statements) and never above
+ *    MAX_AWAIT_MS. After that the duplicate queues on the advisory lock like a caller on another node.
+ */
+@Component
+public class PaymentIntentSingleFlight {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentIntentSingleFlight.class);
+
+    /* first key of the two-int advisory lock space reserved for PaymentIntents ("pi") */
+    private static final int LOCK_CLASS = 0x7069;
+
+    static final long MAX_AWAIT_MS = 5_000;
+
+    private final JdbcTemplate jdbc;
+    private final Map<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter leaders;
+    private final Counter joined;
+
+    private final long awaitMs;
+
+    public PaymentIntentSingleFlight(JdbcTemplate jdbc, MeterRegistry meters,
+                                     @Value("${ttclub.payments.single-flight.await-ms:2000}") long awaitMs) {
+        this.jdbc = jdbc;
+        this.awaitMs = Math.max(0, Math.min(awaitMs, MAX_AWAIT_MS));
+        this.leaders = Counter.builder("ttclub.payments.single-flight").tag("result", "leader").register(meters);
+        this.joined = Counter.builder("ttclub.payments.single-flight").tag("result", "joined").register(meters);
+        meters.gauge("ttclub.payments.single-flight.in-flight", inFlight, Map::size);
+    }
+
+    /** Runs work once per (operation, paymentIntentId); concurrent duplicates share the outcome. */
+    public void run(String operation, String paymentIntentId, Runnable work) {
+        if (paymentIntentId == null || paymentIntentId.isBlank()) {
+            work.run();   // manual / offline bookings have no PI to race on
+            return;
+        }
+
+        String key = operation + ":" + paymentIntentId;
+        CompletableFuture<Void> mine = new CompletableFuture<>();
+        CompletableFuture<Void> first = inFlight.putIfAbsent(key, mine);
+        if (first != null) {
+            if (awaitFirst(first, key)) {
+                joined.increment();
+                return;
+            }
+            mine = null;   // first attempt failed: run under the lock without registering
+        }
+
+        leaders.increment();
+        try {
+            jdbc.query("SELECT pg_advisory_xact_lock(?, hashtext(?))", rs -> null, LOCK_CLASS, paymentIntentId);
+            work.run();
+        } catch (RuntimeException ex) {
+            if (mine != null) settle(key, mine, false);
+            throw ex;
+        }
+        if (mine != null) settleAfterCompletion(key, mine);
+    }
+
+    /** True when the first caller committed; false when it failed or did not finish in time. */
+    private boolean awaitFirst(CompletableFuture<Void> first, String key) {
+        try {
+            first.get(awaitMs, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for " + key, ex);
+        } catch (ExecutionException ex) {
+            return false;
+        } catch (TimeoutException ex) {
+            log.warn("Single-flight wait for {} timed out after {} ms; running under the lock", key, awaitMs);
+            return false;
+        }
+    }
+
+    private void settleAfterCompletion(String key, CompletableFuture<Void> f) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    settle(key, f, status == STATUS_COMMITTED);
+                }
+            });
+        } else {
+            settle(key, f, true);
+        }
+    }
+
+    private void settle(String key, CompletableFuture<Void> f, boolean committed) {
+        inFlight.remove(key, f);
+        if (committed) f.complete(null);
+        else f.completeExceptionally(new IllegalStateException("Not committed: " + key));
+    }
+}
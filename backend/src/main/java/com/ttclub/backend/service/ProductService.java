@@ -2,6 +2,8 @@
 package com.ttclub.backend.service;
 
 import com.ttclub.backend.dto.*;
+import com.ttclub.backend.dto.ProductSearchDtos.ProductCardDto;
+import com.ttclub.backend.dto.ProductSearchDtos.ProductSearchPage;
 import com.ttclub.backend.mapper.ProductMapper;
 import com.ttclub.backend.model.*;
 import com.ttclub.backend.repository.*;
@@ -14,17 +16,22 @@ import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.List;
 
 @Service
 @Transactional
 public class ProductService {
 
+    private static final int MAX_CARD_PAGE = 100;
+
     private final ProductRepository   products;
     private final CategoryRepository  categories;
     private final ProductMapper       mapper;
     private final FileStorageService  storage;
     private final ProductAuditService audit;
+    private final AvailableToPromise  atp;
 
     @PersistenceContext
     private EntityManager em;
@@ -33,12 +40,14 @@ public class ProductService {
                           CategoryRepository  categories,
                           ProductMapper       mapper,
                           FileStorageService  storage,
-                          ProductAuditService audit) {
+                          ProductAuditService audit,
+                          AvailableToPromise  atp) {
         this.products   = products;
         this.categories = categories;
         this.mapper     = mapper;
         this.storage    = storage;
         this.audit      = audit;
+        this.atp        = atp;
     }
 
     /* Read API */
@@ -52,24 +61,95 @@ public class ProductService {
         if (!StringUtils.hasText(q) && categoryId == null)
             return products.findAll(pg).map(mapper::toDto);
 
-        List<Product> hits = products.fullTextSearch(q == null ? "" : q);
+        return products.searchPage(q == null ? "" : q.trim(), categoryId, pg).map(mapper::toDto);
+    }
+
+    /**
+     * Keyset-paginated search of the active catalogue returning card projections.<br>
+     * Notes:
+     *  - Blank q browses by name; otherwise ranked full text over search_vector. When the first
+     *    full-text page is empty the query is retried as a trigram (typo-tolerant) name match.
+     *  - The cursor is opaque to clients and pins the mode, so later pages stay in the same
+     *    ordering; each page is one indexed query with LIMIT size + 1.
+     */
+    public ProductSearchPage searchCards(String q, Long categoryId, String cursor, int size) {
+        int lim = Math.max(1, Math.min(size, MAX_CARD_PAGE));
+        String text = q == null ? "" : q.trim();
+        SearchCursor after = SearchCursor.decode(cursor);
+
+        String mode;
+        List<ProductRepository.ProductCardView> rows;
+        if (text.isEmpty()) {
+            mode = SearchCursor.BROWSE;
+            rows = products.browseCards(categoryId, after == null ? null : after.key(),
+                    after == null ? 0 : after.id(), lim + 1);
+        } else if (after == null || SearchCursor.FULLTEXT.equals(after.mode())) {
+            mode = SearchCursor.FULLTEXT;
+            rows = products.fullTextCards(text, categoryId, after == null ? null : after.score(),
+                    after == null ? 0 : after.id(), lim + 1);
+            if (rows.isEmpty() && after == null) {
+                mode = SearchCursor.FUZZY;
+                rows = products.fuzzyCards(text, categoryId, null, 0, lim + 1);
+            }
+        } else {
+            mode = SearchCursor.FUZZY;
+            rows = products.fuzzyCards(text, categoryId, after.score(), after.id(), lim + 1);
+        }
 
-        if (categoryId != null) {
-            hits.removeIf(p ->
-                    !categoryId.equals(
-                            p.getCategory() == null ? null : p.getCategory().getId()
-                    )
-            );
+        String next = null;
+        if (rows.size() > lim) {
+            rows = rows.subList(0, lim);
+            ProductRepository.ProductCardView last = rows.get(lim - 1);
+            next = SearchCursor.BROWSE.equals(mode)
+                    ? SearchCursor.encode(mode, last.getName(), last.getId())
+                    : SearchCursor.encode(mode, Float.toString(last.getScore()), last.getId());
         }
 
-        int from = Math.min(page * size, hits.size());
-        int to   = Math.min(from + size, hits.size());
+        List<ProductCardDto> items = rows.stream()
+                .map(r -> new ProductCardDto(r.getId(), r.getSku(), r.getName(), r.getBrand(),
+                        r.getPrice(), r.getInventoryQty(), r.getCategoryId(), r.getCategoryName(),
+                        r.getImageUrl()))
+                .toList();
+        return new ProductSearchPage(items, next,
+                switch (mode) {
+                    case SearchCursor.BROWSE -> "browse";
+                    case SearchCursor.FULLTEXT -> "fulltext";
+                    default -> "fuzzy";
+                });
+    }
+
+    /** Opaque keyset cursor: base64url("mode|key|id"); key is the name (browse) or the score. */
+    record SearchCursor(String mode, String key, long id) {
+        static final String BROWSE = "b";
+        static final String FULLTEXT = "f";
+        static final String FUZZY = "z";
 
-        return new PageImpl<>(
-                mapper.toDtoList(hits.subList(from, to)),
-                pg,
-                hits.size()
-        );
+        Float score() {
+            return Float.valueOf(key);
+        }
+
+        static String encode(String mode, String key, long id) {
+            String raw = mode + "|" + key + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static SearchCursor decode(String cursor) {
+            if (!StringUtils.hasText(cursor)) return null;
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int a = raw.indexOf('|');
+                int b = raw.lastIndexOf('|');
+                String mode = raw.substring(0, a);
+                if (a <= 0 || b <= a || !(BROWSE.equals(mode) || FULLTEXT.equals(mode) || FUZZY.equals(mode))) {
+                    throw new IllegalArgumentException();
+                }
+                SearchCursor c = new SearchCursor(mode, raw.substring(a + 1, b), Long.parseLong(raw.substring(b + 1)));
+                if (!BROWSE.equals(mode)) c.score();   // validate
+                return c;
+            } catch (RuntimeException ex) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
     }
 
     /* Create or Update */
@@ -83,6 +163,7 @@ public class ProductService {
 
         Product saved = products.save(p);
         audit.logCreate(saved, dto.getImages() != null && !dto.getImages().isEmpty());
+        atp.changedAfterCommit(List.of(saved.getId()));
         return mapper.toDto(saved);
     }
 
@@ -117,6 +198,7 @@ public class ProductService {
         applyInlineImages(p, dto.getImages());
 
         audit.logUpdate(before, p, imagesModified);
+        atp.changedAfterCommit(List.of(id));
         return mapper.toDto(p);
     }
 
@@ -157,6 +239,7 @@ public class ProductService {
                 .orElseThrow(() -> new IllegalArgumentException("Product not found"));
         p.setInventoryQty(qty);
         audit.logStockChange(p, qty);
+        atp.changedAfterCommit(List.of(id));
         return mapper.toDto(p);
     }
 
@@ -179,6 +262,7 @@ public class ProductService {
         audit.logDelete(p);
 
         products.delete(p);
+        atp.changedAfterCommit(List.of(id));
     }
 
     private void applyCategory(Product p, Long catId) {
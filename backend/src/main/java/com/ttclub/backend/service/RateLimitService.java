@@ -1,49 +1,35 @@
 package com.ttclub.backend.service;
 
 import com.ttclub.backend.service.exceptions.RateLimitedException;
+import com.ttclub.backend.service.ratelimit.RateLimiter;
 import org.springframework.stereotype.Service;
 
-import java.time.Instant;
-import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Lightweight fixed-window rate limiter.
+ * Rate-limit facade used by controllers and RateLimitFilter.
  * Key format is caller-defined; we recommend including IP + email/userId + deviceId.
- * In prod, we will swap this for a distributed implementation (Redis).
+ * The algorithm and storage live behind the RateLimiter SPI (ttclub.ratelimit.backend):
+ * GCRA (smooth token bucket, burst = limit) either in-process or shared across nodes.
  */
 @Service
 public class RateLimitService {
 
-    private static final class Window {
-        volatile long windowEndEpochSec;
-        volatile int  count;
-        Window(long end, int c) { windowEndEpochSec = end; count = c; }
-    }
+    private final RateLimiter limiter;
 
-    private final Map<String, Window> store = new ConcurrentHashMap<>();
+    public RateLimitService(RateLimiter limiter) {
+        this.limiter = limiter;
+    }
 
     /**
-     * Check and increment the counter for (bucketKey, windowSec).
+     * Take one token for (bucketKey, windowSec) at 'limit' requests per window.
      * Throws RateLimitedException with retryAfterSec if exceeded.
      */
     public void check(String purpose, String bucketKey, int limit, int windowSec) {
         Objects.requireNonNull(bucketKey, "bucketKey");
-        final long now = Instant.now().getEpochSecond();
-        final String key = purpose + "|" + bucketKey + "|" + windowSec;
-
-        store.compute(key, (k, w) -> {
-            if (w == null || now >= w.windowEndEpochSec) {
-                // new window
-                return new Window(now + windowSec, 1);
-            }
-            if (w.count >= limit) {
-                long retryAfter = Math.max(1, w.windowEndEpochSec - now);
-                throw new RateLimitedException(retryAfter);
-            }
-            w.count++;
-            return w;
-        });
+        long retryAfter = limiter.tryAcquire(purpose, bucketKey, limit, windowSec);
+        if (retryAfter > 0) {
+            throw new RateLimitedException(retryAfter);
+        }
     }
 }
@@ -10,7 +10,6 @@ import com.ttclub.backend.repository.OrderRepository;
 import com.ttclub.backend.repository.RefundEventRepository;
 import com.ttclub.backend.repository.RefundLineRepository;
 import jakarta.persistence.EntityManager;
-import jakarta.persistence.LockModeType;
 import jakarta.transaction.Transactional;
 import org.springframework.stereotype.Service;
 
@@ -29,17 +28,23 @@ public class RefundService {
     private final RefundLineRepository   refundLines;
     private final TaxService             tax;
     private final EntityManager          em;
+    private final FinanceLedgerWriter    ledger;
+    private final InventoryService       inventory;
 
     public RefundService(OrderRepository orders,
                          RefundEventRepository refundEvents,
                          RefundLineRepository refundLines,
                          TaxService tax,
-                         EntityManager em) {
+                         EntityManager em,
+                         FinanceLedgerWriter ledger,
+                         InventoryService inventory) {
         this.orders       = orders;
         this.refundEvents = refundEvents;
         this.refundLines  = refundLines;
         this.tax          = tax;
         this.em           = em;
+        this.ledger       = ledger;
+        this.inventory    = inventory;
     }
 
     /**
@@ -190,6 +195,7 @@ public class RefundService {
             ev.setIncludesShipping(eventIncludesShipping);
             ev.setShippingAmount(shippingPortionForThisRefund);
             refundEvents.save(ev);
+            ledger.refund(ev);
 
         } else {
             // Offline refund: record and restock
@@ -205,10 +211,12 @@ public class RefundService {
             ev.setIncludesShipping(eventIncludesShipping);
             ev.setShippingAmount(shippingPortionForThisRefund);
             refundEvents.save(ev);
+            ledger.refund(ev);
         }
 
         // Persist refund lines (if any) & restock exactly those quantities
         if (!accepted.isEmpty()) {
+            Map<Long, Integer> restock = new HashMap<>();
             for (Map.Entry<OrderItem, Integer> e : accepted.entrySet()) {
                 OrderItem oi = e.getKey();
                 int qty = e.getValue();
@@ -220,10 +228,10 @@ public class RefundService {
                 rl.setQuantity(qty);
                 ev.addLine(rl); // cascade saves it
 
-                // Restock cautiously
-                Product p = em.find(Product.class, oi.getProduct().getId(), LockModeType.PESSIMISTIC_WRITE);
-                p.setInventoryQty(p.getInventoryQty() + qty);
+                if (oi.getProduct() != null) restock.merge(oi.getProduct().getId(), qty, Integer::sum);
             }
+            // one batched, id-ordered increment instead of a row lock per line
+            inventory.restock(restock);
         }
 
         // If the order is now fully refunded, mark it REFUNDED
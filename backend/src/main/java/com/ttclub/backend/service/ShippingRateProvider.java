@@ -5,7 +5,9 @@ import com.ttclub.backend.model.ShippingAddress;
 import com.ttclub.backend.model.ShippingMethod;
 
 import java.math.BigDecimal;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Strategy interface - different implementations can talk to
@@ -16,4 +18,14 @@ public interface ShippingRateProvider {
     BigDecimal rateFor(ShippingMethod method,
                        List<OrderItem> items,
                        ShippingAddress to);
+
+    /** Every method at once; providers that quote all services in one call override this. */
+    default Map<ShippingMethod, BigDecimal> ratesFor(List<OrderItem> items,
+                                                     ShippingAddress to) {
+        Map<ShippingMethod, BigDecimal> out = new EnumMap<>(ShippingMethod.class);
+        for (ShippingMethod m : ShippingMethod.values()) {
+            out.put(m, rateFor(m, items, to));
+        }
+        return out;
+    }
 }
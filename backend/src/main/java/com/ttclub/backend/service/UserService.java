@@ -1,5 +1,6 @@
 package com.ttclub.backend.service;
 
+import com.ttclub.backend.booking.service.ProgramOccurrenceFeedCache;
 import com.ttclub.backend.dto.*;
 import com.ttclub.backend.mapper.UserMapper;
 import com.ttclub.backend.model.AuthProvider;
@@ -8,6 +9,7 @@ import com.ttclub.backend.model.RoleName;
 import com.ttclub.backend.model.User;
 import com.ttclub.backend.repository.RoleRepository;
 import com.ttclub.backend.repository.UserRepository;
+import com.ttclub.backend.security.PrincipalCache;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.criteria.*;
@@ -31,6 +33,8 @@ public class UserService {
     private final RoleRepository roles;
     private final PasswordEncoder encoder;
     private final UserMapper mapper;
+    private final PrincipalCache principals;
+    private final ProgramOccurrenceFeedCache occurrenceFeed;
 
     @PersistenceContext
     private EntityManager em;
@@ -38,11 +42,15 @@ public class UserService {
     public UserService(UserRepository users,
                        RoleRepository roles,
                        PasswordEncoder encoder,
-                       UserMapper mapper) {
+                       UserMapper mapper,
+                       PrincipalCache principals,
+                       ProgramOccurrenceFeedCache occurrenceFeed) {
         this.users = users;
         this.roles = roles;
         this.encoder = encoder;
         this.mapper = mapper;
+        this.principals = principals;
+        this.occurrenceFeed = occurrenceFeed;
     }
 
     /* Self-Service */
@@ -50,6 +58,7 @@ public class UserService {
     public UserDto updateOwn(Long userId, UpdateProfileDto dto) {
         User u = users.findById(userId)
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
+        String shownBefore = shownName(u);
 
         if (dto.firstName() != null) u.setFirstName(dto.firstName().trim());
         if (dto.lastName()  != null) u.setLastName(dto.lastName().trim());
@@ -65,9 +74,14 @@ public class UserService {
             u.setEmail(newEmail);
         }
 
-        return mapper.toDto(users.save(u));
+        User saved = users.save(u);
+        principals.evict(saved.getId());
+        if (!shownName(saved).equals(shownBefore)) occurrenceFeed.invalidateAll();
+        return mapper.toDto(saved);
     }
 
+    /** Runs without a surrounding transaction: the BCrypt pool must not be waited on while holding a DB connection. */
+    @Transactional(Transactional.TxType.NOT_SUPPORTED)
     public void changePasswordOwn(Long userId, ChangePasswordDto dto) {
         User u = users.findById(userId)
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
@@ -88,6 +102,7 @@ public class UserService {
         u.setTempPasswordExpiresAt(null);
 
         users.save(u);
+        principals.evict(u.getId());
     }
 
     /* Admin - Search/Update/Reset Password/Create/Delete */
@@ -145,6 +160,7 @@ public class UserService {
     public AdminUserDto adminUpdate(long targetUserId, AdminUpdateUserDto dto) {
         User u = users.findById(targetUserId)
                 .orElseThrow(() -> new IllegalArgumentException("User not found"));
+        String shownBefore = shownName(u);
 
         if (dto.firstName() != null) u.setFirstName(dto.firstName().trim());
         if (dto.lastName()  != null) u.setLastName(dto.lastName().trim());
@@ -167,7 +183,10 @@ public class UserService {
             u.setRole(r);
         }
 
-        return mapper.toAdminDto(users.save(u));
+        User saved = users.save(u);
+        principals.evict(saved.getId());
+        if (!shownName(saved).equals(shownBefore)) occurrenceFeed.invalidateAll();
+        return mapper.toAdminDto(saved);
     }
 
     @PreAuthorize("hasRole('ADMIN') or hasRole('OWNER')")
@@ -186,6 +205,7 @@ public class UserService {
         u.setTempPasswordHash(null);
         u.setTempPasswordExpiresAt(null);
         users.save(u);
+        principals.evict(u.getId());
     }
 
     @PreAuthorize("hasRole('ADMIN') or hasRole('OWNER')")
@@ -236,6 +256,12 @@ public class UserService {
 
         target.setDeletedAt(Instant.now());
         users.save(target);
+        principals.evict(target.getId());
+    }
+
+    /** Fields the public occurrence feed shows for a coach (name, or email as fallback). */
+    private static String shownName(User u) {
+        return u.getFirstName() + "\u0000" + u.getLastName() + "\u0000" + u.getEmail();
     }
 
     private static String normalize(String email) {
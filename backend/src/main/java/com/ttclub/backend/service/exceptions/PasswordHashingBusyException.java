@@ -0,0 +1,15 @@
+package com.ttclub.backend.service.exceptions;
+
+/** Password hashing pool is saturated; mapped to 503 with Retry-After. */
+public class PasswordHashingBusyException extends RuntimeException {
+    private final long retryAfterSec;
+
+    public PasswordHashingBusyException(long retryAfterSec) {
+        super("Password hashing busy");
+        this.retryAfterSec = retryAfterSec;
+    }
+
+    public long getRetryAfterSec() {
+        return retryAfterSec;
+    }
+}
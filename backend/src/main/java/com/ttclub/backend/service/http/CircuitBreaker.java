@@ -0,0 +1,102 @@
+package com.ttclub.backend.service.http;
+
+import java.util.Arrays;
+
+/**
+ * Count-based circuit breaker over the last N call outcomes.<br>
+ * Notes:
+ *  - CLOSED: calls flow; once at least minimumCalls of the window are recorded and the failure
+ *    rate reaches the threshold, the breaker OPENs.
+ *  - OPEN: calls are refused until openMs has elapsed, then a single probe is let through
+ *    (HALF_OPEN). The probe's outcome closes or re-opens the breaker.
+ *  - Synchronised; the critical sections are a few field updates per call.
+ */
+final class CircuitBreaker {
+
+    enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final boolean[] window;       // true = failure
+    private final int minimumCalls;
+    private final int failureRatePercent;
+    private final long openNanos;
+
+    private int next, recorded, failures;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    CircuitBreaker(int windowSize, int minimumCalls, int failureRatePercent, long openMs) {
+        this.window = new boolean[Math.max(1, windowSize)];
+        this.minimumCalls = Math.max(1, Math.min(minimumCalls, window.length));
+        this.failureRatePercent = Math.max(1, Math.min(100, failureRatePercent));
+        this.openNanos = Math.max(1, openMs) * 1_000_000L;
+    }
+
+    synchronized boolean tryAcquire() {
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - openedAt < openNanos) return false;
+                state = State.HALF_OPEN;
+                probeInFlight = true;
+                return true;
+            default: // HALF_OPEN
+                if (probeInFlight) return false;
+                probeInFlight = true;
+                return true;
+        }
+    }
+
+    synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            reset();
+            return;
+        }
+        record(false);
+    }
+
+    synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            trip();
+            return;
+        }
+        record(true);
+        if (recorded >= minimumCalls && failures * 100 >= failureRatePercent * recorded) {
+            trip();
+        }
+    }
+
+    /** Permission granted but no call made (e.g. bulkhead full): free the probe slot. */
+    synchronized void release() {
+        if (state == State.HALF_OPEN) probeInFlight = false;
+    }
+
+    synchronized State state() {
+        return state;
+    }
+
+    private void record(boolean failure) {
+        if (recorded == window.length) {
+            if (window[next]) failures--;
+        } else {
+            recorded++;
+        }
+        window[next] = failure;
+        if (failure) failures++;
+        next = (next + 1) % window.length;
+    }
+
+    private void trip() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+        probeInFlight = false;
+    }
+
+    private void reset() {
+        state = State.CLOSED;
+        probeInFlight = false;
+        next = recorded = failures = 0;
+        Arrays.fill(window, false);
+    }
+}
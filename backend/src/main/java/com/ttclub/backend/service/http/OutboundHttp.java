@@ -0,0 +1,39 @@
+package com.ttclub.backend.service.http;
+
+import com.ttclub.backend.config.OutboundHttpProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared outbound HTTP layer: one ProviderClient per external provider, configured from
+ * ttclub.http.providers.&lt;name&gt;.* (see OutboundHttpProperties).<br>
+ * Notes:
+ *  - Executors, connection pools, timeouts, bulkheads and circuit breakers are all per provider,
+ *    so one slow provider cannot starve another.
+ */
+@Component
+public class OutboundHttp {
+
+    private final OutboundHttpProperties props;
+    private final MeterRegistry meters;
+    private final Map<String, ProviderClient> clients = new ConcurrentHashMap<>();
+
+    public OutboundHttp(OutboundHttpProperties props, MeterRegistry meters) {
+        this.props = props;
+        this.meters = meters;
+    }
+
+    public ProviderClient client(String provider) {
+        return clients.computeIfAbsent(provider,
+                p -> new ProviderClient(p, props.provider(p), meters));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        clients.values().forEach(ProviderClient::close);
+    }
+}
@@ -0,0 +1,223 @@
+package com.ttclub.backend.service.http;
+
+import com.ttclub.backend.config.OutboundHttpProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One external provider's view of the outbound HTTP layer (obtain via OutboundHttp.client).<br>
+ * Notes:
+ *  - Own keep-alive connection pool (JDK HttpClient) with the provider's connect timeout;
+ *    every request carries the provider's read timeout.
+ *  - Bulkhead: at most max-concurrent calls in flight; extra callers wait up to bulkhead-wait-ms
+ *    and are then refused instead of piling up on servlet threads.
+ *  - Circuit breaker: after too many failures calls are refused at once for open-ms, so callers
+ *    drop straight to their fallback (e.g. the Canada Post flat fee).
+ *  - Idempotent calls may be hedged (a second copy after hedge-delay-ms, first good answer wins)
+ *    and retried up to max-attempts, all within deadline-ms: each attempt's timeout is cut to the
+ *    time left. Non-idempotent calls are sent exactly once.
+ *  - Own bounded executor for the client's async I/O (sized from max-concurrent), so a slow
+ *    provider cannot exhaust the threads another provider's hedges need.
+ *  - Any failure, including local ones (rejected executor, bad request), settles the breaker
+ *    permit, so a HALF_OPEN probe can never stay in flight forever.
+ *  - Latency is recorded per provider and outcome as a percentile histogram
+ *    (ttclub.http.client.requests).
+ */
+public final class ProviderClient {
+
+    private final String name;
+    private final HttpClient http;
+    private final Duration readTimeout;
+    private final Semaphore bulkhead;
+    private final long bulkheadWaitMs;
+    private final CircuitBreaker breaker;
+    private final long hedgeDelayMs;
+    private final int maxAttempts;
+    private final long deadlineMs;
+    private final ThreadPoolExecutor executor;
+
+    private final Timer okTimer;
+    private final Timer errorTimer;
+    private final Counter rejected;
+    private final Counter hedges;
+
+    ProviderClient(String name, OutboundHttpProperties.Provider cfg, MeterRegistry meters) {
+        this.name = name;
+        int threads = Math.max(2, Math.min(8, cfg.getMaxConcurrent()));
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(16, cfg.getMaxConcurrent() * 8)), r -> {
+            Thread t = new Thread(r, "outbound-http-" + name + "-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.http = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(Math.max(1, cfg.getConnectTimeoutMs())))
+                .executor(executor)
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+        this.readTimeout = Duration.ofMillis(Math.max(1, cfg.getReadTimeoutMs()));
+        this.bulkhead = new Semaphore(Math.max(1, cfg.getMaxConcurrent()));
+        this.bulkheadWaitMs = Math.max(0, cfg.getBulkheadWaitMs());
+        this.breaker = new CircuitBreaker(cfg.getWindowSize(), cfg.getMinimumCalls(),
+                cfg.getFailureRatePercent(), cfg.getOpenMs());
+        this.hedgeDelayMs = Math.max(0, cfg.getHedgeDelayMs());
+        this.maxAttempts = Math.max(1, cfg.getMaxAttempts());
+        this.deadlineMs = Math.max(1, cfg.getDeadlineMs());
+
+        this.okTimer = latency(meters, name, "success");
+        this.errorTimer = latency(meters, name, "error");
+        this.rejected = Counter.builder("ttclub.http.client.rejected").tag("provider", name).register(meters);
+        this.hedges = Counter.builder("ttclub.http.client.hedges").tag("provider", name).register(meters);
+        meters.gauge("ttclub.http.client.circuit-open", Tags.of("provider", name),
+                breaker, b -> b.state() == CircuitBreaker.State.CLOSED ? 0 : 1);
+        meters.gauge("ttclub.http.client.in-flight", Tags.of("provider", name),
+                bulkhead, s -> Math.max(1, cfg.getMaxConcurrent()) - s.availablePermits());
+    }
+
+    /**
+     * Send the request (the builder's timeout is set here). Returns any non-5xx response;
+     * throws ProviderUnavailableException when refused or when every attempt failed.
+     */
+    public HttpResponse<byte[]> send(HttpRequest.Builder request, boolean idempotent) {
+        HttpRequest req = request.timeout(readTimeout).build();   // a bad request fails before any permit
+        if (!breaker.tryAcquire()) {
+            rejected.increment();
+            throw new ProviderUnavailableException(name + ": circuit open");
+        }
+        boolean permit;
+        try {
+            permit = bulkhead.tryAcquire(bulkheadWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            permit = false;
+        }
+        if (!permit) {
+            breaker.release();
+            rejected.increment();
+            throw new ProviderUnavailableException(name + ": too many concurrent calls");
+        }
+
+        long t0 = System.nanoTime();
+        try {
+            HttpResponse<byte[]> resp = idempotent ? withRetries(request, t0 + deadlineMs * 1_000_000L) : once(req);
+            breaker.onSuccess();
+            okTimer.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+            return resp;
+        } catch (ProviderUnavailableException ex) {
+            breaker.onFailure();
+            errorTimer.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+            throw ex;
+        } catch (RuntimeException ex) {
+            // not the provider's fault (e.g. executor saturated): free the permit without counting it
+            breaker.release();
+            errorTimer.record(System.nanoTime() - t0, TimeUnit.NANOSECONDS);
+            throw ex;
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    CircuitBreaker.State circuitState() {
+        return breaker.state();
+    }
+
+    void close() {
+        executor.shutdownNow();
+    }
+
+    /* Attempts */
+
+    private HttpResponse<byte[]> withRetries(HttpRequest.Builder request, long deadlineNanos) {
+        ProviderUnavailableException last = null;
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            long leftMs = (deadlineNanos - System.nanoTime()) / 1_000_000L;
+            if (leftMs <= 0) break;
+            HttpRequest req = request.timeout(Duration.ofMillis(Math.min(readTimeout.toMillis(), leftMs))).build();
+            try {
+                return hedgeDelayMs > 0 && hedgeDelayMs < leftMs ? hedged(req, leftMs) : once(req);
+            } catch (ProviderUnavailableException ex) {
+                last = ex;
+            }
+        }
+        throw last != null ? last : new ProviderUnavailableException(name + ": deadline exceeded");
+    }
+
+    private HttpResponse<byte[]> once(HttpRequest req) {
+        try {
+            return accept(http.send(req, HttpResponse.BodyHandlers.ofByteArray()));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ProviderUnavailableException(name + ": interrupted", ex);
+        } catch (IOException ex) {
+            throw new ProviderUnavailableException(name + ": " + ex.getMessage(), ex);
+        }
+    }
+
+    /** Primary request, plus a hedge if no answer within hedgeDelayMs; first non-5xx answer wins. */
+    private HttpResponse<byte[]> hedged(HttpRequest req, long budgetMs) {
+        CompletableFuture<HttpResponse<byte[]>> winner = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(2);
+
+        CompletableFuture<HttpResponse<byte[]>> primary = http.sendAsync(req, HttpResponse.BodyHandlers.ofByteArray());
+        CompletableFuture<HttpResponse<byte[]>> hedge = null;
+        primary.whenComplete((r, e) -> settle(winner, pending, r, e));
+        try {
+            try {
+                return accept(winner.get(hedgeDelayMs, TimeUnit.MILLISECONDS));
+            } catch (TimeoutException slow) {
+                hedges.increment();
+                hedge = http.sendAsync(req, HttpResponse.BodyHandlers.ofByteArray());
+                hedge.whenComplete((r, e) -> settle(winner, pending, r, e));
+            }
+            return accept(winner.get(Math.max(1, budgetMs - hedgeDelayMs), TimeUnit.MILLISECONDS));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ProviderUnavailableException(name + ": interrupted", ex);
+        } catch (ExecutionException | TimeoutException ex) {
+            Throwable cause = ex instanceof ExecutionException ? ex.getCause() : ex;
+            throw new ProviderUnavailableException(name + ": " + cause, cause);
+        } finally {
+            primary.cancel(true);
+            if (hedge != null) hedge.cancel(true);
+        }
+    }
+
+    /** Completes the winner with the first good answer, or with the last outcome once both are in. */
+    private static void settle(CompletableFuture<HttpResponse<byte[]>> winner, AtomicInteger pending,
+                               HttpResponse<byte[]> r, Throwable e) {
+        boolean good = e == null && r.statusCode() < 500;
+        boolean last = pending.decrementAndGet() == 0;
+        if (good || last) {
+            if (e != null) winner.completeExceptionally(e);
+            else winner.complete(r);
+        }
+    }
+
+    private HttpResponse<byte[]> accept(HttpResponse<byte[]> r) {
+        if (r.statusCode() >= 500) {
+            throw new ProviderUnavailableException(name + ": HTTP " + r.statusCode());
+        }
+        return r;
+    }
+
+    private static Timer latency(MeterRegistry meters, String provider, String outcome) {
+        return Timer.builder("ttclub.http.client.requests")
+                .description("Outbound HTTP latency per provider")
+                .tag("provider", provider)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meters);
+    }
+}
@@ -0,0 +1,16 @@
+package com.ttclub.backend.service.http;
+
+/**
+ * Thrown when an outbound call is not attempted or did not succeed: circuit open, bulkhead full,
+ * timeout, I/O error or a 5xx after all attempts. Callers map it to their fallback path.
+ */
+public class ProviderUnavailableException extends RuntimeException {
+
+    public ProviderUnavailableException(String message) {
+        super(message);
+    }
+
+    public ProviderUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,66 @@
+package com.ttclub.backend.service.mail;
+
+import com.ttclub.backend.security.SecretCrypto;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Write side of the e-mail outbox (email_outbox).<br>
+ * Notes:
+ *  - enqueue() inserts the message in the caller's transaction, so a message exists only if the
+ *    business change commits; nothing touches SMTP on the request thread.
+ *  - The dispatcher is nudged after commit (or immediately without a transaction); its periodic
+ *    poll picks up anything a nudge missed, including rows written on other nodes.
+ *  - Bodies can hold one-time secrets (verification codes, temporary passwords), so they are
+ *    stored encrypted and cleared once sent.
+ */
+@Service
+public class EmailOutbox {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO email_outbox (category, from_addr, to_addr, bcc_addr, subject, body_enc)
+            VALUES (?, ?, ?, ?, ?, ?)
+            """;
+
+    private final JdbcTemplate jdbc;
+    private final SecretCrypto crypto;
+    private final EmailOutboxDispatcher dispatcher;
+
+    public EmailOutbox(JdbcTemplate jdbc, SecretCrypto crypto, EmailOutboxDispatcher dispatcher) {
+        this.jdbc = jdbc;
+        this.crypto = crypto;
+        this.dispatcher = dispatcher;
+    }
+
+    /** Queue a plain-text message; category is a short label for logs and metrics (e.g. "order-confirmation"). */
+    public void enqueue(String category, SimpleMailMessage msg) {
+        String[] to = msg.getTo();
+        if (to == null || to.length == 0) {
+            throw new IllegalArgumentException("E-mail recipient is required");
+        }
+        String[] bcc = msg.getBcc();
+        String body = msg.getText() == null ? "" : msg.getText();
+
+        jdbc.update(INSERT_SQL,
+                category,
+                msg.getFrom(),
+                String.join(",", to),
+                bcc == null || bcc.length == 0 ? null : String.join(",", bcc),
+                msg.getSubject() == null ? "" : msg.getSubject(),
+                crypto.encrypt(body));
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatcher.wakeUp();
+                }
+            });
+        } else {
+            dispatcher.wakeUp();
+        }
+    }
+}
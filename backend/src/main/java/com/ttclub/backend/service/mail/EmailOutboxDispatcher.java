@@ -0,0 +1,203 @@
+package com.ttclub.backend.service.mail;
+
+import com.ttclub.backend.security.SecretCrypto;
+import com.ttclub.backend.service.queue.LeasedQueueWorker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.sql.PreparedStatement;
+import java.util.*;
+
+/**
+ * Background sender for the e-mail outbox.<br>
+ * Notes:
+ *  - Claim / lease / retry / dead-letter mechanics are those of {@link LeasedQueueWorker}.
+ *  - Each batch goes through one JavaMailSender.send(...) call, which reuses a single SMTP
+ *    connection (and XOAUTH2 handshake) for the whole batch.
+ *  - With ttclub.mail.enabled=false messages are logged instead of sent and marked SENT.
+ */
+@Component
+public class EmailOutboxDispatcher extends LeasedQueueWorker<EmailOutboxDispatcher.Claimed> {
+
+    private static final Logger log = LoggerFactory.getLogger(EmailOutboxDispatcher.class);
+
+    private static final String CLAIM_SQL = """
+            UPDATE email_outbox o
+               SET status = 'SENDING',
+                   attempts = o.attempts + 1,
+                   next_attempt_at = now() + ? * interval '1 second'
+             WHERE o.id IN (SELECT id FROM email_outbox
+                             WHERE status IN ('PENDING', 'SENDING')
+                               AND next_attempt_at <= now()
+                             ORDER BY next_attempt_at, id
+                             LIMIT ?
+                             FOR UPDATE SKIP LOCKED)
+            RETURNING o.id, o.category, o.from_addr, o.to_addr, o.bcc_addr, o.subject, o.body_enc, o.attempts
+            """;
+
+    private static final String SENT_SQL = """
+            UPDATE email_outbox
+               SET status = 'SENT', sent_at = now(), body_enc = NULL, last_error = NULL
+             WHERE id = ANY (?)
+            """;
+
+    private static final String RETRY_SQL = """
+            UPDATE email_outbox
+               SET status = 'PENDING', next_attempt_at = now() + ? * interval '1 second', last_error = ?
+             WHERE id = ?
+            """;
+
+    private static final String DEAD_SQL = """
+            UPDATE email_outbox
+               SET status = 'DEAD', body_enc = NULL, last_error = ?
+             WHERE id = ?
+            """;
+
+    /** A claimed row; the body stays encrypted until send() so one bad row cannot fail the claim. */
+    record Claimed(long id, String category, String from, String to, String bcc,
+                   String subject, String bodyEnc, int attempts) implements LeasedQueueWorker.Claimed { }
+
+    private record Outgoing(Claimed row, SimpleMailMessage msg) { }
+
+    private final JavaMailSender mail;
+    private final SecretCrypto crypto;
+    private final boolean mailEnabled;
+    private final int retentionDays;
+
+    private final Counter sent;
+    private final Timer batchTimer;
+
+    public EmailOutboxDispatcher(JdbcTemplate jdbc,
+                                 JavaMailSender mail,
+                                 SecretCrypto crypto,
+                                 MeterRegistry meters,
+                                 @Value("${ttclub.mail.enabled:true}") boolean mailEnabled,
+                                 @Value("${ttclub.mail.outbox.workers:2}") int workers,
+                                 @Value("${ttclub.mail.outbox.batch-size:20}") int batchSize,
+                                 @Value("${ttclub.mail.outbox.max-attempts:8}") int maxAttempts,
+                                 @Value("${ttclub.mail.outbox.base-delay-sec:30}") long baseDelaySec,
+                                 @Value("${ttclub.mail.outbox.max-delay-sec:3600}") long maxDelaySec,
+                                 @Value("${ttclub.mail.outbox.lease-sec:300}") long leaseSec,
+                                 @Value("${ttclub.mail.outbox.retention-days:14}") int retentionDays) {
+        super("Mail outbox", jdbc, meters, "ttclub.mail.outbox", "messages",
+                new Policy(workers, batchSize, maxAttempts, baseDelaySec, maxDelaySec, leaseSec),
+                new Statements(CLAIM_SQL, RETRY_SQL, DEAD_SQL),
+                (rs, i) -> new Claimed(
+                        rs.getLong("id"),
+                        rs.getString("category"),
+                        rs.getString("from_addr"),
+                        rs.getString("to_addr"),
+                        rs.getString("bcc_addr"),
+                        rs.getString("subject"),
+                        rs.getString("body_enc"),
+                        rs.getInt("attempts")));
+        this.mail = mail;
+        this.crypto = crypto;
+        this.mailEnabled = mailEnabled;
+        this.retentionDays = Math.max(1, retentionDays);
+
+        this.sent = Counter.builder("ttclub.mail.outbox.messages").tag("result", "sent").register(meters);
+        this.batchTimer = Timer.builder("ttclub.mail.outbox.batch")
+                .description("Time to send one outbox batch")
+                .register(meters);
+    }
+
+    /** Safety net for retries, missed wake-ups and rows written by other nodes. */
+    @Scheduled(fixedDelayString = "${ttclub.mail.outbox.poll-ms:5000}", initialDelay = 10000)
+    public void poll() {
+        wakeUp();
+    }
+
+    @Scheduled(fixedDelayString = "${ttclub.mail.outbox.purge-interval-ms:3600000}", initialDelay = 60000)
+    public void purgeSent() {
+        int n = jdbc.update("DELETE FROM email_outbox WHERE status = 'SENT' AND sent_at < now() - ? * interval '1 day'",
+                retentionDays);
+        if (n > 0) log.debug("Mail outbox: purged {} sent rows.", n);
+    }
+
+    /* Worker */
+
+    @Override
+    protected void handle(List<Claimed> batch) {
+        batchTimer.record(() -> send(batch));
+    }
+
+    @Override
+    protected String describe(Claimed c) {
+        return "message " + c.id() + " (" + c.category() + ")";
+    }
+
+    /** Decrypts and builds the message; a row that cannot be built goes through fail() on its own. */
+    private Outgoing prepare(Claimed c) {
+        try {
+            SimpleMailMessage m = new SimpleMailMessage();
+            if (StringUtils.hasText(c.from())) m.setFrom(c.from());
+            m.setTo(StringUtils.commaDelimitedListToStringArray(c.to()));
+            if (StringUtils.hasText(c.bcc())) m.setBcc(StringUtils.commaDelimitedListToStringArray(c.bcc()));
+            m.setSubject(c.subject());
+            m.setText(c.bodyEnc() == null ? "" : crypto.decrypt(c.bodyEnc()));
+            return new Outgoing(c, m);
+        } catch (RuntimeException ex) {
+            fail(c, ex);
+            return null;
+        }
+    }
+
+    private void send(List<Claimed> claimed) {
+        List<Outgoing> batch = claimed.stream().map(this::prepare).filter(Objects::nonNull).toList();
+        if (batch.isEmpty()) return;
+
+        if (!mailEnabled) {
+            for (Outgoing o : batch) {
+                log.info("[DEV-MAIL] ({}) to={} subject=\"{}\"\n{}", o.row().category(),
+                        Arrays.toString(o.msg().getTo()), o.msg().getSubject(), o.msg().getText());
+            }
+            markSent(batch.stream().map(o -> o.row().id()).toList());
+            return;
+        }
+
+        Map<SimpleMailMessage, Exception> failures = new IdentityHashMap<>();
+        try {
+            mail.send(batch.stream().map(Outgoing::msg).toArray(SimpleMailMessage[]::new));
+        } catch (MailSendException ex) {
+            // Keys are the original SimpleMailMessage instances; other messages of the batch went out
+            ex.getFailedMessages().forEach((m, e) -> {
+                if (m instanceof SimpleMailMessage sm) failures.put(sm, e);
+            });
+            if (failures.isEmpty()) batch.forEach(o -> failures.put(o.msg(), ex));
+        } catch (MailException ex) {
+            // connect / auth failure: nothing was sent
+            batch.forEach(o -> failures.put(o.msg(), ex));
+        }
+
+        List<Long> ok = new ArrayList<>(batch.size());
+        for (Outgoing o : batch) {
+            Exception err = failures.get(o.msg());
+            if (err == null) ok.add(o.row().id());
+            else fail(o.row(), err);
+        }
+        markSent(ok);
+    }
+
+    private void markSent(List<Long> ids) {
+        if (ids.isEmpty()) return;
+        jdbc.update(con -> {
+            PreparedStatement ps = con.prepareStatement(SENT_SQL);
+            ps.setArray(1, con.createArrayOf("bigint", ids.toArray()));
+            return ps;
+        });
+        sent.increment(ids.size());
+    }
+}
@@ -0,0 +1,170 @@
+package com.ttclub.backend.service.queue;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.util.List;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Drain workers for a database-backed work queue (e-mail outbox, Stripe webhook inbox).<br>
+ * Notes:
+ *  - A small fixed pool of workers claims due rows in batches with
+ *    UPDATE ... WHERE id IN (SELECT ... FOR UPDATE SKIP LOCKED) RETURNING ..., so several workers
+ *    (and nodes) never pick the same row. A claim bumps attempts and leases the row until
+ *    next_attempt_at = now() + lease-sec; rows of a crashed worker become due again when the
+ *    lease runs out.
+ *  - The pool has no queue: a wake-up while every worker is busy is dropped, busy workers keep
+ *    draining anyway and the subclass's poll covers anything missed.
+ *  - A failed row is retried with exponential backoff plus jitter; after max-attempts it is parked
+ *    as DEAD (dead letter) for manual inspection.
+ *  - Subclasses supply the SQL of their table, the row mapping and what to do with a batch.
+ * Metrics: {prefix}.{items}{result=retry|dead} and {prefix}.active-workers.
+ */
+public abstract class LeasedQueueWorker<C extends LeasedQueueWorker.Claimed> {
+
+    /** A claimed row: its id and the attempt this claim counts as. */
+    public interface Claimed {
+        long id();
+        int attempts();
+    }
+
+    /** Pool size and retry policy of one queue (values are clamped to sane minimums). */
+    public record Policy(int workers, int batchSize, int maxAttempts,
+                         long baseDelaySec, long maxDelaySec, long leaseSec) {
+        public Policy {
+            workers = Math.max(1, workers);
+            batchSize = Math.max(1, batchSize);
+            maxAttempts = Math.max(1, maxAttempts);
+            baseDelaySec = Math.max(1, baseDelaySec);
+            maxDelaySec = Math.max(baseDelaySec, maxDelaySec);
+            leaseSec = Math.max(30, leaseSec);
+        }
+    }
+
+    /**
+     * SQL of one queue table.
+     * claim: (lease-sec, batch-size) -> claimed rows; retry: (delay-sec, error, id); dead: (error, id).
+     */
+    public record Statements(String claim, String retry, String dead) { }
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    protected final JdbcTemplate jdbc;
+    protected final Policy policy;
+    private final String name;
+    private final Statements sql;
+    private final RowMapper<C> rows;
+
+    private final ThreadPoolExecutor workers;
+    private final AtomicInteger draining = new AtomicInteger();
+    private final Counter retried;
+    private final Counter dead;
+
+    /**
+     * @param name        queue name for logs ("Mail outbox") and, lower-cased and dashed, worker threads
+     * @param meterPrefix e.g. ttclub.mail.outbox
+     * @param itemsMeter  per-row counter under the prefix, e.g. messages
+     */
+    protected LeasedQueueWorker(String name, JdbcTemplate jdbc, MeterRegistry meters,
+                                String meterPrefix, String itemsMeter,
+                                Policy policy, Statements sql, RowMapper<C> rows) {
+        this.name = name;
+        this.jdbc = jdbc;
+        this.policy = policy;
+        this.sql = sql;
+        this.rows = rows;
+
+        String threadPrefix = name.toLowerCase().replace(' ', '-') + "-";
+        AtomicInteger seq = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(policy.workers(), policy.workers(), 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), r -> {
+            Thread t = new Thread(r, threadPrefix + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.DiscardPolicy());
+        this.workers.prestartAllCoreThreads();
+
+        this.retried = Counter.builder(meterPrefix + "." + itemsMeter).tag("result", "retry").register(meters);
+        this.dead = Counter.builder(meterPrefix + "." + itemsMeter).tag("result", "dead").register(meters);
+        meters.gauge(meterPrefix + ".active-workers", draining);
+    }
+
+    /** Ask an idle worker to drain the queue; no-op when all workers are already busy. */
+    public void wakeUp() {
+        workers.execute(this::drain);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        workers.shutdown();
+    }
+
+    /**
+     * Handles one claimed batch. Rows that succeed are marked done by the subclass; rows that
+     * fail go through {@link #fail}. A row left alone is claimed again once its lease runs out.
+     */
+    protected abstract void handle(List<C> batch);
+
+    /** Short description of a row for log lines, e.g. "message 42 (password-reset)". */
+    protected abstract String describe(C row);
+
+    /** Schedules a retry with backoff, or parks the row as DEAD once it used up max-attempts. */
+    protected final void fail(C c, Exception err) {
+        String reason = abbreviate(String.valueOf(err.getMessage()));
+        if (c.attempts() >= policy.maxAttempts()) {
+            jdbc.update(sql.dead(), reason, c.id());
+            dead.increment();
+            log.error("{}: {} dead after {} attempts: {}", name, describe(c), c.attempts(), reason);
+        } else {
+            long delay = backoffSec(c.attempts());
+            jdbc.update(sql.retry(), delay, reason, c.id());
+            retried.increment();
+            log.warn("{}: {} attempt {} failed, retry in {}s: {}", name, describe(c), c.attempts(), delay, reason);
+        }
+    }
+
+    /* Worker */
+
+    /** Claims and handles batches until the queue has no due rows (blocking; wakeUp() runs it on a worker). */
+    public void drain() {
+        draining.incrementAndGet();
+        try {
+            List<C> batch;
+            while (!(batch = claim()).isEmpty()) {
+                handle(batch);
+                if (batch.size() < policy.batchSize()) break;
+            }
+        } catch (Exception ex) {
+            // DB unavailable etc. - the next poll retries
+            log.warn("{}: drain failed: {}", name, ex.getMessage());
+        } finally {
+            draining.decrementAndGet();
+        }
+    }
+
+    private List<C> claim() {
+        return jdbc.query(sql.claim(), rows, policy.leaseSec(), policy.batchSize());
+    }
+
+    /** base * 2^(attempt-1), capped, with +/-20% jitter so a failed burst does not retry in lockstep. */
+    long backoffSec(int attempt) {
+        long d = policy.baseDelaySec() << Math.min(20, Math.max(0, attempt - 1));
+        d = Math.min(d, policy.maxDelaySec());
+        long jitter = d / 5;
+        return Math.max(1, d + (jitter == 0 ? 0 : ThreadLocalRandom.current().nextLong(-jitter, jitter + 1)));
+    }
+
+    private static String abbreviate(String s) {
+        return s.length() <= 500 ? s : s.substring(0, 500);
+    }
+}
@@ -0,0 +1,72 @@
+package com.ttclub.backend.service.ratelimit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Shared-store GCRA limiter: one Postgres row per bucket (rate_limit_buckets), so limits hold
+ * across every backend node.<br>
+ * Notes:
+ *  - The allow path is a single atomic INSERT ... ON CONFLICT DO UPDATE ... WHERE statement using
+ *    the database clock; a rejected request costs one extra primary-key read for Retry-After.
+ *  - Rows expire once their TAT has passed (bucket full again) and are purged periodically.
+ *  - Runs in its own auto-commit statement; callers do not need a transaction.
+ */
+@Component
+@ConditionalOnProperty(name = "ttclub.ratelimit.backend", havingValue = "jdbc")
+public class JdbcRateLimiter implements RateLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcRateLimiter.class);
+
+    // params: key, T, T, then (T, T) x2 for the update, then (T, T, tau) for the guard
+    private static final String ACQUIRE_SQL = """
+            INSERT INTO rate_limit_buckets AS b (bucket, tat_ms, expires_at)
+            SELECT ?, n.v + ?, to_timestamp((n.v + ?) / 1000.0)
+              FROM (SELECT (extract(epoch FROM clock_timestamp()) * 1000)::bigint AS v) n
+            ON CONFLICT (bucket) DO UPDATE
+               SET tat_ms     = greatest(b.tat_ms, EXCLUDED.tat_ms - ?) + ?,
+                   expires_at = to_timestamp((greatest(b.tat_ms, EXCLUDED.tat_ms - ?) + ?) / 1000.0)
+             WHERE greatest(b.tat_ms, EXCLUDED.tat_ms - ?) - (EXCLUDED.tat_ms - ?) <= ?
+            RETURNING tat_ms
+            """;
+
+    private static final String OVERDRAFT_SQL = """
+            SELECT b.tat_ms - (extract(epoch FROM clock_timestamp()) * 1000)::bigint - ?
+              FROM rate_limit_buckets b
+             WHERE b.bucket = ?
+            """;
+
+    private final JdbcTemplate jdbc;
+
+    public JdbcRateLimiter(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    @Override
+    public long tryAcquire(String purpose, String bucketKey, int limit, int windowSec) {
+        long key = RateLimitKeys.hash(purpose, bucketKey, windowSec);
+        long window = windowSec * 1000L;
+        long t = RateLimitKeys.emissionInterval(window, limit);
+        long tau = window - t;
+
+        List<Long> allowed = jdbc.queryForList(ACQUIRE_SQL, Long.class,
+                key, t, t, t, t, t, t, t, t, tau);
+        if (!allowed.isEmpty()) return 0;
+
+        List<Long> over = jdbc.queryForList(OVERDRAFT_SQL, Long.class, tau, key);
+        long overMs = over.isEmpty() || over.get(0) == null ? 1000 : over.get(0);
+        return RateLimitKeys.ceilSeconds(Math.max(1, overMs), 1000);
+    }
+
+    @Scheduled(fixedDelayString = "${ttclub.ratelimit.jdbc.purge-interval-ms:600000}")
+    public void purgeExpired() {
+        int n = jdbc.update("DELETE FROM rate_limit_buckets WHERE expires_at < now()");
+        if (n > 0) log.debug("Rate limiter: purged {} expired buckets.", n);
+    }
+}
@@ -0,0 +1,98 @@
+package com.ttclub.backend.service.ratelimit;
+
+import com.ttclub.backend.util.LongObjectMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process GCRA limiter (token bucket equivalent) with bounded memory.<br>
+ * Notes:
+ *  - State per bucket is a single "theoretical arrival time" (TAT, monotonic nanos); a bucket whose
+ *    TAT is in the past is full and equivalent to absent, so it can be dropped at any time.
+ *  - Keys are 64-bit hashes (RateLimitKeys) held in primitive-keyed maps split over lock stripes.
+ *  - Each stripe is capped; when full, expired buckets are purged first, then the half with the
+ *    earliest TAT (closest to full) is evicted.
+ */
+@Component
+@ConditionalOnProperty(name = "ttclub.ratelimit.backend", havingValue = "local", matchIfMissing = true)
+public class LocalRateLimiter implements RateLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalRateLimiter.class);
+    private static final long NANOS_PER_SEC = TimeUnit.SECONDS.toNanos(1);
+
+    private static final class Cell {
+        long tat;
+        Cell(long tat) { this.tat = tat; }
+    }
+
+    private static final class Stripe {
+        LongObjectMap<Cell> cells = new LongObjectMap<>(64);
+    }
+
+    private final Stripe[] stripes;
+    private final int mask;
+    private final int maxPerStripe;
+
+    public LocalRateLimiter(@Value("${ttclub.ratelimit.local.stripes:64}") int stripeCount,
+                            @Value("${ttclub.ratelimit.local.max-keys:100000}") int maxKeys) {
+        int n = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        this.stripes = new Stripe[n];
+        for (int i = 0; i < n; i++) stripes[i] = new Stripe();
+        this.mask = n - 1;
+        this.maxPerStripe = Math.max(16, maxKeys / n);
+    }
+
+    @Override
+    public long tryAcquire(String purpose, String bucketKey, int limit, int windowSec) {
+        long key = RateLimitKeys.hash(purpose, bucketKey, windowSec);
+        long window = windowSec * NANOS_PER_SEC;
+        long t = RateLimitKeys.emissionInterval(window, limit);
+        long tau = window - t;
+
+        Stripe s = stripes[(int) key & mask];
+        synchronized (s) {
+            long now = System.nanoTime();
+            Cell c = s.cells.get(key);
+            if (c == null) {
+                if (s.cells.size() >= maxPerStripe) shrink(s, now);
+                s.cells.put(key, new Cell(now + t));
+                return 0;
+            }
+            long tat = Math.max(c.tat, now);
+            long over = tat - now - tau;
+            if (over > 0) {
+                return RateLimitKeys.ceilSeconds(over, NANOS_PER_SEC);
+            }
+            c.tat = tat + t;
+            return 0;
+        }
+    }
+
+    /** Called under the stripe lock. */
+    private void shrink(Stripe s, long now) {
+        LongObjectMap<Cell> live = new LongObjectMap<>(maxPerStripe);
+        s.cells.forEach((k, c) -> { if (c.tat > now) live.put(k, c); });
+
+        if (live.size() < maxPerStripe * 3 / 4) {
+            s.cells = live;
+            return;
+        }
+
+        long[] tats = new long[live.size()];
+        int[] i = {0};
+        live.forEach((k, c) -> tats[i[0]++] = c.tat);
+        Arrays.sort(tats);
+        long cut = tats[tats.length / 2];
+        LongObjectMap<Cell> kept = new LongObjectMap<>(maxPerStripe);
+        live.forEach((k, c) -> { if (c.tat > cut) kept.put(k, c); });
+        log.warn("Rate limiter stripe full ({} live buckets); evicted {} closest-to-full buckets.",
+                live.size(), live.size() - kept.size());
+        s.cells = kept;
+    }
+}
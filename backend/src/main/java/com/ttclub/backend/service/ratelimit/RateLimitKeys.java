@@ -0,0 +1,46 @@
+package com.ttclub.backend.service.ratelimit;
+
+/**
+ * Allocation-free 64-bit bucket keys: hashes purpose, caller key and window directly
+ * instead of concatenating a new String per request.
+ */
+final class RateLimitKeys {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME  = 0x100000001b3L;
+
+    private RateLimitKeys() { }
+
+    static long hash(String purpose, String bucketKey, int windowSec) {
+        long h = FNV_OFFSET;
+        h = mixChars(h, purpose);
+        h = (h ^ 0x1f) * FNV_PRIME;                // separator, so ("ab","c") != ("a","bc")
+        h = mixChars(h, bucketKey);
+        h = (h ^ 0x1f) * FNV_PRIME;
+        h = (h ^ windowSec) * FNV_PRIME;
+        // final avalanche so low bits are usable for striping
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static long mixChars(long h, String s) {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            h = (h ^ (c & 0xff)) * FNV_PRIME;
+            h = (h ^ (c >>> 8)) * FNV_PRIME;
+        }
+        return h;
+    }
+
+    /** GCRA emission interval (time per token) for the given unit, never below 1. */
+    static long emissionInterval(long windowUnits, int limit) {
+        return Math.max(1, windowUnits / Math.max(1, limit));
+    }
+
+    /** Retry-after in whole seconds, rounded up, at least 1. */
+    static long ceilSeconds(long units, long unitsPerSecond) {
+        return Math.max(1, (units + unitsPerSecond - 1) / unitsPerSecond);
+    }
+}
@@ -0,0 +1,17 @@
+package com.ttclub.backend.service.ratelimit;
+
+/**
+ * Rate-limiter SPI behind RateLimitService.
+ * Implementations:
+ *  - LocalRateLimiter  (ttclub.ratelimit.backend=local, default) - in-process GCRA, single node
+ *  - JdbcRateLimiter   (ttclub.ratelimit.backend=jdbc) - GCRA in Postgres, shared by all nodes
+ */
+public interface RateLimiter {
+
+    /**
+     * Try to take one token for (purpose, bucketKey) under a "limit per windowSec" policy.
+     * The policy is GCRA: an even rate of limit/windowSec with a burst of up to 'limit'.
+     * @return 0 when allowed, otherwise the number of seconds (>= 1) until the next request is allowed
+     */
+    long tryAcquire(String purpose, String bucketKey, int limit, int windowSec);
+}
@@ -0,0 +1,146 @@
+package com.ttclub.backend.service.webhook;
+
+import com.stripe.exception.StripeException;
+import com.stripe.model.Event;
+import com.stripe.model.PaymentIntent;
+import com.stripe.model.StripeObject;
+import com.stripe.net.ApiResource;
+import com.ttclub.backend.booking.service.MembershipPaymentOrchestrator;
+import com.ttclub.backend.booking.service.ProgramEnrollmentPaymentOrchestrator;
+import com.ttclub.backend.booking.service.TableRentalPurchaseOrchestrator;
+import com.ttclub.backend.model.Order;
+import com.ttclub.backend.model.PaymentEvent;
+import com.ttclub.backend.repository.OrderRepository;
+import com.ttclub.backend.repository.PaymentEventRepository;
+import com.ttclub.backend.service.OrderService;
+import jakarta.transaction.Transactional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+/**
+ * Business side of a stored Stripe payment_intent.* event (run by StripeWebhookDispatcher).<br>
+ * Notes:
+ *  - The payload was signature-checked by the webhook before it was stored, so it is only
+ *    deserialised here. When the SDK cannot map the data object (API version drift) the
+ *    PaymentIntent is fetched from Stripe, off the request path.
+ *  - Runs in one transaction per event; any exception rolls it back and the dispatcher
+ *    schedules a retry (e.g. an order whose checkout has not committed yet).
+ */
+@Service
+public class StripeEventProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(StripeEventProcessor.class);
+
+    private final OrderService           ordersSvc;
+    private final OrderRepository        orders;
+    private final PaymentEventRepository events;
+    private final MembershipPaymentOrchestrator membershipOrchestrator;
+    private final ProgramEnrollmentPaymentOrchestrator enrollmentOrchestrator;
+    private final TableRentalPurchaseOrchestrator tableCreditsOrchestrator;
+
+    public StripeEventProcessor(OrderService ordersSvc,
+                                OrderRepository orders,
+                                PaymentEventRepository events,
+                                MembershipPaymentOrchestrator membershipOrchestrator,
+                                ProgramEnrollmentPaymentOrchestrator enrollmentOrchestrator,
+                                TableRentalPurchaseOrchestrator tableCreditsOrchestrator) {
+        this.ordersSvc = ordersSvc;
+        this.orders    = orders;
+        this.events    = events;
+        this.membershipOrchestrator = membershipOrchestrator;
+        this.enrollmentOrchestrator = enrollmentOrchestrator;
+        this.tableCreditsOrchestrator = tableCreditsOrchestrator;
+    }
+
+    @Transactional
+    public void process(String paymentIntentId, String payload) {
+        Event evt = ApiResource.GSON.fromJson(payload, Event.class);
+        PaymentIntent pi = paymentIntent(evt, paymentIntentId);
+
+        String bookingType = pi.getMetadata() != null ? pi.getMetadata().get("bookingType") : null;
+        String bookingIdRaw = pi.getMetadata() != null ? pi.getMetadata().get("bookingId") : null;
+        Long bookingId = null;
+        try { if (bookingIdRaw != null) bookingId = Long.valueOf(bookingIdRaw); } catch (NumberFormatException ignore) {}
+
+        /*  Membership flow */
+        if ("MEMBERSHIP".equalsIgnoreCase(bookingType)) {
+            switch (evt.getType()) {
+                case "payment_intent.succeeded"      -> membershipOrchestrator.onSucceeded(pi.getId(), bookingId);
+                case "payment_intent.payment_failed",
+                     "payment_intent.canceled"       -> membershipOrchestrator.onFailedOrCanceled(pi.getId());
+                default -> { /* ignore */ }
+            }
+            log.info("Processed membership PI: {} (type={})", pi.getId(), evt.getType());
+            return;
+        }
+
+        /* Program enrollment flow */
+        if ("ENROLLMENT".equalsIgnoreCase(bookingType)) {
+            switch (evt.getType()) {
+                case "payment_intent.succeeded"      -> enrollmentOrchestrator.onSucceeded(pi.getId(), bookingId);
+                case "payment_intent.payment_failed",
+                     "payment_intent.canceled"       -> enrollmentOrchestrator.onFailedOrCanceled(pi.getId());
+                default -> { /* ignore */ }
+            }
+            log.info("Processed enrollment PI: {} (type={})", pi.getId(), evt.getType());
+            return;
+        }
+
+        /* Table rental credits flow */
+        if ("TABLE_CREDITS".equalsIgnoreCase(bookingType)) {
+            switch (evt.getType()) {
+                case "payment_intent.succeeded"      -> tableCreditsOrchestrator.onSucceeded(pi.getId(), bookingId);
+                case "payment_intent.payment_failed",
+                     "payment_intent.canceled"       -> tableCreditsOrchestrator.onFailedOrCanceled(pi.getId());
+                default -> { /* ignore */ }
+            }
+            log.info("Processed table-credits PI: {} (type={})", pi.getId(), evt.getType());
+            return;
+        }
+
+        /* Legacy shop orders (unchanged) */
+        Order order = null;
+        String metaId = pi.getMetadata() != null ? pi.getMetadata().get("orderId") : null;
+        try { if (metaId != null) order = orders.findById(Long.valueOf(metaId)).orElse(null); } catch (NumberFormatException ignored) { }
+        if (order == null) order = orders.findByStripePaymentIntentId(pi.getId()).orElse(null);
+        if (order == null) {
+            throw new IllegalStateException("No matching order for PaymentIntent " + pi.getId());
+        }
+
+        PaymentEvent pe = new PaymentEvent();
+        pe.setOrder(order);
+        pe.setProvider("STRIPE");
+        pe.setProviderTxnId(pi.getId());
+        pe.setAmount(BigDecimal.valueOf(pi.getAmount()).movePointLeft(2));
+        pe.setCurrency(pi.getCurrency());
+        pe.setStatus(pi.getStatus());
+        pe.setEventType(evt.getType());
+        pe.setPayloadJson(payload);
+        events.save(pe);
+
+        switch (evt.getType()) {
+            case "payment_intent.succeeded"      -> ordersSvc.syncPaymentStatus(pi.getId(), "succeeded");
+            case "payment_intent.payment_failed" -> ordersSvc.syncPaymentStatus(pi.getId(), "payment_failed");
+            case "payment_intent.canceled"       -> ordersSvc.syncPaymentStatus(pi.getId(), "canceled");
+            default -> { }
+        }
+    }
+
+    private static PaymentIntent paymentIntent(Event evt, String paymentIntentId) {
+        Optional<StripeObject> obj = evt.getDataObjectDeserializer().getObject();
+        if (obj.isPresent() && obj.get() instanceof PaymentIntent pi) return pi;
+        if (paymentIntentId == null || paymentIntentId.isBlank()) {
+            throw new IllegalStateException("Unable to extract PaymentIntent id from event " + evt.getId());
+        }
+        try {
+            return PaymentIntent.retrieve(paymentIntentId);
+        } catch (StripeException ex) {
+            // unchecked so the transaction rolls back and the dispatcher retries
+            throw new IllegalStateException("Unable to retrieve PaymentIntent " + paymentIntentId + ": " + ex.getMessage(), ex);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.ttclub.backend.service.webhook;
+
+import com.ttclub.backend.service.queue.LeasedQueueWorker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Background processor for the Stripe webhook inbox.<br>
+ * Notes:
+ *  - Claim / lease / retry / dead-letter mechanics are those of {@link LeasedQueueWorker}.
+ *  - Per-PaymentIntent order: a row is only claimable when no earlier (stripe_created, id)
+ *    event of the same PaymentIntent is unfinished and none is currently leased, so
+ *    succeeded/canceled for one intent never run concurrently or out of order, on any node.
+ *  - Each event is processed in its own transaction (StripeEventProcessor).
+ *  - DEAD rows also stop blocking later events of their PaymentIntent.
+ */
+@Component
+public class StripeWebhookDispatcher extends LeasedQueueWorker<StripeWebhookDispatcher.Claimed> {
+
+    private static final Logger log = LoggerFactory.getLogger(StripeWebhookDispatcher.class);
+
+    private static final String CLAIM_SQL = """
+            UPDATE stripe_webhook_events e
+               SET status = 'PROCESSING',
+                   attempts = e.attempts + 1,
+                   next_attempt_at = now() + ? * interval '1 second'
+             WHERE e.id IN (SELECT c.id FROM stripe_webhook_events c
+                             WHERE c.status IN ('PENDING', 'PROCESSING')
+                               AND c.next_attempt_at <= now()
+                               AND NOT EXISTS (
+                                   SELECT 1 FROM stripe_webhook_events p
+                                    WHERE p.payment_intent_id = c.payment_intent_id
+                                      AND p.id <> c.id
+                                      AND p.status IN ('PENDING', 'PROCESSING')
+                                      AND ((p.stripe_created, p.id) < (c.stripe_created, c.id)
+                                           OR (p.status = 'PROCESSING' AND p.next_attempt_at > now())))
+                             ORDER BY c.next_attempt_at, c.id
+                             LIMIT ?
+                             FOR UPDATE SKIP LOCKED)
+            RETURNING e.id, e.event_id, e.event_type, e.payment_intent_id, e.payload, e.attempts, e.received_at
+            """;
+
+    private static final String DONE_SQL = """
+            UPDATE stripe_webhook_events
+               SET status = 'DONE', processed_at = now(), last_error = NULL
+             WHERE id = ?
+            """;
+
+    private static final String RETRY_SQL = """
+            UPDATE stripe_webhook_events
+               SET status = 'PENDING', next_attempt_at = now() + ? * interval '1 second', last_error = ?
+             WHERE id = ?
+            """;
+
+    private static final String DEAD_SQL = """
+            UPDATE stripe_webhook_events
+               SET status = 'DEAD', processed_at = now(), last_error = ?
+             WHERE id = ?
+            """;
+
+    record Claimed(long id, String eventId, String type, String paymentIntentId,
+                   String payload, int attempts, Instant receivedAt) implements LeasedQueueWorker.Claimed { }
+
+    private final StripeEventProcessor processor;
+    private final int retentionDays;
+
+    private final Counter done;
+    private final Timer processTimer;
+    private final Timer lagTimer;
+
+    public StripeWebhookDispatcher(JdbcTemplate jdbc,
+                                   StripeEventProcessor processor,
+                                   MeterRegistry meters,
+                                   @Value("${ttclub.stripe.webhook.workers:4}") int workers,
+                                   @Value("${ttclub.stripe.webhook.batch-size:10}") int batchSize,
+                                   @Value("${ttclub.stripe.webhook.max-attempts:10}") int maxAttempts,
+                                   @Value("${ttclub.stripe.webhook.base-delay-sec:15}") long baseDelaySec,
+                                   @Value("${ttclub.stripe.webhook.max-delay-sec:3600}") long maxDelaySec,
+                                   @Value("${ttclub.stripe.webhook.lease-sec:120}") long leaseSec,
+                                   @Value("${ttclub.stripe.webhook.retention-days:30}") int retentionDays) {
+        super("Stripe webhook inbox", jdbc, meters, "ttclub.stripe.webhook", "events",
+                new Policy(workers, batchSize, maxAttempts, baseDelaySec, maxDelaySec, leaseSec),
+                new Statements(CLAIM_SQL, RETRY_SQL, DEAD_SQL),
+                (rs, i) -> new Claimed(
+                        rs.getLong("id"), rs.getString("event_id"), rs.getString("event_type"),
+                        rs.getString("payment_intent_id"), rs.getString("payload"), rs.getInt("attempts"),
+                        rs.getTimestamp("received_at").toInstant()));
+        this.processor = processor;
+        // Stripe redelivers for up to 3 days; the unique event_id must outlive that window
+        this.retentionDays = Math.max(7, retentionDays);
+
+        this.done = Counter.builder("ttclub.stripe.webhook.events").tag("result", "done").register(meters);
+        this.processTimer = Timer.builder("ttclub.stripe.webhook.process")
+                .description("Time to process one stored webhook event")
+                .register(meters);
+        this.lagTimer = Timer.builder("ttclub.stripe.webhook.lag")
+                .description("Receipt to successful processing of a webhook event")
+                .register(meters);
+    }
+
+    /** Safety net for retries, missed wake-ups and events stored by other nodes. */
+    @Scheduled(fixedDelayString = "${ttclub.stripe.webhook.poll-ms:2000}", initialDelay = 10000)
+    public void poll() {
+        wakeUp();
+    }
+
+    @Scheduled(fixedDelayString = "${ttclub.stripe.webhook.purge-interval-ms:3600000}", initialDelay = 60000)
+    public void purgeDone() {
+        int n = jdbc.update("DELETE FROM stripe_webhook_events WHERE status = 'DONE' AND processed_at < now() - ? * interval '1 day'",
+                retentionDays);
+        if (n > 0) log.debug("Stripe webhook inbox: purged {} processed rows.", n);
+    }
+
+    /* Worker */
+
+    @Override
+    protected void handle(List<Claimed> batch) {
+        // claimed rows belong to distinct PaymentIntents, so their relative order is free
+        for (Claimed c : batch) process(c);
+    }
+
+    @Override
+    protected String describe(Claimed c) {
+        return "event " + c.eventId() + " (" + c.type() + ", PI " + c.paymentIntentId() + ")";
+    }
+
+    private void process(Claimed c) {
+        try {
+            processTimer.record(() -> processor.process(c.paymentIntentId(), c.payload()));
+        } catch (RuntimeException ex) {
+            fail(c, ex);
+            return;
+        }
+        jdbc.update(DONE_SQL, c.id());
+        done.increment();
+        lagTimer.record(Duration.between(c.receivedAt(), Instant.now()));
+    }
+}
@@ -0,0 +1,50 @@
+package com.ttclub.backend.service.webhook;
+
+import com.stripe.model.Event;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Durable, de-duplicated hand-off of verified Stripe events to StripeWebhookDispatcher.<br>
+ * Notes:
+ *  - One INSERT ... ON CONFLICT (event_id) DO NOTHING in auto-commit: a Stripe redelivery of
+ *    an event we already hold is acknowledged without being processed twice.
+ *  - Once the row is stored the webhook can answer 200; a worker is woken right away and the
+ *    dispatcher's poll covers missed wake-ups.
+ */
+@Service
+public class StripeWebhookInbox {
+
+    private static final String INSERT_SQL = """
+            INSERT INTO stripe_webhook_events (event_id, event_type, payment_intent_id, stripe_created, payload)
+            VALUES (?, ?, ?, ?, ?)
+            ON CONFLICT (event_id) DO NOTHING
+            """;
+
+    private final JdbcTemplate jdbc;
+    private final StripeWebhookDispatcher dispatcher;
+    private final Counter stored;
+    private final Counter duplicates;
+
+    public StripeWebhookInbox(JdbcTemplate jdbc, StripeWebhookDispatcher dispatcher, MeterRegistry meters) {
+        this.jdbc = jdbc;
+        this.dispatcher = dispatcher;
+        this.stored = Counter.builder("ttclub.stripe.webhook.received").tag("result", "stored").register(meters);
+        this.duplicates = Counter.builder("ttclub.stripe.webhook.received").tag("result", "duplicate").register(meters);
+    }
+
+    /** Stores the event; false when this event id was already received. */
+    public boolean store(Event evt, String paymentIntentId, String rawBody) {
+        int n = jdbc.update(INSERT_SQL, evt.getId(), evt.getType(), paymentIntentId,
+                evt.getCreated() == null ? 0L : evt.getCreated(), rawBody);
+        if (n == 0) {
+            duplicates.increment();
+            return false;
+        }
+        stored.increment();
+        dispatcher.wakeUp();
+        return true;
+    }
+}
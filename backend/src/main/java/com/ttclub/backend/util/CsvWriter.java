@@ -0,0 +1,154 @@
+package com.ttclub.backend.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal streaming CSV writer (RFC 4180 quoting, UTF-8, '\n' line ends).
+ * Encodes straight into its own byte buffer: no String.format, no per-row line Strings.
+ * Not thread-safe; {@link #close()} flushes but does not close the target stream.
+ */
+public final class CsvWriter implements AutoCloseable {
+
+    private final OutputStream out;
+    private final byte[] buf;
+    private int pos;
+    private boolean rowStart = true;
+
+    public CsvWriter(OutputStream out, int bufferSize) {
+        this.out = out;
+        this.buf = new byte[Math.max(1024, bufferSize)];
+    }
+
+    /** Text cell; quoted only when it contains a separator, quote or line break. */
+    public CsvWriter field(CharSequence s) throws IOException {
+        separator();
+        if (s == null) return this;
+        int n = s.length();
+        boolean quote = false;
+        for (int i = 0; i < n && !quote; i++) {
+            char c = s.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (quote) put('"');
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c == '"') put('"');
+            if (c < 0x80) {
+                put(c);
+            } else {
+                // rare: fall back to the JDK encoder for non-ASCII runs
+                int j = i;
+                while (j < n && s.charAt(j) >= 0x80) j++;
+                bytes(s.subSequence(i, j).toString().getBytes(StandardCharsets.UTF_8));
+                i = j - 1;
+            }
+        }
+        if (quote) put('"');
+        return this;
+    }
+
+    public CsvWriter field(long v) throws IOException {
+        separator();
+        if (v == Long.MIN_VALUE) {
+            ascii(Long.toString(v));
+            return this;
+        }
+        if (v < 0) {
+            put('-');
+            v = -v;
+        }
+        digits(v, 1);
+        return this;
+    }
+
+    /** Money cell with exactly two decimals (HALF_UP), null as an empty cell. */
+    public CsvWriter money(BigDecimal v) throws IOException {
+        separator();
+        if (v == null) return this;
+        BigDecimal s = v.setScale(2, RoundingMode.HALF_UP);
+        long unscaled;
+        try {
+            unscaled = s.unscaledValue().longValueExact();
+        } catch (ArithmeticException ex) {
+            ascii(s.toPlainString());
+            return this;
+        }
+        if (unscaled < 0) {
+            put('-');
+            unscaled = -unscaled;
+        }
+        digits(unscaled / 100, 1);
+        put('.');
+        digits(unscaled % 100, 2);
+        return this;
+    }
+
+    /** Pre-formatted ASCII cell (dates, enums) written without quoting checks. */
+    public CsvWriter raw(String ascii) throws IOException {
+        separator();
+        if (ascii != null) ascii(ascii);
+        return this;
+    }
+
+    public void endRow() throws IOException {
+        put('\n');
+        rowStart = true;
+    }
+
+    /** Pushes buffered bytes to the target stream and flushes it. */
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+    }
+
+    /* internals */
+
+    private void separator() throws IOException {
+        if (!rowStart) put(',');
+        rowStart = false;
+    }
+
+    private void digits(long v, int minWidth) throws IOException {
+        int len = 1;
+        for (long t = v; t >= 10; t /= 10) len++;
+        for (int k = len; k < minWidth; k++) put('0');
+        if (pos + len > buf.length) drain();
+        for (int k = pos + len - 1; k >= pos; k--) {
+            buf[k] = (byte) ('0' + (v % 10));
+            v /= 10;
+        }
+        pos += len;
+    }
+
+    private void ascii(String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) put(s.charAt(i));
+    }
+
+    private void bytes(byte[] b) throws IOException {
+        for (byte x : b) {
+            if (pos == buf.length) drain();
+            buf[pos++] = x;
+        }
+    }
+
+    private void put(char c) throws IOException {
+        if (pos == buf.length) drain();
+        buf[pos++] = (byte) c;
+    }
+
+    private void drain() throws IOException {
+        if (pos > 0) {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+    }
+}
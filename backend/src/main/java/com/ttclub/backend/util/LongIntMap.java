@@ -0,0 +1,155 @@
+package com.ttclub.backend.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from primitive {@code long} keys to primitive {@code int} values
+ * (linear probing, backward-shift deletion). Counterpart of {@link LongObjectMap} for counters
+ * that are read far more often than written: no boxing of either side.
+ * Not thread-safe.
+ */
+public final class LongIntMap {
+
+    /** Functional view used by {@link #forEach}. */
+    @FunctionalInterface
+    public interface Entry {
+        void accept(long key, int value);
+    }
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int size;
+    private int resizeAt;
+
+    public LongIntMap() {
+        this(16);
+    }
+
+    public LongIntMap(int expected) {
+        int cap = Integer.highestOneBit(Math.max(4, (int) (expected / LOAD_FACTOR)) - 1) << 1;
+        allocate(cap);
+    }
+
+    public int size() { return size; }
+
+    public boolean isEmpty() { return size == 0; }
+
+    /** @return the value for key, or {@code missing} when absent */
+    public int get(long key, int missing) {
+        int i = indexOf(key);
+        return i < 0 ? missing : values[i];
+    }
+
+    public boolean containsKey(long key) {
+        return indexOf(key) >= 0;
+    }
+
+    public void put(long key, int value) {
+        int i = slotFor(key);
+        if (!used[i]) {
+            used[i] = true;
+            keys[i] = key;
+            values[i] = value;
+            if (++size >= resizeAt) rehash(keys.length << 1);
+            return;
+        }
+        values[i] = value;
+    }
+
+    /** Adds delta to an existing value; absent keys are left absent. @return true when applied */
+    public boolean addIfPresent(long key, int delta) {
+        int i = indexOf(key);
+        if (i < 0) return false;
+        values[i] += delta;
+        return true;
+    }
+
+    /** @return true when the key was present */
+    public boolean remove(long key) {
+        int i = indexOf(key);
+        if (i < 0) return false;
+
+        // backward-shift: pull later entries of the same probe run into the hole
+        int mask = keys.length - 1;
+        int hole = i;
+        int j = (i + 1) & mask;
+        while (used[j]) {
+            int home = mix(keys[j]) & mask;
+            // the entry at j may move to hole only if its home is not in (hole, j]
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                keys[hole] = keys[j];
+                values[hole] = values[j];
+                hole = j;
+            }
+            j = (j + 1) & mask;
+        }
+        used[hole] = false;
+        size--;
+        return true;
+    }
+
+    public void clear() {
+        if (size == 0) return;
+        Arrays.fill(used, false);
+        size = 0;
+    }
+
+    public void forEach(Entry fn) {
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i]) fn.accept(keys[i], values[i]);
+        }
+    }
+
+    /* internals */
+
+    private int indexOf(long key) {
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (used[i]) {
+            if (keys[i] == key) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /** Slot holding key, or the free slot it would be inserted into. */
+    private int slotFor(long key) {
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (used[i] && keys[i] != key) i = (i + 1) & mask;
+        return i;
+    }
+
+    private void allocate(int cap) {
+        keys = new long[cap];
+        values = new int[cap];
+        used = new boolean[cap];
+        resizeAt = (int) (cap * LOAD_FACTOR);
+    }
+
+    private void rehash(int newCap) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(newCap);
+        int mask = newCap - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (!oldUsed[j]) continue;
+            int i = mix(oldKeys[j]) & mask;
+            while (used[i]) i = (i + 1) & mask;
+            used[i] = true;
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+
+    /** Stafford variant 13 finaliser (same as LongObjectMap). */
+    private static int mix(long k) {
+        k = (k ^ (k >>> 30)) * 0xbf58476d1ce4e5b9L;
+        k = (k ^ (k >>> 27)) * 0x94d049bb133111ebL;
+        return (int) (k ^ (k >>> 31));
+    }
+}
@@ -0,0 +1,136 @@
+package com.ttclub.backend.util;
+
+import java.util.Arrays;
+import java.util.function.LongFunction;
+
+/**
+ * Small open-addressing hash map with primitive {@code long} keys (linear probing).
+ * Avoids boxing and String key building on hot, set-based code paths.
+ * Not thread-safe; null values are not supported.
+ */
+public final class LongObjectMap<V> {
+
+    /** Functional view used by {@link #forEach}. */
+    @FunctionalInterface
+    public interface Entry<V> {
+        void accept(long key, V value);
+    }
+
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+    private int resizeAt;
+
+    public LongObjectMap() {
+        this(16);
+    }
+
+    public LongObjectMap(int expected) {
+        int cap = Integer.highestOneBit(Math.max(4, (int) (expected / LOAD_FACTOR)) - 1) << 1;
+        allocate(cap);
+    }
+
+    public int size() { return size; }
+
+    public boolean isEmpty() { return size == 0; }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int i = indexOf(key);
+        return i < 0 ? null : (V) values[i];
+    }
+
+    public boolean containsKey(long key) {
+        return indexOf(key) >= 0;
+    }
+
+    /** @return the previous value, or null */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) throw new IllegalArgumentException("null values are not supported");
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (values[i] != null) {
+            if (keys[i] == key) {
+                V old = (V) values[i];
+                values[i] = value;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size >= resizeAt) rehash(keys.length << 1);
+        return null;
+    }
+
+    /** @return the existing value (and leaves it in place), or null when the value was inserted */
+    public V putIfAbsent(long key, V value) {
+        V existing = get(key);
+        if (existing != null) return existing;
+        put(key, value);
+        return null;
+    }
+
+    public V computeIfAbsent(long key, LongFunction<V> fn) {
+        V existing = get(key);
+        if (existing != null) return existing;
+        V v = fn.apply(key);
+        if (v != null) put(key, v);
+        return v;
+    }
+
+    public void clear() {
+        if (size == 0) return;
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public void forEach(Entry<V> fn) {
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != null) fn.accept(keys[i], (V) values[i]);
+        }
+    }
+
+    /* internals */
+
+    private int indexOf(long key) {
+        int mask = keys.length - 1;
+        int i = mix(key) & mask;
+        while (values[i] != null) {
+            if (keys[i] == key) return i;
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void allocate(int cap) {
+        keys = new long[cap];
+        values = new Object[cap];
+        resizeAt = (int) (cap * LOAD_FACTOR);
+    }
+
+    private void rehash(int newCap) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(newCap);
+        int mask = newCap - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldValues[j] == null) continue;
+            int i = mix(oldKeys[j]) & mask;
+            while (values[i] != null) i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+
+    /** Stafford variant 13 finaliser: spreads sequential ids/timestamps across buckets. */
+    private static int mix(long k) {
+        k = (k ^ (k >>> 30)) * 0xbf58476d1ce4e5b9L;
+        k = (k ^ (k >>> 27)) * 0x94d049bb133111ebL;
+        return (int) (k ^ (k >>> 31));
+    }
+}
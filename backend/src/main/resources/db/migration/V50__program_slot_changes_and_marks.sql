@@ -0,0 +1,24 @@
+-- Incremental occurrence materialisation.
+-- 1) Journal of slot mutations written by AdminProgramService (applied per slot).
+-- 2) Per-program high-water mark: last date already materialised.
+
+create table if not exists program_slot_changes (
+    id            bigserial primary key,
+    program_id    bigint not null references programs(id) on delete cascade,
+    slot_id       bigint not null,              -- no FK: DELETE entries outlive the slot
+    change_type   varchar(10) not null,
+    created_at    timestamptz not null default now(),
+    processed_at  timestamptz,
+    constraint chk_psc_type check (change_type in ('ADD','UPDATE','DELETE'))
+);
+
+-- Pending entries are drained by the nightly job
+create index if not exists ix_psc_pending
+    on program_slot_changes (id)
+    where processed_at is null;
+
+create table if not exists program_materialisation_marks (
+    program_id            bigint primary key references programs(id) on delete cascade,
+    materialised_through  date not null,
+    updated_at            timestamptz not null default now()
+);
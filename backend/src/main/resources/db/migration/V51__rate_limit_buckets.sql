@@ -0,0 +1,10 @@
+-- Shared GCRA state for JdbcRateLimiter (ttclub.ratelimit.backend=jdbc).
+-- bucket = 64-bit hash of (purpose, caller key, window); tat_ms = theoretical arrival time (epoch ms).
+
+create table if not exists rate_limit_buckets (
+    bucket      bigint primary key,
+    tat_ms      bigint not null,
+    expires_at  timestamptz not null
+);
+
+create index if not exists ix_rlb_expires on rate_limit_buckets (expires_at);
@@ -0,0 +1,31 @@
+-- Transactional outbox for outbound e-mail (EmailOutbox / EmailOutboxDispatcher).
+-- Rows are written in the business transaction and sent by a background dispatcher.
+-- status: PENDING -> SENDING (leased until next_attempt_at) -> SENT | PENDING (retry) | DEAD
+-- body_enc is AES-GCM encrypted (SecretCrypto) and cleared once the message is sent.
+
+create table if not exists email_outbox (
+    id               bigserial primary key,
+    category         varchar(40)  not null,
+    from_addr        varchar(255),
+    to_addr          text         not null,
+    bcc_addr         text,
+    subject          text         not null,
+    body_enc         text,
+    status           varchar(16)  not null default 'PENDING',
+    attempts         integer      not null default 0,
+    next_attempt_at  timestamptz  not null default now(),
+    last_error       text,
+    created_at       timestamptz  not null default now(),
+    sent_at          timestamptz,
+    constraint ck_email_outbox_status check (status in ('PENDING', 'SENDING', 'SENT', 'DEAD'))
+);
+
+-- Dispatcher claim scan: only unfinished rows, in due order
+create index if not exists ix_email_outbox_due
+    on email_outbox (next_attempt_at, id)
+    where status in ('PENDING', 'SENDING');
+
+-- Retention purge of sent rows
+create index if not exists ix_email_outbox_sent
+    on email_outbox (sent_at)
+    where status = 'SENT';
@@ -0,0 +1,26 @@
+-- Stored, weighted search document for product search (ProductRepository / ProductService).
+-- name (A) > brand (B) > description (C); maintained by Postgres on insert/update.
+
+ALTER TABLE products
+    ADD COLUMN IF NOT EXISTS search_vector tsvector
+        GENERATED ALWAYS AS (
+            setweight(to_tsvector('simple', coalesce(name, '')), 'A') ||
+            setweight(to_tsvector('simple', coalesce(brand, '')), 'B') ||
+            setweight(to_tsvector('simple', coalesce(description, '')), 'C')
+        ) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_products_search_vector
+    ON products USING gin (search_vector);
+
+-- Typo-tolerant fallback on names (pg_trgm is installed since V18)
+CREATE INDEX IF NOT EXISTS idx_products_name_trgm
+    ON products USING gin (lower(name) gin_trgm_ops);
+
+-- Keyset browse of the active catalogue: (category) -> name, id
+CREATE INDEX IF NOT EXISTS idx_products_active_name_id
+    ON products (name, id) WHERE is_active;
+CREATE INDEX IF NOT EXISTS idx_products_active_cat_name_id
+    ON products (category_id, name, id) WHERE is_active;
+
+-- Superseded by search_vector
+DROP INDEX IF EXISTS idx_products_search;
@@ -0,0 +1,36 @@
+-- Maintained table-credit balances (one row per individual owner or membership group).
+-- owner_kind 'U' = individual credits of users(id), 'G' = pooled credits of membership_groups(id).
+-- Kept in sync with table_rental_credits.hours_remaining by every writer (TableCreditLedger);
+-- a scheduled reconciliation job compares both sides.
+CREATE TABLE IF NOT EXISTS table_credit_balances (
+    owner_kind  char(1)       NOT NULL,
+    owner_id    bigint        NOT NULL,
+    hours       numeric(10,2) NOT NULL DEFAULT 0,
+    updated_at  timestamptz   NOT NULL DEFAULT now(),
+    CONSTRAINT pk_table_credit_balances PRIMARY KEY (owner_kind, owner_id),
+    CONSTRAINT chk_tcb_kind  CHECK (owner_kind IN ('U', 'G')),
+    CONSTRAINT chk_tcb_hours CHECK (hours >= 0)
+);
+
+INSERT INTO table_credit_balances (owner_kind, owner_id, hours)
+SELECT 'U', user_id, sum(hours_remaining)
+  FROM table_rental_credits
+ WHERE group_id IS NULL
+ GROUP BY user_id
+ON CONFLICT (owner_kind, owner_id) DO NOTHING;
+
+INSERT INTO table_credit_balances (owner_kind, owner_id, hours)
+SELECT 'G', group_id, sum(hours_remaining)
+  FROM table_rental_credits
+ WHERE group_id IS NOT NULL
+ GROUP BY group_id
+ON CONFLICT (owner_kind, owner_id) DO NOTHING;
+
+-- FIFO drain scans only touch credit rows that still hold hours
+CREATE INDEX IF NOT EXISTS ix_trc_user_drainable
+    ON table_rental_credits (user_id, created_at, id)
+    WHERE group_id IS NULL AND hours_remaining > 0;
+
+CREATE INDEX IF NOT EXISTS ix_trc_group_drainable
+    ON table_rental_credits (group_id, created_at, id)
+    WHERE group_id IS NOT NULL AND hours_remaining > 0;
@@ -0,0 +1,85 @@
+/*
+  * Replaces the never-refreshed finance_ledger MATERIALIZED VIEW with an append-only,
+    month-partitioned table written in the same transaction as each money movement
+    (FinanceLedgerWriter): order payments, refunds, memberships, program enrollments
+    and table-rental purchases.
+  * The old view is kept as finance_ledger_mv for the optional REFRESH ... CONCURRENTLY
+    fallback mode (ttclub.finance.ledger.mode=view).
+  * Amounts are CAD dollars; refunds are negative.
+*/
+
+ALTER MATERIALIZED VIEW IF EXISTS finance_ledger RENAME TO finance_ledger_mv;
+
+CREATE TABLE finance_ledger (
+    id          bigserial      NOT NULL,
+    ts          timestamptz    NOT NULL,
+    action      varchar(24)    NOT NULL,   -- PURCHASE, REFUND, MEMBERSHIP, ENROLLMENT, TABLE_RENTAL
+    source_id   bigint         NOT NULL,   -- orders / refund_events / *_payments / table_rental_purchases id
+    user_id     bigint,
+    subtotal    numeric(10,2)  NOT NULL DEFAULT 0,
+    shipping    numeric(10,2)  NOT NULL DEFAULT 0,
+    tax         numeric(10,2)  NOT NULL DEFAULT 0,
+    total       numeric(10,2)  NOT NULL,
+    status      varchar(32),
+    currency    varchar(10)    NOT NULL DEFAULT 'cad',
+    created_at  timestamptz    NOT NULL DEFAULT now(),
+    CONSTRAINT pk_finance_ledger PRIMARY KEY (id, ts)
+) PARTITION BY RANGE (ts);
+
+-- date-range exports; partitioned index, one per partition
+CREATE INDEX ix_finance_ledger_ts ON finance_ledger (ts);
+
+-- rows outside any monthly partition (should stay empty; FinanceLedgerMaintenanceJob creates months ahead)
+CREATE TABLE finance_ledger_default PARTITION OF finance_ledger DEFAULT;
+
+-- monthly partitions from the oldest money movement up to three months ahead
+DO $$
+DECLARE
+    first_month date;
+    m           date;
+BEGIN
+    SELECT date_trunc('month', least(
+               (SELECT min(created_at) FROM orders),
+               (SELECT min(created_at) FROM refund_events),
+               (SELECT min(created_at) FROM membership_payments),
+               (SELECT min(created_at) FROM program_enrollment_payments),
+               (SELECT min(created_at) FROM table_rental_purchases),
+               now()))::date
+      INTO first_month;
+
+    m := first_month;
+    WHILE m <= (date_trunc('month', now()) + interval '3 months')::date LOOP
+        EXECUTE format(
+            'CREATE TABLE IF NOT EXISTS %I PARTITION OF finance_ledger FOR VALUES FROM (%L) TO (%L)',
+            'finance_ledger_' || to_char(m, 'YYYY_MM'), m, (m + interval '1 month')::date);
+        m := (m + interval '1 month')::date;
+    END LOOP;
+END $$;
+
+-- backfill: settled orders, refunds and succeeded booking payments
+INSERT INTO finance_ledger (ts, action, source_id, user_id, subtotal, shipping, tax, total, status)
+SELECT o.created_at, 'PURCHASE', o.id, o.user_id,
+       o.subtotal_amount, o.shipping_fee, o.tax_amount, o.total_amount, o.status::text
+  FROM orders o
+ WHERE o.status::text IN ('PAID', 'FULFILLED', 'REFUNDED');
+
+INSERT INTO finance_ledger (ts, action, source_id, user_id, subtotal, shipping, tax, total, status, currency)
+SELECT r.created_at, 'REFUND', r.id, o.user_id,
+       -r.amount, 0, 0, -r.amount, 'REFUNDED', coalesce(r.currency, 'cad')
+  FROM refund_events r
+  JOIN orders o ON o.id = r.order_id;
+
+INSERT INTO finance_ledger (ts, action, source_id, user_id, subtotal, shipping, tax, total, status, currency)
+SELECT p.created_at, 'MEMBERSHIP', p.id, p.user_id, p.price_cad, 0, p.tax_cad, p.total_cad, p.status, p.currency
+  FROM membership_payments p
+ WHERE p.status = 'SUCCEEDED';
+
+INSERT INTO finance_ledger (ts, action, source_id, user_id, subtotal, shipping, tax, total, status, currency)
+SELECT p.created_at, 'ENROLLMENT', p.id, p.user_id, p.price_cad, 0, p.tax_cad, p.total_cad, p.status, p.currency
+  FROM program_enrollment_payments p
+ WHERE p.status = 'SUCCEEDED';
+
+INSERT INTO finance_ledger (ts, action, source_id, user_id, subtotal, shipping, tax, total, status, currency)
+SELECT p.created_at, 'TABLE_RENTAL', p.id, p.user_id, p.price_cad, 0, p.tax_cad, p.total_cad, p.status, p.currency
+  FROM table_rental_purchases p
+ WHERE p.status = 'SUCCEEDED';
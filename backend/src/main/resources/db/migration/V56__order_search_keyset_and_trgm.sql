@@ -0,0 +1,22 @@
+-- Admin order search (keyset pages on (created_at, id), substring filters on contact fields)
+
+-- Keyset order: ORDER BY created_at DESC, id DESC with (created_at, id) < (?, ?)
+CREATE INDEX IF NOT EXISTS idx_orders_created_at_id
+  ON orders (created_at DESC, id DESC);
+
+-- Substring (LIKE '%term%') filters: the V31/V48 btree indexes on lower(...) only help
+-- prefix/exact matches, trigram GIN serves the contains-match the admin screen sends
+CREATE INDEX IF NOT EXISTS idx_orders_shipping_email_trgm
+  ON orders USING gin (lower(shipping_email) gin_trgm_ops);
+
+CREATE INDEX IF NOT EXISTS idx_orders_shipping_name_trgm
+  ON orders USING gin (lower(shipping_full_name) gin_trgm_ops);
+
+-- Registered customer name; expression must match OrderService.searchPage exactly
+-- (registered customer email: lower(users.email) already has idx_users_email_trgm from V31)
+CREATE INDEX IF NOT EXISTS idx_users_full_name_trgm
+  ON users USING gin (lower(coalesce(first_name, '') || ' ' || coalesce(last_name, '')) gin_trgm_ops);
+
+-- Batch fetch of the page's items (FKs are not auto-indexed; refund_events has one since V27)
+CREATE INDEX IF NOT EXISTS idx_order_items_order_id
+  ON order_items (order_id);
@@ -0,0 +1,37 @@
+-- Inbox for verified Stripe webhook events (StripeWebhookController / StripeWebhookDispatcher).
+-- The webhook only verifies and inserts here; a background dispatcher runs the business side.
+-- event_id is Stripe's evt_... id: redeliveries of the same event hit the unique key and are dropped.
+-- status: PENDING -> PROCESSING (leased until next_attempt_at) -> DONE | PENDING (retry) | DEAD
+-- Events of one PaymentIntent are processed strictly one at a time in (stripe_created, id) order.
+
+create table if not exists stripe_webhook_events (
+    id                 bigserial primary key,
+    event_id           varchar(255) not null,
+    event_type         varchar(64)  not null,
+    payment_intent_id  varchar(255),
+    stripe_created     bigint       not null default 0,
+    payload            text         not null,
+    status             varchar(16)  not null default 'PENDING',
+    attempts           integer      not null default 0,
+    next_attempt_at    timestamptz  not null default now(),
+    last_error         text,
+    received_at        timestamptz  not null default now(),
+    processed_at       timestamptz,
+    constraint uq_stripe_webhook_events_event unique (event_id),
+    constraint ck_stripe_webhook_events_status check (status in ('PENDING', 'PROCESSING', 'DONE', 'DEAD'))
+);
+
+-- Dispatcher claim scan: only unfinished rows, in due order
+create index if not exists ix_stripe_webhook_events_due
+    on stripe_webhook_events (next_attempt_at, id)
+    where status in ('PENDING', 'PROCESSING');
+
+-- Per-PaymentIntent ordering check (is an earlier event of the same PI still unfinished?)
+create index if not exists ix_stripe_webhook_events_pi_open
+    on stripe_webhook_events (payment_intent_id, stripe_created, id)
+    where status in ('PENDING', 'PROCESSING');
+
+-- Retention purge of processed rows
+create index if not exists ix_stripe_webhook_events_done
+    on stripe_webhook_events (processed_at)
+    where status = 'DONE';
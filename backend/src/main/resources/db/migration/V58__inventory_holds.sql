@@ -0,0 +1,30 @@
+-- Time-boxed stock reservations for PENDING_PAYMENT shop orders (InventoryService / InventoryHoldSweeperJob).
+-- products.inventory_qty stays the on-hand stock; products.reserved_qty is the sum of live holds, so
+-- available-to-promise = inventory_qty - reserved_qty and a hold is one conditional UPDATE.
+-- A hold lives until its order is paid (captured), cancelled, or - once past expires_at - the
+-- sweeper has cancelled the order's PaymentIntent at Stripe (a PI that can still be paid keeps
+-- its hold, so a paid order always finds its stock).
+
+alter table products
+    add column if not exists reserved_qty integer not null default 0;
+
+alter table products
+    add constraint ck_products_reserved_qty check (reserved_qty >= 0);
+
+create table if not exists inventory_holds (
+    id                 bigserial    primary key,
+    order_id           bigint       not null references orders(id)   on delete cascade,
+    product_id         bigint       not null references products(id) on delete cascade,
+    qty                integer      not null check (qty > 0),
+    expires_at         timestamptz  not null,
+    created_at         timestamptz  not null default now(),
+    constraint uq_inventory_holds_order_product unique (order_id, product_id)
+);
+
+-- Sweeper scan
+create index if not exists ix_inventory_holds_expires
+    on inventory_holds (expires_at);
+
+-- Per-product reconciliation of reserved_qty
+create index if not exists ix_inventory_holds_product
+    on inventory_holds (product_id);
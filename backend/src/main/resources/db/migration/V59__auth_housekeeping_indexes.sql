@@ -0,0 +1,15 @@
+-- Indexes for AuthHousekeepingJob: each purge batch is
+--   DELETE ... WHERE ctid IN (SELECT ctid ... WHERE <col> < cutoff LIMIT n)
+-- and must find its rows (and the oldest one, for the lag gauge) without a sequential scan.
+-- pre_auth_sessions(expires_at) already exists (idx_pre_auth_expires, V46).
+
+create index if not exists idx_refresh_tokens_expires
+    on refresh_tokens (expires_at);
+
+create index if not exists idx_email_verification_codes_expires
+    on email_verification_codes (expires_at);
+
+-- Only consumed recovery codes are ever purged
+create index if not exists idx_mfa_recovery_codes_used
+    on user_mfa_recovery_codes (used_at)
+    where used_at is not null;
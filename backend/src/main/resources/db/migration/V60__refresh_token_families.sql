@@ -0,0 +1,25 @@
+-- Refresh-token rotation store (RefreshTokenStore).
+-- 1) One-time migration of legacy plaintext rows: token_hash must always hold the SHA-256 hex of
+--    the raw token, so a refresh is a single indexed lookup instead of hash-then-plaintext.
+-- 2) Token families: every login starts a family, each rotation adds a token to it and marks the
+--    presented one revoked. Presenting a revoked token again is reuse and revokes the family.
+
+update refresh_tokens
+   set token_hash = encode(sha256(convert_to(token_hash, 'UTF8')), 'hex')
+ where token_hash !~ '^[0-9a-f]{64}$';
+
+alter table refresh_tokens
+    add column if not exists family_id  uuid,
+    add column if not exists revoked_at timestamptz;
+
+-- existing rows each become their own family
+update refresh_tokens
+   set family_id = md5(random()::text || id::text)::uuid
+ where family_id is null;
+
+alter table refresh_tokens
+    alter column family_id set not null;
+
+-- Whole-family revocation (one UPDATE per reuse / logout)
+create index if not exists idx_refresh_tokens_family
+    on refresh_tokens (family_id);
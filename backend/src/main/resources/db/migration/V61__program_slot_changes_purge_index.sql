@@ -0,0 +1,7 @@
+-- Index for the program_slot_changes target of AuthHousekeepingJob: processed journal entries are
+-- deleted in DELETE ... WHERE ctid IN (SELECT ctid ... WHERE processed_at < cutoff LIMIT n)
+-- chunks. Pending entries (processed_at is null) are covered by ix_psc_pending (V50).
+
+create index if not exists ix_psc_processed
+    on program_slot_changes (processed_at)
+    where processed_at is not null;
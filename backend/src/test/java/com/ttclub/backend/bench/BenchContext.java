@@ -0,0 +1,87 @@
+package com.ttclub.backend.bench;
+
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.autoconfigure.flyway.FlywayAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.JdbcTemplateAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal Spring context for JMH benchmarks: DataSource, JPA (every entity and repository of the
+ * application), JdbcTemplate and transactions, plus the given beans. Nothing web, no jobs.<br>
+ * Notes:
+ *  - Default: a private in-memory H2 database in PostgreSQL mode with the schema generated from
+ *    the entities, so a benchmark runs anywhere.
+ *  - -Dbench.jdbc.url (with .user / .password) points it at a real Postgres instead; the schema is
+ *    then built by the Flyway migrations, which is what the production queries are written for.
+ */
+public final class BenchContext {
+
+    @SpringBootConfiguration
+    @ImportAutoConfiguration({
+            DataSourceAutoConfiguration.class,
+            DataSourceTransactionManagerAutoConfiguration.class,
+            JdbcTemplateAutoConfiguration.class,
+            HibernateJpaAutoConfiguration.class,
+            TransactionAutoConfiguration.class,
+            FlywayAutoConfiguration.class
+    })
+    @EntityScan("com.ttclub.backend")
+    @EnableJpaRepositories("com.ttclub.backend")
+    static class Config { }
+
+    private BenchContext() { }
+
+    /** True when the benchmark runs against the database given by -Dbench.jdbc.url. */
+    public static boolean external() {
+        String url = System.getProperty("bench.jdbc.url");
+        return url != null && !url.isBlank();
+    }
+
+    /** Starts the context; {@code name} keeps the H2 databases of different benchmarks apart. */
+    public static ConfigurableApplicationContext start(String name, Class<?>... beans) {
+        List<String> props = new ArrayList<>(List.of(
+                "spring.main.banner-mode=off",
+                "logging.level.root=WARN",
+                "spring.jpa.open-in-view=false",
+                "spring.jpa.show-sql=false"));
+        if (external()) {
+            props.add("spring.datasource.url=" + System.getProperty("bench.jdbc.url"));
+            props.add("spring.datasource.username=" + System.getProperty("bench.jdbc.user", ""));
+            props.add("spring.datasource.password=" + System.getProperty("bench.jdbc.password", ""));
+            props.add("spring.flyway.enabled=true");
+            props.add("spring.jpa.hibernate.ddl-auto=none");
+        } else {
+            props.add("spring.datasource.url=jdbc:h2:mem:" + name + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+            props.add("spring.datasource.username=sa");
+            props.add("spring.datasource.password=");
+            // Postgres types named in columnDefinitions, declared as plain domains for H2
+            props.add("spring.datasource.hikari.connection-init-sql="
+                    + "CREATE DOMAIN IF NOT EXISTS program_enrollment_mode AS VARCHAR(32);"
+                    + "CREATE DOMAIN IF NOT EXISTS order_status AS VARCHAR(32);"
+                    + "CREATE DOMAIN IF NOT EXISTS jsonb AS VARCHAR(1000000)");
+            props.add("spring.flyway.enabled=false");
+            props.add("spring.jpa.hibernate.ddl-auto=create-drop");
+        }
+
+        Class<?>[] sources = new Class<?>[beans.length + 1];
+        sources[0] = Config.class;
+        System.arraycopy(beans, 0, sources, 1, beans.length);
+        return new SpringApplicationBuilder()
+                .sources(sources)
+                .web(WebApplicationType.NONE)
+                // as command-line arguments: they must win over application.yml
+                .run(props.stream().map(p -> "--" + p).toArray(String[]::new));
+    }
+}
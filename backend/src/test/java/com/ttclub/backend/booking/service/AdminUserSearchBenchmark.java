@@ -0,0 +1,162 @@
+package com.ttclub.backend.booking.service;
+
+import com.ttclub.backend.bench.BenchContext;
+import com.ttclub.backend.booking.model.*;
+import com.ttclub.backend.booking.repository.UserMembershipRepository;
+import com.ttclub.backend.booking.repository.UserProgramEnrollmentRepository;
+import com.ttclub.backend.model.Role;
+import com.ttclub.backend.model.RoleName;
+import com.ttclub.backend.model.User;
+import com.ttclub.backend.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One admin user search page over 5000 seeded members, each with an active membership and an
+ * active enrollment.
+ * - before: the per-user lookups the search replaced (initial-membership check, memberships and
+ *   enrollments of each user on the page: 3 queries per user plus their lazy plan / program).
+ * - batched: AdminUserSearchService, page + count + one membership and one enrollment query.
+ * - size: 10 and 100 users per page (100 is the endpoint's cap).
+ * Run: mvn -Pbenchmark -DskipTests verify -Djmh.args=AdminUserSearchBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AdminUserSearchBenchmark {
+
+    private static final int MEMBERS = 5_000;
+
+    @Param({"before", "batched"})
+    public String path;
+
+    @Param({"10", "100"})
+    public int size;
+
+    private ConfigurableApplicationContext ctx;
+    private TransactionTemplate tx;
+    private AdminUserSearchService search;
+    private UserRepository users;
+    private UserMembershipRepository memberships;
+    private UserProgramEnrollmentRepository enrollments;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ctx = BenchContext.start("usersearch", AdminUserSearchService.class);
+        tx = new TransactionTemplate(ctx.getBean(PlatformTransactionManager.class));
+        search = ctx.getBean(AdminUserSearchService.class);
+        users = ctx.getBean(UserRepository.class);
+        memberships = ctx.getBean(UserMembershipRepository.class);
+        enrollments = ctx.getBean(UserProgramEnrollmentRepository.class);
+        EntityManager em = SharedEntityManagerCreator.createSharedEntityManager(ctx.getBean(EntityManagerFactory.class));
+        tx.executeWithoutResult(s -> seed(em));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @Benchmark
+    public Object page() {
+        if (path.equals("batched")) return search.search("client", 3, size);
+        return tx.execute(s -> perUser("client", 3, size));
+    }
+
+    /** The search before AdminUserSearchService: three lookups per user on the page. */
+    private List<Object> perUser(String q, int page, int size) {
+        Page<User> p = users.searchByRoleAndNameOrEmail(RoleName.CLIENT, q,
+                PageRequest.of(page, size, Sort.by(Sort.Direction.ASC, "id")));
+        Instant now = Instant.now();
+        List<Object> rows = new ArrayList<>(size);
+        for (User u : p.getContent()) {
+            boolean hasInitial = !memberships.findActiveInitialMembershipsForUser(u.getId()).isEmpty();
+            List<String> plans = memberships.findByUser_Id(u.getId()).stream()
+                    .filter(um -> Boolean.TRUE.equals(um.getActive())
+                            && !um.getStartTs().isAfter(now) && !um.getEndTs().isBefore(now))
+                    .map(um -> um.getPlan().getName())
+                    .toList();
+            List<String> programs = enrollments.findByUser_IdOrderByCreatedAtDesc(u.getId()).stream()
+                    .filter(e -> e.getStatus() == UserProgramEnrollment.Status.ACTIVE)
+                    .map(e -> e.getProgram().getTitle() + " / " + e.getProgramPackage().getName())
+                    .toList();
+            rows.add(List.of(u.getId(), hasInitial, plans, programs));
+        }
+        return rows;
+    }
+
+    private static void seed(EntityManager em) {
+        Role client = new Role(RoleName.CLIENT);
+        em.persist(client);
+
+        MembershipPlan plan = new MembershipPlan();
+        plan.setType(MembershipPlanType.INITIAL);
+        plan.setName("Initial");
+        plan.setPriceCad(BigDecimal.TEN);
+        plan.setDurationDays(365);
+        em.persist(plan);
+
+        Program program = new Program();
+        program.setTitle("Juniors");
+        em.persist(program);
+        ProgramPackage pack = new ProgramPackage();
+        pack.setProgram(program);
+        pack.setName("10 sessions");
+        pack.setSessionsCount(10);
+        pack.setPriceCad(BigDecimal.TEN);
+        em.persist(pack);
+
+        Instant now = Instant.now();
+        for (int i = 0; i < MEMBERS; i++) {
+            User u = new User();
+            u.setEmail("client" + i + "@example.com");
+            u.setPasswordHash("x");
+            u.setFirstName("Client");
+            u.setLastName(String.valueOf(i));
+            u.setRole(client);
+            em.persist(u);
+
+            UserMembership m = new UserMembership();
+            m.setUser(u);
+            m.setPlan(plan);
+            m.setStartTs(now.minus(Duration.ofDays(1)));
+            m.setEndTs(now.plus(Duration.ofDays(30)));
+            em.persist(m);
+
+            UserProgramEnrollment e = new UserProgramEnrollment();
+            e.setUser(u);
+            e.setProgram(program);
+            e.setProgramPackage(pack);
+            e.setSessionsPurchased(10);
+            e.setSessionsRemaining(i % 10);
+            em.persist(e);
+
+            if (i % 500 == 499) {
+                em.flush();
+                em.clear();
+                client = em.merge(client);
+                plan = em.merge(plan);
+                program = em.merge(program);
+                pack = em.merge(pack);
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.ttclub.backend.booking.service;
+
+import com.ttclub.backend.booking.model.*;
+import com.ttclub.backend.model.Role;
+import com.ttclub.backend.model.RoleName;
+import com.ttclub.backend.model.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The admin user search must cost the same number of statements whatever the page size
+ * (page + count + memberships + enrollments, plus the eager role of the page's users),
+ * i.e. no per-user queries. Runs against H2 with the schema generated from the entities.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.datasource.url=jdbc:h2:mem:usersearch;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        // Postgres enum type used by Program's columnDefinition, declared as a plain domain for H2
+        "spring.datasource.hikari.connection-init-sql=CREATE DOMAIN IF NOT EXISTS program_enrollment_mode AS VARCHAR(32)",
+        "spring.datasource.username=sa",
+        "spring.datasource.password="
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(AdminUserSearchService.class)
+class AdminUserSearchServiceStatementCountTest {
+
+    private static final int USERS = 60;
+
+    @Autowired private EntityManager em;
+    @Autowired private EntityManagerFactory emf;
+    @Autowired private AdminUserSearchService search;
+
+    private Statistics stats;
+
+    @BeforeEach
+    void seed() {
+        Role client = new Role(RoleName.CLIENT);
+        em.persist(client);
+
+        MembershipPlan plan = new MembershipPlan();
+        plan.setType(MembershipPlanType.INITIAL);
+        plan.setName("Initial");
+        plan.setPriceCad(BigDecimal.TEN);
+        plan.setDurationDays(365);
+        em.persist(plan);
+
+        Program program = new Program();
+        program.setTitle("Juniors");
+        em.persist(program);
+        ProgramPackage pack = new ProgramPackage();
+        pack.setProgram(program);
+        pack.setName("10 sessions");
+        pack.setSessionsCount(10);
+        pack.setPriceCad(BigDecimal.TEN);
+        em.persist(pack);
+
+        Instant now = Instant.now();
+        for (int i = 0; i < USERS; i++) {
+            User u = new User();
+            u.setEmail("client" + i + "@example.com");
+            u.setPasswordHash("x");
+            u.setFirstName("Client");
+            u.setLastName(String.valueOf(i));
+            u.setRole(client);
+            em.persist(u);
+
+            UserMembership m = new UserMembership();
+            m.setUser(u);
+            m.setPlan(plan);
+            m.setStartTs(now.minus(Duration.ofDays(1)));
+            m.setEndTs(now.plus(Duration.ofDays(30)));
+            em.persist(m);
+
+            UserProgramEnrollment e = new UserProgramEnrollment();
+            e.setUser(u);
+            e.setProgram(program);
+            e.setProgramPackage(pack);
+            e.setSessionsPurchased(10);
+            e.setSessionsRemaining(i % 10);
+            em.persist(e);
+        }
+        em.flush();
+        em.clear();
+
+        stats = emf.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void statementCountDoesNotGrowWithPageSize() {
+        long small = statementsFor(5);
+        long large = statementsFor(50);
+
+        assertEquals(small, large, "statements for a page of 5 vs a page of 50");
+        // user page, count, the (single, eager) CLIENT role, memberships, enrollments
+        assertEquals(5, large, "statements per page");
+    }
+
+    @Test
+    void pageCarriesMembershipsAndEnrollments() {
+        AdminUserSearchService.PageDto<AdminUserSearchService.Row> page = search.search("", 0, 50);
+
+        assertEquals(50, page.content().size());
+        assertEquals(USERS, page.totalElements());
+        for (AdminUserSearchService.Row row : page.content()) {
+            assertTrue(row.hasActiveInitial());
+            assertEquals(1, row.activeMemberships());
+            assertEquals(1, row.activeEnrollments());
+        }
+    }
+
+    private long statementsFor(int size) {
+        em.clear();
+        stats.clear();
+        AdminUserSearchService.PageDto<AdminUserSearchService.Row> page = search.search("client", 0, size);
+        assertEquals(size, page.content().size());
+        return stats.getPrepareStatementCount();
+    }
+}
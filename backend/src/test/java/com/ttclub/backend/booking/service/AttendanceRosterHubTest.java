@@ -0,0 +1,165 @@
+package com.ttclub.backend.booking.service;
+
+import com.ttclub.backend.booking.api.AttendanceController.EligibleUser;
+import com.ttclub.backend.booking.api.AttendanceController.ListResp;
+import com.ttclub.backend.booking.api.AttendanceController.OccurrenceDto;
+import com.ttclub.backend.booking.service.AttendanceRosterHub.RosterDelta;
+import com.ttclub.backend.booking.service.AttendanceRosterHub.RosterSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class AttendanceRosterHubTest {
+
+    private static final long OCC = 5L;
+    private static final String TOPIC = AttendanceRosterHub.TOPIC_PREFIX + OCC;
+
+    private final SimpMessagingTemplate broker = mock(SimpMessagingTemplate.class);
+    private final AttendanceRosterHub hub = new AttendanceRosterHub(broker, new SimpleMeterRegistry());
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @AfterEach
+    void stop() {
+        hub.shutdown();
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<ListResp> slow = () -> {
+            loads.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            return roster(false);
+        };
+
+        int devices = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(devices);
+        try {
+            List<Future<RosterSnapshot>> got = new ArrayList<>();
+            for (int i = 0; i < devices; i++) got.add(pool.submit(() -> hub.snapshot(OCC, slow)));
+            Thread.sleep(200);   // let every device reach the miss
+            release.countDown();
+            for (Future<RosterSnapshot> f : got) assertEquals(roster(false), f.get(5, TimeUnit.SECONDS).roster());
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+
+        hub.snapshot(OCC, this::load);
+        assertEquals(1, loads.get(), "later subscribers are served from the cached roster");
+    }
+
+    @Test
+    void failedLoadIsNotCached() {
+        assertThrows(IllegalStateException.class, () -> hub.snapshot(OCC, () -> {
+            throw new IllegalStateException("db down");
+        }));
+        assertEquals(roster(false), hub.snapshot(OCC, this::load).roster());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void rebuildPushesTheWholeRosterWithoutASeqGap() {
+        watch();
+        AtomicInteger marked = new AtomicInteger();
+        RosterSnapshot first = hub.snapshot(OCC, () -> {
+            loads.incrementAndGet();
+            return roster(marked.get() > 0);
+        });
+
+        marked.set(1);   // changed behind the hub's back (e.g. another node)
+        hub.rebuild(OCC);
+
+        RosterDelta pushed = lastPush();
+        assertEquals(first.seq() + 1, pushed.seq());
+        assertEquals(roster(true), pushed.roster());
+        assertTrue(pushed.changes().isEmpty());
+        assertEquals(2, loads.get());
+
+        RosterSnapshot after = hub.snapshot(OCC, this::load);
+        assertEquals(pushed.seq(), after.seq());
+        assertEquals(roster(true), after.roster());
+        assertEquals(2, loads.get(), "the rebuilt roster is cached");
+    }
+
+    @Test
+    void failedRebuildFallsBackToASeqGap() {
+        watch();
+        AtomicInteger calls = new AtomicInteger();
+        RosterSnapshot first = hub.snapshot(OCC, () -> {
+            if (calls.incrementAndGet() > 1) throw new IllegalStateException("db down");
+            return roster(false);
+        });
+
+        hub.rebuild(OCC);
+
+        RosterDelta pushed = lastPush();
+        assertEquals(first.seq() + 2, pushed.seq());
+        assertNull(pushed.roster());
+        hub.snapshot(OCC, this::load);
+        assertEquals(1, loads.get(), "the dropped roster is loaded again by the next subscriber");
+    }
+
+    @Test
+    void deltasKeepTheCachedRosterCurrent() {
+        watch();
+        RosterSnapshot first = hub.snapshot(OCC, this::load);
+
+        hub.publish(OCC, List.of(new AttendanceRosterHub.RosterChange(1L, AttendanceRosterHub.ChangeType.MARKED, 3, false)));
+
+        RosterDelta pushed = lastPush();
+        assertEquals(first.seq() + 1, pushed.seq());
+        RosterSnapshot after = hub.snapshot(OCC, this::load);
+        assertEquals(pushed.seq(), after.seq());
+        assertTrue(after.roster().users().get(0).present());
+        assertEquals(1, loads.get());
+    }
+
+    /* helpers */
+
+    private ListResp load() {
+        loads.incrementAndGet();
+        return roster(false);
+    }
+
+    private static ListResp roster(boolean present) {
+        return new ListResp(new OccurrenceDto(OCC, 9L, "Juniors", "2026-10-17T17:00", "2026-10-17T18:30"),
+                List.of(new EligibleUser(1L, "Ana Lima", "ana@example.com", 11L, 4, present)));
+    }
+
+    private void watch() {
+        StompHeaderAccessor acc = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        acc.setSessionId("s1");
+        acc.setSubscriptionId("sub-1");
+        acc.setDestination(TOPIC);
+        Message<byte[]> msg = MessageBuilder.createMessage(new byte[0], acc.getMessageHeaders());
+        hub.onSubscribe(new SessionSubscribeEvent(this, msg));
+    }
+
+    private RosterDelta lastPush() {
+        ArgumentCaptor<Object> sent = ArgumentCaptor.forClass(Object.class);
+        verify(broker, atLeastOnce()).convertAndSend(eq(TOPIC), sent.capture());
+        return (RosterDelta) sent.getValue();
+    }
+}
@@ -0,0 +1,99 @@
+package com.ttclub.backend.booking.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ttclub.backend.booking.dto.ProgramOccurrenceDto;
+import com.ttclub.backend.booking.model.Program;
+import com.ttclub.backend.booking.model.ProgramOccurrence;
+import com.ttclub.backend.booking.repository.ProgramOccurrenceRepository;
+import com.ttclub.backend.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/** Week buckets of the public occurrence feed: shared cached items, hits and invalidation. */
+class ProgramOccurrenceFeedCacheTest {
+
+    private static final Instant WEEK = LocalDate.now()
+            .with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY))
+            .atStartOfDay(ZoneId.systemDefault()).toInstant();
+    private static final Instant NEXT_WEEK = WEEK.plus(Duration.ofDays(7));
+
+    private final ProgramOccurrenceRepository occurrences = mock(ProgramOccurrenceRepository.class);
+    private final ProgramOccurrenceFeedCache cache = new ProgramOccurrenceFeedCache(occurrences, new SimpleMeterRegistry());
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(cache, "weeksBehind", 4);
+        ReflectionTestUtils.setField(cache, "weeksAhead", 26);
+        ReflectionTestUtils.setField(cache, "maxAgeSec", 600L);
+        List<ProgramOccurrence> rows = List.of(occurrence(1, WEEK.plus(Duration.ofHours(42))));
+        when(occurrences.findAllInRangeFetch(any(), any())).thenReturn(rows);
+    }
+
+    @Test
+    void aWarmWeekIsServedFromTheSameImmutableItems() {
+        ProgramOccurrenceFeedCache.Feed first = cache.feed(WEEK, NEXT_WEEK);
+        ProgramOccurrenceFeedCache.Feed second = cache.feed(WEEK, NEXT_WEEK);
+
+        verify(occurrences, times(1)).findAllInRangeFetch(any(), any());
+        assertSame(first.items().get(0), second.items().get(0));
+        assertEquals(first.etag(), second.etag());
+        assertThrows(UnsupportedOperationException.class, () -> second.items().remove(0));
+        assertEquals(new ProgramOccurrenceDto(1L, 3L, "Juniors", WEEK.plus(Duration.ofHours(42)),
+                WEEK.plus(Duration.ofHours(44)), "Coach Carter"), second.items().get(0));
+    }
+
+    @Test
+    void invalidatedWeeksAreReloaded() {
+        cache.feed(WEEK, NEXT_WEEK);
+
+        cache.invalidate(WEEK.plus(Duration.ofDays(2)), WEEK.plus(Duration.ofDays(3)));
+        cache.feed(WEEK, NEXT_WEEK);
+
+        verify(occurrences, times(2)).findAllInRangeFetch(any(), any());
+    }
+
+    @Test
+    void theJsonShapeIsUnchanged() throws Exception {
+        ObjectMapper json = new ObjectMapper().findAndRegisterModules();
+
+        JsonNode node = json.valueToTree(cache.feed(WEEK, NEXT_WEEK).items().get(0));
+
+        List<String> fields = new ArrayList<>();
+        node.fieldNames().forEachRemaining(fields::add);
+        assertEquals(List.of("id", "programId", "title", "start", "end", "coachName"), fields);
+    }
+
+    /* helpers */
+
+    private static ProgramOccurrence occurrence(long id, Instant start) {
+        Program p = new Program();
+        p.setId(3L);
+        p.setTitle("Juniors");
+        User coach = new User();
+        coach.setFirstName("Coach");
+        coach.setLastName("Carter");
+        ProgramOccurrence o = new ProgramOccurrence();
+        o.setId(id);
+        o.setProgram(p);
+        o.setCoach(coach);
+        o.setStartTs(start);
+        o.setEndTs(start.plus(Duration.ofHours(2)));
+        return o;
+    }
+}
@@ -0,0 +1,126 @@
+package com.ttclub.backend.config;
+
+import com.ttclub.backend.bench.BenchContext;
+import com.ttclub.backend.model.Role;
+import com.ttclub.backend.model.RoleName;
+import com.ttclub.backend.model.User;
+import com.ttclub.backend.repository.RoleRepository;
+import com.ttclub.backend.repository.UserRepository;
+import com.ttclub.backend.security.PrincipalCache;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jws;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.Cookie;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JwtAuthFilter per authenticated request, against a real UserRepository (JPA + connection pool).
+ * - before: a JwtParser built per call and a users lookup per request (the filter before the
+ *   principal cache: PrincipalCache with TTL 0 is exactly findById).
+ * - cached: the shipped filter, principal served from PrincipalCache.
+ * - claims: a claims-principal path (id + role from the token, no lookup).
+ * Run: mvn -Pbenchmark -DskipTests verify -Djmh.args=JwtAuthFilterBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JwtAuthFilterBenchmark {
+
+    private static final String SECRET = "0123456789abcdef0123456789abcdef-benchmark";
+    private static final String ISSUER = "ttclub-bench";
+    private static final String AUDIENCE = "ttclub-web";
+
+    @Param({"before", "cached", "claims"})
+    public String path;
+
+    private ConfigurableApplicationContext ctx;
+    private JwtAuthFilter filter;
+    private String token;
+    private String uri;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ctx = BenchContext.start("jwtbench");
+        Role client = ctx.getBean(RoleRepository.class).save(new Role(RoleName.CLIENT));
+        User u = new User();
+        u.setEmail("bench@example.com");
+        u.setPasswordHash("x");
+        u.setFirstName("Bench");
+        u.setLastName("User");
+        u.setRole(client);
+        u = ctx.getBean(UserRepository.class).save(u);
+
+        JwtUtil shipped = new JwtUtil(SECRET, 60, ISSUER, AUDIENCE);
+        token = shipped.generate(u);
+        UserRepository users = ctx.getBean(UserRepository.class);
+        switch (path) {
+            case "before" -> {
+                filter = filter(new PerCallParserJwtUtil(), new PrincipalCache(users, new SimpleMeterRegistry(), 0, 1), List.of());
+                uri = "/api/me";
+            }
+            case "cached" -> {
+                filter = filter(shipped, new PrincipalCache(users, new SimpleMeterRegistry(), 30, 10_000), List.of());
+                uri = "/api/me";
+            }
+            default -> {
+                filter = filter(shipped, new PrincipalCache(users, new SimpleMeterRegistry(), 0, 1), List.of("/api/programs/**"));
+                uri = "/api/programs/3/occurrences";
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @Benchmark
+    public Authentication authenticate() throws Exception {
+        MockHttpServletRequest req = new MockHttpServletRequest("GET", uri);
+        req.setCookies(new Cookie("access_token", token));
+        try {
+            filter.doFilter(req, new MockHttpServletResponse(), new MockFilterChain());
+            return SecurityContextHolder.getContext().getAuthentication();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private static JwtAuthFilter filter(JwtUtil jwt, PrincipalCache cache, List<String> claimsPaths) {
+        return new JwtAuthFilter(jwt, cache, false, "access_token", claimsPaths);
+    }
+
+    /** JwtUtil.parse as it was before the prebuilt parser: a new parser for every token. */
+    private static final class PerCallParserJwtUtil extends JwtUtil {
+
+        PerCallParserJwtUtil() {
+            super(SECRET, 60, ISSUER, AUDIENCE);
+        }
+
+        @Override
+        public Jws<Claims> parse(String raw) {
+            return Jwts.parserBuilder()
+                    .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                    .setAllowedClockSkewSeconds(30)
+                    .requireIssuer(ISSUER)
+                    .requireAudience(AUDIENCE)
+                    .build()
+                    .parseClaimsJws(raw);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.ttclub.backend.config;
+
+import com.ttclub.backend.model.Role;
+import com.ttclub.backend.model.RoleName;
+import com.ttclub.backend.model.User;
+import com.ttclub.backend.repository.UserRepository;
+import com.ttclub.backend.security.PrincipalCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class JwtAuthFilterTest {
+
+    private static final String SECRET = "0123456789abcdef0123456789abcdef-unit-test";
+
+    private final JwtUtil jwt = new JwtUtil(SECRET, 60, "ttclub-test", "ttclub-web");
+    private final UserRepository users = mock(UserRepository.class);
+    private final PrincipalCache cache = new PrincipalCache(users, new SimpleMeterRegistry(), 30, 100);
+    private final JwtAuthFilter filter = new JwtAuthFilter(jwt, cache, false, "access_token", List.of("/api/programs/**"));
+
+    private final User stored = user(42L, "first@example.com");
+    private final String token = jwt.generate(stored);
+
+    JwtAuthFilterTest() {
+        when(users.findById(any())).thenAnswer(inv -> Optional.of(copy(stored)));
+    }
+
+    @Test
+    void principalIsLoadedOnceAndThenServedFromTheCache() throws Exception {
+        Authentication first = authenticate("GET", "/api/me", token);
+        Authentication second = authenticate("POST", "/api/me/profile", token);
+
+        assertEquals(42L, ((User) first.getPrincipal()).getId());
+        assertEquals("first@example.com", ((User) second.getPrincipal()).getEmail());
+        assertTrue(second.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_CLIENT")));
+        verify(users, times(1)).findById(42L);
+    }
+
+    @Test
+    void everyRequestGetsItsOwnCopyOfTheCachedPrincipal() throws Exception {
+        User mutated = (User) authenticate("GET", "/api/me", token).getPrincipal();
+        mutated.setEmail("changed-in-request@example.com");
+
+        User next = (User) authenticate("GET", "/api/me", token).getPrincipal();
+        assertNotSame(mutated, next);
+        assertEquals("first@example.com", next.getEmail());
+    }
+
+    @Test
+    void evictionReloadsOnTheNextRequest() throws Exception {
+        authenticate("GET", "/api/me", token);
+        stored.setEmail("second@example.com");
+
+        cache.evict(42L);
+        User reloaded = (User) authenticate("GET", "/api/me", token).getPrincipal();
+
+        assertEquals("second@example.com", reloaded.getEmail());
+        verify(users, times(2)).findById(42L);
+    }
+
+    @Test
+    void evictionInsideATransactionIsRepeatedAfterCommit() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            cache.evict(42L);
+            authenticate("GET", "/api/me", token);   // re-cached from the not yet committed state
+            for (TransactionSynchronization s : TransactionSynchronizationManager.getSynchronizations()) s.afterCommit();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        authenticate("GET", "/api/me", token);
+        verify(users, times(2)).findById(42L);
+    }
+
+    @Test
+    void claimsPrincipalPathsNeverLookUp() throws Exception {
+        User principal = (User) authenticate("GET", "/api/programs/3/occurrences", token).getPrincipal();
+
+        assertEquals(42L, principal.getId());
+        assertEquals(RoleName.CLIENT, principal.getRole().getName());
+        assertNull(principal.getEmail(), "claims-only principal carries id and role only");
+        verifyNoInteractions(users);
+    }
+
+    @Test
+    void claimsPrincipalPathsAreReadOnly() throws Exception {
+        authenticate("POST", "/api/programs/3/enroll", token);
+        verify(users, times(1)).findById(42L);
+    }
+
+    @Test
+    void invalidTokenLeavesTheRequestAnonymous() throws Exception {
+        assertNull(authenticate("GET", "/api/me", token + "x"));
+        verifyNoInteractions(users);
+    }
+
+    /* helpers */
+
+    private Authentication authenticate(String method, String uri, String raw) throws Exception {
+        MockHttpServletRequest req = new MockHttpServletRequest(method, uri);
+        req.setCookies(new Cookie("access_token", raw));
+        try {
+            filter.doFilter(req, new MockHttpServletResponse(), new MockFilterChain());
+            return SecurityContextHolder.getContext().getAuthentication();
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private static User user(Long id, String email) {
+        User u = new User();
+        u.setId(id);
+        u.setEmail(email);
+        u.setRole(new Role(RoleName.CLIENT));
+        return u;
+    }
+
+    private static User copy(User u) {
+        return user(u.getId(), u.getEmail());
+    }
+}
@@ -0,0 +1,53 @@
+package com.ttclub.backend.config;
+
+import com.ttclub.backend.model.Role;
+import com.ttclub.backend.model.RoleName;
+import com.ttclub.backend.model.User;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class JwtUtilTest {
+
+    private static final String SECRET = "0123456789abcdef0123456789abcdef-unit-test";
+
+    private final JwtUtil jwt = new JwtUtil(SECRET, 60, "ttclub-test", "ttclub-web");
+
+    @Test
+    void parseReusesTheParserBuiltAtConstruction() {
+        String token = jwt.generate(user(), Map.of("pwd_change_required", true));
+
+        try (MockedStatic<Jwts> factory = mockStatic(Jwts.class)) {
+            for (int i = 0; i < 3; i++) {
+                Claims c = jwt.parse(token).getBody();
+                assertEquals("7", c.getSubject());
+                assertEquals("COACH", c.get("role", String.class));
+                assertEquals(Boolean.TRUE, c.get("pwd_change_required", Boolean.class));
+            }
+            factory.verifyNoInteractions();
+        }
+    }
+
+    @Test
+    void tokensFromAnotherIssuerOrKeyAreRejected() {
+        String foreignIssuer = new JwtUtil(SECRET, 60, "someone-else", "ttclub-web").generate(user());
+        String foreignKey = new JwtUtil(SECRET.replace('0', 'z'), 60, "ttclub-test", "ttclub-web").generate(user());
+
+        assertThrows(JwtException.class, () -> jwt.parse(foreignIssuer));
+        assertThrows(JwtException.class, () -> jwt.parse(foreignKey));
+    }
+
+    private static User user() {
+        User u = new User();
+        u.setId(7L);
+        u.setRole(new Role(RoleName.COACH));
+        return u;
+    }
+}
@@ -0,0 +1,79 @@
+package com.ttclub.backend.job;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BackgroundPassTest {
+
+    @Test
+    void triggersWhileAPassRunsAreSkipped() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        try (BackgroundPass pass = new BackgroundPass("test-pass", () -> {
+            runs.incrementAndGet();
+            started.countDown();
+            await(release);
+        })) {
+            assertTrue(pass.trigger());
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertFalse(pass.trigger(), "second trigger during the pass");
+            release.countDown();
+
+            assertTrue(eventually(pass::trigger), "next trigger after the pass ended");
+            assertTrue(eventually(() -> runs.get() == 2));
+        }
+    }
+
+    @Test
+    void aFailedPassDoesNotBlockTheNextOne() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        try (BackgroundPass pass = new BackgroundPass("test-pass", () -> {
+            if (runs.incrementAndGet() == 1) throw new IllegalStateException("boom");
+        })) {
+            assertTrue(pass.trigger());
+            assertTrue(eventually(pass::trigger));
+            assertTrue(eventually(() -> runs.get() == 2));
+        }
+    }
+
+    @Test
+    void runsOnANamedDaemonThread() throws Exception {
+        Thread[] seen = new Thread[1];
+        CountDownLatch done = new CountDownLatch(1);
+        try (BackgroundPass pass = new BackgroundPass("test-pass", () -> {
+            seen[0] = Thread.currentThread();
+            done.countDown();
+        })) {
+            pass.trigger();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals("test-pass", seen[0].getName());
+            assertTrue(seen[0].isDaemon());
+        }
+    }
+
+    /* helpers */
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean eventually(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            if (condition.getAsBoolean()) return true;
+            Thread.sleep(5);
+        }
+        return false;
+    }
+}
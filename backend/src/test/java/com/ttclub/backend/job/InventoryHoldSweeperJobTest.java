@@ -0,0 +1,118 @@
+package com.ttclub.backend.job;
+
+import com.stripe.exception.ApiConnectionException;
+import com.stripe.model.PaymentIntent;
+import com.ttclub.backend.service.InventoryService;
+import com.ttclub.backend.service.InventoryService.ExpiredHold;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.MockedStatic;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class InventoryHoldSweeperJobTest {
+
+    private final InventoryService inventory = mock(InventoryService.class);
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final InventoryHoldSweeperJob job = new InventoryHoldSweeperJob(inventory, meters);
+    private final MockedStatic<PaymentIntent> stripe = mockStatic(PaymentIntent.class);
+
+    InventoryHoldSweeperJobTest() {
+        ReflectionTestUtils.setField(job, "batchSize", 100);
+    }
+
+    @AfterEach
+    void close() {
+        stripe.close();
+        job.shutdown();
+    }
+
+    @Test
+    void orderWithoutAPaymentIntentIsReleasedDirectly() {
+        expired(new ExpiredHold(1, null));
+
+        job.sweep();
+
+        verify(inventory).releaseExpired(1L);
+        stripe.verifyNoInteractions();
+        assertEquals(1.0, count("released"));
+    }
+
+    @Test
+    void cancelledPaymentIntentIsReleasedWithoutAnotherCancel() throws Exception {
+        PaymentIntent pi = pi("pi_1", "canceled");
+        expired(new ExpiredHold(1, "pi_1"));
+
+        job.sweep();
+
+        verify(pi, never()).cancel();
+        verify(inventory).releaseExpired(1L);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "requires_payment_method", "requires_confirmation", "requires_action" })
+    void unpaidPaymentIntentIsCancelledThenReleased(String status) throws Exception {
+        PaymentIntent pi = pi("pi_1", status);
+        expired(new ExpiredHold(1, "pi_1"));
+
+        job.sweep();
+
+        var order = inOrder(pi, inventory);
+        order.verify(pi).cancel();
+        order.verify(inventory).releaseExpired(1L);
+        verify(inventory, never()).extend(anyLong());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "succeeded", "processing", "requires_capture" })
+    void stillPayablePaymentIntentKeepsItsHold(String status) throws Exception {
+        PaymentIntent pi = pi("pi_1", status);
+        expired(new ExpiredHold(1, "pi_1"));
+
+        job.sweep();
+
+        verify(pi, never()).cancel();
+        verify(inventory).extend(1L);
+        verify(inventory, never()).releaseExpired(anyLong());
+        assertEquals(1.0, count("extended"));
+    }
+
+    @Test
+    void aStripeFailureLeavesThatOrderForTheNextPass() throws Exception {
+        stripe.when(() -> PaymentIntent.retrieve("pi_1"))
+                .thenThrow(new ApiConnectionException("connection reset"));
+        pi("pi_2", "canceled");
+        expired(new ExpiredHold(1, "pi_1"), new ExpiredHold(2, "pi_2"));
+
+        job.sweep();
+
+        verify(inventory, never()).releaseExpired(1L);
+        verify(inventory, never()).extend(1L);
+        verify(inventory).releaseExpired(2L);
+    }
+
+    /* helpers */
+
+    private void expired(ExpiredHold... holds) {
+        when(inventory.expired(100)).thenReturn(List.of(holds));
+    }
+
+    private PaymentIntent pi(String id, String status) {
+        PaymentIntent pi = mock(PaymentIntent.class);
+        when(pi.getStatus()).thenReturn(status);
+        stripe.when(() -> PaymentIntent.retrieve(id)).thenReturn(pi);
+        return pi;
+    }
+
+    private double count(String result) {
+        return meters.get("ttclub.inventory.holds.expired").tag("result", result).counter().count();
+    }
+}
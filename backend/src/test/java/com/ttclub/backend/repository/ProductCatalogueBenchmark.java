@@ -0,0 +1,98 @@
+package com.ttclub.backend.repository;
+
+import com.ttclub.backend.bench.BenchContext;
+import com.ttclub.backend.model.Product;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One page of the active catalogue browsed by name, over a seeded 100k-product table.
+ * - offset: the classic endpoint, entity page at LIMIT/OFFSET plus its count query.
+ * - keyset: ProductRepository.browseCards after the previous page's last (name, id), card projection.
+ * - page: the first page, or one deep in the catalogue (offset 50k at 20 per page).
+ * Full-text and trigram pages need Postgres (search_vector, pg_trgm): -Dbench.jdbc.url=...
+ * runs the same browse comparison against a migrated schema; seeded rows are removed afterwards.
+ * Run: mvn -Pbenchmark -DskipTests verify -Djmh.args=ProductCatalogueBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProductCatalogueBenchmark {
+
+    private static final int PRODUCTS = 100_000;
+    private static final int SIZE = 20;
+    private static final String[] WORDS = { "Blade", "Rubber", "Ball", "Table", "Net", "Shoe", "Bag", "Grip" };
+
+    @Param({"offset", "keyset"})
+    public String path;
+
+    @Param({"0", "2500"})
+    public int page;
+
+    private ConfigurableApplicationContext ctx;
+    private JdbcTemplate jdbc;
+    private ProductRepository products;
+    private String afterName;
+    private long afterId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ctx = BenchContext.start("catalogue");
+        jdbc = ctx.getBean(JdbcTemplate.class);
+        products = ctx.getBean(ProductRepository.class);
+
+        Timestamp now = Timestamp.from(Instant.now());
+        List<Object[]> rows = new ArrayList<>(PRODUCTS);
+        for (int i = 0; i < PRODUCTS; i++) {
+            String word = WORDS[i % WORDS.length];
+            rows.add(new Object[]{ "BENCH-" + i, word + " " + Integer.toString(i * 7919 % PRODUCTS, 36),
+                    word + " for the benchmark catalogue", "Bench", BigDecimal.valueOf(10 + i % 90),
+                    i % 50, 100, true, now, now });
+        }
+        // V53's (name, id) index on the active catalogue; the entity-generated H2 schema lacks it
+        if (!BenchContext.external()) jdbc.execute("CREATE INDEX idx_products_bench_name_id ON products (name, id)");
+        jdbc.batchUpdate("""
+                INSERT INTO products (sku, name, description, brand, price, inventory_qty, grams,
+                                      is_active, created_at, updated_at, version)
+                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)
+                """, rows);
+
+        if (page > 0) {
+            Map<String, Object> last = jdbc.queryForMap(
+                    "SELECT name, id FROM products WHERE is_active ORDER BY name, id LIMIT 1 OFFSET ?",
+                    page * SIZE - 1);
+            afterName = (String) last.get("name");
+            afterId = ((Number) last.get("id")).longValue();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (BenchContext.external()) jdbc.update("DELETE FROM products WHERE sku LIKE 'BENCH-%'");
+        ctx.close();
+    }
+
+    @Benchmark
+    public Object browse() {
+        if (path.equals("offset")) {
+            Page<Product> p = products.findAll(PageRequest.of(page, SIZE, Sort.by("name", "id")));
+            return p.getContent();
+        }
+        return products.browseCards(null, afterName, afterId, SIZE + 1);
+    }
+}
@@ -0,0 +1,141 @@
+package com.ttclub.backend.security;
+
+import com.ttclub.backend.controller.ApiExceptionHandler;
+import com.ttclub.backend.service.exceptions.PasswordHashingBusyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class BoundedPasswordEncoderTest {
+
+    /* cost 13 keeps a pool thread busy for a few hundred ms: long enough to observe it saturated */
+    private static final int SLOW_COST = 13;
+
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final List<BoundedPasswordEncoder> encoders = new ArrayList<>();
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void stop() {
+        callers.shutdownNow();
+        encoders.forEach(BoundedPasswordEncoder::shutdown);
+    }
+
+    @Test
+    void encodesAndMatchesWithTheConfiguredCost() {
+        BoundedPasswordEncoder pe = encoder(4, 2, 8, 5_000);
+
+        String hash = pe.encode("correct horse");
+
+        assertTrue(hash.startsWith("$2a$04$"), hash);
+        assertTrue(pe.matches("correct horse", hash));
+        assertFalse(pe.matches("wrong horse", hash));
+        assertFalse(pe.matches(null, hash));
+        assertFalse(pe.matches("correct horse", ""));
+    }
+
+    @Test
+    void upgradeEncodingFlagsOtherCostsAndForeignHashes() {
+        String cost4 = encoder(4, 1, 1, 5_000).encode("pw");
+        BoundedPasswordEncoder cost5 = encoder(5, 1, 1, 5_000);
+
+        assertTrue(cost5.upgradeEncoding(cost4));
+        assertFalse(cost5.upgradeEncoding(cost5.encode("pw")));
+        assertTrue(cost5.upgradeEncoding("{noop}plain"));
+        assertFalse(cost5.upgradeEncoding(null));
+        assertFalse(cost5.upgradeEncoding(""));
+        assertTrue(cost5.matches("pw", cost4), "older hashes still verify");
+    }
+
+    @Test
+    void fullQueueRejectsImmediately() throws Exception {
+        BoundedPasswordEncoder pe = encoder(SLOW_COST, 1, 1, 30_000);
+
+        Future<String> running = callers.submit(() -> pe.encode("a"));
+        awaitGauge("active", 1);
+        Future<String> queued = callers.submit(() -> pe.encode("b"));
+        awaitGauge("queue", 1);
+
+        long t0 = System.nanoTime();
+        PasswordHashingBusyException ex = assertThrows(PasswordHashingBusyException.class, () -> pe.encode("c"));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0) < 100, "rejected without waiting");
+        assertEquals(2, ex.getRetryAfterSec());
+        assertEquals(1.0, meters.get("ttclub.auth.password-hash.rejected").counter().count());
+
+        assertNotNull(running.get(30, TimeUnit.SECONDS));
+        assertNotNull(queued.get(30, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void callerGivesUpAfterMaxWait() throws Exception {
+        BoundedPasswordEncoder pe = encoder(SLOW_COST, 1, 8, 50);
+
+        Future<String> running = callers.submit(() -> {
+            try {
+                return pe.encode("a");
+            } catch (PasswordHashingBusyException ex) {
+                return null;   // its own wait may also run out; only the pool occupancy matters
+            }
+        });
+        awaitGauge("active", 1);
+
+        long t0 = System.nanoTime();
+        assertThrows(PasswordHashingBusyException.class, () -> pe.encode("b"));
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0);
+        assertTrue(waitedMs >= 40 && waitedMs < 2_000, "waited " + waitedMs + " ms");
+        assertTrue(meters.get("ttclub.auth.password-hash.rejected").counter().count() >= 1.0);
+        running.get(30, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void busyMapsTo503WithRetryAfter() throws Exception {
+        MockMvc mvc = MockMvcBuilders.standaloneSetup(new BusyController())
+                .setControllerAdvice(new ApiExceptionHandler())
+                .build();
+
+        mvc.perform(get("/busy"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "7"))
+                .andExpect(jsonPath("$.code").value("BUSY"))
+                .andExpect(jsonPath("$.retryAfterSec").value(7));
+    }
+
+    /* helpers */
+
+    @RestController
+    static class BusyController {
+        @GetMapping("/busy")
+        String busy() {
+            throw new PasswordHashingBusyException(7);
+        }
+    }
+
+    private BoundedPasswordEncoder encoder(int cost, int threads, int queue, long maxWaitMs) {
+        BoundedPasswordEncoder pe = new BoundedPasswordEncoder(meters, cost, threads, queue, maxWaitMs, 2);
+        encoders.add(pe);
+        return pe;
+    }
+
+    private void awaitGauge(String name, double value) throws InterruptedException {
+        BooleanSupplier reached = () -> meters.find("ttclub.auth.password-hash." + name).gauges().stream()
+                .anyMatch(g -> g.value() == value);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!reached.getAsBoolean()) {
+            if (System.nanoTime() > deadline) fail("gauge " + name + " never reached " + value);
+            Thread.sleep(5);
+        }
+    }
+}
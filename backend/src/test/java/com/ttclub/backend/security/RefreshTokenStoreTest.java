@@ -0,0 +1,258 @@
+package com.ttclub.backend.security;
+
+import com.ttclub.backend.config.JwtUtil;
+import com.ttclub.backend.config.RegistrationProperties;
+import com.ttclub.backend.dto.LoginResponseDto;
+import com.ttclub.backend.mapper.UserMapper;
+import com.ttclub.backend.model.User;
+import com.ttclub.backend.repository.RoleRepository;
+import com.ttclub.backend.repository.UserRepository;
+import com.ttclub.backend.service.AuthService;
+import com.ttclub.backend.service.EmailCodeService;
+import com.ttclub.backend.service.MfaService;
+import com.ttclub.backend.service.mail.EmailOutbox;
+import com.ttclub.backend.support.H2Postgres;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionInterceptor;
+
+import javax.sql.DataSource;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Refresh-token rotation, reuse detection and logout against refresh_tokens as V60 leaves it, on H2.<br>
+ * Notes:
+ *  - The table is created as it stood before V60 (holding one legacy plaintext row and one hashed
+ *    row), then V60 runs with its PostgreSQL-only expressions swapped for H2 equivalents
+ *    (sha256 / encode as HASH / RAWTOHEX, !~ as REGEXP_LIKE, md5(...)::uuid as RANDOM_UUID()).
+ *  - Revocation times come from the database clock; tests age them with an UPDATE.
+ */
+class RefreshTokenStoreTest {
+
+    private static final String LEGACY_RAW = "legacy-plaintext-token";
+    private static final String HASHED_RAW = "already-hashed-token";
+
+    private final TokenHashingService hasher = new TokenHashingService();
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+
+    private DataSource dataSource;
+    private JdbcTemplate jdbc;
+    private RefreshTokenStore store;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        dataSource = H2Postgres.dataSource("refresh");
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE DOMAIN timestamptz AS TIMESTAMP WITH TIME ZONE");
+        jdbc.execute("""
+                CREATE TABLE refresh_tokens (
+                    id          BIGSERIAL PRIMARY KEY,
+                    user_id     BIGINT       NOT NULL,
+                    token_hash  VARCHAR(255) NOT NULL UNIQUE,
+                    expires_at  timestamptz  NOT NULL,
+                    created_at  timestamptz  NOT NULL DEFAULT now()
+                )
+                """);
+        Timestamp tomorrow = Timestamp.from(Instant.now().plusSeconds(86_400));
+        jdbc.update("INSERT INTO refresh_tokens (user_id, token_hash, expires_at) VALUES (7, ?, ?)", LEGACY_RAW, tomorrow);
+        jdbc.update("INSERT INTO refresh_tokens (user_id, token_hash, expires_at) VALUES (8, ?, ?)",
+                hasher.hash(HASHED_RAW), tomorrow);
+        for (String statement : h2(Files.readString(Path.of("src/main/resources/db/migration/V60__refresh_token_families.sql")))
+                .split(";")) {
+            if (!statement.isBlank()) jdbc.execute(statement);
+        }
+
+        store = store(new RevokedTokenFilter(false, 1000, 1e-6, 43_200));
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbc.execute("SHUTDOWN");
+    }
+
+    @Test
+    void rotationHandsOutASuccessorInTheSameFamilyAndRevokesThePresentedToken() {
+        String first = store.issue(user(5L));
+
+        RefreshTokenStore.Rotation r = store.rotate(first);
+
+        assertEquals(5L, r.userId());
+        assertNotEquals(first, r.refreshToken());
+        assertNotNull(revokedAt(first));
+        assertNull(revokedAt(r.refreshToken()));
+        assertEquals(family(first), family(r.refreshToken()));
+        assertEquals(0, jdbc.queryForObject("SELECT count(*) FROM refresh_tokens WHERE token_hash IN (?, ?)",
+                Integer.class, first, r.refreshToken()), "only hashes are stored");
+        assertEquals(1.0, counter("rotated"));
+    }
+
+    @Test
+    void aRotatedTokenPresentedWithinTheGraceIsOnlyRejected() {
+        String first = store.issue(user(5L));
+        String second = store.rotate(first).refreshToken();
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> store.rotate(first));
+
+        assertEquals("Invalid refreshToken", ex.getMessage());
+        assertNull(revokedAt(second), "the other tab's token stays live");
+        assertDoesNotThrow(() -> store.rotate(second));
+        assertEquals(0.0, counter("reuse"));
+    }
+
+    @Test
+    void reuseAfterTheGraceRevokesTheWholeFamilyOnly() {
+        String first = store.issue(user(5L));
+        String second = store.rotate(first).refreshToken();
+        String otherLogin = store.issue(user(5L));
+        age(first, 60);
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> store.rotate(first));
+
+        assertEquals("Refresh token reuse detected", ex.getMessage());
+        assertNotNull(revokedAt(second));
+        assertNull(revokedAt(otherLogin), "other families are untouched");
+        assertThrows(IllegalArgumentException.class, () -> store.rotate(second));
+        assertEquals(1.0, counter("reuse"));
+    }
+
+    @Test
+    void expiredUnknownAndNullTokensAreRejected() {
+        String expired = store.issue(user(5L));
+        jdbc.update("UPDATE refresh_tokens SET expires_at = ? WHERE token_hash = ?",
+                Timestamp.from(Instant.now().minusSeconds(1)), hasher.hash(expired));
+
+        assertEquals("Refresh token expired", assertThrows(IllegalArgumentException.class, () -> store.rotate(expired)).getMessage());
+        assertThrows(IllegalArgumentException.class, () -> store.rotate("never-issued"));
+        assertThrows(IllegalArgumentException.class, () -> store.rotate(null));
+        assertNull(revokedAt(expired), "an expired token is not claimed");
+    }
+
+    @Test
+    void logoutRevokesTheFamilyAndIgnoresUnknownTokens() {
+        String first = store.issue(user(5L));
+        String second = store.rotate(first).refreshToken();
+
+        store.revokeFamilyOf(second);
+        store.revokeFamilyOf("never-issued");
+        store.revokeFamilyOf(null);
+
+        assertNotNull(revokedAt(second));
+        assertThrows(IllegalArgumentException.class, () -> store.rotate(second));
+    }
+
+    @Test
+    void revokedFamiliesAreRejectedByTheFilterWithoutALookup() {
+        RefreshTokenStore filtered = store(new RevokedTokenFilter(true, 1000, 1e-6, 43_200));
+        String first = filtered.issue(user(5L));
+        String second = filtered.rotate(first).refreshToken();
+        age(first, 60);
+        assertThrows(IllegalArgumentException.class, () -> filtered.rotate(first));
+
+        assertThrows(IllegalArgumentException.class, () -> filtered.rotate(second));
+
+        assertEquals(1.0, counter("filtered"));
+    }
+
+    @Test
+    void v60HashesLegacyPlaintextRowsSoTheyStillRefresh() {
+        assertEquals(List.of(hasher.hash(LEGACY_RAW), hasher.hash(HASHED_RAW)),
+                jdbc.queryForList("SELECT token_hash FROM refresh_tokens ORDER BY user_id", String.class));
+        assertEquals(2, jdbc.queryForObject("SELECT count(DISTINCT family_id) FROM refresh_tokens", Integer.class));
+
+        assertEquals(7L, store.rotate(LEGACY_RAW).userId());
+        assertEquals(8L, store.rotate(HASHED_RAW).userId());
+    }
+
+    @Test
+    void reuseRevocationCommitsAlthoughRefreshThrows() {
+        UserRepository users = mock(UserRepository.class);
+        JwtUtil jwt = mock(JwtUtil.class);
+        when(users.findById(5L)).thenReturn(Optional.of(user(5L)));
+        when(jwt.generate(any(), anyMap())).thenReturn("access");
+        AuthService auth = transactional(new AuthService(users, mock(RoleRepository.class), store,
+                new RegistrationProperties(), mock(PasswordEncoder.class), jwt, mock(UserMapper.class),
+                mock(EmailCodeService.class), mock(MfaService.class), mock(PrincipalCache.class),
+                mock(EmailOutbox.class), new DataSourceTransactionManager(dataSource)));
+
+        String first = store.issue(user(5L));
+        LoginResponseDto res = auth.refresh(first);
+        age(first, 60);
+
+        assertThrows(IllegalArgumentException.class, () -> auth.refresh(first));
+
+        assertNotNull(revokedAt(res.refreshToken()), "the family revocation was committed");
+    }
+
+    /* helpers */
+
+    private RefreshTokenStore store(RevokedTokenFilter revoked) {
+        RefreshTokenStore s = new RefreshTokenStore(jdbc, hasher, revoked, meters, 43_200);
+        ReflectionTestUtils.setField(s, "reuseGraceSec", 10L);
+        return s;
+    }
+
+    /** Wraps the service in the transaction advice its @Transactional annotations declare. */
+    private AuthService transactional(AuthService target) {
+        ProxyFactory pf = new ProxyFactory(target);
+        pf.setProxyTargetClass(true);
+        pf.addAdvice(new TransactionInterceptor(new DataSourceTransactionManager(dataSource),
+                new AnnotationTransactionAttributeSource()));
+        return (AuthService) pf.getProxy();
+    }
+
+    private Instant revokedAt(String raw) {
+        Timestamp ts = jdbc.queryForObject("SELECT revoked_at FROM refresh_tokens WHERE token_hash = ?",
+                Timestamp.class, hasher.hash(raw));
+        return ts == null ? null : ts.toInstant();
+    }
+
+    private UUID family(String raw) {
+        return jdbc.queryForObject("SELECT family_id FROM refresh_tokens WHERE token_hash = ?", UUID.class, hasher.hash(raw));
+    }
+
+    /** Moves the revocation of raw {@code seconds} into the past. */
+    private void age(String raw, long seconds) {
+        jdbc.update("UPDATE refresh_tokens SET revoked_at = ? WHERE token_hash = ?",
+                Timestamp.from(revokedAt(raw).minusSeconds(seconds)), hasher.hash(raw));
+    }
+
+    private double counter(String result) {
+        return meters.get("ttclub.auth.refresh").tag("result", result).counter().count();
+    }
+
+    private static User user(long id) {
+        User u = new User();
+        u.setId(id);
+        u.setFirstName("Member");
+        return u;
+    }
+
+    /** V60 in H2's dialect; each replaced expression computes the same value as the original. */
+    private static String h2(String v60) {
+        return v60
+                .replace("encode(sha256(convert_to(token_hash, 'UTF8')), 'hex')", "lower(rawtohex(hash('SHA-256', token_hash)))")
+                .replace("token_hash !~ '^[0-9a-f]{64}$'", "NOT regexp_like(token_hash, '^[0-9a-f]{64}$')")
+                .replace("md5(random()::text || id::text)::uuid", "random_uuid()")
+                .replaceAll("(?s)add column if not exists family_id\\s+uuid,\\s*add column if not exists revoked_at timestamptz",
+                        "add (family_id uuid, revoked_at timestamptz)")
+                .replaceAll("(?m)^--.*$", "");
+    }
+}
@@ -0,0 +1,102 @@
+package com.ttclub.backend.security;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Bloom filter of revoked refresh-token families: membership, input checks and generation rotation. */
+class RevokedTokenFilterTest {
+
+    private static final long TTL_SEC = 3600;
+    private static final long GENERATION_MS = TTL_SEC * 1000;
+
+    private final TokenHashingService hasher = new TokenHashingService();
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+
+    @Test
+    void disabledFilterReportsNothing() {
+        RevokedTokenFilter filter = new RevokedTokenFilter(false, 1000, 1e-6, TTL_SEC, clock::get);
+        String h = hash("a");
+        filter.addAll(List.of(h));
+
+        assertFalse(filter.enabled());
+        assertFalse(filter.mightBeRevoked(h));
+    }
+
+    @Test
+    void addedHashesAreReportedAndOthersAreNot() {
+        RevokedTokenFilter filter = filter();
+        List<String> revoked = hashes("revoked", 1000);
+        filter.addAll(revoked);
+
+        revoked.forEach(h -> assertTrue(filter.mightBeRevoked(h), h));
+        // 10k probes at fpp 1e-6: a single hit would be a broken filter, not bad luck
+        hashes("live", 10_000).forEach(h -> assertFalse(filter.mightBeRevoked(h), h));
+    }
+
+    @Test
+    void somethingOtherThanAHashIsNeverAddedNorReported() {
+        RevokedTokenFilter filter = filter();
+        filter.addAll(List.of("short", ""));
+
+        assertFalse(filter.mightBeRevoked("short"));
+        assertFalse(filter.mightBeRevoked(null));
+        assertFalse(filter.mightBeRevoked(hash("short")));
+    }
+
+    @Test
+    void anEntrySurvivesOneGenerationAndIsDroppedAfterTheNext() {
+        RevokedTokenFilter filter = filter();
+        String h = hash("a");
+        filter.addAll(List.of(h));
+
+        clock.addAndGet(GENERATION_MS - 1);
+        assertTrue(filter.mightBeRevoked(h), "still the current generation");
+
+        clock.addAndGet(1);
+        assertTrue(filter.mightBeRevoked(h), "rotated into the previous generation");
+
+        String later = hash("b");
+        filter.addAll(List.of(later));
+        clock.addAndGet(GENERATION_MS);
+        assertFalse(filter.mightBeRevoked(h), "two generations old: its token has expired");
+        assertTrue(filter.mightBeRevoked(later));
+    }
+
+    @Test
+    void concurrentAddsAreAllVisible() throws Exception {
+        RevokedTokenFilter filter = filter();
+        List<Thread> threads = new ArrayList<>();
+        List<List<String>> batches = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            List<String> batch = hashes("t" + t, 500);
+            batches.add(batch);
+            threads.add(new Thread(() -> batch.forEach(h -> filter.addAll(Set.of(h)))));
+        }
+        threads.forEach(Thread::start);
+        for (Thread t : threads) t.join();
+
+        batches.forEach(batch -> batch.forEach(h -> assertTrue(filter.mightBeRevoked(h), h)));
+    }
+
+    /* helpers */
+
+    private RevokedTokenFilter filter() {
+        return new RevokedTokenFilter(true, 10_000, 1e-6, TTL_SEC, clock::get);
+    }
+
+    private String hash(String raw) {
+        return hasher.hash(raw);
+    }
+
+    private List<String> hashes(String prefix, int n) {
+        List<String> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) out.add(hash(prefix + "-" + i));
+        return out;
+    }
+}
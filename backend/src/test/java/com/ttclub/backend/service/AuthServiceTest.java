@@ -0,0 +1,105 @@
+package com.ttclub.backend.service;
+
+import com.ttclub.backend.config.JwtUtil;
+import com.ttclub.backend.config.RegistrationProperties;
+import com.ttclub.backend.dto.LoginDto;
+import com.ttclub.backend.dto.LoginResponseDto;
+import com.ttclub.backend.dto.RegisterDto;
+import com.ttclub.backend.mapper.UserMapper;
+import com.ttclub.backend.model.Role;
+import com.ttclub.backend.model.RoleName;
+import com.ttclub.backend.model.User;
+import com.ttclub.backend.repository.RoleRepository;
+import com.ttclub.backend.repository.UserRepository;
+import com.ttclub.backend.security.BoundedPasswordEncoder;
+import com.ttclub.backend.security.PrincipalCache;
+import com.ttclub.backend.security.RefreshTokenStore;
+import com.ttclub.backend.service.mail.EmailOutbox;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AuthServiceTest {
+
+    private final UserRepository users = mock(UserRepository.class);
+    private final RoleRepository roles = mock(RoleRepository.class);
+    private final RefreshTokenStore refreshTokens = mock(RefreshTokenStore.class);
+    private final JwtUtil jwt = mock(JwtUtil.class);
+    private final UserMapper mapper = mock(UserMapper.class);
+    private final EmailCodeService emailCodes = mock(EmailCodeService.class);
+    private final PlatformTransactionManager txManager = mock(PlatformTransactionManager.class);
+
+    @Test
+    void invalidVerificationCodeIsRejectedBeforeHashing() {
+        PasswordEncoder pe = mock(PasswordEncoder.class);
+        doThrow(new IllegalArgumentException("Invalid verification code"))
+                .when(emailCodes).checkValid("new@example.com", "000000");
+
+        AuthService auth = service(pe);
+        assertThrows(IllegalArgumentException.class, () -> auth.register(register("000000")));
+
+        verifyNoInteractions(pe, txManager);
+        verify(emailCodes, never()).assertValid(any(), any());
+    }
+
+    @Test
+    void validCodeIsConsumedWithTheInsert() {
+        PasswordEncoder pe = mock(PasswordEncoder.class);
+        when(pe.encode("s3cret-pass")).thenReturn("hash");
+        when(mapper.toEntity(any(RegisterDto.class))).thenAnswer(inv -> new User());
+        when(roles.findByName(RoleName.CLIENT)).thenReturn(Optional.of(new Role(RoleName.CLIENT)));
+        when(refreshTokens.issue(any())).thenReturn("refresh");
+
+        LoginResponseDto res = service(pe).register(register("123456"));
+
+        assertEquals("refresh", res.refreshToken());
+        var order = inOrder(emailCodes, pe, txManager, users);
+        order.verify(emailCodes).checkValid("new@example.com", "123456");
+        order.verify(pe).encode("s3cret-pass");
+        order.verify(txManager).getTransaction(any());
+        order.verify(emailCodes).assertValid("new@example.com", "123456");
+        order.verify(users).save(argThat(u -> "hash".equals(u.getPasswordHash())));
+    }
+
+    @Test
+    void loginRehashesAHashStoredWithAnOlderCost() {
+        BoundedPasswordEncoder pe = new BoundedPasswordEncoder(new SimpleMeterRegistry(), 5, 1, 1, 5_000, 2);
+        User snapshot = user(new BCryptPasswordEncoder(4).encode("pw"));
+        User managed = user(snapshot.getPasswordHash());
+        when(users.findByEmailIgnoreCase("member@example.com")).thenReturn(Optional.of(snapshot));
+        when(users.findById(9L)).thenReturn(Optional.of(managed));
+
+        service(pe).login(new LoginDto("Member@Example.com", "pw"));
+
+        assertTrue(managed.getPasswordHash().startsWith("$2a$05$"), managed.getPasswordHash());
+        assertTrue(pe.matches("pw", managed.getPasswordHash()));
+    }
+
+    /* helpers */
+
+    private AuthService service(PasswordEncoder pe) {
+        return new AuthService(users, roles, refreshTokens, new RegistrationProperties(), pe, jwt, mapper,
+                emailCodes, mock(MfaService.class), mock(PrincipalCache.class), mock(EmailOutbox.class), txManager);
+    }
+
+    private static RegisterDto register(String verificationCode) {
+        return new RegisterDto("new@example.com", "s3cret-pass", "New", "Member", null, null, verificationCode);
+    }
+
+    private static User user(String passwordHash) {
+        User u = new User();
+        u.setId(9L);
+        u.setEmail("member@example.com");
+        u.setPasswordHash(passwordHash);
+        u.setRole(new Role(RoleName.CLIENT));
+        return u;
+    }
+}
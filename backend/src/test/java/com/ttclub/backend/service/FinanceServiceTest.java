@@ -0,0 +1,182 @@
+package com.ttclub.backend.service;
+
+import com.ttclub.backend.support.H2Postgres;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** FinanceService.streamCsv against the finance_ledger table (V55) and the legacy view, on H2. */
+class FinanceServiceTest {
+
+    private static final Timestamp FROM = Timestamp.valueOf("2026-09-01 00:00:00");
+    private static final Timestamp TO = Timestamp.valueOf("2026-09-30 23:59:59.999");
+
+    /** resultSetType and fetch size of every statement the service prepared */
+    private final List<int[]> cursors = new ArrayList<>();
+
+    private JdbcTemplate jdbc;
+    private FinanceService finance;
+
+    @BeforeEach
+    void setUp() {
+        DataSource h2 = H2Postgres.dataSource("finance");
+        jdbc = new JdbcTemplate(h2);
+        jdbc.execute("""
+                CREATE TABLE finance_ledger (
+                    id          BIGSERIAL,
+                    ts          TIMESTAMP WITH TIME ZONE NOT NULL,
+                    action      VARCHAR(24)   NOT NULL,
+                    source_id   BIGINT        NOT NULL,
+                    subtotal    NUMERIC(10,2) NOT NULL DEFAULT 0,
+                    shipping    NUMERIC(10,2) NOT NULL DEFAULT 0,
+                    tax         NUMERIC(10,2) NOT NULL DEFAULT 0,
+                    total       NUMERIC(10,2) NOT NULL,
+                    status      VARCHAR(32),
+                    PRIMARY KEY (id, ts)
+                )
+                """);
+        jdbc.execute("""
+                CREATE TABLE finance_ledger_mv (
+                    id BIGINT, ts TIMESTAMP WITH TIME ZONE, action VARCHAR(24), subtotal NUMERIC(10,2),
+                    shipping NUMERIC(10,2), tax NUMERIC(10,2), total NUMERIC(10,2), status VARCHAR(32)
+                )
+                """);
+
+        finance = new FinanceService(new JdbcTemplate(recording(h2)));
+        ReflectionTestUtils.setField(finance, "mode", "table");
+        ReflectionTestUtils.setField(finance, "fetchSize", 2);
+        ReflectionTestUtils.setField(finance, "flushRows", 2);
+        ReflectionTestUtils.setField(finance, "bufferBytes", 1024);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbc.execute("SHUTDOWN");
+    }
+
+    @Test
+    void rowsInTheRangeAreWrittenInTimeOrderUnderTheHeader() throws IOException {
+        ledger("2026-09-15 10:00:00", "REFUND", 7, "-5.004", "0", "0", "-5.00", "SUCCEEDED");
+        ledger("2026-09-01 00:00:00", "PURCHASE", 12, "20.00", "4.50", "3.19", "27.69", "PAID");
+        ledger("2026-08-31 23:59:59", "PURCHASE", 11, "1", "0", "0", "1", "PAID");
+        ledger("2026-10-01 00:00:00", "MEMBERSHIP", 3, "1", "0", "0", "1", "PAID, late");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long rows = finance.streamCsv(FROM, TO, out);
+
+        assertEquals(2, rows);
+        assertEquals("""
+                id,date,action,subtotal,shipping,tax,total,status
+                12,2026-09-01 00:00:00.0,PURCHASE,20.00,4.50,3.19,27.69,PAID
+                7,2026-09-15 10:00:00.0,REFUND,-5.00,0.00,0.00,-5.00,SUCCEEDED
+                """, out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void readsThroughAForwardOnlyCursorWithTheConfiguredFetchSize() throws IOException {
+        for (int i = 0; i < 5; i++) ledger("2026-09-10 12:00:0" + i, "PURCHASE", i, "1", "0", "0", "1", "PAID");
+
+        assertEquals(5, finance.streamCsv(FROM, TO, OutputStream.nullOutputStream()));
+
+        assertEquals(1, cursors.size());
+        assertArrayEquals(new int[]{ ResultSet.TYPE_FORWARD_ONLY, 2 }, cursors.get(0));
+    }
+
+    @Test
+    void viewModeReadsTheLegacyView() throws IOException {
+        ReflectionTestUtils.setField(finance, "mode", "view");
+        ledger("2026-09-15 10:00:00", "PURCHASE", 12, "1", "0", "0", "1", "PAID");
+        jdbc.update("INSERT INTO finance_ledger_mv VALUES (99, ?, 'PURCHASE', 2, 0, 0, 2, 'PAID')",
+                Timestamp.valueOf("2026-09-02 08:00:00"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(1, finance.streamCsv(FROM, TO, out));
+        assertTrue(out.toString(StandardCharsets.UTF_8).endsWith("\n99,2026-09-02 08:00:00.0,PURCHASE,2.00,0.00,0.00,2.00,PAID\n"));
+    }
+
+    @Test
+    void aClientThatGoesAwayStopsTheExportWithItsIOException() {
+        for (int i = 0; i < 10; i++) ledger("2026-09-10 12:00:0" + i, "PURCHASE", i, "1", "0", "0", "1", "PAID");
+        int[] flushes = {0};
+        OutputStream gone = new OutputStream() {
+            @Override
+            public void write(int b) { }
+
+            @Override
+            public void write(byte[] b, int off, int len) { }
+
+            @Override
+            public void flush() throws IOException {
+                if (++flushes[0] == 2) throw new IOException("Broken pipe");
+            }
+        };
+
+        IOException ex = assertThrows(IOException.class, () -> finance.streamCsv(FROM, TO, gone));
+        assertEquals("Broken pipe", ex.getMessage());
+        assertEquals(2, flushes[0], "no rows are read after the failed flush");
+    }
+
+    /* helpers */
+
+    private void ledger(String ts, String action, long sourceId, String subtotal, String shipping, String tax,
+                        String total, String status) {
+        jdbc.update("""
+                INSERT INTO finance_ledger (ts, action, source_id, subtotal, shipping, tax, total, status)
+                VALUES (?, ?, ?, CAST(? AS NUMERIC(10,2)), CAST(? AS NUMERIC(10,2)), CAST(? AS NUMERIC(10,2)),
+                        CAST(? AS NUMERIC(10,2)), ?)
+                """, Timestamp.valueOf(ts), action, sourceId, subtotal, shipping, tax, total, status);
+    }
+
+    /** Records (resultSetType, fetchSize) of each prepared statement. */
+    private DataSource recording(DataSource target) {
+        return new DelegatingDataSource(target) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                Connection con = super.getConnection();
+                return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{ Connection.class },
+                        (proxy, method, args) -> {
+                            Object result = invoke(con, method, args);
+                            if (result instanceof PreparedStatement ps && args != null && args.length == 3) {
+                                int[] cursor = { (Integer) args[1], 0 };
+                                cursors.add(cursor);
+                                return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                                        new Class<?>[]{ PreparedStatement.class }, (p, m, a) -> {
+                                            if (m.getName().equals("setFetchSize")) cursor[1] = (Integer) a[0];
+                                            return invoke(ps, m, a);
+                                        });
+                            }
+                            return result;
+                        });
+            }
+        };
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.ttclub.backend.service;
+
+import com.ttclub.backend.bench.BenchContext;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checkout stock decrements on hot SKUs from 8 threads, each take in its own transaction.
+ * - locked: the decrement before InventoryService, per line SELECT ... FOR UPDATE, check the qty
+ *   in Java, then UPDATE with the new value (what em.find(PESSIMISTIC_WRITE) + setInventoryQty
+ *   sent), lines in cart order.
+ * - conditional: InventoryService.take, one conditional UPDATE per line in one batch, lines in
+ *   ascending id order.
+ * - lines: the SKU alone, or a three-line basket every thread buys (each row is contended).
+ * Both hold the row locks until commit; the difference is the statements under the lock.
+ * Default is in-memory H2; -Dbench.jdbc.url=... (migrated schema) for numbers that mean something.
+ * Run: mvn -Pbenchmark -DskipTests verify -Djmh.args=InventoryHotSkuBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class InventoryHotSkuBenchmark {
+
+    private static final int STOCK = 1_000_000_000;
+
+    @Param({"locked", "conditional"})
+    public String path;
+
+    @Param({"1", "3"})
+    public int lines;
+
+    private HikariDataSource ds;
+    private JdbcTemplate jdbc;
+    private TransactionTemplate tx;
+    private AvailableToPromise atp;
+    private InventoryService inventory;
+    private final List<Long> ids = new ArrayList<>();
+    private Map<Long, Integer> basket;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ds = new HikariDataSource();
+        ds.setMaximumPoolSize(8);
+        if (BenchContext.external()) {
+            ds.setJdbcUrl(System.getProperty("bench.jdbc.url"));
+            ds.setUsername(System.getProperty("bench.jdbc.user", ""));
+            ds.setPassword(System.getProperty("bench.jdbc.password", ""));
+            jdbc = new JdbcTemplate(ds);
+            for (int i = 0; i < lines; i++) {
+                ids.add(jdbc.queryForObject("""
+                        INSERT INTO products (sku, name, description, price, inventory_qty, grams)
+                        VALUES (?, 'Bench', '', 1, ?, 1) RETURNING id
+                        """, Long.class, "BENCH-" + System.nanoTime(), STOCK));
+            }
+        } else {
+            ds.setJdbcUrl("jdbc:h2:mem:hotsku;MODE=PostgreSQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000");
+            ds.setUsername("sa");
+            jdbc = new JdbcTemplate(ds);
+            jdbc.execute("""
+                    CREATE TABLE products (
+                        id BIGINT PRIMARY KEY,
+                        name VARCHAR(100) NOT NULL,
+                        inventory_qty INT NOT NULL,
+                        reserved_qty INT NOT NULL DEFAULT 0
+                    )
+                    """);
+            for (long id = 1; id <= lines; id++) {
+                jdbc.update("INSERT INTO products (id, name, inventory_qty) VALUES (?, 'Bench', ?)", id, STOCK);
+                ids.add(id);
+            }
+        }
+
+        // cart order opposite to id order: the locked path locks in cart order, take() sorts by id
+        basket = new LinkedHashMap<>();
+        for (int i = ids.size() - 1; i >= 0; i--) basket.put(ids.get(i), 1);
+
+        tx = new TransactionTemplate(new DataSourceTransactionManager(ds));
+        atp = new AvailableToPromise(jdbc, new DataSourceProperties(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(atp, "invalidation", "none");
+        ReflectionTestUtils.setField(atp, "maxStalenessMs", 3_600_000L);
+        atp.start();
+        inventory = new InventoryService(jdbc, atp);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        atp.stop();
+        if (BenchContext.external()) {
+            for (Long id : ids) jdbc.update("DELETE FROM products WHERE id = ?", id);
+        } else {
+            jdbc.execute("SHUTDOWN");
+        }
+        ds.close();
+    }
+
+    @Benchmark
+    public void take() {
+        if (path.equals("locked")) {
+            tx.executeWithoutResult(s -> lockedTake(basket));
+        } else {
+            tx.executeWithoutResult(s -> inventory.take(basket));
+        }
+    }
+
+    /** The read-then-write decrement InventoryService replaced. */
+    private void lockedTake(Map<Long, Integer> qtyByProduct) {
+        qtyByProduct.forEach((id, qty) -> {
+            int cur = jdbc.queryForObject("SELECT inventory_qty FROM products WHERE id = ? FOR UPDATE", Integer.class, id);
+            int next = cur - qty;
+            if (next < 0) throw new IllegalStateException("Insufficient stock for product " + id);
+            jdbc.update("UPDATE products SET inventory_qty = ? WHERE id = ?", next, id);
+        });
+    }
+}
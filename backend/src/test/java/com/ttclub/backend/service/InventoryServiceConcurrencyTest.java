@@ -0,0 +1,123 @@
+package com.ttclub.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * N threads x take() on one hot product against an in-memory H2 database: no oversell, no lost
+ * decrement, all-or-nothing multi-line takes leave the second product consistent, and the
+ * in-memory available-to-promise counter ends where the table does.
+ */
+class InventoryServiceConcurrencyTest {
+
+    private static final long HOT = 1L;
+    private static final long PLENTY = 2L;
+    private static final int STOCK = 100;
+    private static final int THREADS = 16;
+    private static final int TAKES_PER_THREAD = 20;
+
+    private JdbcTemplate jdbc;
+    private TransactionTemplate tx;
+    private AvailableToPromise atp;
+    private InventoryService inventory;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource ds = new DriverManagerDataSource(
+                "jdbc:h2:mem:inventory-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000", "sa", "");
+        jdbc = new JdbcTemplate(ds);
+        jdbc.execute("""
+                CREATE TABLE products (
+                    id BIGINT PRIMARY KEY,
+                    name VARCHAR(100) NOT NULL,
+                    inventory_qty INT NOT NULL,
+                    reserved_qty INT NOT NULL DEFAULT 0
+                )
+                """);
+        jdbc.update("INSERT INTO products (id, name, inventory_qty) VALUES (?, 'Hot', ?)", HOT, STOCK);
+        jdbc.update("INSERT INTO products (id, name, inventory_qty) VALUES (?, 'Plenty', ?)", PLENTY, 10_000);
+
+        tx = new TransactionTemplate(new DataSourceTransactionManager(ds));
+        atp = new AvailableToPromise(jdbc, new DataSourceProperties(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(atp, "invalidation", "none");           // single node: no LISTEN
+        ReflectionTestUtils.setField(atp, "maxStalenessMs", 3_600_000L);     // answer from memory
+        atp.start();
+        inventory = new InventoryService(jdbc, atp);
+    }
+
+    @AfterEach
+    void tearDown() {
+        atp.stop();
+        jdbc.execute("SHUTDOWN");
+    }
+
+    @Test
+    void concurrentTakesNeverOversell() throws Exception {
+        int[] counts = hammer(Map.of(HOT, 1));
+
+        assertEquals(STOCK, counts[0], "successful takes");
+        assertEquals(THREADS * TAKES_PER_THREAD - STOCK, counts[1], "refused takes");
+        assertEquals(0, qty(HOT));
+        assertEquals(0, inventory.availableQty(HOT));
+    }
+
+    @Test
+    void refusedMultiLineTakesPutTheOtherLinesBack() throws Exception {
+        int[] counts = hammer(Map.of(PLENTY, 1, HOT, 1));
+
+        assertEquals(STOCK, counts[0], "successful takes");
+        assertEquals(0, qty(HOT));
+        assertEquals(10_000 - STOCK, qty(PLENTY));
+        assertEquals(Map.of(HOT, 0, PLENTY, 10_000 - STOCK), inventory.availabilityFor(List.of(HOT, PLENTY)));
+    }
+
+    /** @return {successes, refusals}; any other failure fails the test */
+    private int[] hammer(Map<Long, Integer> order) throws Exception {
+        AtomicInteger ok = new AtomicInteger();
+        AtomicInteger refused = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < TAKES_PER_THREAD; i++) {
+                        try {
+                            tx.executeWithoutResult(s -> inventory.take(order));
+                            ok.incrementAndGet();
+                        } catch (IllegalStateException short_) {
+                            refused.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> f : futures) f.get(60, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+        return new int[]{ ok.get(), refused.get() };
+    }
+
+    private int qty(long productId) {
+        return jdbc.queryForObject("SELECT inventory_qty FROM products WHERE id = ?", Integer.class, productId);
+    }
+}
@@ -0,0 +1,220 @@
+package com.ttclub.backend.service;
+
+import com.ttclub.backend.support.H2Postgres;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Hold / capture / release / extend / expiry of InventoryService against an in-memory H2 database. */
+class InventoryServiceTest {
+
+    private static final long BAT = 1L;
+    private static final long BALLS = 2L;
+
+    private JdbcTemplate jdbc;
+    private TransactionTemplate tx;
+    private AvailableToPromise atp;
+    private InventoryService inventory;
+
+    @BeforeEach
+    void setUp() {
+        DataSource ds = H2Postgres.dataSource("holds");
+        jdbc = new JdbcTemplate(ds);
+        jdbc.execute("""
+                CREATE TABLE products (
+                    id BIGINT PRIMARY KEY,
+                    name VARCHAR(100) NOT NULL,
+                    inventory_qty INT NOT NULL,
+                    reserved_qty INT NOT NULL DEFAULT 0
+                )
+                """);
+        jdbc.execute("""
+                CREATE TABLE orders (
+                    id BIGINT PRIMARY KEY,
+                    status VARCHAR(32) NOT NULL,
+                    stripe_payment_intent_id VARCHAR(64),
+                    updated_at TIMESTAMP,
+                    version BIGINT NOT NULL DEFAULT 0
+                )
+                """);
+        jdbc.execute("""
+                CREATE TABLE inventory_holds (
+                    order_id BIGINT NOT NULL,
+                    product_id BIGINT NOT NULL,
+                    qty INT NOT NULL,
+                    expires_at TIMESTAMP NOT NULL,
+                    PRIMARY KEY (order_id, product_id)
+                )
+                """);
+        jdbc.update("INSERT INTO products (id, name, inventory_qty) VALUES (?, 'Bat', 5)", BAT);
+        jdbc.update("INSERT INTO products (id, name, inventory_qty) VALUES (?, 'Balls', 10)", BALLS);
+
+        tx = new TransactionTemplate(new DataSourceTransactionManager(ds));
+        atp = new AvailableToPromise(jdbc, new DataSourceProperties(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(atp, "invalidation", "none");
+        ReflectionTestUtils.setField(atp, "maxStalenessMs", 3_600_000L);
+        atp.start();
+        inventory = new InventoryService(jdbc, atp);
+        ReflectionTestUtils.setField(inventory, "holdTtlMin", 30L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        atp.stop();
+        jdbc.execute("SHUTDOWN");
+    }
+
+    @Test
+    void holdReservesWithoutTakingOnHandStock() {
+        order(10, null);
+        tx.executeWithoutResult(s -> inventory.hold(10L, Map.of(BAT, 2, BALLS, 3)));
+
+        assertEquals(List.of(5, 2), stock(BAT));
+        assertEquals(List.of(10, 3), stock(BALLS));
+        assertEquals(Map.of(BAT, 3, BALLS, 7), inventory.availabilityFor(List.of(BAT, BALLS)));
+        assertEquals(2, holds(10));
+    }
+
+    @Test
+    void aShortLineHoldsNothing() {
+        order(10, null);
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> tx.executeWithoutResult(s -> inventory.hold(10L, Map.of(BAT, 6, BALLS, 1))));
+
+        assertEquals("Not enough stock for Bat", ex.getMessage());
+        assertEquals(List.of(10, 0), stock(BALLS));
+        assertEquals(0, holds(10));
+        assertEquals(5, inventory.availableQty(BAT));
+    }
+
+    @Test
+    void heldStockIsNotAvailableToOtherOrders() {
+        order(10, null);
+        order(11, null);
+        tx.executeWithoutResult(s -> inventory.hold(10L, Map.of(BAT, 4)));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> tx.executeWithoutResult(s -> inventory.hold(11L, Map.of(BAT, 2))));
+        assertThrows(IllegalStateException.class,
+                () -> tx.executeWithoutResult(s -> inventory.take(Map.of(BAT, 2))));
+        assertEquals(List.of(5, 4), stock(BAT));
+    }
+
+    @Test
+    void captureTurnsHoldsIntoADecrementOnce() {
+        order(10, null);
+        tx.executeWithoutResult(s -> inventory.hold(10L, Map.of(BAT, 2)));
+
+        assertTrue(capture(10));
+        assertFalse(capture(10), "second capture finds no holds");
+
+        assertEquals(List.of(3, 0), stock(BAT));
+        assertEquals(3, inventory.availableQty(BAT));
+        assertEquals(0, holds(10));
+    }
+
+    @Test
+    void releaseGivesHeldStockBack() {
+        order(10, null);
+        order(11, null);
+        tx.executeWithoutResult(s -> {
+            inventory.hold(10L, Map.of(BAT, 2));
+            inventory.hold(11L, Map.of(BAT, 1, BALLS, 4));
+        });
+
+        tx.executeWithoutResult(s -> inventory.release(List.of(10L, 11L)));
+
+        assertEquals(List.of(5, 0), stock(BAT));
+        assertEquals(List.of(10, 0), stock(BALLS));
+        assertEquals(Map.of(BAT, 5, BALLS, 10), inventory.availabilityFor(List.of(BAT, BALLS)));
+        assertFalse(capture(10), "released order has nothing to capture");
+    }
+
+    @Test
+    void expiredHoldsAreListedOldestFirstAndCanBeExtended() {
+        order(10, "pi_10");
+        order(11, null);
+        order(12, null);
+        tx.executeWithoutResult(s -> {
+            inventory.hold(10L, Map.of(BAT, 1));
+            inventory.hold(11L, Map.of(BALLS, 1));
+            inventory.hold(12L, Map.of(BALLS, 1));
+        });
+        expire(10, Duration.ofMinutes(5));
+        expire(11, Duration.ofMinutes(10));
+
+        assertEquals(List.of(new InventoryService.ExpiredHold(11, null), new InventoryService.ExpiredHold(10, "pi_10")),
+                inventory.expired(10));
+        assertEquals(1, inventory.expired(1).size());
+
+        inventory.extend(10L);
+        assertEquals(List.of(new InventoryService.ExpiredHold(11, null)), inventory.expired(10));
+        Timestamp until = jdbc.queryForObject("SELECT expires_at FROM inventory_holds WHERE order_id = 10", Timestamp.class);
+        assertTrue(until.toInstant().isAfter(Instant.now().plus(Duration.ofMinutes(29))));
+    }
+
+    @Test
+    void releaseExpiredCancelsOnlyUnpaidOrders() {
+        order(10, null);
+        order(11, null);
+        tx.executeWithoutResult(s -> {
+            inventory.hold(10L, Map.of(BAT, 2));
+            inventory.hold(11L, Map.of(BAT, 1));
+        });
+        jdbc.update("UPDATE orders SET status = 'PAID' WHERE id = 11");
+
+        tx.executeWithoutResult(s -> {
+            inventory.releaseExpired(10L);
+            inventory.releaseExpired(11L);
+        });
+
+        assertEquals("CANCELLED", status(10));
+        assertEquals("PAID", status(11));
+        assertEquals(List.of(5, 0), stock(BAT));
+    }
+
+    /* helpers */
+
+    private void order(long id, String paymentIntentId) {
+        jdbc.update("INSERT INTO orders (id, status, stripe_payment_intent_id) VALUES (?, 'PENDING_PAYMENT', ?)",
+                id, paymentIntentId);
+    }
+
+    private boolean capture(long orderId) {
+        return Boolean.TRUE.equals(tx.execute(s -> inventory.capture(orderId)));
+    }
+
+    private void expire(long orderId, Duration ago) {
+        jdbc.update("UPDATE inventory_holds SET expires_at = ? WHERE order_id = ?",
+                Timestamp.from(Instant.now().minus(ago)), orderId);
+    }
+
+    /** {inventory_qty, reserved_qty} */
+    private List<Integer> stock(long productId) {
+        return jdbc.queryForObject("SELECT inventory_qty, reserved_qty FROM products WHERE id = ?",
+                (rs, i) -> List.of(rs.getInt(1), rs.getInt(2)), productId);
+    }
+
+    private int holds(long orderId) {
+        return jdbc.queryForObject("SELECT count(*) FROM inventory_holds WHERE order_id = ?", Integer.class, orderId);
+    }
+
+    private String status(long orderId) {
+        return jdbc.queryForObject("SELECT status FROM orders WHERE id = ?", String.class, orderId);
+    }
+}
@@ -0,0 +1,94 @@
+package com.ttclub.backend.service;
+
+import com.ttclub.backend.dto.ManualCheckoutRequestDto;
+import com.ttclub.backend.mapper.OrderMapper;
+import com.ttclub.backend.model.*;
+import com.ttclub.backend.repository.*;
+import com.ttclub.backend.service.mail.EmailOutbox;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class OrderServiceTest {
+
+    private final CartRepository carts = mock(CartRepository.class);
+    private final OrderRepository orders = mock(OrderRepository.class);
+    private final UserRepository users = mock(UserRepository.class);
+    private final InventoryService inventory = mock(InventoryService.class);
+
+    private final OrderService service = new OrderService(carts, orders, mock(ProductRepository.class),
+            mock(OrderMapper.class), users, mock(RoleRepository.class), mock(PasswordEncoder.class),
+            mock(PricingService.class), mock(TaxService.class), mock(CouponRepository.class),
+            mock(PaymentEventRepository.class), mock(EmailOutbox.class), mock(FinanceLedgerWriter.class),
+            mock(JdbcTemplate.class), inventory);
+
+    @Test
+    void cancellingAPendingOrderReleasesItsHolds() {
+        Order o = order(OrderStatus.PENDING_PAYMENT);
+
+        service.markCancelled(5L);
+
+        assertEquals(OrderStatus.CANCELLED, o.getStatus());
+        verify(inventory).release(List.of(5L));
+    }
+
+    @Test
+    void cancellingAPaidOrderHasNoHoldsToRelease() {
+        Order o = order(OrderStatus.PAID);
+
+        service.markCancelled(5L);
+
+        assertEquals(OrderStatus.CANCELLED, o.getStatus());
+        verifyNoInteractions(inventory);
+    }
+
+    @Test
+    void adminCheckoutPreChecksAvailableNotOnHandStock() {
+        Product bat = new Product();
+        bat.setId(3L);
+        bat.setName("Bat");
+        bat.setInventoryQty(5);                                  // on hand, but 4 are held
+        when(inventory.availabilityFor(List.of(3L))).thenReturn(Map.of(3L, 1));
+        when(users.findById(9L)).thenReturn(Optional.of(new User()));
+        when(carts.findByUserId(1L)).thenReturn(Optional.of(cart(bat, 2)));
+        ManualCheckoutRequestDto req = new ManualCheckoutRequestDto();
+        req.setClientUserId(9L);
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class,
+                () -> service.placeOfflineOrderFromAdminCart(1L, req));
+
+        assertEquals("Not enough stock for Bat", ex.getMessage());
+        verify(inventory, never()).take(any());
+        verify(orders, never()).save(any());
+    }
+
+    /* helpers */
+
+    private Order order(OrderStatus status) {
+        Order o = new Order();
+        o.setId(5L);
+        o.setStatus(status);
+        when(orders.findById(5L)).thenReturn(Optional.of(o));
+        return o;
+    }
+
+    private static Cart cart(Product p, int qty) {
+        CartItem ci = new CartItem();
+        ci.setProduct(p);
+        ci.setQuantity(qty);
+        ci.setUnitPrice(BigDecimal.TEN);
+        Cart c = new Cart();
+        c.setItems(new ArrayList<>(List.of(ci)));
+        return c;
+    }
+}
@@ -0,0 +1,182 @@
+package com.ttclub.backend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * In-process single flight and the advisory lock of PaymentIntentSingleFlight. Transactions are
+ * simulated with Spring's synchronization registry: the "leader" thread completes its
+ * synchronizations with the outcome the test picks.
+ */
+class PaymentIntentSingleFlightTest {
+
+    private static final String LOCK_SQL = "SELECT pg_advisory_xact_lock(?, hashtext(?))";
+
+    private final JdbcTemplate jdbc = mock(JdbcTemplate.class);
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final ExecutorService pool = Executors.newCachedThreadPool();
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    void workRunsUnderTheAdvisoryLockOfItsPaymentIntent() {
+        flight(2_000).run("membership.succeeded", "pi_1", runs::incrementAndGet);
+
+        assertEquals(1, runs.get());
+        verify(jdbc).query(eq(LOCK_SQL), any(ResultSetExtractor.class), eq(0x7069), eq("pi_1"));
+    }
+
+    @Test
+    void withoutAPaymentIntentWorkRunsDirectly() {
+        flight(2_000).run("membership.succeeded", " ", runs::incrementAndGet);
+
+        assertEquals(1, runs.get());
+        verifyNoInteractions(jdbc);
+    }
+
+    @Test
+    void duplicateJoinsTheLeaderOnceItCommits() throws Exception {
+        PaymentIntentSingleFlight flight = flight(2_000);
+        Leader leader = leader(flight, "pi_1");
+
+        Future<?> duplicate = pool.submit(() -> flight.run("membership.succeeded", "pi_1", runs::incrementAndGet));
+        Thread.sleep(100);
+        assertFalse(duplicate.isDone(), "duplicate waits for the leader");
+
+        leader.complete(TransactionSynchronization.STATUS_COMMITTED);
+        duplicate.get(2, TimeUnit.SECONDS);
+
+        assertEquals(0, runs.get(), "the duplicate did not redo the work");
+        assertEquals(1.0, meters.get("ttclub.payments.single-flight").tag("result", "joined").counter().count());
+        verifyNoInteractions(jdbc);
+    }
+
+    @Test
+    void duplicateRunsTheWorkItselfWhenTheLeaderRollsBack() throws Exception {
+        PaymentIntentSingleFlight flight = flight(2_000);
+        Leader leader = leader(flight, "pi_1");
+
+        Future<?> duplicate = pool.submit(() -> flight.run("membership.succeeded", "pi_1", runs::incrementAndGet));
+        Thread.sleep(100);
+        leader.complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+        duplicate.get(2, TimeUnit.SECONDS);
+
+        assertEquals(1, runs.get());
+        verify(jdbc).query(eq(LOCK_SQL), any(ResultSetExtractor.class), eq(0x7069), eq("pi_1"));
+    }
+
+    @Test
+    void duplicateRunsTheWorkItselfWhenTheLeaderThrows() {
+        PaymentIntentSingleFlight flight = flight(2_000);
+        CountDownLatch inWork = new CountDownLatch(1);
+        CountDownLatch fail = new CountDownLatch(1);
+
+        Future<?> first = pool.submit(() -> flight.run("membership.succeeded", "pi_1", () -> {
+            inWork.countDown();
+            await(fail);
+            throw new IllegalStateException("stripe says no");
+        }));
+        await(inWork);
+        Future<?> duplicate = pool.submit(() -> flight.run("membership.succeeded", "pi_1", runs::incrementAndGet));
+        fail.countDown();
+
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> first.get(2, TimeUnit.SECONDS));
+        assertEquals("stripe says no", ex.getCause().getMessage());
+        assertDoesNotThrow(() -> duplicate.get(2, TimeUnit.SECONDS));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void aSlowLeaderIsWaitedForOnlyUpToAwaitMs() throws Exception {
+        PaymentIntentSingleFlight flight = flight(50);
+        Leader leader = leader(flight, "pi_1");
+
+        long t0 = System.nanoTime();
+        pool.submit(() -> flight.run("membership.succeeded", "pi_1", runs::incrementAndGet)).get(2, TimeUnit.SECONDS);
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0) < 1_000);
+        assertEquals(1, runs.get(), "ran under the lock after the wait gave up");
+        leader.complete(TransactionSynchronization.STATUS_COMMITTED);
+    }
+
+    @Test
+    void otherOperationsAndIntentsDoNotWait() throws Exception {
+        PaymentIntentSingleFlight flight = flight(2_000);
+        Leader leader = leader(flight, "pi_1");
+
+        pool.submit(() -> flight.run("membership.canceled", "pi_1", runs::incrementAndGet)).get(1, TimeUnit.SECONDS);
+        pool.submit(() -> flight.run("membership.succeeded", "pi_2", runs::incrementAndGet)).get(1, TimeUnit.SECONDS);
+
+        assertEquals(2, runs.get());
+        leader.complete(TransactionSynchronization.STATUS_COMMITTED);
+    }
+
+    @Test
+    void awaitIsCapped() {
+        assertEquals(PaymentIntentSingleFlight.MAX_AWAIT_MS, ReflectionTestUtils.getField(flight(600_000), "awaitMs"));
+    }
+
+    /* helpers */
+
+    private PaymentIntentSingleFlight flight(long awaitMs) {
+        return new PaymentIntentSingleFlight(jdbc, meters, awaitMs);
+    }
+
+    /**
+     * A leader that has run its work inside a (simulated) open transaction and not completed yet;
+     * the run counter and the lock calls are reset so the test only counts the duplicates.
+     */
+    private Leader leader(PaymentIntentSingleFlight flight, String pi) throws Exception {
+        Leader leader = new Leader();
+        CountDownLatch ran = new CountDownLatch(1);
+        pool.submit(() -> {
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                flight.run("membership.succeeded", pi, runs::incrementAndGet);
+                ran.countDown();
+                int status = leader.outcome.take();
+                TransactionSynchronizationManager.getSynchronizations().forEach(s -> s.afterCompletion(status));
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+            return null;
+        });
+        assertTrue(ran.await(2, TimeUnit.SECONDS));
+        runs.set(0);
+        clearInvocations(jdbc);
+        return leader;
+    }
+
+    private static final class Leader {
+        final BlockingQueue<Integer> outcome = new ArrayBlockingQueue<>(1);
+
+        void complete(int status) {
+            outcome.add(status);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(2, TimeUnit.SECONDS));
+        } catch (InterruptedException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.ttclub.backend.service;
+
+import com.ttclub.backend.dto.ProductSearchDtos.ProductSearchPage;
+import com.ttclub.backend.mapper.ProductMapper;
+import com.ttclub.backend.repository.CategoryRepository;
+import com.ttclub.backend.repository.ProductRepository;
+import com.ttclub.backend.repository.ProductRepository.ProductCardView;
+import com.ttclub.backend.service.ProductService.SearchCursor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/** Keyset cursor encoding and the paging / mode pinning of ProductService.searchCards. */
+class ProductServiceTest {
+
+    private final ProductRepository products = mock(ProductRepository.class);
+    private final ProductService service = new ProductService(products, mock(CategoryRepository.class),
+            mock(ProductMapper.class), mock(FileStorageService.class), mock(ProductAuditService.class),
+            mock(AvailableToPromise.class));
+
+    @Test
+    void browseCursorRoundTripsNamesWithSeparatorsAndUnicode() {
+        String cursor = SearchCursor.encode(SearchCursor.BROWSE, "Tenergy | 05 – Röt", 42);
+
+        assertEquals(new SearchCursor(SearchCursor.BROWSE, "Tenergy | 05 – Röt", 42), SearchCursor.decode(cursor));
+        assertTrue(cursor.matches("[A-Za-z0-9_-]+"), "url-safe, unpadded: " + cursor);
+    }
+
+    @Test
+    void scoreCursorRoundTripsTheExactFloat() {
+        float score = 0.0607927f;
+        SearchCursor c = SearchCursor.decode(SearchCursor.encode(SearchCursor.FULLTEXT, Float.toString(score), 7));
+
+        assertEquals(SearchCursor.FULLTEXT, c.mode());
+        assertEquals(score, c.score());
+        assertEquals(7, c.id());
+    }
+
+    @Test
+    void blankCursorIsTheFirstPage() {
+        assertNull(SearchCursor.decode(null));
+        assertNull(SearchCursor.decode(" "));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "b|name", "x|name|1", "b|name|one", "f|high|1", "|name|1", "b|1" })
+    void malformedCursorIsRejected(String raw) {
+        String cursor = Base64.getUrlEncoder().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode(cursor));
+        assertEquals("Invalid cursor", ex.getMessage());
+    }
+
+    @Test
+    void notBase64IsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode("%%%"));
+    }
+
+    @Test
+    void browsePagesContinueAfterTheLastRow() {
+        List<ProductCardView> page1 = cards("A", 1, "B", 2, "C", 3);
+        List<ProductCardView> page2 = cards("C", 3);
+        when(products.browseCards(isNull(), isNull(), eq(0L), eq(3))).thenReturn(page1);
+        when(products.browseCards(isNull(), eq("B"), eq(2L), eq(3))).thenReturn(page2);
+
+        ProductSearchPage first = service.searchCards("", null, null, 2);
+        assertEquals(List.of(1L, 2L), ids(first));
+        assertEquals("browse", first.mode());
+        assertNotNull(first.nextCursor());
+
+        ProductSearchPage second = service.searchCards(" ", null, first.nextCursor(), 2);
+        assertEquals(List.of(3L), ids(second));
+        assertNull(second.nextCursor(), "short page is the last");
+    }
+
+    @Test
+    void emptyFullTextFallsBackToFuzzyAndTheCursorKeepsIt() {
+        List<ProductCardView> page1 = scored(0.5f, 10, 0.4f, 11);
+        List<ProductCardView> page2 = scored(0.4f, 11);
+        when(products.fullTextCards(eq("tenrgy"), isNull(), isNull(), eq(0L), eq(2))).thenReturn(List.of());
+        when(products.fuzzyCards(eq("tenrgy"), isNull(), isNull(), eq(0L), eq(2))).thenReturn(page1);
+        when(products.fuzzyCards(eq("tenrgy"), isNull(), eq(0.5f), eq(10L), eq(2))).thenReturn(page2);
+
+        ProductSearchPage first = service.searchCards("tenrgy", null, null, 1);
+        assertEquals("fuzzy", first.mode());
+        assertEquals(List.of(10L), ids(first));
+
+        ProductSearchPage second = service.searchCards("tenrgy", null, first.nextCursor(), 1);
+        assertEquals("fuzzy", second.mode());
+        assertEquals(List.of(11L), ids(second));
+        verify(products, times(1)).fullTextCards(any(), any(), any(), anyLong(), anyInt());
+    }
+
+    @Test
+    void pageSizeIsClamped() {
+        when(products.browseCards(any(), any(), anyLong(), anyInt())).thenReturn(List.of());
+
+        service.searchCards(null, null, null, 10_000);
+        service.searchCards(null, null, null, 0);
+
+        verify(products).browseCards(null, null, 0, 101);
+        verify(products).browseCards(null, null, 0, 2);
+    }
+
+    /* helpers */
+
+    /** name, id pairs */
+    private static List<ProductCardView> cards(Object... nameIds) {
+        List<ProductCardView> out = new ArrayList<>();
+        for (int i = 0; i < nameIds.length; i += 2) {
+            ProductCardView v = mock(ProductCardView.class);
+            when(v.getName()).thenReturn((String) nameIds[i]);
+            when(v.getId()).thenReturn(((Integer) nameIds[i + 1]).longValue());
+            out.add(v);
+        }
+        return out;
+    }
+
+    /** score, id pairs */
+    private static List<ProductCardView> scored(Object... scoreIds) {
+        List<ProductCardView> out = new ArrayList<>();
+        for (int i = 0; i < scoreIds.length; i += 2) {
+            ProductCardView v = mock(ProductCardView.class);
+            when(v.getScore()).thenReturn((Float) scoreIds[i]);
+            when(v.getId()).thenReturn(((Integer) scoreIds[i + 1]).longValue());
+            out.add(v);
+        }
+        return out;
+    }
+
+    private static List<Long> ids(ProductSearchPage page) {
+        return page.items().stream().map(c -> c.id()).toList();
+    }
+}
@@ -0,0 +1,147 @@
+package com.ttclub.backend.service.http;
+
+import com.sun.net.httpserver.HttpServer;
+import com.ttclub.backend.config.OutboundHttpProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ProviderClient against an in-process stub server (JDK HttpServer): retries, breaker,
+ * probe release on local failures, and the overall deadline.
+ */
+class ProviderClientTest {
+
+    private HttpServer server;
+    private final AtomicInteger hits = new AtomicInteger();
+    private volatile IntSupplier status = () -> 200;
+    private volatile long delayMs;
+    private ProviderClient client;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", ex -> {
+            hits.incrementAndGet();
+            try {
+                if (delayMs > 0) Thread.sleep(delayMs);
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "ok".getBytes();
+            ex.sendResponseHeaders(status.getAsInt(), body.length);
+            ex.getResponseBody().write(body);
+            ex.close();
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        if (client != null) client.close();
+        server.stop(0);
+    }
+
+    @Test
+    void retriesA5xxAndReturnsTheGoodAnswer() {
+        AtomicInteger n = new AtomicInteger();
+        status = () -> n.incrementAndGet() == 1 ? 503 : 200;
+        client = client(cfg());
+
+        assertEquals(200, client.send(request(), true).statusCode());
+        assertEquals(2, hits.get());
+    }
+
+    @Test
+    void nonIdempotentCallsAreSentOnce() {
+        status = () -> 503;
+        client = client(cfg());
+
+        assertThrows(ProviderUnavailableException.class, () -> client.send(request(), false));
+        assertEquals(1, hits.get());
+    }
+
+    @Test
+    void breakerOpensAfterRepeatedFailuresAndStopsCallingTheProvider() {
+        status = () -> 500;
+        OutboundHttpProperties.Provider cfg = cfg();
+        cfg.setMaxAttempts(1);
+        cfg.setWindowSize(4);
+        cfg.setMinimumCalls(4);
+        client = client(cfg);
+
+        for (int i = 0; i < 4; i++) {
+            assertThrows(ProviderUnavailableException.class, () -> client.send(request(), true));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, client.circuitState());
+        assertThrows(ProviderUnavailableException.class, () -> client.send(request(), true));
+        assertEquals(4, hits.get());
+    }
+
+    @Test
+    void localFailureDoesNotStrandTheHalfOpenProbe() throws Exception {
+        status = () -> 500;
+        OutboundHttpProperties.Provider cfg = cfg();
+        cfg.setMaxAttempts(1);
+        cfg.setWindowSize(2);
+        cfg.setMinimumCalls(2);
+        cfg.setOpenMs(50);
+        client = client(cfg);
+        for (int i = 0; i < 2; i++) {
+            assertThrows(ProviderUnavailableException.class, () -> client.send(request(), true));
+        }
+        Thread.sleep(100);
+
+        // no URI: build() throws before a permit is taken
+        assertThrows(IllegalStateException.class, () -> client.send(HttpRequest.newBuilder().GET(), true));
+
+        status = () -> 200;
+        assertEquals(200, client.send(request(), true).statusCode());
+        assertEquals(CircuitBreaker.State.CLOSED, client.circuitState());
+    }
+
+    @Test
+    void retriesAndHedgesStayWithinTheDeadline() {
+        delayMs = 2_000;
+        OutboundHttpProperties.Provider cfg = cfg();
+        cfg.setReadTimeoutMs(1_500);
+        cfg.setHedgeDelayMs(200);
+        cfg.setMaxAttempts(3);
+        cfg.setDeadlineMs(600);
+        client = client(cfg);
+
+        long t0 = System.nanoTime();
+        assertThrows(ProviderUnavailableException.class, () -> client.send(request(), true));
+        long tookMs = (System.nanoTime() - t0) / 1_000_000L;
+        assertTrue(tookMs < 1_200, "took " + tookMs + " ms");
+    }
+
+    /* helpers */
+
+    private static OutboundHttpProperties.Provider cfg() {
+        OutboundHttpProperties.Provider cfg = new OutboundHttpProperties.Provider();
+        cfg.setReadTimeoutMs(2_000);
+        cfg.setMaxAttempts(2);
+        cfg.setDeadlineMs(5_000);
+        return cfg;
+    }
+
+    private static ProviderClient client(OutboundHttpProperties.Provider cfg) {
+        return new ProviderClient("stub", cfg, new SimpleMeterRegistry());
+    }
+
+    private HttpRequest.Builder request() {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/quote")).GET();
+    }
+}
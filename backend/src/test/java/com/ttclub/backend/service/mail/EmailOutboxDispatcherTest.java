@@ -0,0 +1,119 @@
+package com.ttclub.backend.service.mail;
+
+import com.ttclub.backend.security.SecretCrypto;
+import com.ttclub.backend.support.H2Postgres;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/** Batch send, partial failure and dead-lettering of the e-mail outbox against H2 (V52 table). */
+class EmailOutboxDispatcherTest {
+
+    private static final int MAX_ATTEMPTS = 2;
+
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final JavaMailSender mail = mock(JavaMailSender.class);
+    private final SecretCrypto crypto = new SecretCrypto("0123456789abcdef0123456789abcdef-unit-test");
+
+    private JdbcTemplate jdbc;
+    private EmailOutboxDispatcher dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        jdbc = new JdbcTemplate(H2Postgres.dataSource("outbox"));
+        jdbc.execute("""
+                CREATE TABLE email_outbox (
+                    id               BIGSERIAL PRIMARY KEY,
+                    category         VARCHAR(40)  NOT NULL,
+                    from_addr        VARCHAR(255),
+                    to_addr          TEXT         NOT NULL,
+                    bcc_addr         TEXT,
+                    subject          TEXT         NOT NULL,
+                    body_enc         TEXT,
+                    status           VARCHAR(16)  NOT NULL DEFAULT 'PENDING',
+                    attempts         INTEGER      NOT NULL DEFAULT 0,
+                    next_attempt_at  TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+                    last_error       TEXT,
+                    created_at       TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+                    sent_at          TIMESTAMP WITH TIME ZONE
+                )
+                """);
+        dispatcher = new EmailOutboxDispatcher(jdbc, mail, crypto, meters, true,
+                1, 20, MAX_ATTEMPTS, 30, 3600, 300, 14);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbc.execute("SHUTDOWN");
+    }
+
+    @Test
+    void dueMessagesGoOutInOneSendAndAreMarkedSent() {
+        queue("a@example.com", "hello a");
+        queue("b@example.com", "hello b");
+
+        dispatcher.drain();
+
+        ArgumentCaptor<SimpleMailMessage[]> sent = ArgumentCaptor.forClass(SimpleMailMessage[].class);
+        verify(mail, times(1)).send(sent.capture());
+        assertEquals(List.of("hello a", "hello b"), List.of(sent.getValue()[0].getText(), sent.getValue()[1].getText()));
+        assertEquals(List.of("SENT", "SENT"), statuses());
+        assertEquals(0, jdbc.queryForObject("SELECT count(*) FROM email_outbox WHERE body_enc IS NOT NULL", Integer.class));
+    }
+
+    @Test
+    void onlyTheFailedMessageOfABatchIsRetried() {
+        queue("a@example.com", "hello a");
+        queue("bad@example.com", "hello b");
+        doAnswer(inv -> {
+            SimpleMailMessage bad = inv.getArgument(1);
+            throw new MailSendException(Map.of(bad, new RuntimeException("mailbox unavailable")));
+        }).when(mail).send(any(SimpleMailMessage.class), any(SimpleMailMessage.class));
+
+        dispatcher.drain();
+
+        assertEquals(List.of("SENT", "PENDING"), statuses());
+        assertEquals("mailbox unavailable",
+                jdbc.queryForObject("SELECT last_error FROM email_outbox WHERE to_addr = 'bad@example.com'", String.class));
+    }
+
+    @Test
+    void aConnectFailureRetriesTheWholeBatchUntilMaxAttempts() {
+        queue("a@example.com", "hello a");
+        doThrow(new MailAuthenticationException("auth failed")).when(mail).send(any(SimpleMailMessage[].class));
+
+        for (int i = 0; i < MAX_ATTEMPTS; i++) {
+            jdbc.update("UPDATE email_outbox SET next_attempt_at = now()");
+            dispatcher.drain();
+        }
+
+        assertEquals(List.of("DEAD"), statuses());
+        assertNull(jdbc.queryForObject("SELECT body_enc FROM email_outbox", String.class), "dead letters drop the body");
+        assertEquals(1.0, meters.get("ttclub.mail.outbox.messages").tag("result", "dead").counter().count());
+    }
+
+    /* helpers */
+
+    private void queue(String to, String body) {
+        jdbc.update("INSERT INTO email_outbox (category, to_addr, subject, body_enc) VALUES ('test', ?, 'Hi', ?)",
+                to, crypto.encrypt(body));
+    }
+
+    private List<String> statuses() {
+        return jdbc.queryForList("SELECT status FROM email_outbox ORDER BY id", String.class);
+    }
+}
@@ -0,0 +1,63 @@
+package com.ttclub.backend.service.queue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class LeasedQueueWorkerTest {
+
+    record Row(long id, int attempts) implements LeasedQueueWorker.Claimed { }
+
+    private final TestWorker worker = new TestWorker(new LeasedQueueWorker.Policy(1, 10, 8, 30, 600, 60));
+
+    @AfterEach
+    void stop() {
+        worker.shutdown();
+    }
+
+    @Test
+    void backoffDoublesPerAttemptWithinTwentyPercentJitter() {
+        for (int attempt = 1; attempt <= 5; attempt++) {
+            long nominal = Math.min(600, 30L << (attempt - 1));
+            for (int i = 0; i < 200; i++) {
+                long d = worker.backoffSec(attempt);
+                assertTrue(d >= nominal - nominal / 5 && d <= nominal + nominal / 5,
+                        "attempt " + attempt + ": " + d + "s vs " + nominal + "s");
+            }
+        }
+    }
+
+    @Test
+    void backoffIsCappedAtMaxDelay() {
+        for (int attempt : new int[]{ 6, 20, 64, Integer.MAX_VALUE }) {
+            assertTrue(worker.backoffSec(attempt) <= 600 + 120, "attempt " + attempt);
+        }
+    }
+
+    @Test
+    void policyClampsNonsense() {
+        LeasedQueueWorker.Policy p = new LeasedQueueWorker.Policy(0, 0, 0, 0, 0, 0);
+        assertEquals(new LeasedQueueWorker.Policy(1, 1, 1, 1, 1, 30), p);
+    }
+
+    private static final class TestWorker extends LeasedQueueWorker<Row> {
+        TestWorker(Policy policy) {
+            super("Test queue", mock(JdbcTemplate.class), new SimpleMeterRegistry(), "test.queue", "rows",
+                    policy, new Statements("claim", "retry", "dead"), (rs, i) -> new Row(rs.getLong(1), rs.getInt(2)));
+        }
+
+        @Override
+        protected void handle(List<Row> batch) { }
+
+        @Override
+        protected String describe(Row row) {
+            return "row " + row.id();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.ttclub.backend.service.ratelimit;
+
+import com.ttclub.backend.support.H2Postgres;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The shared store, each {@link #node()} a separate limiter instance as on separate backends.<br>
+ * Notes:
+ *  - Default: in-memory H2. Its SQL (ON CONFLICT ... DO UPDATE ... WHERE ... RETURNING on the
+ *    database clock) has no H2 form, so the two statements are swapped for an equivalent
+ *    MERGE ... WHEN MATCHED AND ... with the same parameters and a clock_ms() alias.
+ *  - TTCLUB_TEST_PG_URL pointing at a scratch database runs the statements as written, e.g.
+ *    jdbc:postgresql://localhost:5432/ttclub_test?user=postgres&password=postgres.
+ */
+class JdbcRateLimiterTest extends RateLimiterContract {
+
+    private static final String H2_ACQUIRE_SQL = """
+            SELECT tat_ms FROM FINAL TABLE (
+            MERGE INTO rate_limit_buckets b
+            USING (SELECT CAST(? AS BIGINT) AS bucket, n.v + ? AS tat_ms, epoch_ms_ts(n.v + ?) AS expires_at,
+                          CAST(? AS BIGINT) AS t1, CAST(? AS BIGINT) AS t2, CAST(? AS BIGINT) AS t3,
+                          CAST(? AS BIGINT) AS t4, CAST(? AS BIGINT) AS t5, CAST(? AS BIGINT) AS t6,
+                          CAST(? AS BIGINT) AS tau
+                     FROM (SELECT clock_ms() AS v) n) e
+               ON b.bucket = e.bucket
+             WHEN MATCHED AND greatest(b.tat_ms, e.tat_ms - e.t5) - (e.tat_ms - e.t6) <= e.tau THEN
+                  UPDATE SET tat_ms     = greatest(b.tat_ms, e.tat_ms - e.t1) + e.t2,
+                             expires_at = epoch_ms_ts(greatest(b.tat_ms, e.tat_ms - e.t3) + e.t4)
+             WHEN NOT MATCHED THEN
+                  INSERT (bucket, tat_ms, expires_at) VALUES (e.bucket, e.tat_ms, e.expires_at))
+            """;
+
+    private static final String H2_OVERDRAFT_SQL = """
+            SELECT b.tat_ms - clock_ms() - ? FROM rate_limit_buckets b WHERE b.bucket = ?
+            """;
+
+    private static JdbcTemplate jdbc;
+
+    @BeforeAll
+    static void schema() throws Exception {
+        String pg = System.getenv("TTCLUB_TEST_PG_URL");
+        if (pg != null && !pg.isBlank()) {
+            jdbc = new JdbcTemplate(new DriverManagerDataSource(pg));
+        } else {
+            jdbc = new JdbcTemplate(H2Postgres.dataSource("ratelimit", JdbcRateLimiterTest::h2));
+            jdbc.execute("CREATE DOMAIN timestamptz AS TIMESTAMP WITH TIME ZONE");
+            jdbc.execute("CREATE ALIAS clock_ms FOR 'java.lang.System.currentTimeMillis()'");
+            jdbc.execute("CREATE ALIAS epoch_ms_ts FOR 'java.time.Instant.ofEpochMilli(long)'");
+        }
+        jdbc.execute(Files.readString(Path.of("src/main/resources/db/migration/V51__rate_limit_buckets.sql")));
+    }
+
+    @Override
+    RateLimiter node() {
+        return new JdbcRateLimiter(jdbc);
+    }
+
+    @Test
+    void limitIsSharedAcrossNodes() {
+        String key = unique();
+        RateLimiter a = node();
+        RateLimiter b = node();
+        assertEquals(0, a.tryAcquire("login", key, 2, 60));
+        assertEquals(0, b.tryAcquire("login", key, 2, 60));
+        assertTrue(a.tryAcquire("login", key, 2, 60) > 0);
+        assertTrue(b.tryAcquire("login", key, 2, 60) > 0);
+    }
+
+    @Test
+    void purgeDropsOnlyExpiredBuckets() {
+        String key = unique();
+        RateLimiter rl = node();
+        assertEquals(0, rl.tryAcquire("login", key, 1, 3600));
+        new JdbcRateLimiter(jdbc).purgeExpired();
+        assertTrue(rl.tryAcquire("login", key, 1, 3600) > 0);
+    }
+
+    /* helpers */
+
+    private static String h2(String sql) {
+        if (sql.contains("INSERT INTO rate_limit_buckets")) return H2_ACQUIRE_SQL;
+        if (sql.contains("FROM rate_limit_buckets b") && sql.contains("clock_timestamp()")) return H2_OVERDRAFT_SQL;
+        return sql;
+    }
+}
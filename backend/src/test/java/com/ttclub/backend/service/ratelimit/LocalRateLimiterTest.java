@@ -0,0 +1,26 @@
+package com.ttclub.backend.service.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalRateLimiterTest extends RateLimiterContract {
+
+    private final LocalRateLimiter store = new LocalRateLimiter(8, 10_000);
+
+    @Override
+    RateLimiter node() {
+        return store;   // one process: every caller shares the instance
+    }
+
+    @Test
+    void keyFloodStaysBoundedAndKeepsLimiting() {
+        LocalRateLimiter small = new LocalRateLimiter(4, 256);
+        for (int i = 0; i < 50_000; i++) {
+            small.tryAcquire("login", "flood-" + i, 5, 60);
+        }
+        String key = unique();
+        for (int i = 0; i < 3; i++) assertEquals(0, small.tryAcquire("login", key, 3, 60));
+        assertTrue(small.tryAcquire("login", key, 3, 60) > 0);
+    }
+}
@@ -0,0 +1,88 @@
+package com.ttclub.backend.service.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Behaviour every RateLimiter store must share (GCRA: even rate, burst up to the limit).
+ * Subclasses supply the store; {@link #node()} returns a limiter as seen from one backend node.
+ */
+abstract class RateLimiterContract {
+
+    /** A limiter instance; for shared stores every call returns a new "node" on the same store. */
+    abstract RateLimiter node();
+
+    @Test
+    void allowsABurstUpToTheLimitThenRefuses() {
+        RateLimiter rl = node();
+        String key = unique();
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, rl.tryAcquire("login", key, 5, 60), "request " + (i + 1));
+        }
+        long retryAfter = rl.tryAcquire("login", key, 5, 60);
+        assertTrue(retryAfter >= 1 && retryAfter <= 12, "retry-after " + retryAfter);
+    }
+
+    @Test
+    void keysPurposesAndWindowsAreSeparateBuckets() {
+        RateLimiter rl = node();
+        String key = unique();
+        assertEquals(0, rl.tryAcquire("login", key, 1, 60));
+        assertTrue(rl.tryAcquire("login", key, 1, 60) > 0);
+
+        assertEquals(0, rl.tryAcquire("login", key + "-other", 1, 60));
+        assertEquals(0, rl.tryAcquire("register", key, 1, 60));
+        assertEquals(0, rl.tryAcquire("login", key, 1, 3600));
+    }
+
+    @Test
+    void refillsAtTheEvenRate() throws Exception {
+        RateLimiter rl = node();
+        String key = unique();
+        // 2 per second: one token every 500 ms
+        assertEquals(0, rl.tryAcquire("cart", key, 2, 1));
+        assertEquals(0, rl.tryAcquire("cart", key, 2, 1));
+        assertTrue(rl.tryAcquire("cart", key, 2, 1) > 0);
+
+        Thread.sleep(650);
+        assertEquals(0, rl.tryAcquire("cart", key, 2, 1));
+        assertTrue(rl.tryAcquire("cart", key, 2, 1) > 0);
+    }
+
+    @Test
+    void concurrentCallersNeverExceedTheLimit() throws Exception {
+        int limit = 50;
+        String key = unique();
+        AtomicInteger allowed = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                RateLimiter rl = node();
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 25; i++) {
+                        if (rl.tryAcquire("checkout", key, limit, 3600) == 0) allowed.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> f : futures) f.get(30, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(limit, allowed.get());
+    }
+
+    static String unique() {
+        return "k" + ThreadLocalRandom.current().nextLong(Long.MAX_VALUE);
+    }
+}
@@ -0,0 +1,198 @@
+package com.ttclub.backend.service.webhook;
+
+import com.stripe.model.Event;
+import com.ttclub.backend.support.H2Postgres;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Inbox de-duplication and the dispatcher's claim / lease / retry / dead-letter cycle, against the
+ * stripe_webhook_events table (V57) in an in-memory H2 database.
+ */
+class StripeWebhookDispatcherTest {
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long BASE_DELAY_SEC = 15;
+    private static final long LEASE_SEC = 120;
+
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final StripeEventProcessor processor = mock(StripeEventProcessor.class);
+
+    private JdbcTemplate jdbc;
+    private StripeWebhookDispatcher dispatcher;
+    private StripeWebhookInbox inbox;
+
+    @BeforeEach
+    void setUp() {
+        jdbc = new JdbcTemplate(H2Postgres.dataSource("webhooks"));
+        jdbc.execute("""
+                CREATE TABLE stripe_webhook_events (
+                    id                 BIGSERIAL PRIMARY KEY,
+                    event_id           VARCHAR(255) NOT NULL,
+                    event_type         VARCHAR(64)  NOT NULL,
+                    payment_intent_id  VARCHAR(255),
+                    stripe_created     BIGINT       NOT NULL DEFAULT 0,
+                    payload            TEXT         NOT NULL,
+                    status             VARCHAR(16)  NOT NULL DEFAULT 'PENDING',
+                    attempts           INTEGER      NOT NULL DEFAULT 0,
+                    next_attempt_at    TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+                    last_error         TEXT,
+                    received_at        TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now(),
+                    processed_at       TIMESTAMP WITH TIME ZONE,
+                    CONSTRAINT uq_stripe_webhook_events_event UNIQUE (event_id)
+                )
+                """);
+        dispatcher = spy(new StripeWebhookDispatcher(jdbc, processor, meters,
+                1, 10, MAX_ATTEMPTS, BASE_DELAY_SEC, 3600, LEASE_SEC, 30));
+        doNothing().when(dispatcher).wakeUp();   // the tests drain on their own thread
+        inbox = new StripeWebhookInbox(jdbc, dispatcher, meters);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbc.execute("SHUTDOWN");
+    }
+
+    @Test
+    void redeliveredEventIdIsStoredOnce() {
+        assertTrue(inbox.store(event("evt_1", 100), "pi_1", "{}"));
+        assertFalse(inbox.store(event("evt_1", 100), "pi_1", "{}"));
+
+        assertEquals(1, count("SELECT count(*) FROM stripe_webhook_events"));
+        assertEquals(1.0, meters.get("ttclub.stripe.webhook.received").tag("result", "duplicate").counter().count());
+        verify(dispatcher, times(1)).wakeUp();
+
+        dispatcher.drain();
+        verify(processor, times(1)).process("pi_1", "{}");
+    }
+
+    @Test
+    void processedEventIsDone() {
+        inbox.store(event("evt_1", 100), "pi_1", "{\"a\":1}");
+
+        dispatcher.drain();
+
+        verify(processor).process("pi_1", "{\"a\":1}");
+        assertEquals(Map.of("status", "DONE", "attempts", 1), row("evt_1"));
+        assertNotNull(jdbc.queryForObject("SELECT processed_at FROM stripe_webhook_events", Timestamp.class));
+    }
+
+    @Test
+    void failedEventIsRetriedAfterABackoff() {
+        doThrow(new IllegalStateException("db hiccup")).when(processor).process(any(), any());
+        inbox.store(event("evt_1", 100), "pi_1", "{}");
+
+        Instant before = Instant.now();
+        dispatcher.drain();
+
+        assertEquals(Map.of("status", "PENDING", "attempts", 1), row("evt_1"));
+        assertEquals("db hiccup", jdbc.queryForObject("SELECT last_error FROM stripe_webhook_events", String.class));
+        Duration delay = Duration.between(before, nextAttemptAt("evt_1"));
+        assertTrue(delay.toMillis() >= BASE_DELAY_SEC * 800 - 1_000 && delay.toMillis() <= BASE_DELAY_SEC * 1200 + 1_000,
+                "retry in " + delay);
+
+        dispatcher.drain();   // not due yet
+        verify(processor, times(1)).process(any(), any());
+    }
+
+    @Test
+    void eventIsDeadAfterMaxAttempts() {
+        doThrow(new IllegalStateException("always")).when(processor).process(any(), any());
+        inbox.store(event("evt_1", 100), "pi_1", "{}");
+
+        for (int i = 0; i < MAX_ATTEMPTS; i++) {
+            makeDue("evt_1");
+            dispatcher.drain();
+        }
+
+        assertEquals(Map.of("status", "DEAD", "attempts", MAX_ATTEMPTS), row("evt_1"));
+        assertEquals(1.0, meters.get("ttclub.stripe.webhook.events").tag("result", "dead").counter().count());
+        assertEquals(MAX_ATTEMPTS - 1.0, meters.get("ttclub.stripe.webhook.events").tag("result", "retry").counter().count());
+
+        makeDue("evt_1");
+        dispatcher.drain();
+        verify(processor, times(MAX_ATTEMPTS)).process(any(), any());
+    }
+
+    @Test
+    void leasedEventIsReclaimedOnlyOnceTheLeaseRunsOut() {
+        inbox.store(event("evt_1", 100), "pi_1", "{}");
+        // a worker on another node claimed it and died: PROCESSING, leased into the future
+        jdbc.update("UPDATE stripe_webhook_events SET status = 'PROCESSING', attempts = 1, next_attempt_at = ?",
+                Timestamp.from(Instant.now().plusSeconds(LEASE_SEC)));
+
+        dispatcher.drain();
+        verifyNoInteractions(processor);
+
+        makeDue("evt_1");
+        dispatcher.drain();
+
+        verify(processor).process("pi_1", "{}");
+        assertEquals(Map.of("status", "DONE", "attempts", 2), row("evt_1"));
+    }
+
+    @Test
+    void eventsOfOnePaymentIntentRunInStripeOrder() {
+        doThrow(new IllegalStateException("first fails")).doNothing().when(processor).process(eq("pi_1"), eq("first"));
+        inbox.store(event("evt_late", 200), "pi_1", "second");
+        inbox.store(event("evt_early", 100), "pi_1", "first");
+        inbox.store(event("evt_other", 150), "pi_2", "other");
+
+        dispatcher.drain();
+
+        // the failed earlier event blocks the later one of the same intent, not other intents
+        assertEquals("PENDING", row("evt_late").get("status"));
+        assertEquals(0, row("evt_late").get("attempts"));
+        assertEquals("DONE", row("evt_other").get("status"));
+
+        makeDue("evt_early");
+        dispatcher.drain();   // the retried earlier event
+        dispatcher.drain();   // then the one it was blocking
+
+        var order = inOrder(processor);
+        order.verify(processor, times(2)).process("pi_1", "first");
+        order.verify(processor).process("pi_1", "second");
+    }
+
+    /* helpers */
+
+    private static Event event(String id, long created) {
+        Event e = mock(Event.class);
+        when(e.getId()).thenReturn(id);
+        when(e.getType()).thenReturn("payment_intent.succeeded");
+        when(e.getCreated()).thenReturn(created);
+        return e;
+    }
+
+    private Map<String, Object> row(String eventId) {
+        return jdbc.queryForObject("SELECT status, attempts FROM stripe_webhook_events WHERE event_id = ?",
+                (rs, i) -> Map.of("status", rs.getString(1), "attempts", rs.getInt(2)), eventId);
+    }
+
+    private Instant nextAttemptAt(String eventId) {
+        return jdbc.queryForObject("SELECT next_attempt_at FROM stripe_webhook_events WHERE event_id = ?",
+                Timestamp.class, eventId).toInstant();
+    }
+
+    private void makeDue(String eventId) {
+        jdbc.update("UPDATE stripe_webhook_events SET next_attempt_at = ? WHERE event_id = ?",
+                Timestamp.from(Instant.now().minusSeconds(1)), eventId);
+    }
+
+    private int count(String sql) {
+        return jdbc.queryForObject(sql, Integer.class);
+    }
+}
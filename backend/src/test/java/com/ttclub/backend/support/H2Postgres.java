@@ -0,0 +1,81 @@
+package com.ttclub.backend.support;
+
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Private in-memory H2 database (PostgreSQL mode) for tests of hand-written SQL.<br>
+ * Notes:
+ *  - Prepared statements are translated from the few PostgreSQL forms H2 does not parse:
+ *    UPDATE / DELETE ... RETURNING (to SELECT ... FROM FINAL / OLD TABLE (...)),
+ *    interval '1 second' literals (and ? * interval, typed as BIGINT), and
+ *    ON CONFLICT (cols) DO NOTHING.
+ *  - Everything else (FOR UPDATE SKIP LOCKED, = ANY (?), row-value comparisons) runs as written.
+ *  - A statement no pattern can carry over is swapped whole by the test's own rewrite, which sees
+ *    the original SQL first.
+ */
+public final class H2Postgres {
+
+    private static final Pattern UPDATE_RETURNING = Pattern.compile("(?is)^\\s*(UPDATE .*?)\\s+RETURNING\\s+(.*?)\\s*$");
+    private static final Pattern DELETE_RETURNING = Pattern.compile("(?is)^\\s*(DELETE .*?)\\s+RETURNING\\s+(.*?)\\s*$");
+    private static final Pattern PARAM_TIMES_INTERVAL = Pattern.compile("(?i)\\?\\s*\\*\\s*interval");
+    private static final Pattern INTERVAL = Pattern.compile("(?i)interval\\s+'(\\d+)\\s+(second|minute|hour|day)s?'");
+    private static final Pattern QUALIFIER = Pattern.compile("\\b\\w+\\.(\\w+)");
+    private static final Pattern ON_CONFLICT = Pattern.compile("(?i)ON\\s+CONFLICT\\s*\\([^)]*\\)\\s*DO\\s+NOTHING");
+
+    private H2Postgres() { }
+
+    /** A fresh database; {@code name} only has to be unique among the databases alive at once. */
+    public static DataSource dataSource(String name) {
+        return dataSource(name, UnaryOperator.identity());
+    }
+
+    /** As {@link #dataSource(String)}, with {@code rewrite} applied to each statement before the translation. */
+    public static DataSource dataSource(String name, UnaryOperator<String> rewrite) {
+        return new DriverManagerDataSource(
+                "jdbc:h2:mem:" + name + "-" + System.nanoTime() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+                "sa", "") {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return translating(super.getConnection(), rewrite);
+            }
+        };
+    }
+
+    static String translate(String sql) {
+        Matcher m = UPDATE_RETURNING.matcher(sql);
+        if (m.matches()) sql = "SELECT " + unqualified(m.group(2)) + " FROM FINAL TABLE (" + m.group(1) + ")";
+        m = DELETE_RETURNING.matcher(sql);
+        if (m.matches()) sql = "SELECT " + unqualified(m.group(2)) + " FROM OLD TABLE (" + m.group(1) + ")";
+        sql = PARAM_TIMES_INTERVAL.matcher(sql).replaceAll("CAST(? AS BIGINT) * interval");
+        sql = INTERVAL.matcher(sql).replaceAll("INTERVAL '$1' $2");
+        return ON_CONFLICT.matcher(sql).replaceAll("ON CONFLICT DO NOTHING");
+    }
+
+    /** "e.id, e.status" -> "id, status": the derived table of FINAL / OLD TABLE has no alias. */
+    private static String unqualified(String columns) {
+        return QUALIFIER.matcher(columns).replaceAll("$1");
+    }
+
+    private static Connection translating(Connection con, UnaryOperator<String> rewrite) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{ Connection.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("prepareStatement") && args != null && args[0] instanceof String sql) {
+                        args[0] = translate(rewrite.apply(sql));
+                    }
+                    try {
+                        return method.invoke(con, args);
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getCause();
+                    }
+                });
+    }
+}
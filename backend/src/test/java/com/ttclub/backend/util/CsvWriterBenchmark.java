@@ -0,0 +1,67 @@
+package com.ttclub.backend.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A 1M-row finance export (8 typical columns) into a discarding stream.
+ * - csv: CsvWriter, cells encoded straight into its byte buffer.
+ * - string: a String per row (concatenation, money via setScale + toPlainString, getBytes).
+ * Add -prof gc to see the allocation per op (the writer allocates only for money rounding).
+ * Run: mvn -Pbenchmark -DskipTests verify -Djmh.args="CsvWriterBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvWriterBenchmark {
+
+    private static final int ROWS = 1_000_000;
+    private static final BigDecimal[] AMOUNTS = { new BigDecimal("19.99"), new BigDecimal("-5.00"), new BigDecimal("120.50") };
+
+    @Param({"csv", "string"})
+    public String path;
+
+    @Benchmark
+    public long export() throws IOException {
+        CountingStream sink = new CountingStream();
+        if (path.equals("csv")) {
+            CsvWriter w = new CsvWriter(sink, 64 * 1024);
+            for (int i = 0; i < ROWS; i++) {
+                w.raw("2026-10-17T12:00:00Z").field(100_000L + i).raw("ORDER").raw("SUCCEEDED")
+                        .field("Client " + (i & 1023)).money(AMOUNTS[i % 3]).money(AMOUNTS[(i + 1) % 3]).field(i)
+                        .endRow();
+            }
+            w.flush();
+        } else {
+            for (int i = 0; i < ROWS; i++) {
+                String line = "2026-10-17T12:00:00Z," + (100_000L + i) + ",ORDER,SUCCEEDED,Client " + (i & 1023)
+                        + "," + money(AMOUNTS[i % 3]) + "," + money(AMOUNTS[(i + 1) % 3]) + "," + i + "\n";
+                sink.write(line.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return sink.count;
+    }
+
+    private static String money(BigDecimal v) {
+        return v.setScale(2, RoundingMode.HALF_UP).toPlainString();
+    }
+
+    private static final class CountingStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) { count++; }
+
+        @Override
+        public void write(byte[] b, int off, int len) { count += len; }
+    }
+}
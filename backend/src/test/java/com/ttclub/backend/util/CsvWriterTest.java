@@ -0,0 +1,96 @@
+package com.ttclub.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvWriterTest {
+
+    @Test
+    void plainFieldsAreNotQuoted() throws IOException {
+        assertEquals("a,b c,,x\n", csv(w -> w.field("a").field("b c").field((String) null).raw("x").endRow()));
+    }
+
+    @Test
+    void separatorsQuotesAndLineBreaksAreQuoted() throws IOException {
+        assertEquals("\"a,b\",\"say \"\"hi\"\"\",\"l1\nl2\",\"cr\rlf\"\n",
+                csv(w -> w.field("a,b").field("say \"hi\"").field("l1\nl2").field("cr\rlf").endRow()));
+        assertEquals("\"\"\"\"\n", csv(w -> w.field("\"").endRow()));
+    }
+
+    @Test
+    void nonAsciiIsWrittenAsUtf8WithoutBom() throws IOException {
+        String text = "Zoë, café ☕ 𝄞";
+        byte[] out = bytes(w -> w.field(text).field("plain").endRow());
+
+        assertNotEquals((byte) 0xEF, out[0], "no byte order mark");
+        assertEquals("\"" + text + "\",plain\n", new String(out, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void numbersAndMoney() throws IOException {
+        assertEquals("0,-42,9223372036854775807,-9223372036854775808\n",
+                csv(w -> w.field(0).field(-42).field(Long.MAX_VALUE).field(Long.MIN_VALUE).endRow()));
+        assertEquals("12.35,-0.05,0.00,1000000.10,,123456789012345678901.00\n",
+                csv(w -> w.money(new BigDecimal("12.345")).money(new BigDecimal("-0.049"))
+                        .money(BigDecimal.ZERO).money(new BigDecimal("1000000.1")).money(null)
+                        .money(new BigDecimal("123456789012345678901")).endRow()));
+    }
+
+    @Test
+    void rowsLongerThanTheBufferAreDrainedAsTheyGo() throws IOException {
+        String longField = "x".repeat(5_000);
+        String nonAscii = "é".repeat(3_000);
+        assertEquals(longField + "," + nonAscii + ",1234567890\n",
+                csv(w -> w.field(longField).field(nonAscii).field(1234567890L).endRow()));
+    }
+
+    @Test
+    void manyRowsMatchTheRowByRowText() throws IOException {
+        BigDecimal[] amounts = { new BigDecimal("19.99"), new BigDecimal("-5.00"), new BigDecimal("120.50") };
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            expected.append("2026-10-17T12:00:00Z,").append(100_000L + i).append(",ORDER,SUCCEEDED,Client ")
+                    .append(i & 1023).append(',').append(amounts[i % 3]).append(',').append(amounts[(i + 1) % 3])
+                    .append(',').append(i).append('\n');
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeRows(new CsvWriter(out, 1024), 20_000, amounts);
+
+        assertEquals(expected.toString(), out.toString(StandardCharsets.UTF_8));
+    }
+
+    /* helpers */
+
+    @FunctionalInterface
+    private interface Rows {
+        void write(CsvWriter w) throws IOException;
+    }
+
+    private static String csv(Rows rows) throws IOException {
+        return new String(bytes(rows), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] bytes(Rows rows) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (CsvWriter w = new CsvWriter(out, 1024)) {
+            rows.write(w);
+        }
+        return out.toByteArray();
+    }
+
+    private static void writeRows(CsvWriter w, int rows, BigDecimal[] amounts) throws IOException {
+        for (int i = 0; i < rows; i++) {
+            w.raw("2026-10-17T12:00:00Z").field(100_000L + i).raw("ORDER").raw("SUCCEEDED")
+                    .field("Client " + (i & 1023)).money(amounts[i % 3]).money(amounts[(i + 1) % 3]).field(i)
+                    .endRow();
+        }
+        w.flush();
+    }
+}
@@ -0,0 +1,100 @@
+package com.ttclub.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongIntMapTest {
+
+    private static final int MISSING = Integer.MIN_VALUE;
+
+    @Test
+    void randomOperationsMatchHashMap() {
+        for (long seed = 1; seed <= 5; seed++) {
+            Random rnd = new Random(seed);
+            LongIntMap map = new LongIntMap(4);
+            Map<Long, Integer> ref = new HashMap<>();
+
+            for (int op = 0; op < 200_000; op++) {
+                long key = key(rnd);
+                switch (rnd.nextInt(6)) {
+                    case 0, 1 -> {
+                        int v = rnd.nextInt();
+                        map.put(key, v);
+                        ref.put(key, v);
+                    }
+                    case 2 -> assertEquals(ref.remove(key) != null, map.remove(key), "remove " + key);
+                    case 3 -> {
+                        int d = rnd.nextInt(100) - 50;
+                        assertEquals(ref.computeIfPresent(key, (k, v) -> v + d) != null, map.addIfPresent(key, d));
+                    }
+                    case 4 -> assertEquals(ref.containsKey(key), map.containsKey(key), "contains " + key);
+                    default -> assertEquals(ref.getOrDefault(key, MISSING), map.get(key, MISSING), "get " + key);
+                }
+                if (op % 10_000 == 0) assertSame(ref, map);
+                if (op % 50_000 == 49_999) {
+                    map.clear();
+                    ref.clear();
+                }
+            }
+            assertSame(ref, map);
+        }
+    }
+
+    @Test
+    void removeInsideAProbeChainThatWrapsAround() {
+        // capacity 8 holds 3 entries; three keys homing at the last slot occupy slots 7, 0, 1
+        long[] ks = Mix.keysHomingAt(7, 8, 4);
+        LongIntMap map = new LongIntMap(4);
+        map.put(ks[0], 10);
+        map.put(ks[1], 11);
+        map.put(ks[2], 12);
+
+        assertTrue(map.remove(ks[0]));         // hole at 7: 0 and 1 shift back across the wrap
+        assertEquals(11, map.get(ks[1], MISSING));
+        assertEquals(12, map.get(ks[2], MISSING));
+        assertFalse(map.containsKey(ks[0]));
+
+        map.put(ks[3], 13);
+        assertTrue(map.remove(ks[2]));
+        assertEquals(11, map.get(ks[1], MISSING));
+        assertEquals(13, map.get(ks[3], MISSING));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    void removeKeepsEntriesWhoseHomeIsAfterTheHole() {
+        // ks[0] homes at 6, others at 7: removing ks[0] must not pull an entry before its home
+        long a = Mix.keysHomingAt(6, 8, 1)[0];
+        long[] b = Mix.keysHomingAt(7, 8, 2);
+        LongIntMap map = new LongIntMap(4);
+        map.put(a, 1);
+        map.put(b[0], 2);
+        map.put(b[1], 3);
+
+        assertTrue(map.remove(a));
+        assertEquals(2, map.get(b[0], MISSING));
+        assertEquals(3, map.get(b[1], MISSING));
+        assertFalse(map.remove(a));
+    }
+
+    private static long key(Random rnd) {
+        return switch (rnd.nextInt(10)) {
+            case 0 -> rnd.nextLong();
+            case 1 -> rnd.nextBoolean() ? Long.MIN_VALUE : Long.MAX_VALUE;
+            case 2 -> -rnd.nextInt(64);
+            default -> rnd.nextInt(512);
+        };
+    }
+
+    private static void assertSame(Map<Long, Integer> ref, LongIntMap map) {
+        assertEquals(ref.size(), map.size());
+        Map<Long, Integer> seen = new HashMap<>();
+        map.forEach((k, v) -> assertNull(seen.put(k, v), "duplicate key " + k));
+        assertEquals(ref, seen);
+    }
+}
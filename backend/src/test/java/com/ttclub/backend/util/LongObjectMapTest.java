@@ -0,0 +1,65 @@
+package com.ttclub.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongObjectMapTest {
+
+    @Test
+    void randomOperationsMatchHashMap() {
+        for (long seed = 1; seed <= 5; seed++) {
+            Random rnd = new Random(seed);
+            LongObjectMap<String> map = new LongObjectMap<>(4);
+            Map<Long, String> ref = new HashMap<>();
+
+            for (int op = 0; op < 200_000; op++) {
+                long key = rnd.nextInt(8) == 0 ? rnd.nextLong() : rnd.nextInt(1024) - 64;
+                String v = "v" + rnd.nextInt(1000);
+                switch (rnd.nextInt(5)) {
+                    case 0 -> assertEquals(ref.put(key, v), map.put(key, v), "put " + key);
+                    case 1 -> assertEquals(ref.putIfAbsent(key, v), map.putIfAbsent(key, v), "putIfAbsent " + key);
+                    case 2 -> assertEquals(ref.computeIfAbsent(key, k -> v), map.computeIfAbsent(key, k -> v));
+                    case 3 -> assertEquals(ref.containsKey(key), map.containsKey(key), "contains " + key);
+                    default -> assertEquals(ref.get(key), map.get(key), "get " + key);
+                }
+                if (op % 10_000 == 0) assertSame(ref, map);
+                if (op % 50_000 == 49_999) {
+                    map.clear();
+                    ref.clear();
+                }
+            }
+            assertSame(ref, map);
+        }
+    }
+
+    @Test
+    void probeChainWrapsAroundTheEnd() {
+        long[] ks = Mix.keysHomingAt(7, 8, 3);
+        LongObjectMap<String> map = new LongObjectMap<>(4);
+        for (long k : ks) map.put(k, "v" + k);
+
+        for (long k : ks) assertEquals("v" + k, map.get(k));
+        assertNull(map.get(Mix.keysHomingAt(7, 8, 4)[3]));   // miss walks the wrapped chain
+        assertEquals(3, map.size());
+    }
+
+    @Test
+    void nullValuesAreRejectedAndComputeMayDecline() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        assertThrows(IllegalArgumentException.class, () -> map.put(1L, null));
+        assertNull(map.computeIfAbsent(1L, k -> null));
+        assertFalse(map.containsKey(1L));
+    }
+
+    private static void assertSame(Map<Long, String> ref, LongObjectMap<String> map) {
+        assertEquals(ref.size(), map.size());
+        Map<Long, String> seen = new HashMap<>();
+        map.forEach((k, v) -> assertNull(seen.put(k, v), "duplicate key " + k));
+        assertEquals(ref, seen);
+    }
+}
@@ -0,0 +1,24 @@
+package com.ttclub.backend.util;
+
+/** Test helper: keys with a chosen home slot, using the maps' own hash finaliser. */
+final class Mix {
+
+    private Mix() { }
+
+    /** Same Stafford variant 13 finaliser as LongIntMap / LongObjectMap. */
+    static int mix(long k) {
+        k = (k ^ (k >>> 30)) * 0xbf58476d1ce4e5b9L;
+        k = (k ^ (k >>> 27)) * 0x94d049bb133111ebL;
+        return (int) (k ^ (k >>> 31));
+    }
+
+    /** The first n keys (counting up from 1) whose home slot in a table of capacity cap is slot. */
+    static long[] keysHomingAt(int slot, int cap, int n) {
+        long[] out = new long[n];
+        int found = 0;
+        for (long k = 1; found < n; k++) {
+            if ((mix(k) & (cap - 1)) == slot) out[found++] = k;
+        }
+        return out;
+    }
+}